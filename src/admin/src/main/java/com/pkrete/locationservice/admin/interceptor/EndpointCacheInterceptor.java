@@ -0,0 +1,122 @@
+/**
+ * This file is part of Location Service :: Admin. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Admin is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Admin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Admin. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.admin.interceptor;
+
+import com.pkrete.locationservice.admin.model.owner.Owner;
+import com.pkrete.locationservice.admin.model.user.User;
+import com.pkrete.locationservice.admin.service.EndpointCacheService;
+import com.pkrete.locationservice.admin.service.endpoint.ModifiedLibraries;
+import java.util.Enumeration;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * This interceptor asks the endpoint to evict its caches after a request that
+ * may have modified the data of the current owner. GET and HEAD requests are
+ * considered read-only, unless they contain a delete button parameter. If
+ * the request modified locations, the ids of their libraries are sent to the
+ * endpoint, so that only the modified libraries are updated in the search
+ * index of the endpoint. The eviction request is sent by the
+ * {@link EndpointCacheService EndpointCacheService}.
+ *
+ * @author Petteri Kivimäki
+ */
+public class EndpointCacheInterceptor extends HandlerInterceptorAdapter {
+
+    private EndpointCacheService endpointCacheService;
+
+    /**
+     * Sets the service that sends the eviction requests to the endpoint.
+     *
+     * @param endpointCacheService new value
+     */
+    public void setEndpointCacheService(EndpointCacheService endpointCacheService) {
+        this.endpointCacheService = endpointCacheService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request,
+            HttpServletResponse response, Object handler) throws Exception {
+        ModifiedLibraries.clear();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request,
+            HttpServletResponse response, Object handler, Exception ex) throws Exception {
+        Set<Integer> libraryIds = ModifiedLibraries.take();
+        if (ex != null || !isModifyingRequest(request)) {
+            return;
+        }
+        String owner = getOwnerCode(request);
+        if (owner == null) {
+            return;
+        }
+        if (libraryIds.isEmpty()) {
+            endpointCacheService.evict(owner);
+        } else {
+            endpointCacheService.evict(owner, libraryIds);
+        }
+    }
+
+    /**
+     * Checks if the given request may modify data.
+     *
+     * @param request HTTP request
+     * @return true if the request may modify data, otherwise false
+     */
+    private boolean isModifyingRequest(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return true;
+        }
+        Enumeration names = request.getParameterNames();
+        while (names.hasMoreElements()) {
+            if (((String) names.nextElement()).startsWith("btn_delete")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the code of the owner related to the given request. REST API
+     * sets the owner as a request attribute and the user interface stores the
+     * user in the session.
+     *
+     * @param request HTTP request
+     * @return owner code or null
+     */
+    private String getOwnerCode(HttpServletRequest request) {
+        Object owner = request.getAttribute("owner");
+        if (owner instanceof Owner) {
+            return ((Owner) owner).getCode();
+        }
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            User user = (User) session.getAttribute("user");
+            if (user != null && user.getOwner() != null) {
+                return user.getOwner().getCode();
+            }
+        }
+        return null;
+    }
+}
@@ -24,6 +24,7 @@ import com.pkrete.locationservice.admin.model.search.SearchIndex;
 import com.pkrete.locationservice.admin.model.owner.Owner;
 import com.pkrete.locationservice.admin.io.DirectoryService;
 import com.pkrete.locationservice.admin.io.FileService;
+import com.pkrete.locationservice.admin.service.EndpointCacheService;
 import com.pkrete.locationservice.admin.service.LanguagesService;
 import com.pkrete.locationservice.admin.service.LocationsService;
 import com.pkrete.locationservice.admin.io.TemplatesService;
@@ -58,6 +59,7 @@ public class TemplatesServiceImpl implements TemplatesService {
     private LocationsService locationsService;
     private LanguagesService languagesService;
     private DirectoryService dirService;
+    private EndpointCacheService endpointCacheService;
 
     /**
      * Sets the file service object.
@@ -95,6 +97,16 @@ public class TemplatesServiceImpl implements TemplatesService {
         this.dirService = dirService;
     }
 
+    /**
+     * Sets the service that asks the endpoint to refresh its templates after
+     * they have been modified.
+     *
+     * @param endpointCacheService new value
+     */
+    public void setEndpointCacheService(EndpointCacheService endpointCacheService) {
+        this.endpointCacheService = endpointCacheService;
+    }
+
     /**
      * Returns a list of templates related to the given owner located in the
      * given language folder.
@@ -227,6 +239,7 @@ public class TemplatesServiceImpl implements TemplatesService {
         // Create new template
         if (fileService.add(path, contents)) {
             logger.debug("New template created : {}", path);
+            refreshEndpoint(owner);
             return true;
         }
         logger.warn("Failed to create template : {}", path);
@@ -280,7 +293,11 @@ public class TemplatesServiceImpl implements TemplatesService {
         // Get default contents from the system template
         String contents = read(owner);
         // Create new template
-        return fileService.add(path, contents);
+        if (fileService.add(path, contents)) {
+            refreshEndpoint(owner);
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -344,6 +361,7 @@ public class TemplatesServiceImpl implements TemplatesService {
         // Write contents to the system template
         if (fileService.write(filePath, contents)) {
             logger.debug("System template updated : {}", filePath);
+            refreshEndpoint(owner);
             return true;
         }
         logger.debug("Updating system template failed : {}", filePath);
@@ -379,6 +397,7 @@ public class TemplatesServiceImpl implements TemplatesService {
         // Update file contents
         if (fileService.update(path, contents)) {
             logger.debug("Template updated : {}", path);
+            refreshEndpoint(owner);
             return true;
         }
         logger.debug("Updating template failed : {}", path);
@@ -414,6 +433,7 @@ public class TemplatesServiceImpl implements TemplatesService {
         // Delete the template
         if (fileService.delete(path)) {
             logger.debug("Template deleted : {}", path);
+            refreshEndpoint(owner);
             return true;
         }
         logger.debug("Deleting template failed : {}", path);
@@ -453,6 +473,7 @@ public class TemplatesServiceImpl implements TemplatesService {
         // Rename template
         if (fileService.rename(oldPath, newPath)) {
             logger.debug("Template renamed.");
+            refreshEndpoint(owner);
             return true;
         }
         logger.warn("Renaming template failed.");
@@ -507,6 +528,7 @@ public class TemplatesServiceImpl implements TemplatesService {
         // Rename template
         if (fileService.rename(oldPath, newPath)) {
             logger.debug("Template renamed.");
+            refreshEndpoint(owner);
             return true;
         }
         logger.warn("Renaming template failed.");
@@ -601,6 +623,7 @@ public class TemplatesServiceImpl implements TemplatesService {
             }
             return false;
         }
+        refreshEndpoint(owner);
         return true;
     }
 
@@ -756,4 +779,16 @@ public class TemplatesServiceImpl implements TemplatesService {
         }
         return true;
     }
+
+    /**
+     * Asks the endpoint to refresh the templates of the given owner, so that
+     * the changes become visible immediately.
+     *
+     * @param owner owner of the templates
+     */
+    private void refreshEndpoint(Owner owner) {
+        if (endpointCacheService != null) {
+            endpointCacheService.evictTemplates(owner.getCode());
+        }
+    }
 }
@@ -0,0 +1,59 @@
+/**
+ * This file is part of Location Service :: Admin. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Admin is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Admin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Admin. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.admin.service;
+
+import java.util.Collection;
+
+/**
+ * This interface defines methods for asking the endpoint to evict its cached
+ * data after the data has been modified in the admin application. The
+ * requests may be sent asynchronously. All the classes implementing this
+ * interface must implement all the methods defined here.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface EndpointCacheService {
+
+    /**
+     * Asks the endpoint to evict the cached data related to the given owner.
+     *
+     * @param owner code of the owner
+     * @return true if the request was accepted for sending, otherwise false
+     */
+    boolean evict(String owner);
+
+    /**
+     * Asks the endpoint to evict the cached data related to the given owner
+     * after the given libraries or their collections or shelves have been
+     * modified. The endpoint updates the data related to the libraries
+     * instead of evicting it, where possible.
+     *
+     * @param owner code of the owner
+     * @param libraryIds ids of the modified libraries
+     * @return true if the request was accepted for sending, otherwise false
+     */
+    boolean evict(String owner, Collection<Integer> libraryIds);
+
+    /**
+     * Asks the endpoint to evict the cached templates of the given owner.
+     *
+     * @param owner code of the owner
+     * @return true if the request was accepted for sending, otherwise false
+     */
+    boolean evictTemplates(String owner);
+}
@@ -0,0 +1,268 @@
+/**
+ * This file is part of Location Service :: Admin. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Admin is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Admin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Admin. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.admin.service.endpoint;
+
+import com.pkrete.locationservice.admin.service.EndpointCacheService;
+import com.pkrete.locationservice.admin.util.Settings;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements the {@link EndpointCacheService EndpointCacheService}
+ * interface. The eviction requests are sent to the Cache servlet of the
+ * endpoint by a background thread, so that the admin requests don't wait for
+ * the endpoint. Requests for the same owner and scope that are waiting to be
+ * sent are combined into one request. At most maxPending requests wait at a
+ * time, and the requests that don't fit are dropped. If sending a request
+ * fails or it's dropped, the cached data expires in the endpoint after a
+ * while.
+ *
+ * If the web path of the endpoint is not set, no requests are sent.
+ *
+ * @author Petteri Kivimäki
+ */
+public class EndpointCacheServiceImpl implements EndpointCacheService {
+
+    private final static Logger logger = LoggerFactory.getLogger(EndpointCacheServiceImpl.class.getName());
+    private final Map<String, Request> pending = new LinkedHashMap<String, Request>();
+    private boolean enabled = true;
+    private int timeout = 2000;
+    private int maxPending = 1000;
+    private String secret;
+    private Thread worker;
+    private boolean stopped;
+
+    /**
+     * Sets whether the caches of the endpoint are evicted.
+     *
+     * @param enabled new value
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Sets the connect and read timeout of the eviction request in
+     * milliseconds.
+     *
+     * @param timeout new value
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sets the maximum number of requests that wait to be sent. Default is
+     * 1000.
+     *
+     * @param maxPending new value
+     */
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Sets the shared secret that's sent to the endpoint in the
+     * X-Cache-Secret header. If the secret is null or empty, the header is
+     * not sent.
+     *
+     * @param secret new value
+     */
+    public void setSecret(String secret) {
+        this.secret = secret;
+    }
+
+    @Override
+    public boolean evict(String owner) {
+        return queue(owner, null, null);
+    }
+
+    @Override
+    public boolean evict(String owner, Collection<Integer> libraryIds) {
+        return queue(owner, null, libraryIds);
+    }
+
+    @Override
+    public boolean evictTemplates(String owner) {
+        return queue(owner, "templates", null);
+    }
+
+    /**
+     * Stops the thread that sends the requests. Requests that are waiting to
+     * be sent are dropped.
+     */
+    public void destroy() {
+        synchronized (pending) {
+            stopped = true;
+            pending.clear();
+            pending.notifyAll();
+        }
+    }
+
+    /**
+     * Adds an eviction request to the queue of the requests to be sent. If a
+     * request for the same owner and scope is already waiting, the requests
+     * are combined.
+     *
+     * @param owner code of the owner
+     * @param scope scope of the eviction or null, if all the data of the owner
+     * is evicted
+     * @param libraryIds ids of the modified libraries or null, if the data
+     * isn't related to specific libraries
+     * @return true if the request was queued, otherwise false
+     */
+    private boolean queue(String owner, String scope, Collection<Integer> libraryIds) {
+        if (!enabled || owner == null) {
+            return false;
+        }
+        String webPath = Settings.getInstance().getWebpath();
+        if (webPath == null || webPath.isEmpty()) {
+            return false;
+        }
+        String key = owner + "\n" + scope;
+        synchronized (pending) {
+            if (stopped) {
+                return false;
+            }
+            Request request = pending.get(key);
+            if (request != null) {
+                request.merge(libraryIds);
+            } else if (pending.size() >= maxPending) {
+                logger.warn("Too many endpoint cache eviction requests waiting, request dropped. Owner : \"{}\".", owner);
+                return false;
+            } else {
+                pending.put(key, new Request(owner, scope, libraryIds));
+            }
+            if (worker == null) {
+                worker = new Thread(new Sender(), "endpoint-cache-eviction");
+                worker.setDaemon(true);
+                worker.start();
+            }
+            pending.notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Sends an eviction request to the endpoint.
+     *
+     * @param request request to be sent
+     * @return true if the endpoint evicted the data, otherwise false
+     */
+    private boolean send(Request request) {
+        try {
+            StringBuilder url = new StringBuilder(Settings.getInstance().getWebpath());
+            url.append("Cache?owner=").append(URLEncoder.encode(request.owner, "UTF-8"));
+            if (request.scope != null) {
+                url.append("&scope=").append(request.scope);
+            }
+            if (request.libraryIds != null) {
+                for (Integer libraryId : request.libraryIds) {
+                    url.append("&library=").append(libraryId);
+                }
+            }
+            HttpURLConnection con = (HttpURLConnection) new URL(url.toString()).openConnection();
+            con.setConnectTimeout(timeout);
+            con.setReadTimeout(timeout);
+            con.setRequestMethod("POST");
+            if (secret != null && !secret.isEmpty()) {
+                con.setRequestProperty("X-Cache-Secret", secret);
+            }
+            int code = con.getResponseCode();
+            con.disconnect();
+            if (code != HttpURLConnection.HTTP_OK) {
+                logger.warn("Evicting endpoint caches failed. HTTP status : {}.", code);
+                return false;
+            }
+            logger.debug("Endpoint caches evicted. Owner : \"{}\", scope : \"{}\".", request.owner, request.scope);
+            return true;
+        } catch (Exception e) {
+            logger.warn("Evicting endpoint caches failed. {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Sends the queued requests one at a time in the order they were queued.
+     */
+    private class Sender implements Runnable {
+
+        @Override
+        public void run() {
+            while (true) {
+                Request request;
+                synchronized (pending) {
+                    while (pending.isEmpty() && !stopped) {
+                        try {
+                            pending.wait();
+                        } catch (InterruptedException ex) {
+                            return;
+                        }
+                    }
+                    if (stopped) {
+                        return;
+                    }
+                    Iterator<Request> it = pending.values().iterator();
+                    request = it.next();
+                    it.remove();
+                }
+                send(request);
+            }
+        }
+    }
+
+    /**
+     * An eviction request waiting to be sent. If the library ids are null,
+     * all the data of the owner in the scope is evicted.
+     */
+    private static class Request {
+
+        private final String owner;
+        private final String scope;
+        private Set<Integer> libraryIds;
+
+        Request(String owner, String scope, Collection<Integer> libraryIds) {
+            this.owner = owner;
+            this.scope = scope;
+            this.libraryIds = libraryIds == null ? null : new LinkedHashSet<Integer>(libraryIds);
+        }
+
+        /**
+         * Combines the given library ids with the ids of this request. If
+         * either of them is null, all the data of the owner is evicted.
+         *
+         * @param ids library ids of another request
+         */
+        void merge(Collection<Integer> ids) {
+            if (ids == null || this.libraryIds == null) {
+                this.libraryIds = null;
+            } else {
+                this.libraryIds.addAll(ids);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * This file is part of Location Service :: Admin. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Admin is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Admin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Admin. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.admin.service.endpoint;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * This class collects the ids of the libraries which locations are modified
+ * while processing a request. The ids are collected per thread, and
+ * {@link com.pkrete.locationservice.admin.interceptor.EndpointCacheInterceptor EndpointCacheInterceptor}
+ * takes them after the request has completed, so that the endpoint is able
+ * to update only the modified libraries in its caches.
+ *
+ * @author Petteri Kivimäki
+ */
+public final class ModifiedLibraries {
+
+    private static final ThreadLocal<Set<Integer>> ids = new ThreadLocal<Set<Integer>>();
+
+    private ModifiedLibraries() {
+    }
+
+    /**
+     * Records the library with the given id as modified in the current
+     * thread.
+     *
+     * @param libraryId id of the library
+     */
+    public static void add(int libraryId) {
+        Set<Integer> set = ids.get();
+        if (set == null) {
+            set = new LinkedHashSet<Integer>();
+            ids.set(set);
+        }
+        set.add(libraryId);
+    }
+
+    /**
+     * Returns the ids of the libraries that have been modified in the
+     * current thread and forgets them.
+     *
+     * @return ids of the modified libraries, empty if there are none
+     */
+    public static Set<Integer> take() {
+        Set<Integer> set = ids.get();
+        ids.remove();
+        return set == null ? new LinkedHashSet<Integer>() : set;
+    }
+
+    /**
+     * Forgets the libraries that have been modified in the current thread.
+     */
+    public static void clear() {
+        ids.remove();
+    }
+}
@@ -20,6 +20,7 @@ package com.pkrete.locationservice.admin.service.locations;
 import com.pkrete.locationservice.admin.comparator.LocationCallnoComparator;
 import com.pkrete.locationservice.admin.dao.LocationsDao;
 import com.pkrete.locationservice.admin.service.LocationsService;
+import com.pkrete.locationservice.admin.service.endpoint.ModifiedLibraries;
 import com.pkrete.locationservice.admin.model.location.Area;
 import com.pkrete.locationservice.admin.model.location.Description;
 import com.pkrete.locationservice.admin.model.location.Library;
@@ -437,6 +438,7 @@ public class LocationsServiceImpl implements LocationsService {
         // Add Library to the database
         if (dao.create(library)) {
             logger.info("Library created : {}", this.libJsonizer.jsonize(library, true));
+            ModifiedLibraries.add(library.getLocationId());
             // Create index entry
             if (!dao.save(new SearchIndex(library.getLocationId(), LocationType.LIBRARY, library.getCallNo(), library.getLocationCode(), library.getOwner()))) {
                 logger.error("Creating index entry failed!");
@@ -487,6 +489,7 @@ public class LocationsServiceImpl implements LocationsService {
         }
 
         logger.info("Library updated : {}", this.libJsonizer.jsonize(library, true));
+        ModifiedLibraries.add(library.getLocationId());
 
         // Update to external index
         this.updateToIndex(library);
@@ -556,6 +559,7 @@ public class LocationsServiceImpl implements LocationsService {
         // Add collection to the database
         if (dao.create(collection)) {
             logger.info("Collection created : {}", this.colJsonizer.jsonize(collection, true));
+            this.addModified(collection);
             // Create index entry
             if (!dao.save(new SearchIndex(collection.getLocationId(), LocationType.COLLECTION, collection.getCallNo(), collection.getLocationCode(), collection.getOwner(), collection.getCollectionCode()))) {
                 logger.error("Creating index entry failed!");
@@ -606,6 +610,7 @@ public class LocationsServiceImpl implements LocationsService {
         }
 
         logger.info("Collection updated : {}", this.colJsonizer.jsonize(collection, true));
+        this.addModified(collection);
 
         // Update external index
         this.updateToIndex(collection);
@@ -665,6 +670,7 @@ public class LocationsServiceImpl implements LocationsService {
         // Add shelf to the database
         if (dao.create(shelf)) {
             logger.info("Shelf created : {}", this.shelfJsonizer.jsonize(shelf, true));
+            this.addModified(shelf);
             // Load collection object with all the lazy associations loaded
             shelf.setCollection(dao.getCollection(shelf.getCollection().getLocationId(), shelf.getOwner()));
             // Create index entry
@@ -719,6 +725,7 @@ public class LocationsServiceImpl implements LocationsService {
         shelf.setCollection(collection);
 
         logger.info("Shelf updated : {}", this.shelfJsonizer.jsonize(shelf, true));
+        this.addModified(shelf);
 
         // Update external index
         this.updateToIndex(shelf);
@@ -761,6 +768,7 @@ public class LocationsServiceImpl implements LocationsService {
         String json = this.libJsonizer.jsonize(library, true);
         if (dao.delete(library)) {
             logger.info("Library deleted : {}", json);
+            ModifiedLibraries.add(library.getLocationId());
             // Delete from external index
             this.deleteFromIndex(library);
             return true;
@@ -783,6 +791,7 @@ public class LocationsServiceImpl implements LocationsService {
         String json = this.colJsonizer.jsonize(collection, true);
         if (dao.delete(collection)) {
             logger.info("Collection deleted : {}", json);
+            this.addModified(collection);
             // Delete from external index
             this.deleteFromIndex(collection);
             return true;
@@ -802,6 +811,7 @@ public class LocationsServiceImpl implements LocationsService {
         String json = this.shelfJsonizer.jsonize(shelf, true);
         if (dao.delete(shelf)) {
             logger.info("Shelf deleted : {}", json);
+            this.addModified(shelf);
             // Delete from external index
             this.deleteFromIndex(shelf);
             return true;
@@ -1062,6 +1072,24 @@ public class LocationsServiceImpl implements LocationsService {
         return new ArrayList<Integer>(ids);
     }
 
+    /**
+     * Records the library of the given collection or shelf as modified, so
+     * that the endpoint updates the library in its caches.
+     *
+     * @param location collection or shelf
+     */
+    private void addModified(Location location) {
+        Library library = null;
+        if (location instanceof LibraryCollection) {
+            library = ((LibraryCollection) location).getLibrary();
+        } else if (location instanceof Shelf && ((Shelf) location).getCollection() != null) {
+            library = ((Shelf) location).getCollection().getLibrary();
+        }
+        if (library != null) {
+            ModifiedLibraries.add(library.getLocationId());
+        }
+    }
+
     /**
      * Can be used for adding Locations to external index. Not implemented.
      *
@@ -0,0 +1,150 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks;
+
+import com.pkrete.locationservice.endpoint.util.PropertiesUtil;
+import com.pkrete.locationservice.endpoint.util.Settings;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+/**
+ * This class sets up the environment that the endpoint classes expect to find
+ * when they're run inside the web application. The configuration properties
+ * are loaded without a Spring application context, and the home directory of
+ * the service is created in the temp directory. The template files of the
+ * benchmarks are copied to the template directories of the owners.
+ *
+ * The environment must be initialized before the {@link Settings Settings}
+ * singleton is used for the first time.
+ *
+ * @author Petteri Kivimäki
+ */
+public class BenchmarkEnvironment {
+
+    private static final String SERVICE_NAME = "location-service";
+    private static final String[] TEMPLATES = {
+        "template_shelf.txt", "template_collection.txt", "template_library.txt",
+        "template_not_found.txt", "template_other_footer.txt"
+    };
+    private static File home;
+    private static Properties properties;
+
+    private BenchmarkEnvironment() {
+    }
+
+    /**
+     * Initializes the environment, if it hasn't been initialized yet, and
+     * copies the templates of the given owner to the home directory.
+     *
+     * @param owner owner code
+     * @throws IOException if copying the templates fails
+     */
+    public static void init(String owner) throws IOException {
+        init(owner, Catalogue.LANGUAGES);
+    }
+
+    /**
+     * Initializes the environment, if it hasn't been initialized yet, and
+     * copies the templates of the given owner and languages to the home
+     * directory.
+     *
+     * @param owner owner code
+     * @param languages language codes
+     * @throws IOException if copying the templates fails
+     */
+    public static synchronized void init(String owner, String[] languages) throws IOException {
+        if (home == null) {
+            home = Files.createTempDirectory("benchmarks").toFile();
+            home.deleteOnExit();
+            properties = new Properties();
+            properties.setProperty("service.path", home.getAbsolutePath() + "/");
+            properties.setProperty("service.name", SERVICE_NAME);
+            properties.setProperty("service.webPath", "http://localhost:8080/");
+            new PropertiesLoader().load(properties);
+            mkdirs(new File(home, SERVICE_NAME));
+        }
+        for (String lang : languages) {
+            File dir = new File(Settings.getInstance().getTemplatesPath(owner) + lang);
+            if (dir.exists()) {
+                continue;
+            }
+            mkdirs(dir);
+            for (String template : TEMPLATES) {
+                File file = new File(dir, template);
+                InputStream in = BenchmarkEnvironment.class.getResourceAsStream("/templates/" + template);
+                try {
+                    Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    in.close();
+                }
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the configuration properties of the environment. An
+     * application context of the endpoint that's created after the
+     * environment has been initialized must override its properties with
+     * these, so that the home directory doesn't change.
+     *
+     * @return configuration properties
+     * @throws IllegalStateException if the environment hasn't been
+     * initialized
+     */
+    public static synchronized Properties getProperties() {
+        if (properties == null) {
+            throw new IllegalStateException("The environment hasn't been initialized.");
+        }
+        return (Properties) properties.clone();
+    }
+
+    /**
+     * Creates the given directory and all its missing parent directories. The
+     * created directories are deleted when the JVM exits.
+     *
+     * @param dir directory to be created
+     * @throws IOException if creating the directory fails
+     */
+    private static void mkdirs(File dir) throws IOException {
+        if (dir.exists()) {
+            return;
+        }
+        mkdirs(dir.getParentFile());
+        if (!dir.mkdir()) {
+            throw new IOException("Unable to create directory: " + dir.getAbsolutePath());
+        }
+        dir.deleteOnExit();
+    }
+
+    /**
+     * Loads the given properties into PropertiesUtil without an application
+     * context.
+     */
+    private static class PropertiesLoader extends PropertiesUtil {
+
+        void load(Properties properties) {
+            this.processProperties(new DefaultListableBeanFactory(), properties);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks;
+
+import com.pkrete.locationservice.endpoint.callnoparser.indexparser.CallnoIndex;
+import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
+import com.pkrete.locationservice.endpoint.util.LocationHelper;
+import com.pkrete.locationservice.endpoint.util.LocationServiceConstants;
+import java.text.RuleBasedCollator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for matching a call number against the shelves of an owner. The
+ * scan benchmarks go through the search index entries one by one like the
+ * index call number parsers do without an index cache, and the index
+ * benchmarks use the in-memory call number index.
+ *
+ * @author Petteri Kivimäki
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallnoMatchBenchmark {
+
+    private List<SimpleLocation> shelves;
+    private Pattern pattern;
+    private RuleBasedCollator collator;
+    private CallnoIndex index;
+
+    /**
+     * Loads the search index entries and builds the call number index.
+     *
+     * @param state catalogue state
+     */
+    @Setup
+    public void setup(CatalogueState state) {
+        String owner = CatalogueState.OWNER;
+        InMemoryService service = state.getService();
+        this.shelves = service.getShelvesFromIndex(owner);
+        this.pattern = Pattern.compile(LocationServiceConstants.INTERVAL_REGEX);
+        this.collator = LocationHelper.createCollator(LocationServiceConstants.LANGUAGE, LocationServiceConstants.COUNTRY);
+        this.index = new CallnoIndex(owner, service.getShelvesFromIndex(owner),
+                service.getCollectionsFromIndex(owner), service.getLibrariesFromIndex(owner),
+                this.pattern, this.collator);
+        // Interval indexes are built lazily
+        this.index.getShelfIntervals();
+    }
+
+    /**
+     * Direct matches by scanning the search index entries.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return matching entry or null
+     */
+    @Benchmark
+    public SimpleLocation scanMatch(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        for (SimpleLocation entry : this.shelves) {
+            if (LocationHelper.match(entry.getCallNo(), callno)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Direct and interval matches by scanning the search index entries.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return matching entry or null
+     */
+    @Benchmark
+    public SimpleLocation scanIntervalMatch(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        for (SimpleLocation entry : this.shelves) {
+            if (LocationHelper.match(entry.getCallNo(), callno) || LocationHelper.match(entry.getCallNo(), callno, this.pattern, this.collator)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Direct matches using the call number trie.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return matching entry or null
+     */
+    @Benchmark
+    public SimpleLocation indexMatch(CatalogueState state, CatalogueState.Cursor cursor) {
+        return this.index.getShelves().find(cursor.next(state));
+    }
+
+    /**
+     * Direct and interval matches using the call number trie and the interval
+     * index.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return matching entry or null
+     */
+    @Benchmark
+    public SimpleLocation indexIntervalMatch(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        int rank = this.index.getShelves().findRank(callno);
+        int intervalRank = this.index.getShelfIntervals().findRank(callno, rank < 0 ? Integer.MAX_VALUE : rank);
+        if (intervalRank >= 0) {
+            return this.index.getShelves().get(intervalRank);
+        }
+        return rank < 0 ? null : this.index.getShelves().get(rank);
+    }
+}
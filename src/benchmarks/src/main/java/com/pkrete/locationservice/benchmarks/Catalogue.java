@@ -0,0 +1,383 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks;
+
+import com.pkrete.locationservice.endpoint.callnoparser.LocatingStrategy;
+import com.pkrete.locationservice.endpoint.model.language.Language;
+import com.pkrete.locationservice.endpoint.model.location.Description;
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.location.Note;
+import com.pkrete.locationservice.endpoint.model.location.Shelf;
+import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.model.search.LocationType;
+import com.pkrete.locationservice.endpoint.model.search.SearchIndex;
+import com.pkrete.locationservice.endpoint.modifier.CallnoModification;
+import com.pkrete.locationservice.endpoint.modifier.NotFoundRedirect;
+import com.pkrete.locationservice.endpoint.modifier.PreprocessingRedirect;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This class generates a synthetic catalogue of a single owner. The catalogue
+ * contains libraries, collections and shelves with descriptions and notes in
+ * all the languages of the owner, the search index entries of the locations,
+ * preprocessing and not found redirects, and a sample of call numbers that
+ * are used as requests.
+ *
+ * Every fourth shelf defines a call number interval, e.g. "[Ba]-[Bf]", and
+ * every third collection has a collection code. The call number sample
+ * contains direct matches, interval matches, call numbers that are matched
+ * only after a redirect and call numbers that can not be matched at all. The
+ * same seed always produces the same catalogue.
+ *
+ * @author Petteri Kivimäki
+ */
+public class Catalogue {
+
+    /**
+     * Languages of the catalogue.
+     */
+    public static final String[] LANGUAGES = {"fi", "sv", "en"};
+    private static final String[] DESCRIPTIONS = {
+        "Kirjasto & lukusali, %s <kerros %d>",
+        "Bibliotek & läsesal, %s <våning %d>",
+        "Library & \"reading room\", %s <floor %d>"
+    };
+    private static final String[] NOTES = {
+        "Lainattavissa 14 päivää. Käytä hyllykarttaa: %s",
+        "Lånetid 14 dagar. Använd hyllkartan: %s",
+        "Loan period 14 days. Use the shelf map: %s"
+    };
+    private final Owner owner;
+    private final List<Language> languages;
+    private final List<Library> libraries;
+    private final Map<Integer, Location> locations;
+    private final List<SimpleLocation> libraryIndex;
+    private final List<SimpleLocation> collectionIndex;
+    private final List<SimpleLocation> shelfIndex;
+    private final List<CallnoModification> preprocessingRedirects;
+    private final List<CallnoModification> notFoundRedirects;
+    private final List<String> callnos;
+    private final Random random;
+    private int nextId = 1;
+
+    /**
+     * Constructs and initializes a new catalogue.
+     *
+     * @param code owner code
+     * @param libraryCount number of libraries
+     * @param collectionCount number of collections per library
+     * @param shelfCount number of shelves per collection
+     * @param redirectCount number of preprocessing and not found redirects
+     * @param callnoCount number of call numbers in the sample
+     * @param seed seed of the random number generator
+     */
+    public Catalogue(String code, int libraryCount, int collectionCount, int shelfCount, int redirectCount, int callnoCount, long seed) {
+        this.random = new Random(seed);
+        this.owner = new Owner(code, "Benchmark library " + code);
+        this.owner.setLocatingStrategy(LocatingStrategy.INDEX_INTERVAL);
+        this.owner.setExporterVisible(true);
+        this.owner.setAllowedIPs("");
+        this.languages = new ArrayList<Language>();
+        for (int i = 0; i < LANGUAGES.length; i++) {
+            Language language = new Language(LANGUAGES[i]);
+            language.setId(i + 1);
+            language.setCode(LANGUAGES[i]);
+            this.languages.add(language);
+        }
+        this.owner.setLanguages(this.languages);
+        this.libraries = new ArrayList<Library>();
+        this.locations = new HashMap<Integer, Location>();
+        this.libraryIndex = new ArrayList<SimpleLocation>();
+        this.collectionIndex = new ArrayList<SimpleLocation>();
+        this.shelfIndex = new ArrayList<SimpleLocation>();
+        this.preprocessingRedirects = new ArrayList<CallnoModification>();
+        this.notFoundRedirects = new ArrayList<CallnoModification>();
+        this.callnos = new ArrayList<String>();
+
+        for (int i = 0; i < libraryCount; i++) {
+            this.libraries.add(this.createLibrary(i, collectionCount, shelfCount));
+        }
+        this.createRedirects(libraryCount, redirectCount);
+        this.createCallnos(libraryCount, callnoCount);
+        // Search index entries are returned in descending call number order
+        sort(this.libraryIndex);
+        sort(this.collectionIndex);
+        sort(this.shelfIndex);
+    }
+
+    /**
+     * Returns the owner of the catalogue.
+     *
+     * @return owner
+     */
+    public Owner getOwner() {
+        return this.owner;
+    }
+
+    /**
+     * Returns the languages of the catalogue.
+     *
+     * @return languages
+     */
+    public List<Language> getLanguages() {
+        return this.languages;
+    }
+
+    /**
+     * Returns the libraries of the catalogue.
+     *
+     * @return libraries
+     */
+    public List<Library> getLibraries() {
+        return this.libraries;
+    }
+
+    /**
+     * Returns the location with the given id or null, if the location doesn't
+     * exist.
+     *
+     * @param id location id
+     * @return location or null
+     */
+    public Location getLocation(int id) {
+        return this.locations.get(id);
+    }
+
+    /**
+     * Returns all the locations of the catalogue.
+     *
+     * @return all the locations
+     */
+    public List<Location> getLocations() {
+        return new ArrayList<Location>(this.locations.values());
+    }
+
+    /**
+     * Returns the search index entries of the libraries.
+     *
+     * @return search index entries
+     */
+    public List<SimpleLocation> getLibraryIndex() {
+        return this.libraryIndex;
+    }
+
+    /**
+     * Returns the search index entries of the collections.
+     *
+     * @return search index entries
+     */
+    public List<SimpleLocation> getCollectionIndex() {
+        return this.collectionIndex;
+    }
+
+    /**
+     * Returns the search index entries of the shelves.
+     *
+     * @return search index entries
+     */
+    public List<SimpleLocation> getShelfIndex() {
+        return this.shelfIndex;
+    }
+
+    /**
+     * Returns the preprocessing redirects of the catalogue.
+     *
+     * @return preprocessing redirects
+     */
+    public List<CallnoModification> getPreprocessingRedirects() {
+        return this.preprocessingRedirects;
+    }
+
+    /**
+     * Returns the not found redirects of the catalogue.
+     *
+     * @return not found redirects
+     */
+    public List<CallnoModification> getNotFoundRedirects() {
+        return this.notFoundRedirects;
+    }
+
+    /**
+     * Returns the sample of call numbers that are used as requests.
+     *
+     * @return call numbers
+     */
+    public List<String> getCallnos() {
+        return this.callnos;
+    }
+
+    /**
+     * Returns the shelves of the catalogue.
+     *
+     * @return shelves
+     */
+    public List<Shelf> getShelves() {
+        List<Shelf> shelves = new ArrayList<Shelf>();
+        for (Library library : this.libraries) {
+            for (LibraryCollection collection : library.getCollections()) {
+                shelves.addAll(collection.getShelves());
+            }
+        }
+        return shelves;
+    }
+
+    private Library createLibrary(int index, int collectionCount, int shelfCount) {
+        Library library = new Library("L" + index);
+        library.setOwner(this.owner);
+        this.init(library, "Library " + index);
+        this.libraryIndex.add(this.toIndexEntry(library, LocationType.LIBRARY, ""));
+        for (int i = 0; i < collectionCount; i++) {
+            library.addCollection(this.createCollection(library, i, shelfCount));
+        }
+        return library;
+    }
+
+    private LibraryCollection createCollection(Library library, int index, int shelfCount) {
+        // Classification code, e.g. "84.2"
+        LibraryCollection collection = new LibraryCollection((10 + index / 7) + "." + (index % 7), library);
+        if (index % 3 == 0) {
+            collection.setCollectionCode("K" + index);
+        }
+        collection.setShelfNumber(Integer.toString(index + 1));
+        this.init(collection, "Collection " + index);
+        this.collectionIndex.add(this.toIndexEntry(collection, LocationType.COLLECTION, collection.getCollectionCode()));
+        for (int i = 0; i < shelfCount; i++) {
+            collection.addShelf(this.createShelf(collection, i));
+        }
+        return collection;
+    }
+
+    private Shelf createShelf(LibraryCollection collection, int index) {
+        Shelf shelf;
+        if (index % 4 == 3) {
+            // Interval shelf, e.g. "[Ba]-[Bf]"
+            shelf = new Shelf("[" + word(index, 0) + "]-[" + word(index, 5) + "]", collection);
+        } else {
+            shelf = new Shelf(word(index, 0), collection);
+        }
+        shelf.setShelfNumber(collection.getShelfNumber() + "." + (index + 1));
+        this.init(shelf, "Shelf " + index);
+        this.shelfIndex.add(this.toIndexEntry(shelf, LocationType.SHELF, collection.getCollectionCode()));
+        return shelf;
+    }
+
+    private void init(Location location, String name) {
+        location.setLocationId(this.nextId++);
+        location.setName(name);
+        location.setFloor(Integer.toString(this.random.nextInt(5)));
+        List<Description> descriptions = new ArrayList<Description>();
+        List<Note> notes = new ArrayList<Note>();
+        for (int i = 0; i < this.languages.size(); i++) {
+            Description description = new Description(this.languages.get(i));
+            description.setDescription(String.format(DESCRIPTIONS[i], name, this.random.nextInt(5)));
+            descriptions.add(description);
+            Note note = new Note(this.languages.get(i));
+            note.setNote(String.format(NOTES[i], name));
+            notes.add(note);
+        }
+        location.setDescriptions(descriptions);
+        location.setNotes(notes);
+        this.locations.put(location.getLocationId(), location);
+    }
+
+    private SimpleLocation toIndexEntry(Location location, LocationType type, String collectionCode) {
+        return new SearchIndex(location.getLocationId(), type, location.getCallNo(), location.getLocationCode(), this.owner, collectionCode == null ? "" : collectionCode);
+    }
+
+    private void createRedirects(int libraryCount, int redirectCount) {
+        for (int i = 0; i < redirectCount; i++) {
+            // Old library codes are redirected to the current ones
+            CallnoModification redirect = new PreprocessingRedirect();
+            redirect.setId(i + 1);
+            redirect.setCondition("^OLD" + i + " ");
+            redirect.setOperation("L" + (i % libraryCount) + " ");
+            redirect.setIsActive(true);
+            redirect.setOwner(this.owner);
+            this.preprocessingRedirects.add(redirect);
+
+            // Lower case call numbers are redirected to the upper case ones
+            redirect = new NotFoundRedirect();
+            redirect.setId(redirectCount + i + 1);
+            redirect.setCondition("^l" + i + " (\\d+\\.\\d+)");
+            redirect.setOperation("L" + (i % libraryCount) + " $1");
+            redirect.setIsActive(true);
+            redirect.setOwner(this.owner);
+            this.notFoundRedirects.add(redirect);
+        }
+    }
+
+    private void createCallnos(int libraryCount, int callnoCount) {
+        List<Shelf> shelves = this.getShelves();
+        for (int i = 0; i < callnoCount; i++) {
+            Shelf shelf = shelves.get(this.random.nextInt(shelves.size()));
+            String author = " " + word(this.random.nextInt(676), 0) + "ttinen " + (1950 + this.random.nextInt(70));
+            String base = shelf.getCollection().getCallNo();
+            String code = shelf.getLocationCode();
+            if (code.startsWith("[")) {
+                // Call number that falls into the interval, e.g. "[Ba]-[Bf]"
+                code = code.substring(1, 2) + (char) (code.charAt(2) + this.random.nextInt(6));
+            }
+            int type = this.random.nextInt(10);
+            if (type < 7) {
+                this.callnos.add(base + " " + code + author);
+            } else if (type < 8 && !this.preprocessingRedirects.isEmpty()) {
+                int redirect = this.random.nextInt(this.preprocessingRedirects.size());
+                String library = "L" + (redirect % libraryCount) + " ";
+                this.callnos.add(base.replace(library, "OLD" + redirect + " ") + " " + code + author);
+            } else if (type < 9 && !this.notFoundRedirects.isEmpty()) {
+                int redirect = this.random.nextInt(this.notFoundRedirects.size());
+                String library = "L" + (redirect % libraryCount) + " ";
+                this.callnos.add(base.replace(library, "l" + redirect + " ") + " " + code + author);
+            } else {
+                this.callnos.add("X" + this.random.nextInt(100) + " " + code + author);
+            }
+        }
+    }
+
+    /**
+     * Returns a two letter word, e.g. "Ba", that's derived from the given
+     * index and offset.
+     *
+     * @param index index of the word
+     * @param offset offset of the second letter
+     * @return two letter word
+     */
+    private static String word(int index, int offset) {
+        char first = (char) ('A' + (index / 20) % 26);
+        char second = (char) ('a' + (index % 20) + offset);
+        return new String(new char[]{first, second});
+    }
+
+    private static void sort(List<SimpleLocation> index) {
+        Collections.sort(index, new Comparator<SimpleLocation>() {
+            @Override
+            public int compare(SimpleLocation l1, SimpleLocation l2) {
+                return l2.getCallNo().compareTo(l1.getCallNo());
+            }
+        });
+    }
+}
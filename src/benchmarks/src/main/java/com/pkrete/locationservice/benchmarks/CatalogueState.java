@@ -0,0 +1,128 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark state that holds the synthetic catalogue of a single owner and an
+ * {@link InMemoryService InMemoryService} serving it. The size of the
+ * catalogue can be changed with the JMH parameters, e.g.
+ * "-p shelves=500,1000". With the default parameters the owner has 4000
+ * shelves and 200 redirects.
+ *
+ * @author Petteri Kivimäki
+ */
+@State(Scope.Benchmark)
+public class CatalogueState {
+
+    /**
+     * Owner code of the catalogue.
+     */
+    public static final String OWNER = "BENCH";
+    @Param({"2"})
+    public int libraries;
+    @Param({"20"})
+    public int collections;
+    @Param({"100"})
+    public int shelves;
+    @Param({"100"})
+    public int redirects;
+    private Catalogue catalogue;
+    private InMemoryService service;
+
+    /**
+     * Builds the catalogue and initializes the environment.
+     *
+     * @throws IOException if initializing the environment fails
+     */
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkEnvironment.init(OWNER);
+        this.catalogue = new Catalogue(OWNER, this.libraries, this.collections, this.shelves, this.redirects, 10000, 1L);
+        this.service = new InMemoryService();
+        this.service.add(this.catalogue);
+    }
+
+    /**
+     * Returns the catalogue.
+     *
+     * @return catalogue
+     */
+    public Catalogue getCatalogue() {
+        return this.catalogue;
+    }
+
+    /**
+     * Returns the service serving the catalogue.
+     *
+     * @return service
+     */
+    public InMemoryService getService() {
+        return this.service;
+    }
+
+    /**
+     * Per thread cursor that walks through the call number sample and the
+     * languages of the catalogue, so that every invocation gets the next
+     * request.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        /**
+         * Moves the cursor to the next request and returns its call number.
+         *
+         * @param state catalogue state
+         * @return call number
+         */
+        public String next(CatalogueState state) {
+            List<String> callnos = state.getCatalogue().getCallnos();
+            this.next = (this.next + 1) % callnos.size();
+            return callnos.get(this.next);
+        }
+
+        /**
+         * Returns the language of the current request.
+         *
+         * @return language code
+         */
+        public String lang() {
+            return Catalogue.LANGUAGES[this.next % Catalogue.LANGUAGES.length];
+        }
+
+        /**
+         * Returns the element of the given list that matches the current
+         * request.
+         *
+         * @param <T> type of the elements
+         * @param list list of elements
+         * @return element of the list
+         */
+        public <T> T pick(List<T> list) {
+            return list.get(this.next % list.size());
+        }
+    }
+}
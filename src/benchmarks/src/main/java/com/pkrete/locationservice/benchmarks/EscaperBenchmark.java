@@ -0,0 +1,164 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks;
+
+import com.pkrete.locationservice.endpoint.generator.Escaper;
+import com.pkrete.locationservice.endpoint.model.location.Description;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.location.Note;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for escaping the descriptions and notes of the catalogue. The
+ * filter benchmark replaces the default XML filters one by one with regular
+ * expressions like the generators do when custom filters are configured, and
+ * the escaper benchmarks use the single pass {@link Escaper Escaper}.
+ *
+ * @author Petteri Kivimäki
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EscaperBenchmark {
+
+    private Map<String, String> filters;
+    private List<String> texts;
+
+    /**
+     * Collects the descriptions and notes of the catalogue.
+     *
+     * @param state catalogue state
+     */
+    @Setup
+    public void setup(CatalogueState state) {
+        this.filters = new LinkedHashMap<String, String>();
+        this.filters.put("&", "&amp;");
+        this.filters.put("<", "&lt;");
+        this.filters.put(">", "&gt;");
+        this.filters.put("\"", "&quot;");
+        this.filters.put("'", "&apos;");
+        this.texts = new ArrayList<String>();
+        for (Location location : state.getCatalogue().getLocations()) {
+            for (Description description : location.getDescriptions()) {
+                this.texts.add(description.getDescription());
+            }
+            for (Note note : location.getNotes()) {
+                this.texts.add(note.getNote());
+            }
+        }
+    }
+
+    /**
+     * Escapes XML with regular expression filters.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return escaped text
+     */
+    @Benchmark
+    public String filterXml(CatalogueState state, CatalogueState.Cursor cursor) {
+        cursor.next(state);
+        String data = cursor.pick(this.texts);
+        for (Map.Entry<String, String> filter : this.filters.entrySet()) {
+            data = data.replaceAll(filter.getKey(), filter.getValue());
+        }
+        return data;
+    }
+
+    /**
+     * Escapes XML with the escaper.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return escaped text
+     */
+    @Benchmark
+    public String escapeXml(CatalogueState state, CatalogueState.Cursor cursor) {
+        cursor.next(state);
+        return Escaper.escapeXml(cursor.pick(this.texts));
+    }
+
+    /**
+     * Escapes XML with the escaper into a reused buffer like the generators
+     * do.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @param buffer output buffer of the thread
+     * @return length of the output
+     */
+    @Benchmark
+    public int appendXml(CatalogueState state, CatalogueState.Cursor cursor, Buffer buffer) {
+        cursor.next(state);
+        buffer.builder.setLength(0);
+        Escaper.escapeXml(cursor.pick(this.texts), buffer.builder);
+        return buffer.builder.length();
+    }
+
+    /**
+     * Escapes JSON with the escaper.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return escaped text
+     */
+    @Benchmark
+    public String escapeJson(CatalogueState state, CatalogueState.Cursor cursor) {
+        cursor.next(state);
+        return Escaper.escapeJson(cursor.pick(this.texts));
+    }
+
+    /**
+     * Strips HTML tags with the escaper.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return text without tags
+     */
+    @Benchmark
+    public String stripHtml(CatalogueState state, CatalogueState.Cursor cursor) {
+        cursor.next(state);
+        return Escaper.stripHtml(cursor.pick(this.texts));
+    }
+
+    /**
+     * Output buffer that's reused by the benchmarks of a thread.
+     */
+    @State(Scope.Thread)
+    public static class Buffer {
+
+        private final StringBuilder builder = new StringBuilder(1024);
+    }
+}
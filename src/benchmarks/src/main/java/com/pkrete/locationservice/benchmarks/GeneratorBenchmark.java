@@ -0,0 +1,144 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks;
+
+import com.pkrete.locationservice.endpoint.generator.Generator;
+import com.pkrete.locationservice.endpoint.generator.html.HTMLGenerator;
+import com.pkrete.locationservice.endpoint.generator.json.JSONGenerator;
+import com.pkrete.locationservice.endpoint.generator.xml.XMLGenerator;
+import com.pkrete.locationservice.endpoint.loader.BasicLoader;
+import com.pkrete.locationservice.endpoint.loader.TemplateManifest;
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
+import com.pkrete.locationservice.endpoint.model.location.Shelf;
+import com.pkrete.locationservice.endpoint.templateparser.OptimizedTagParser;
+import com.pkrete.locationservice.endpoint.templateparser.TemplateCache;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for generating the output of a single location in all the
+ * output formats. The HTML output is generated from the templates of the
+ * benchmark owner.
+ *
+ * @author Petteri Kivimäki
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    @Param({"xml", "json", "html"})
+    public String format;
+    private Generator generator;
+    private List<Shelf> shelves;
+    private List<LibraryCollection> collections;
+    private List<Library> libraries;
+
+    /**
+     * Initializes the generator of the selected format.
+     *
+     * @param state catalogue state
+     */
+    @Setup
+    public void setup(CatalogueState state) {
+        if ("xml".equals(this.format)) {
+            this.generator = new XMLGenerator();
+        } else if ("json".equals(this.format)) {
+            this.generator = new JSONGenerator();
+        } else {
+            BasicLoader loader = new BasicLoader(new OptimizedTagParser());
+            loader.setTemplateCache(new TemplateCache());
+            loader.setTemplateManifest(new TemplateManifest());
+            this.generator = new HTMLGenerator(loader);
+        }
+        this.shelves = state.getCatalogue().getShelves();
+        this.libraries = state.getCatalogue().getLibraries();
+        this.collections = new ArrayList<LibraryCollection>();
+        for (Library library : this.libraries) {
+            this.collections.addAll(library.getCollections());
+        }
+    }
+
+    /**
+     * Generates the output of a shelf.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return output
+     */
+    @Benchmark
+    public String shelf(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        return this.generator.generateOutput(cursor.pick(this.shelves), cursor.lang(), callno);
+    }
+
+    /**
+     * Generates the output of a collection.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return output
+     */
+    @Benchmark
+    public String collection(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        return this.generator.generateOutput(cursor.pick(this.collections), cursor.lang(), callno);
+    }
+
+    /**
+     * Generates the output of a library.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return output
+     */
+    @Benchmark
+    public String library(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        return this.generator.generateOutput(cursor.pick(this.libraries), cursor.lang(), callno);
+    }
+
+    /**
+     * Generates the not found output.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return output
+     */
+    @Benchmark
+    public String notFound(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        return this.generator.generateOutputNotFound(cursor.lang(), callno, CatalogueState.OWNER);
+    }
+}
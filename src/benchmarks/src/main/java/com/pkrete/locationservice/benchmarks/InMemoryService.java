@@ -0,0 +1,349 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks;
+
+import com.pkrete.locationservice.endpoint.callnoparser.LocatingStrategy;
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.location.Shelf;
+import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.modifier.CallnoModification;
+import com.pkrete.locationservice.endpoint.service.Service;
+import com.pkrete.locationservice.endpoint.statistics.SearchEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class implements the {@link Service Service} interface on top of
+ * in-memory {@link Catalogue Catalogue} objects, so that the benchmarks can
+ * be run without a database. The search index entries are returned in the
+ * same descending call number order as the database returns them. Search
+ * events are discarded.
+ *
+ * @author Petteri Kivimäki
+ */
+public class InMemoryService implements Service {
+
+    private final Map<String, Catalogue> catalogues;
+
+    /**
+     * Constructs and initializes a new InMemoryService object.
+     */
+    public InMemoryService() {
+        this.catalogues = new ConcurrentHashMap<String, Catalogue>();
+    }
+
+    /**
+     * Adds the given catalogue to the service. The catalogue is identified by
+     * the code of its owner. Location ids are not owner specific, so the ids
+     * of different catalogues must not overlap.
+     *
+     * @param catalogue catalogue to be added
+     */
+    public void add(Catalogue catalogue) {
+        this.catalogues.put(catalogue.getOwner().getCode(), catalogue);
+    }
+
+    @Override
+    public boolean save(SearchEvent event) {
+        return true;
+    }
+
+    @Override
+    public boolean save(List<SearchEvent> events) {
+        return true;
+    }
+
+    @Override
+    public List getLibrary(String callno, String owner) {
+        return this.findByCallno(callno, owner, Library.class);
+    }
+
+    @Override
+    public List<Library> getLibrariesByLocationCodes(List<String> callnos, String owner) {
+        return this.findByCallnos(callnos, owner, Library.class);
+    }
+
+    @Override
+    public Library getLibrary(int id) {
+        return this.getLocation(id, Library.class);
+    }
+
+    @Override
+    public List getLibraries(String owner) {
+        return this.getLocations(owner, Library.class);
+    }
+
+    @Override
+    public List<SimpleLocation> getLibrariesFromIndex(String owner) {
+        Catalogue catalogue = this.catalogues.get(owner);
+        return catalogue == null ? Collections.<SimpleLocation>emptyList() : catalogue.getLibraryIndex();
+    }
+
+    @Override
+    public List getCollection(String callno, String owner) {
+        return this.findByCallno(callno, owner, LibraryCollection.class);
+    }
+
+    @Override
+    public List<LibraryCollection> getCollectionsByLocationCodes(List<String> callnos, String owner) {
+        return this.findByCallnos(callnos, owner, LibraryCollection.class);
+    }
+
+    @Override
+    public List getCollections(String owner) {
+        return this.getLocations(owner, LibraryCollection.class);
+    }
+
+    @Override
+    public List<SimpleLocation> getCollectionsFromIndex(String owner) {
+        Catalogue catalogue = this.catalogues.get(owner);
+        return catalogue == null ? Collections.<SimpleLocation>emptyList() : catalogue.getCollectionIndex();
+    }
+
+    @Override
+    public List<SimpleLocation> getCollectionsByLibraryId(int id, String owner) {
+        List<SimpleLocation> result = new ArrayList<SimpleLocation>();
+        Library library = this.getLibrary(id);
+        if (library != null && library.getOwner().getCode().equals(owner)) {
+            result.addAll(library.getCollections());
+        }
+        return result;
+    }
+
+    @Override
+    public LibraryCollection getCollection(int id) {
+        return this.getLocation(id, LibraryCollection.class);
+    }
+
+    @Override
+    public List getShelf(String callno, String owner) {
+        return this.findByCallno(callno, owner, Shelf.class);
+    }
+
+    @Override
+    public List<Shelf> getShelvesByLocationCodes(List<String> callnos, String owner) {
+        return this.findByCallnos(callnos, owner, Shelf.class);
+    }
+
+    @Override
+    public List getShelves(String owner) {
+        return this.getLocations(owner, Shelf.class);
+    }
+
+    @Override
+    public List<SimpleLocation> getShelvesFromIndex(String owner) {
+        Catalogue catalogue = this.catalogues.get(owner);
+        return catalogue == null ? Collections.<SimpleLocation>emptyList() : catalogue.getShelfIndex();
+    }
+
+    @Override
+    public List<SimpleLocation> getShelvesByCollectionId(int id, String owner) {
+        List<SimpleLocation> result = new ArrayList<SimpleLocation>();
+        LibraryCollection collection = this.getCollection(id);
+        if (collection != null && collection.getOwner().getCode().equals(owner)) {
+            result.addAll(collection.getShelves());
+        }
+        return result;
+    }
+
+    @Override
+    public Shelf getShelf(int id) {
+        return this.getLocation(id, Shelf.class);
+    }
+
+    @Override
+    public Location getLocation(String locationId, String owner) {
+        Catalogue catalogue = this.catalogues.get(owner);
+        if (catalogue == null) {
+            return null;
+        }
+        try {
+            return catalogue.getLocation(Integer.parseInt(locationId));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public List<SimpleLocation> getSubstringLocations(String owner) {
+        return new ArrayList<SimpleLocation>();
+    }
+
+    @Override
+    public List<SimpleLocation> getSubstringLocations(String owner, String collectionCode) {
+        return new ArrayList<SimpleLocation>();
+    }
+
+    @Override
+    public List<SimpleLocation> getShelvesByCollectionCode(String owner, String collectionCode) {
+        List<SimpleLocation> result = new ArrayList<SimpleLocation>();
+        for (SimpleLocation entry : this.getShelvesFromIndex(owner)) {
+            if (collectionCode.equals(entry.getCollectionCode())) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public LibraryCollection getCollectionByCollectionCode(String owner, String collectionCode) {
+        List<LibraryCollection> list = this.getCollectionsByCollectionCode(owner, collectionCode);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    @Override
+    public List<LibraryCollection> getCollectionsByCollectionCode(String owner, String collectionCode) {
+        List<LibraryCollection> result = new ArrayList<LibraryCollection>();
+        for (LibraryCollection collection : this.getLocations(owner, LibraryCollection.class)) {
+            if (collection.hasCollectionCode() && collection.getCollectionCode().equals(collectionCode)) {
+                result.add(collection);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Library> getAllLocations(String owner) {
+        return this.getLocations(owner, Library.class);
+    }
+
+    @Override
+    public List<Library> getAllLocations(String owner, int afterId, int maxResults) {
+        List<Library> result = new ArrayList<Library>();
+        for (Library library : this.getLocations(owner, Library.class)) {
+            if (library.getLocationId() > afterId && result.size() < maxResults) {
+                result.add(library);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Owner getOwnerByCode(String code) {
+        Catalogue catalogue = this.catalogues.get(code);
+        return catalogue == null ? null : catalogue.getOwner();
+    }
+
+    @Override
+    public LocatingStrategy getLocatingStrategy(String owner) {
+        Catalogue catalogue = this.catalogues.get(owner);
+        return catalogue == null ? null : catalogue.getOwner().getLocatingStrategy();
+    }
+
+    @Override
+    public List<CallnoModification> getNotFoundRedirects(String owner) {
+        Catalogue catalogue = this.catalogues.get(owner);
+        return catalogue == null ? Collections.<CallnoModification>emptyList() : catalogue.getNotFoundRedirects();
+    }
+
+    @Override
+    public List<CallnoModification> getPreprocessingRedirects(String owner) {
+        Catalogue catalogue = this.catalogues.get(owner);
+        return catalogue == null ? Collections.<CallnoModification>emptyList() : catalogue.getPreprocessingRedirects();
+    }
+
+    @Override
+    public SimpleLocation getIndexEntry(String locationId, String owner) {
+        List<SimpleLocation> entries = new ArrayList<SimpleLocation>();
+        entries.addAll(this.getShelvesFromIndex(owner));
+        entries.addAll(this.getCollectionsFromIndex(owner));
+        entries.addAll(this.getLibrariesFromIndex(owner));
+        for (SimpleLocation entry : entries) {
+            if (Integer.toString(entry.getLocationId()).equals(locationId)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Location> getLocations(List<Integer> libraryIds, List<Integer> collectionIds, List<Integer> shelfIds, boolean children) {
+        List<Location> result = new ArrayList<Location>();
+        for (Integer id : libraryIds) {
+            this.addIfExists(result, this.getLibrary(id));
+        }
+        for (Integer id : collectionIds) {
+            this.addIfExists(result, this.getCollection(id));
+        }
+        for (Integer id : shelfIds) {
+            this.addIfExists(result, this.getShelf(id));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean testDbConnection() {
+        return true;
+    }
+
+    private void addIfExists(List<Location> list, Location location) {
+        if (location != null) {
+            list.add(location);
+        }
+    }
+
+    private <T extends Location> T getLocation(int id, Class<T> type) {
+        for (Catalogue catalogue : this.catalogues.values()) {
+            Location location = catalogue.getLocation(id);
+            if (type.isInstance(location)) {
+                return type.cast(location);
+            }
+        }
+        return null;
+    }
+
+    private <T extends Location> List<T> getLocations(String owner, Class<T> type) {
+        List<T> result = new ArrayList<T>();
+        Catalogue catalogue = this.catalogues.get(owner);
+        if (catalogue == null) {
+            return result;
+        }
+        for (Location location : catalogue.getLocations()) {
+            if (type.isInstance(location)) {
+                result.add(type.cast(location));
+            }
+        }
+        return result;
+    }
+
+    private <T extends Location> List<T> findByCallno(String callno, String owner, Class<T> type) {
+        List<T> result = new ArrayList<T>();
+        for (T location : this.getLocations(owner, type)) {
+            if (location.getCallNo().equals(callno)) {
+                result.add(location);
+            }
+        }
+        return result;
+    }
+
+    private <T extends Location> List<T> findByCallnos(List<String> callnos, String owner, Class<T> type) {
+        List<T> result = new ArrayList<T>();
+        for (T location : this.getLocations(owner, type)) {
+            if (callnos.contains(location.getCallNo())) {
+                result.add(location);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks;
+
+import com.pkrete.locationservice.endpoint.callnoparser.CallNoParser;
+import com.pkrete.locationservice.endpoint.callnoparser.ParserContext;
+import com.pkrete.locationservice.endpoint.callnoparser.indexparser.CallnoIndexCache;
+import com.pkrete.locationservice.endpoint.callnoparser.indexparser.IndexCallNoParser;
+import com.pkrete.locationservice.endpoint.callnoparser.indexparser.IndexIntervalCallNoParser;
+import com.pkrete.locationservice.endpoint.generator.Generator;
+import com.pkrete.locationservice.endpoint.generator.xml.XMLGenerator;
+import com.pkrete.locationservice.endpoint.modifier.CallnoModifier;
+import com.pkrete.locationservice.endpoint.modifier.RedirectRuleCache;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for resolving a call number with the index call number parsers,
+ * including the not found redirects and the XML output. When the caches are
+ * enabled, the parsers use the in-memory call number index and the
+ * precompiled redirects; otherwise the search index entries are scanned and
+ * the redirects are compiled on every request.
+ *
+ * @author Petteri Kivimäki
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"INDEX", "INDEX_INTERVAL"})
+    public String strategy;
+    @Param({"true", "false"})
+    public boolean cached;
+    private CallNoParser parser;
+    private Generator generator;
+
+    /**
+     * Initializes the parser of the selected locating strategy.
+     *
+     * @param state catalogue state
+     */
+    @Setup
+    public void setup(CatalogueState state) {
+        CallnoIndexCache indexCache = null;
+        if (this.cached) {
+            indexCache = new CallnoIndexCache();
+            indexCache.setDbService(state.getService());
+            indexCache.setTimeToLive(-1);
+        }
+        if ("INDEX".equals(this.strategy)) {
+            IndexCallNoParser indexParser = new IndexCallNoParser();
+            indexParser.setIndexCache(indexCache);
+            this.parser = indexParser;
+        } else {
+            IndexIntervalCallNoParser intervalParser = new IndexIntervalCallNoParser();
+            intervalParser.setIndexCache(indexCache);
+            this.parser = intervalParser;
+        }
+        this.parser.setDbService(state.getService());
+        this.parser.setModifier(new CallnoModifier());
+        if (this.cached) {
+            RedirectRuleCache redirectRuleCache = new RedirectRuleCache();
+            redirectRuleCache.setTimeToLive(-1);
+            this.parser.setRedirectRuleCache(redirectRuleCache);
+        }
+        this.generator = new XMLGenerator();
+    }
+
+    /**
+     * Resolves the next call number of the sample.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return output
+     */
+    @Benchmark
+    public String parse(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        return this.parser.parse(callno, new ParserContext(this.generator, cursor.lang(), CatalogueState.OWNER));
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks;
+
+import com.pkrete.locationservice.endpoint.modifier.CallnoModification;
+import com.pkrete.locationservice.endpoint.modifier.CallnoModifier;
+import com.pkrete.locationservice.endpoint.modifier.RedirectRule;
+import com.pkrete.locationservice.endpoint.modifier.RedirectRuleCache;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for running the preprocessing and not found redirects of an
+ * owner against a call number. The modifier benchmarks use
+ * {@link CallnoModifier CallnoModifier} that compiles the regular expressions
+ * on every call, and the rule benchmarks use the precompiled rules of
+ * {@link RedirectRuleCache RedirectRuleCache}.
+ *
+ * @author Petteri Kivimäki
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedirectBenchmark {
+
+    private CallnoModifier modifier;
+    private RedirectRuleCache cache;
+
+    /**
+     * Initializes the modifier and the rule cache.
+     */
+    @Setup
+    public void setup() {
+        this.modifier = new CallnoModifier();
+        this.cache = new RedirectRuleCache();
+        this.cache.setTimeToLive(-1);
+    }
+
+    /**
+     * Preprocessing redirects with CallnoModifier.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return modified call number
+     */
+    @Benchmark
+    public String modifierPreprocessing(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        List<CallnoModification> list = state.getService().getPreprocessingRedirects(CatalogueState.OWNER);
+        for (CallnoModification mod : list) {
+            if (this.modifier.canBeModified(callno, mod)) {
+                return this.modifier.modify(callno, mod);
+            }
+        }
+        return callno;
+    }
+
+    /**
+     * Preprocessing redirects with precompiled rules.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return modified call number
+     */
+    @Benchmark
+    public String rulePreprocessing(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        RedirectRule rule = this.cache.getPreprocessingRedirects(CatalogueState.OWNER, state.getService()).find(callno);
+        return rule == null ? callno : rule.apply(callno);
+    }
+
+    /**
+     * Not found redirects with CallnoModifier.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return modified call number or null
+     */
+    @Benchmark
+    public String modifierNotFound(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        List<CallnoModification> list = state.getService().getNotFoundRedirects(CatalogueState.OWNER);
+        for (CallnoModification mod : list) {
+            if (this.modifier.canBeModified(callno, mod)) {
+                return this.modifier.modify(callno, mod);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Not found redirects with precompiled rules.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return modified call number or null
+     */
+    @Benchmark
+    public String ruleNotFound(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        RedirectRule rule = this.cache.getNotFoundRedirects(CatalogueState.OWNER, state.getService()).find(callno);
+        return rule == null ? null : rule.apply(callno);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks;
+
+import com.pkrete.locationservice.endpoint.loader.BasicLoader;
+import com.pkrete.locationservice.endpoint.loader.TemplateManifest;
+import com.pkrete.locationservice.endpoint.model.location.Shelf;
+import com.pkrete.locationservice.endpoint.templateparser.OptimizedTagParser;
+import com.pkrete.locationservice.endpoint.templateparser.TemplateCache;
+import com.pkrete.locationservice.endpoint.templateparser.TemplateLine;
+import com.pkrete.locationservice.endpoint.util.Settings;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for populating the shelf template with
+ * {@link OptimizedTagParser OptimizedTagParser}. The pre-parsed benchmark
+ * uses the template lines of the template cache, and the unparsed benchmark
+ * parses every line again like the loader did before the template cache.
+ *
+ * @author Petteri Kivimäki
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagParserBenchmark {
+
+    private OptimizedTagParser parser;
+    private BasicLoader loader;
+    private List<Shelf> shelves;
+    private Map<String, List<TemplateLine>> templates;
+
+    /**
+     * Initializes the parser and the loader, and reads the shelf templates of
+     * all the languages.
+     *
+     * @param state catalogue state
+     */
+    @Setup
+    public void setup(CatalogueState state) {
+        TemplateCache templateCache = new TemplateCache();
+        this.parser = new OptimizedTagParser();
+        this.loader = new BasicLoader(this.parser);
+        this.loader.setTemplateCache(templateCache);
+        this.loader.setTemplateManifest(new TemplateManifest());
+        this.shelves = state.getCatalogue().getShelves();
+        this.templates = new HashMap<String, List<TemplateLine>>();
+        for (String lang : Catalogue.LANGUAGES) {
+            String path = Settings.getInstance().getTemplatesPath(CatalogueState.OWNER) + lang + "/template_shelf.txt";
+            this.templates.put(lang, templateCache.get(path).getLines());
+        }
+    }
+
+    /**
+     * Populates the pre-parsed template lines.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return populated template
+     */
+    @Benchmark
+    public String parsed(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        String lang = cursor.lang();
+        Shelf shelf = cursor.pick(this.shelves);
+        StringBuilder builder = new StringBuilder();
+        for (TemplateLine line : this.templates.get(lang)) {
+            this.parser.parse(line, lang, shelf, callno, this.loader, builder);
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Parses and populates the template lines.
+     *
+     * @param state catalogue state
+     * @param cursor request cursor
+     * @return populated template
+     */
+    @Benchmark
+    public String unparsed(CatalogueState state, CatalogueState.Cursor cursor) {
+        String callno = cursor.next(state);
+        String lang = cursor.lang();
+        Shelf shelf = cursor.pick(this.shelves);
+        StringBuilder builder = new StringBuilder();
+        for (TemplateLine line : this.templates.get(lang)) {
+            builder.append(this.parser.parse(line.getText(), lang, shelf, callno, this.loader)).append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,277 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks.replay;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class loads MySQL dumps, e.g. db/mysql/init_db.sql or a dump of a
+ * production database created with mysqldump, into an H2 database running in
+ * MySQL mode. The statements that H2 doesn't support are translated or
+ * skipped:
+ *
+ * - session variables, table locks, and database creation and selection are
+ * skipped
+ * - indexes and foreign keys are dropped from the table definitions, so that
+ * the tables can be created and filled in any order
+ * - character sets, collations and table options are removed
+ * - bit(1) columns are created as booleans, and the bit values written by
+ * mysqldump are converted into booleans
+ * - text columns are created as varchars, so that they're compared case
+ * insensitively like in MySQL, when the database is opened with the
+ * IGNORECASE option
+ * - the backslash escapes of string literals are converted into standard SQL
+ * - the backticks around the identifiers are removed, so that the identifiers
+ * are case insensitive like in MySQL
+ *
+ * Every statement must end with a semicolon at the end of a line, which is
+ * the format produced by mysqldump.
+ *
+ * @author Petteri Kivimäki
+ */
+public class DumpLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(DumpLoader.class.getName());
+    private static final Pattern CONDITIONAL_COMMENT = Pattern.compile("/\\*!\\d*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern TABLE_OPTIONS = Pattern.compile("\\)[^)]*$");
+    private static final Pattern CHARSET = Pattern.compile("\\s+(?:CHARACTER SET|COLLATE)\\s+\\w+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BIT = Pattern.compile("\\bbit\\(1\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TEXT = Pattern.compile("^(\\w+ )(?:tiny|medium|long)?text\\b", Pattern.CASE_INSENSITIVE);
+    private static final String[] SKIPPED = {"SET ", "LOCK TABLES", "UNLOCK TABLES", "USE ", "CREATE DATABASE", "DROP DATABASE"};
+    private static final String[] DROPPED_LINES = {"KEY ", "FULLTEXT KEY ", "SPATIAL KEY ", "CONSTRAINT "};
+    private final Connection connection;
+    private int count;
+
+    /**
+     * Constructs and initializes a new DumpLoader object.
+     *
+     * @param connection connection to the H2 database
+     */
+    public DumpLoader(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Loads the given dump file. Paths starting with "classpath:" are loaded
+     * from the classpath.
+     *
+     * @param path path of the dump
+     * @throws IOException if reading the dump fails
+     * @throws SQLException if a statement fails
+     */
+    public void load(String path) throws IOException, SQLException {
+        InputStream in;
+        if (path.startsWith("classpath:")) {
+            in = DumpLoader.class.getResourceAsStream("/" + path.substring("classpath:".length()));
+            if (in == null) {
+                throw new IOException("Resource not found: " + path);
+            }
+        } else {
+            in = new FileInputStream(path);
+        }
+        int before = this.count;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            StringBuilder statement = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (statement.length() == 0 && (line.trim().isEmpty() || line.startsWith("--"))) {
+                    continue;
+                }
+                statement.append(line).append('\n');
+                if (line.trim().endsWith(";")) {
+                    this.execute(statement.toString());
+                    statement.setLength(0);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        logger.info("Loaded {} statements from {}.", this.count - before, path);
+    }
+
+    /**
+     * Translates and executes the given statement, unless it's skipped.
+     *
+     * @param sql statement ending with a semicolon
+     * @throws SQLException if the statement fails
+     */
+    private void execute(String sql) throws SQLException {
+        String translated = translate(sql);
+        if (translated == null) {
+            return;
+        }
+        Statement statement = this.connection.createStatement();
+        try {
+            statement.execute(translated);
+            this.count++;
+        } catch (SQLException e) {
+            throw new SQLException("Executing statement failed: " + abbreviate(translated), e);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Translates the given MySQL statement into an H2 statement. If the
+     * statement is skipped, null is returned.
+     *
+     * @param sql MySQL statement
+     * @return H2 statement or null
+     */
+    static String translate(String sql) {
+        String trimmed = sql.trim();
+        if (trimmed.startsWith("INSERT ")) {
+            return translateLiterals(trimmed.substring(0, trimmed.length() - 1));
+        }
+        trimmed = CONDITIONAL_COMMENT.matcher(trimmed).replaceAll("").trim();
+        if (trimmed.equals(";") || trimmed.isEmpty()) {
+            return null;
+        }
+        for (String prefix : SKIPPED) {
+            if (trimmed.toUpperCase().startsWith(prefix)) {
+                return null;
+            }
+        }
+        trimmed = trimmed.substring(0, trimmed.length() - 1).replace("`", "");
+        if (trimmed.toUpperCase().startsWith("CREATE TABLE")) {
+            return translateCreateTable(trimmed);
+        }
+        return trimmed;
+    }
+
+    /**
+     * Removes the indexes, foreign keys, character sets, collations and table
+     * options from the given table definition.
+     *
+     * @param sql CREATE TABLE statement without the semicolon
+     * @return H2 statement
+     */
+    private static String translateCreateTable(String sql) {
+        StringBuilder builder = new StringBuilder();
+        String[] lines = sql.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (isDropped(line)) {
+                continue;
+            }
+            if (line.startsWith("UNIQUE KEY ")) {
+                // UNIQUE KEY name (columns) -> UNIQUE (columns)
+                line = "UNIQUE " + line.substring(line.indexOf('('));
+            }
+            if (i == lines.length - 1) {
+                line = TABLE_OPTIONS.matcher(line).replaceFirst(")");
+            }
+            line = BIT.matcher(CHARSET.matcher(line).replaceAll("")).replaceAll("boolean");
+            line = TEXT.matcher(line).replaceFirst("$1varchar");
+            builder.append(line).append('\n');
+        }
+        // Remove the comma that preceded the dropped lines
+        return builder.toString().replaceAll(",\\s*\\n\\)$", "\n)").trim();
+    }
+
+    private static boolean isDropped(String line) {
+        for (String prefix : DROPPED_LINES) {
+            if (line.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Converts the string literals of the given statement from MySQL escapes
+     * into standard SQL, removes the backticks outside the literals, and
+     * converts the bit values into booleans.
+     *
+     * @param sql INSERT statement without the semicolon
+     * @return H2 statement
+     */
+    private static String translateLiterals(String sql) {
+        StringBuilder builder = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '`') {
+                i++;
+            } else if ((c == 'b' || c == 'B') && sql.startsWith("'", i + 1) && sql.startsWith("'", i + 3)
+                    && (i == 0 || !Character.isLetterOrDigit(sql.charAt(i - 1)))) {
+                // b'0' and b'1' written by mysqldump --hex-blob
+                builder.append(sql.charAt(i + 2) == '1' ? "TRUE" : "FALSE");
+                i += 4;
+            } else if (c == '\'') {
+                StringBuilder literal = new StringBuilder();
+                i++;
+                while (i < sql.length() && sql.charAt(i) != '\'') {
+                    char l = sql.charAt(i);
+                    if (l == '\\' && i + 1 < sql.length()) {
+                        i++;
+                        literal.append(unescape(sql.charAt(i)));
+                    } else {
+                        literal.append(l);
+                    }
+                    i++;
+                }
+                i++;
+                if (literal.length() == 1 && (literal.charAt(0) == 0 || literal.charAt(0) == 1)) {
+                    // Values of bit(1) columns
+                    builder.append(literal.charAt(0) == 1 ? "TRUE" : "FALSE");
+                } else {
+                    builder.append('\'').append(literal.toString().replace("'", "''")).append('\'');
+                }
+            } else {
+                builder.append(c);
+                i++;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static char unescape(char c) {
+        switch (c) {
+            case '0':
+                return '\0';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'Z':
+                return (char) 26;
+            default:
+                return c;
+        }
+    }
+
+    private static String abbreviate(String sql) {
+        return sql.length() > 200 ? sql.substring(0, 200) + "..." : sql;
+    }
+}
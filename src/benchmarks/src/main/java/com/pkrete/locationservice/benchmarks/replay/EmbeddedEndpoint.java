@@ -0,0 +1,353 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks.replay;
+
+import com.pkrete.locationservice.benchmarks.BenchmarkEnvironment;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URLDecoder;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import javax.servlet.Filter;
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.io.FileSystemResourceLoader;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletConfig;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.XmlWebApplicationContext;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * This class boots the endpoint in the same JVM with the replay, so that the
+ * replay doesn't need a servlet container, a MySQL database or a Solr server.
+ * The application context of the endpoint is created from
+ * WEB-INF/applicationContext.xml of the given web application directory, and
+ * the servlets and filters are created from WEB-INF/web.xml. Only servlets
+ * and filters that are mapped to exact paths, e.g. "/LocationHandler", are
+ * created. The requests are passed to the servlets through the filters using
+ * Spring's mock request and response objects, and the responses are buffered
+ * in memory.
+ *
+ * The data is loaded from the given MySQL dumps into an in-memory H2 database
+ * running in MySQL mode. The database connection settings of config.properties
+ * are overridden with the settings of the H2 database, and the sample rate of
+ * the metrics registry is set to the given value. The templates of the owners
+ * and languages that are found in the database are copied to the home
+ * directory of the benchmark environment.
+ *
+ * @author Petteri Kivimäki
+ */
+public class EmbeddedEndpoint implements Endpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedEndpoint.class.getName());
+    private static final String JDBC_URL = "jdbc:h2:mem:replay;MODE=MySQL;IGNORECASE=TRUE;DB_CLOSE_DELAY=-1";
+    private final Connection connection;
+    private final MockServletContext servletContext;
+    private final XmlWebApplicationContext context;
+    private final Map<String, Servlet> servlets;
+    private final Map<String, List<Filter>> filters;
+
+    /**
+     * Constructs and initializes a new EmbeddedEndpoint object, loads the
+     * given dumps and boots the endpoint.
+     *
+     * @param webapp web application directory of the endpoint, e.g.
+     * src/endpoint/src/main/webapp
+     * @param dumps paths of the MySQL dumps, paths starting with "classpath:"
+     * are loaded from the classpath
+     * @param sampleRate sample rate of the metrics registry
+     * @throws IOException if reading the dumps, or creating the servlets or
+     * filters fails
+     * @throws SQLException if loading the dumps fails
+     */
+    public EmbeddedEndpoint(String webapp, List<String> dumps, double sampleRate) throws IOException, SQLException {
+        this.connection = DriverManager.getConnection(JDBC_URL, "sa", "");
+        DumpLoader loader = new DumpLoader(this.connection);
+        for (String dump : dumps) {
+            loader.load(dump);
+        }
+        for (Map.Entry<String, List<String>> owner : this.getLanguages().entrySet()) {
+            BenchmarkEnvironment.init(owner.getKey(), owner.getValue().toArray(new String[owner.getValue().size()]));
+        }
+        File dir = new File(webapp);
+        this.servletContext = new MockServletContext("file:" + dir.getAbsolutePath(), new FileSystemResourceLoader());
+        this.context = new XmlWebApplicationContext();
+        this.context.setServletContext(this.servletContext);
+        this.context.setConfigLocation("/WEB-INF/applicationContext.xml");
+        this.context.addBeanFactoryPostProcessor(new PropertiesOverride(this.getOverrides(sampleRate)));
+        try {
+            this.context.refresh();
+        } catch (RuntimeException e) {
+            this.connection.close();
+            throw e;
+        }
+        this.servletContext.setAttribute(WebApplicationContext.ROOT_WEB_APPLICATION_CONTEXT_ATTRIBUTE, this.context);
+        this.servlets = new HashMap<String, Servlet>();
+        this.filters = new HashMap<String, List<Filter>>();
+        try {
+            this.init(new File(dir, "WEB-INF/web.xml"));
+        } catch (ServletException e) {
+            this.close();
+            throw new IOException("Initializing the servlets failed.", e);
+        } catch (Exception e) {
+            this.close();
+            throw new IOException("Reading web.xml failed.", e);
+        }
+        logger.info("Endpoint booted. Servlets : {}.", this.servlets.keySet());
+    }
+
+    /**
+     * Passes the given request to the servlet through the filters that are
+     * mapped to it. If the servlet or a filter throws an exception, the
+     * status code 500 is returned, like a servlet container would.
+     *
+     * @param request servlet name and query string
+     * @return HTTP status code
+     * @throws IOException if decoding the parameters fails
+     */
+    @Override
+    public int send(String request) throws IOException {
+        return this.dispatch(request).getStatus();
+    }
+
+    @Override
+    public StageMetrics getMetrics() {
+        try {
+            MockHttpServletResponse response = this.dispatch("Metrics");
+            if (response.getStatus() != 200) {
+                return null;
+            }
+            return StageMetrics.read(new StringReader(response.getContentAsString()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.servlets != null) {
+            for (Servlet servlet : this.servlets.values()) {
+                servlet.destroy();
+            }
+        }
+        if (this.filters != null) {
+            for (List<Filter> list : this.filters.values()) {
+                for (Filter filter : list) {
+                    filter.destroy();
+                }
+            }
+        }
+        this.context.close();
+        try {
+            this.connection.close();
+        } catch (SQLException e) {
+            logger.warn("Closing the database connection failed.", e);
+        }
+    }
+
+    private MockHttpServletResponse dispatch(String request) throws IOException {
+        int index = request.indexOf('?');
+        String path = "/" + (index < 0 ? request : request.substring(0, index));
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest(this.servletContext, "GET", path);
+        servletRequest.setServletPath(path);
+        servletRequest.setRemoteAddr("127.0.0.1");
+        if (index >= 0) {
+            servletRequest.setQueryString(request.substring(index + 1));
+            for (String parameter : request.substring(index + 1).split("&")) {
+                if (parameter.isEmpty()) {
+                    continue;
+                }
+                int separator = parameter.indexOf('=');
+                String name = separator < 0 ? parameter : parameter.substring(0, separator);
+                String value = separator < 0 ? "" : parameter.substring(separator + 1);
+                servletRequest.addParameter(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+            }
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Servlet servlet = this.servlets.get(path);
+        if (servlet == null) {
+            response.setStatus(404);
+            return response;
+        }
+        List<Filter> chain = this.filters.get(path);
+        try {
+            new MockFilterChain(servlet, chain.toArray(new Filter[chain.size()])).doFilter(servletRequest, response);
+        } catch (ServletException e) {
+            logger.error("Processing request \"{}\" failed.", request, e);
+            response.setStatus(500);
+        } catch (RuntimeException e) {
+            logger.error("Processing request \"{}\" failed.", request, e);
+            response.setStatus(500);
+        }
+        return response;
+    }
+
+    /**
+     * Creates and initializes the servlets and filters that are mapped to
+     * exact paths in the given web.xml. The filters of each path are in the
+     * order of their mappings.
+     *
+     * @param webXml web.xml file
+     * @throws Exception if reading web.xml or creating the servlets or
+     * filters fails
+     */
+    private void init(File webXml) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(webXml);
+        Map<String, String> servletClasses = this.getClasses(document, "servlet");
+        Map<String, String> filterClasses = this.getClasses(document, "filter");
+        Map<String, Filter> filterInstances = new HashMap<String, Filter>();
+        for (String[] mapping : this.getMappings(document, "servlet-mapping", "servlet-name")) {
+            Servlet servlet = (Servlet) Class.forName(servletClasses.get(mapping[0])).newInstance();
+            servlet.init(new MockServletConfig(this.servletContext, mapping[0]));
+            this.servlets.put(mapping[1], servlet);
+            this.filters.put(mapping[1], new ArrayList<Filter>());
+        }
+        for (String[] mapping : this.getMappings(document, "filter-mapping", "filter-name")) {
+            if (!this.filters.containsKey(mapping[1])) {
+                continue;
+            }
+            Filter filter = filterInstances.get(mapping[0]);
+            if (filter == null) {
+                filter = (Filter) Class.forName(filterClasses.get(mapping[0])).newInstance();
+                filter.init(new MockFilterConfig(this.servletContext, mapping[0]));
+                filterInstances.put(mapping[0], filter);
+            }
+            this.filters.get(mapping[1]).add(filter);
+        }
+    }
+
+    /**
+     * Returns the class names of the servlets or filters by name.
+     */
+    private Map<String, String> getClasses(Document document, String type) {
+        Map<String, String> classes = new HashMap<String, String>();
+        NodeList nodes = document.getElementsByTagName(type);
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element element = (Element) nodes.item(i);
+            classes.put(getText(element, type + "-name"), getText(element, type + "-class"));
+        }
+        return classes;
+    }
+
+    /**
+     * Returns the name and the path of the mappings to exact paths.
+     */
+    private List<String[]> getMappings(Document document, String type, String nameElement) {
+        List<String[]> mappings = new ArrayList<String[]>();
+        NodeList nodes = document.getElementsByTagName(type);
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element element = (Element) nodes.item(i);
+            String pattern = getText(element, "url-pattern");
+            if (pattern.startsWith("/") && !pattern.contains("*")) {
+                mappings.add(new String[]{getText(element, nameElement), pattern});
+            }
+        }
+        return mappings;
+    }
+
+    private static String getText(Element element, String name) {
+        NodeList nodes = element.getElementsByTagName(name);
+        return nodes.getLength() == 0 ? "" : nodes.item(0).getTextContent().trim();
+    }
+
+    /**
+     * Returns the language codes of the owners by owner code.
+     */
+    private Map<String, List<String>> getLanguages() throws SQLException {
+        Map<String, List<String>> languages = new LinkedHashMap<String, List<String>>();
+        Statement statement = this.connection.createStatement();
+        try {
+            ResultSet rs = statement.executeQuery("SELECT o.code, l.code FROM OWNER o LEFT JOIN LANGUAGE l ON l.owner_id = o.id ORDER BY o.code, l.code");
+            while (rs.next()) {
+                List<String> codes = languages.get(rs.getString(1));
+                if (codes == null) {
+                    codes = new ArrayList<String>();
+                    languages.put(rs.getString(1), codes);
+                }
+                if (rs.getString(2) != null) {
+                    codes.add(rs.getString(2));
+                }
+            }
+        } finally {
+            statement.close();
+        }
+        return languages;
+    }
+
+    /**
+     * Returns the properties that override the properties of
+     * config.properties. The home directory of the benchmark environment is
+     * used, and the database is updated to match the mappings, so that dumps
+     * of older versions can be used.
+     */
+    private Properties getOverrides(double sampleRate) {
+        Properties properties = BenchmarkEnvironment.getProperties();
+        properties.setProperty("db.driverClass", "org.h2.Driver");
+        properties.setProperty("db.jdbcUrl", JDBC_URL);
+        properties.setProperty("db.user", "sa");
+        properties.setProperty("db.password", "");
+        properties.setProperty("db.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.setProperty("db.auto", "update");
+        properties.setProperty("metrics.sampleRate", Double.toString(sampleRate));
+        return properties;
+    }
+
+    /**
+     * Adds the given properties to the placeholderConfig bean of the
+     * endpoint's application context. The given properties override the
+     * properties read from config.properties.
+     */
+    private static class PropertiesOverride implements BeanFactoryPostProcessor {
+
+        private final Properties properties;
+
+        PropertiesOverride(Properties properties) {
+            this.properties = properties;
+        }
+
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+            BeanDefinition definition = beanFactory.getBeanDefinition("placeholderConfig");
+            definition.getPropertyValues().add("properties", this.properties);
+            definition.getPropertyValues().add("localOverride", true);
+        }
+    }
+}
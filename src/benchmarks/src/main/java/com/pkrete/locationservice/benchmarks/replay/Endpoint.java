@@ -0,0 +1,55 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks.replay;
+
+import java.io.IOException;
+
+/**
+ * This interface defines the endpoint that the search events are replayed
+ * against. The endpoint may be a running endpoint instance that's accessed
+ * over HTTP, or an endpoint that's booted in the same JVM with the replay.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface Endpoint {
+
+    /**
+     * Sends the given request to the endpoint, reads the whole response and
+     * returns the HTTP status code of the response.
+     *
+     * @param request servlet name and query string, e.g.
+     * "LocationHandler?owner=DEMO&amp;callno=L0"
+     * @return HTTP status code
+     * @throws IOException if sending the request or reading the response
+     * fails
+     */
+    int send(String request) throws IOException;
+
+    /**
+     * Returns a snapshot of the stage metrics of the endpoint. If the metrics
+     * aren't available, null is returned.
+     *
+     * @return snapshot or null
+     */
+    StageMetrics getMetrics();
+
+    /**
+     * Releases the resources of the endpoint.
+     */
+    void close();
+}
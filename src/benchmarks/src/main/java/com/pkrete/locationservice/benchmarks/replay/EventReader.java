@@ -0,0 +1,162 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks.replay;
+
+import com.pkrete.locationservice.endpoint.statistics.SearchEventType;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class reads exported search events from a tab separated file. The
+ * first line of the file must contain the column names of the SEARCH_EVENT
+ * table, and the columns can be in any order. This is the format produced by
+ * the batch mode of the MySQL client, e.g.
+ *
+ * mysql -B -e "SELECT call_number, collection_code, language_code, status,
+ * search_type, position, event_type, owner_code FROM SEARCH_EVENT ORDER BY
+ * event_date" location_service &gt; events.tsv
+ *
+ * NULL values and the backslash escapes of the MySQL client are supported.
+ * Rows with an unknown event type are skipped.
+ *
+ * @author Petteri Kivimäki
+ */
+public class EventReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventReader.class.getName());
+
+    private EventReader() {
+    }
+
+    /**
+     * Reads the events from the given file.
+     *
+     * @param path path of the file
+     * @param limit maximum number of events to read, zero means no limit
+     * @return list of events
+     * @throws IOException if reading the file fails or the header is missing
+     */
+    public static List<ReplayEvent> read(String path, int limit) throws IOException {
+        List<ReplayEvent> events = new ArrayList<ReplayEvent>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path), "UTF-8"));
+        try {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("Header line is missing: " + path);
+            }
+            Map<String, Integer> columns = new HashMap<String, Integer>();
+            String[] header = line.split("\t", -1);
+            for (int i = 0; i < header.length; i++) {
+                columns.put(header[i].trim().toLowerCase(), i);
+            }
+            if (!columns.containsKey("event_type") || !columns.containsKey("call_number")) {
+                throw new IOException("Columns \"event_type\" and \"call_number\" are required: " + path);
+            }
+            int skipped = 0;
+            while ((line = reader.readLine()) != null && (limit <= 0 || events.size() < limit)) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] values = line.split("\t", -1);
+                SearchEventType type = parseType(get(values, columns, "event_type"));
+                if (type == null) {
+                    skipped++;
+                    continue;
+                }
+                events.add(new ReplayEvent(type, get(values, columns, "owner_code"),
+                        get(values, columns, "call_number"), get(values, columns, "collection_code"),
+                        get(values, columns, "language_code"), get(values, columns, "status"),
+                        get(values, columns, "search_type"), get(values, columns, "position")));
+            }
+            if (skipped > 0) {
+                logger.warn("{} events with an unknown event type skipped.", skipped);
+            }
+        } finally {
+            reader.close();
+        }
+        return events;
+    }
+
+    private static SearchEventType parseType(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return SearchEventType.valueOf(value.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the unescaped value of the given column or null, if the column
+     * doesn't exist or the value is NULL.
+     *
+     * @param values values of the row
+     * @param columns column indexes by name
+     * @param column name of the column
+     * @return value of the column or null
+     */
+    private static String get(String[] values, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= values.length || "NULL".equals(values[index])) {
+            return null;
+        }
+        return unescape(values[index]);
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i == value.length() - 1) {
+                builder.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            switch (next) {
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case '0':
+                    builder.append('\0');
+                    break;
+                default:
+                    builder.append(next);
+            }
+        }
+        return builder.toString();
+    }
+}
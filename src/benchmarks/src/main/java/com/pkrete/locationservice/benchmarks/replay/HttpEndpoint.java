@@ -0,0 +1,95 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks.replay;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * This class sends the requests to a running endpoint instance over HTTP.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HttpEndpoint implements Endpoint {
+
+    private final String url;
+    private final int timeout;
+
+    /**
+     * Constructs and initializes a new HttpEndpoint object.
+     *
+     * @param url base URL of the endpoint
+     * @param timeout connect and read timeout in seconds
+     */
+    public HttpEndpoint(String url, int timeout) {
+        this.url = url.endsWith("/") ? url : url + "/";
+        this.timeout = timeout;
+    }
+
+    @Override
+    public int send(String request) throws IOException {
+        HttpURLConnection connection = this.open(request);
+        int status = connection.getResponseCode();
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (in != null) {
+            try {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // Read the whole response
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Fetches a snapshot from the Metrics servlet of the endpoint. If the
+     * servlet can't be read, null is returned.
+     *
+     * @return snapshot or null
+     */
+    @Override
+    public StageMetrics getMetrics() {
+        try {
+            HttpURLConnection connection = this.open("Metrics");
+            if (connection.getResponseCode() != 200) {
+                return null;
+            }
+            return StageMetrics.read(new InputStreamReader(connection.getInputStream(), "UTF-8"));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+
+    private HttpURLConnection open(String request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.url + request).openConnection();
+        connection.setConnectTimeout(this.timeout * 1000);
+        connection.setReadTimeout(this.timeout * 1000);
+        return connection;
+    }
+}
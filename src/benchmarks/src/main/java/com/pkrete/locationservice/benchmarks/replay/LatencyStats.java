@@ -0,0 +1,106 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks.replay;
+
+import java.util.Arrays;
+
+/**
+ * This class collects the latencies and the errors of the replayed requests
+ * of a single target, e.g. LocationHandler. All the latencies are kept, so
+ * that the percentiles are exact. The methods are thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class LatencyStats {
+
+    private final String name;
+    private long[] latencies;
+    private int count;
+    private long errors;
+
+    /**
+     * Constructs and initializes a new LatencyStats object.
+     *
+     * @param name name of the target
+     */
+    public LatencyStats(String name) {
+        this.name = name;
+        this.latencies = new long[1024];
+    }
+
+    /**
+     * Returns the name of the target.
+     *
+     * @return name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Records a completed request.
+     *
+     * @param nanos latency in nanoseconds
+     * @param error true if the request failed
+     */
+    public synchronized void record(long nanos, boolean error) {
+        if (this.count == this.latencies.length) {
+            this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+        }
+        this.latencies[this.count++] = nanos;
+        if (error) {
+            this.errors++;
+        }
+    }
+
+    /**
+     * Returns the number of recorded requests.
+     *
+     * @return number of requests
+     */
+    public synchronized int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the number of failed requests.
+     *
+     * @return number of errors
+     */
+    public synchronized long getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * Returns the given percentile of the latencies in milliseconds, or zero
+     * if no requests have been recorded.
+     *
+     * @param percentile percentile between 0 and 100
+     * @return latency in milliseconds
+     */
+    public synchronized double getPercentile(double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(this.latencies, this.count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * this.count) - 1;
+        index = Math.max(0, Math.min(this.count - 1, index));
+        return sorted[index] / 1000000.0;
+    }
+}
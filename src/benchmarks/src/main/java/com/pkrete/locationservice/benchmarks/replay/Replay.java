@@ -0,0 +1,210 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks.replay;
+
+import com.pkrete.locationservice.endpoint.statistics.SearchEventType;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays exported search events against the endpoint. The events are sent
+ * in the original order to the LocationHandler and Exporter servlets using the
+ * given number of concurrent connections and an optional fixed request rate.
+ * After the replay the latency percentiles, the throughput and the number of
+ * errors of both servlets are reported. If the Metrics servlet of the
+ * endpoint is enabled, also the server side latencies of the processing
+ * stages are reported.
+ *
+ * The events are replayed either against a running endpoint that's accessed
+ * over HTTP (-url), or against an endpoint that's booted in the same JVM on
+ * an in-memory H2 database (-webapp). The in-process endpoint is loaded from
+ * the given MySQL dumps, by default the schema in db/mysql/init_db.sql and the
+ * fixtures of the replay, and its metrics are recorded using the given sample
+ * rate.
+ *
+ * When a rate is given, the latency is measured from the time when the
+ * request should have been sent, so that the time spent waiting for a free
+ * connection is included.
+ *
+ * Usage: Replay -url http://localhost:8080/endpoint/ -events events.tsv
+ * [-concurrency 8] [-rate 0] [-limit 0] [-version 1] [-output ""]
+ * [-timeout 30]
+ *
+ * Usage: Replay -webapp src/endpoint/src/main/webapp -events events.tsv
+ * [-dump db/mysql/init_db.sql,classpath:replay/fixtures.sql] [-sampleRate 1]
+ * [-concurrency 8] [-rate 0] [-limit 0] [-version 1] [-output ""]
+ *
+ * @author Petteri Kivimäki
+ */
+public class Replay {
+
+    private static final String DEFAULT_DUMPS = "db/mysql/init_db.sql,classpath:replay/fixtures.sql";
+    private final Endpoint endpoint;
+    private final int concurrency;
+    private final double rate;
+    private final String exporterVersion;
+    private final String output;
+    private final Map<SearchEventType, LatencyStats> stats;
+
+    /**
+     * Constructs and initializes a new Replay object.
+     *
+     * @param endpoint endpoint that the events are replayed against
+     * @param concurrency number of concurrent requests
+     * @param rate requests per second, zero means as fast as possible
+     * @param exporterVersion version parameter of Exporter requests
+     * @param output output parameter of LocationHandler requests
+     */
+    public Replay(Endpoint endpoint, int concurrency, double rate, String exporterVersion, String output) {
+        this.endpoint = endpoint;
+        this.concurrency = concurrency;
+        this.rate = rate;
+        this.exporterVersion = exporterVersion;
+        this.output = output;
+        this.stats = new EnumMap<SearchEventType, LatencyStats>(SearchEventType.class);
+        this.stats.put(SearchEventType.LOCATION_HANDLER, new LatencyStats("LocationHandler"));
+        this.stats.put(SearchEventType.EXPORTER, new LatencyStats("Exporter"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (options.containsKey("url") == options.containsKey("webapp") || !options.containsKey("events")) {
+            System.err.println("Usage: Replay -url <endpoint url> -events <file> [-concurrency 8] [-rate 0] [-limit 0] [-version 1] [-output \"\"] [-timeout 30]");
+            System.err.println("       Replay -webapp <endpoint webapp dir> -events <file> [-dump " + DEFAULT_DUMPS + "] [-sampleRate 1] [-concurrency 8] [-rate 0] [-limit 0] [-version 1] [-output \"\"]");
+            System.exit(1);
+        }
+        List<ReplayEvent> events = EventReader.read(options.get("events"), Integer.parseInt(get(options, "limit", "0")));
+        Endpoint endpoint;
+        if (options.containsKey("url")) {
+            endpoint = new HttpEndpoint(options.get("url"), Integer.parseInt(get(options, "timeout", "30")));
+        } else {
+            endpoint = new EmbeddedEndpoint(options.get("webapp"), Arrays.asList(get(options, "dump", DEFAULT_DUMPS).split(",")),
+                    Double.parseDouble(get(options, "sampleRate", "1")));
+        }
+        try {
+            Replay replay = new Replay(endpoint, Integer.parseInt(get(options, "concurrency", "8")),
+                    Double.parseDouble(get(options, "rate", "0")), get(options, "version", "1"), get(options, "output", ""));
+            System.out.println(replay.run(events));
+        } finally {
+            endpoint.close();
+        }
+    }
+
+    /**
+     * Replays the given events and returns the report.
+     *
+     * @param events events to be replayed
+     * @return report
+     * @throws InterruptedException if the replay is interrupted
+     */
+    public String run(List<ReplayEvent> events) throws InterruptedException {
+        StageMetrics before = this.endpoint.getMetrics();
+        ExecutorService executor = Executors.newFixedThreadPool(this.concurrency);
+        final Semaphore permits = new Semaphore(this.concurrency);
+        long interval = this.rate > 0 ? (long) (1000000000L / this.rate) : 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < events.size(); i++) {
+            long scheduled = System.nanoTime();
+            if (interval > 0) {
+                scheduled = start + i * interval;
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            permits.acquire();
+            final ReplayEvent event = events.get(i);
+            final long begin = scheduled;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        send(event, begin);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - start) / 1000000000.0;
+        StageMetrics after = this.endpoint.getMetrics();
+        return this.report(events.size(), elapsed, before, after);
+    }
+
+    /**
+     * Sends the given event to the endpoint and records the result. Responses
+     * with a status code of 400 or greater, and failed connections are
+     * counted as errors.
+     *
+     * @param event event to be sent
+     * @param begin time when the request was scheduled in nanoseconds
+     */
+    private void send(ReplayEvent event, long begin) {
+        boolean error = true;
+        try {
+            error = this.endpoint.send(event.toRequest(this.exporterVersion, this.output)) >= 400;
+        } catch (IOException e) {
+            error = true;
+        } finally {
+            this.stats.get(event.getEventType()).record(System.nanoTime() - begin, error);
+        }
+    }
+
+    private String report(int total, double elapsed, StageMetrics before, StageMetrics after) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Replayed %d events in %.1f s (%.1f requests/s), concurrency %d.%n%n", total, elapsed, total / elapsed, this.concurrency));
+        builder.append(String.format("%-16s %10s %10s %10s %10s %8s%n", "target", "requests", "req/s", "p50 ms", "p99 ms", "errors"));
+        for (LatencyStats stat : this.stats.values()) {
+            if (stat.getCount() == 0) {
+                continue;
+            }
+            builder.append(String.format("%-16s %10d %10.1f %10.2f %10.2f %8d%n", stat.getName(), stat.getCount(),
+                    stat.getCount() / elapsed, stat.getPercentile(50), stat.getPercentile(99), stat.getErrors()));
+        }
+        builder.append('\n');
+        if (before == null || after == null) {
+            builder.append("Server side stage metrics are not available.\n");
+        } else {
+            builder.append("Server side stages:\n").append(after.report(before));
+        }
+        return builder.toString();
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<String, String>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^-+", ""), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static String get(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks.replay;
+
+import com.pkrete.locationservice.endpoint.statistics.SearchEventType;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * This class represents a single exported search event that is replayed
+ * against the endpoint. LocationHandler events are sent to the
+ * LocationHandler servlet and Exporter events to the Exporter servlet with
+ * the same parameters that the original request had.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ReplayEvent {
+
+    private final SearchEventType eventType;
+    private final String owner;
+    private final String callno;
+    private final String collection;
+    private final String lang;
+    private final String status;
+    private final String searchType;
+    private final String position;
+
+    /**
+     * Constructs and initializes a new ReplayEvent object. Null values are
+     * replaced with empty strings.
+     *
+     * @param eventType type of the event
+     * @param owner owner code
+     * @param callno call number or search string
+     * @param collection collection code
+     * @param lang language code
+     * @param status status of the item
+     * @param searchType search type of an Exporter search
+     * @param position position of an Exporter search
+     */
+    public ReplayEvent(SearchEventType eventType, String owner, String callno, String collection, String lang, String status, String searchType, String position) {
+        this.eventType = eventType;
+        this.owner = owner == null ? "" : owner;
+        this.callno = callno == null ? "" : callno;
+        this.collection = collection == null ? "" : collection;
+        this.lang = lang == null ? "" : lang;
+        this.status = status == null ? "" : status;
+        this.searchType = searchType == null ? "" : searchType;
+        this.position = position == null ? "" : position;
+    }
+
+    /**
+     * Returns the type of the event.
+     *
+     * @return event type
+     */
+    public SearchEventType getEventType() {
+        return this.eventType;
+    }
+
+    /**
+     * Returns the owner code.
+     *
+     * @return owner code
+     */
+    public String getOwner() {
+        return this.owner;
+    }
+
+    /**
+     * Returns the call number or the search string.
+     *
+     * @return call number
+     */
+    public String getCallno() {
+        return this.callno;
+    }
+
+    /**
+     * Returns the path and the query string of the request, e.g.
+     * "LocationHandler?callno=...". The path is relative to the root of the
+     * endpoint.
+     *
+     * @param exporterVersion version parameter of Exporter requests
+     * @param output output parameter of LocationHandler requests or empty
+     * @return path and query string
+     */
+    public String toRequest(String exporterVersion, String output) {
+        StringBuilder builder = new StringBuilder();
+        if (this.eventType == SearchEventType.EXPORTER) {
+            builder.append("Exporter?owner=").append(encode(this.owner));
+            builder.append("&version=").append(encode(exporterVersion));
+            builder.append("&children=yes");
+            builder.append("&search=").append(encode(this.callno));
+            append(builder, "type", this.searchType);
+            append(builder, "position", this.position);
+        } else {
+            builder.append("LocationHandler?owner=").append(encode(this.owner));
+            builder.append("&callno=").append(encode(this.callno));
+            builder.append("&lang=").append(encode(this.lang));
+            append(builder, "collection", this.collection);
+            append(builder, "status", this.status);
+            append(builder, "output", output);
+        }
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, String name, String value) {
+        if (value != null && !value.isEmpty()) {
+            builder.append('&').append(name).append('=').append(encode(value));
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
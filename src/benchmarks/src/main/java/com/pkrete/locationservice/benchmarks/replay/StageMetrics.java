@@ -0,0 +1,177 @@
+/**
+ * This file is part of Location Service :: Benchmarks. Copyright (C) 2014
+ * Petteri Kivimäki
+ *
+ * Location Service :: Benchmarks is free software: you can redistribute it
+ * and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * Location Service :: Benchmarks is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Benchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.benchmarks.replay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class holds a snapshot of the stage latency histograms returned by the
+ * Metrics servlet of the endpoint. The histograms are summed up by stage, so
+ * that the owner, operation, strategy and format labels are ignored. The
+ * difference of two snapshots tells how the stages performed between them.
+ *
+ * The server side metrics are available only if the sample rate of the
+ * endpoint's metrics registry is greater than zero.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StageMetrics {
+
+    private static final String DURATION = "locationservice_stage_duration_seconds";
+    private static final String ERRORS = "locationservice_stage_errors_total";
+    private static final Pattern LINE_PATTERN = Pattern.compile("^(\\w+)\\{(.*)\\}\\s+(\\S+)$");
+    private static final Pattern STAGE_PATTERN = Pattern.compile("(?:^|,)stage=\"([^\"]*)\"");
+    private static final Pattern LE_PATTERN = Pattern.compile("(?:^|,)le=\"([^\"]*)\"");
+    /**
+     * Cumulative bucket counts by stage and upper bound.
+     */
+    private final Map<String, TreeMap<Double, Double>> buckets;
+    private final Map<String, Double> sums;
+    private final Map<String, Double> counts;
+    private final Map<String, Double> errors;
+
+    private StageMetrics() {
+        this.buckets = new TreeMap<String, TreeMap<Double, Double>>();
+        this.sums = new TreeMap<String, Double>();
+        this.counts = new TreeMap<String, Double>();
+        this.errors = new TreeMap<String, Double>();
+    }
+
+    /**
+     * Reads a snapshot from the given reader that returns the output of the
+     * Metrics servlet. The reader is closed.
+     *
+     * @param in output of the Metrics servlet
+     * @return snapshot
+     * @throws IOException if reading fails
+     */
+    public static StageMetrics read(Reader in) throws IOException {
+        StageMetrics metrics = new StageMetrics();
+        BufferedReader reader = new BufferedReader(in);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                metrics.parse(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return metrics;
+    }
+
+    private void parse(String line) {
+        Matcher matcher = LINE_PATTERN.matcher(line);
+        if (!matcher.matches()) {
+            return;
+        }
+        String name = matcher.group(1);
+        String labels = matcher.group(2);
+        Matcher stageMatcher = STAGE_PATTERN.matcher(labels);
+        if (!stageMatcher.find()) {
+            return;
+        }
+        String stage = stageMatcher.group(1);
+        double value = Double.parseDouble(matcher.group(3));
+        if (name.equals(DURATION + "_bucket")) {
+            Matcher leMatcher = LE_PATTERN.matcher(labels);
+            if (leMatcher.find()) {
+                String le = leMatcher.group(1);
+                double bound = "+Inf".equals(le) ? Double.POSITIVE_INFINITY : Double.parseDouble(le);
+                TreeMap<Double, Double> stageBuckets = this.buckets.get(stage);
+                if (stageBuckets == null) {
+                    stageBuckets = new TreeMap<Double, Double>();
+                    this.buckets.put(stage, stageBuckets);
+                }
+                add(stageBuckets, bound, value);
+            }
+        } else if (name.equals(DURATION + "_sum")) {
+            add(this.sums, stage, value);
+        } else if (name.equals(DURATION + "_count")) {
+            add(this.counts, stage, value);
+        } else if (name.equals(ERRORS)) {
+            add(this.errors, stage, value);
+        }
+    }
+
+    /**
+     * Returns a report of the stages that were executed between the given
+     * snapshot and this snapshot. The percentiles are the upper bounds of the
+     * histogram buckets they fall into.
+     *
+     * @param before earlier snapshot
+     * @return report
+     */
+    public String report(StageMetrics before) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-12s %10s %10s %10s %10s %8s%n", "stage", "count", "mean ms", "p50 ms", "p99 ms", "errors"));
+        for (String stage : this.counts.keySet()) {
+            double count = this.counts.get(stage) - get(before.counts, stage);
+            if (count <= 0) {
+                continue;
+            }
+            double sum = this.sums.containsKey(stage) ? this.sums.get(stage) - get(before.sums, stage) : 0;
+            double errorCount = get(this.errors, stage) - get(before.errors, stage);
+            TreeMap<Double, Double> delta = new TreeMap<Double, Double>();
+            TreeMap<Double, Double> previous = before.buckets.get(stage);
+            for (Map.Entry<Double, Double> bucket : this.buckets.get(stage).entrySet()) {
+                delta.put(bucket.getKey(), bucket.getValue() - (previous == null ? 0 : get(previous, bucket.getKey())));
+            }
+            builder.append(String.format("%-12s %10.0f %10.3f %10s %10s %8.0f%n", stage, count, sum / count * 1000,
+                    bound(delta, count, 0.5), bound(delta, count, 0.99), errorCount));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the upper bound of the bucket that contains the given quantile
+     * in milliseconds.
+     *
+     * @param buckets cumulative bucket counts
+     * @param count total count
+     * @param quantile quantile between 0 and 1
+     * @return upper bound as a string
+     */
+    private static String bound(TreeMap<Double, Double> buckets, double count, double quantile) {
+        double rank = Math.ceil(quantile * count);
+        for (Map.Entry<Double, Double> bucket : buckets.entrySet()) {
+            if (bucket.getValue() >= rank) {
+                if (bucket.getKey().isInfinite()) {
+                    return "+Inf";
+                }
+                return String.format("<=%.1f", bucket.getKey() * 1000);
+            }
+        }
+        return "+Inf";
+    }
+
+    private static <K> void add(Map<K, Double> map, K key, double value) {
+        Double current = map.get(key);
+        map.put(key, current == null ? value : current + value);
+    }
+
+    private static <K> double get(Map<K, Double> map, K key) {
+        Double value = map.get(key);
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,19 @@
+-- Fixtures of the load replay. The fixtures are loaded after the schema
+-- (db/mysql/init_db.sql) and they contain the owner DEMO with three
+-- languages, a library, two collections and three shelves, and the search
+-- index entries of the locations. Exporter requests are allowed only from
+-- 127.0.0.1, which is the address of the requests of an in-process replay.
+
+INSERT INTO `OWNER` (`id`, `code`, `name`, `color`, `opacity`, `created`, `creator`, `exporter_visible`, `allowed_ips`, `locating_strategy`) VALUES (2,'DEMO','Demo','dd0000','150','2014-06-22 17:18:00','SYSTEM',b'0','127.0.0.1','INDEX');
+
+INSERT INTO `LANGUAGE` (`id`, `code`, `name`, `owner_id`, `created`, `creator`) VALUES (1,'fi','suomi',2,'2014-06-22 17:18:00','SYSTEM'),(2,'sv','svenska',2,'2014-06-22 17:18:00','SYSTEM'),(3,'en','English',2,'2014-06-22 17:18:00','SYSTEM');
+
+INSERT INTO `LIBRARY` (`location_id`, `location_code`, `owner_id`, `name`, `floor`, `created`, `creator`) VALUES (1,'L0',2,'Library 0','1','2014-06-22 17:18:00','SYSTEM');
+
+INSERT INTO `COLLECTION` (`location_id`, `location_code`, `owner_id`, `name`, `floor`, `library_id`, `shelf_number`, `created`, `creator`, `is_substring`, `collection_code`) VALUES (2,'10.0',2,'Collection 0','1',1,'1','2014-06-22 17:18:00','SYSTEM',b'0','K0'),(3,'10.1',2,'Collection 1','2',1,'2','2014-06-22 17:18:00','SYSTEM',b'0',NULL);
+
+INSERT INTO `SHELF` (`location_id`, `location_code`, `owner_id`, `name`, `floor`, `collection_id`, `shelf_number`, `created`, `creator`) VALUES (4,'Ba',2,'Shelf 0','1',2,'1.1','2014-06-22 17:18:00','SYSTEM'),(5,'[Ca]-[Cf]',2,'Shelf 1','1',2,'1.2','2014-06-22 17:18:00','SYSTEM'),(6,'Da',2,'Shelf 2','2',3,'2.1','2014-06-22 17:18:00','SYSTEM');
+
+INSERT INTO `DESCRIPTION` (`description_id`, `description`, `language_id`, `location_id`) VALUES (1,'Kirjasto, 1. kerros',1,1),(2,'Bibliotek, våning 1',2,1),(3,'Library, floor 1',3,1);
+
+INSERT INTO `SEARCH_INDEX` (`id`, `location_id`, `location_type`, `call_number`, `location_code`, `collection_code`, `owner_id`) VALUES (1,1,'LIBRARY','L0','L0','',2),(2,2,'COLLECTION','L0 10.0','10.0','K0',2),(3,3,'COLLECTION','L0 10.1','10.1','',2),(4,4,'SHELF','L0 10.0 Ba','Ba','K0',2),(5,5,'SHELF','L0 10.0 [Ca]-[Cf]','[Ca]-[Cf]','K0',2),(6,6,'SHELF','L0 10.1 Da','Da','',2);
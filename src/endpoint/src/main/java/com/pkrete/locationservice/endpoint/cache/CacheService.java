@@ -0,0 +1,63 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.cache;
+
+import java.util.Collection;
+
+/**
+ * This interface defines methods for evicting the cached data of the endpoint.
+ * The admin application modifies the database directly, so the caches of the
+ * endpoint must be evicted after the modifications in order to make the
+ * changes visible immediately.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface CacheService {
+
+    /**
+     * Evicts the cached data related to the given owner. Data that can not be
+     * evicted by owner is evicted completely.
+     *
+     * @param owner code of the owner
+     */
+    void evict(String owner);
+
+    /**
+     * Evicts the cached data related to the given owner after the given
+     * libraries or their collections or shelves have been modified. Data
+     * that can be updated by library is updated instead of evicting it.
+     *
+     * @param owner code of the owner
+     * @param libraryIds ids of the modified libraries
+     */
+    void evict(String owner, Collection<Integer> libraryIds);
+
+    /**
+     * Evicts all the cached data.
+     */
+    void evictAll();
+
+    /**
+     * Evicts the cached templates and template manifest entries related to
+     * the given owner. If the owner is null, the templates of all the owners
+     * are evicted.
+     *
+     * @param owner code of the owner or null
+     */
+    void evictTemplates(String owner);
+}
@@ -0,0 +1,399 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is the base class of the in-memory caches that hold one value
+ * per owner, e.g. the call number index or the metadata of an owner. A value
+ * is loaded by calling the abstract load method when it's requested for the
+ * first time, and after that it's kept in memory until it expires or it's
+ * invalidated. Expired values are loaded again on the next request.
+ *
+ * Values of the same key are loaded by one thread at a time, and the other
+ * threads requesting the same key wait for the value instead of loading it
+ * again. If serving stale values is enabled, the other threads get the
+ * expired value while one thread loads the new value. A value whose loading
+ * started before the key was invalidated is returned to the thread that
+ * loaded it, but it's not stored, so invalidations are never undone by
+ * loads that were already running.
+ *
+ * If the load method returns null, the miss is cached for the miss time to
+ * live, so that requests with unknown keys don't go to the database every
+ * time. At most maxMisses misses are cached.
+ *
+ * If the time to live is negative, the values never expire and they must be
+ * invalidated explicitly.
+ *
+ * @param <V> type of the cached values
+ * @author Petteri Kivimäki
+ */
+public abstract class ExpiringCache<V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpiringCache.class.getName());
+    private static final int STRIPES = 32;
+    private final String name;
+    private final ConcurrentMap<String, Entry<V>> entries;
+    private final ConcurrentMap<String, Long> misses;
+    private final ReentrantLock[] locks;
+    private final AtomicLongArray generations;
+    private volatile long timeToLive = 300;
+    private volatile long missTimeToLive = 0;
+    private volatile int maxMisses = 1000;
+    private volatile boolean serveStale = false;
+
+    /**
+     * Constructs and initializes a new ExpiringCache object.
+     *
+     * @param name name of the cached values that's used in the log messages
+     */
+    protected ExpiringCache(String name) {
+        this.name = name;
+        this.entries = new ConcurrentHashMap<String, Entry<V>>();
+        this.misses = new ConcurrentHashMap<String, Long>();
+        this.locks = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+        this.generations = new AtomicLongArray(STRIPES);
+    }
+
+    /**
+     * Sets the time in seconds after which a value is loaded again. Negative
+     * value means that the values never expire. Default is 300 seconds.
+     *
+     * @param timeToLive time to live in seconds
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Sets the time in seconds for which a key without a value is remembered.
+     * Zero means that misses are not cached. Default is 0.
+     *
+     * @param missTimeToLive time to live of misses in seconds
+     */
+    public void setMissTimeToLive(long missTimeToLive) {
+        this.missTimeToLive = missTimeToLive;
+    }
+
+    /**
+     * Sets the maximum number of cached misses. Default is 1000.
+     *
+     * @param maxMisses new value
+     */
+    public void setMaxMisses(int maxMisses) {
+        this.maxMisses = maxMisses;
+    }
+
+    /**
+     * Sets if an expired value is returned while another thread is loading
+     * the new value. Invalidated values are never returned. Default is false.
+     *
+     * @param serveStale new value
+     */
+    public void setServeStale(boolean serveStale) {
+        this.serveStale = serveStale;
+    }
+
+    /**
+     * Returns the value of the given key. If the value doesn't exist yet or
+     * it has expired, it's loaded before returning.
+     *
+     * @param key key of the value
+     * @return value of the key or null
+     */
+    public V get(String key) {
+        return this.get(key, null);
+    }
+
+    /**
+     * Returns the value of the given key. If the value doesn't exist yet or
+     * it has expired, it's loaded with the given loader before returning.
+     * This is for caches whose values are loaded from a source that's given
+     * by the caller.
+     *
+     * @param key key of the value
+     * @param loader loader of the value, null means the load method
+     * @return value of the key or null
+     */
+    public V get(String key, Loader<V> loader) {
+        Entry<V> entry = this.entries.get(key);
+        if (entry != null && !this.isExpired(entry.created, this.timeToLive)) {
+            return entry.value;
+        }
+        if (entry == null && this.isMiss(key)) {
+            return null;
+        }
+        ReentrantLock lock = this.getLock(key);
+        if (entry != null && this.serveStale) {
+            if (!lock.tryLock()) {
+                // Another thread is loading the value
+                return entry.value;
+            }
+        } else {
+            lock.lock();
+        }
+        try {
+            // The value may have been loaded while waiting for the lock
+            entry = this.entries.get(key);
+            if (entry != null && !this.isExpired(entry.created, this.timeToLive)) {
+                return entry.value;
+            }
+            if (entry == null && this.isMiss(key)) {
+                return null;
+            }
+            long loadGeneration = this.generations.get(this.getStripe(key));
+            V value = loader == null ? this.load(key) : loader.load(key);
+            if (value == null) {
+                this.entries.remove(key);
+                this.storeMiss(key, loadGeneration);
+            } else {
+                this.store(key, new Entry<V>(value, System.currentTimeMillis()), loadGeneration);
+            }
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the cached value of the given key with the value returned by
+     * the given update. If the key has no cached value, nothing is done and
+     * the value is loaded on the next request. Loads that are running when
+     * this method is called are not stored. The updated value expires at the
+     * same time as the value that was updated.
+     *
+     * @param key key of the value
+     * @param update update to be applied
+     * @return true if the value was updated, otherwise false
+     */
+    public boolean update(String key, Update<V> update) {
+        this.generations.incrementAndGet(this.getStripe(key));
+        ReentrantLock lock = this.getLock(key);
+        lock.lock();
+        try {
+            Entry<V> entry = this.entries.get(key);
+            if (entry == null) {
+                return false;
+            }
+            long updateGeneration = this.generations.get(this.getStripe(key));
+            V value = update.apply(entry.value);
+            if (value == null) {
+                this.entries.remove(key);
+                return false;
+            }
+            this.store(key, new Entry<V>(value, entry.created), updateGeneration);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the values that are currently in the cache. Expired values are
+     * included and no values are loaded.
+     *
+     * @return cached values
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<V>();
+        for (Entry<V> entry : this.entries.values()) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+
+    /**
+     * Removes the value of the given key from the cache. The value is loaded
+     * again on the next request.
+     *
+     * @param key key of the value
+     */
+    public void invalidate(String key) {
+        this.generations.incrementAndGet(this.getStripe(key));
+        boolean removed = this.entries.remove(key) != null;
+        this.misses.remove(key);
+        if (removed) {
+            logger.info("{} of owner \"{}\" invalidated.", this.name, key);
+        }
+    }
+
+    /**
+     * Removes all the values from the cache.
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            this.generations.incrementAndGet(i);
+        }
+        this.entries.clear();
+        this.misses.clear();
+        logger.info("{} of all the owners invalidated.", this.name);
+    }
+
+    /**
+     * Loads the value of the given key. Null means that the key has no
+     * value.
+     *
+     * @param key key of the value
+     * @return value of the key or null
+     */
+    protected abstract V load(String key);
+
+    /**
+     * Stores the given entry, unless the key has been invalidated or
+     * updated after the given generation. Generations are kept per lock
+     * stripe, so an invalidation may also drop a load of another key of the
+     * same stripe, which is then loaded again on the next request.
+     *
+     * @param key key of the value
+     * @param entry entry to be stored
+     * @param loadGeneration generation when the value was loaded
+     */
+    private void store(String key, Entry<V> entry, long loadGeneration) {
+        this.misses.remove(key);
+        this.entries.put(key, entry);
+        // If an invalidation happened after the value was loaded, the entry
+        // was either removed by it or it's removed here
+        if (this.generations.get(this.getStripe(key)) != loadGeneration) {
+            this.entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Stores a miss of the given key, if caching misses is enabled and the
+     * cache hasn't been invalidated after the given generation.
+     *
+     * @param key key without a value
+     * @param loadGeneration generation when the value was loaded
+     */
+    private void storeMiss(String key, long loadGeneration) {
+        long ttl = this.missTimeToLive;
+        if (ttl == 0) {
+            return;
+        }
+        if (this.misses.size() >= this.maxMisses) {
+            long now = System.currentTimeMillis();
+            for (java.util.Map.Entry<String, Long> miss : this.misses.entrySet()) {
+                if (this.isExpired(miss.getValue(), ttl, now)) {
+                    this.misses.remove(miss.getKey(), miss.getValue());
+                }
+            }
+            if (this.misses.size() >= this.maxMisses) {
+                return;
+            }
+        }
+        Long created = System.currentTimeMillis();
+        this.misses.put(key, created);
+        if (this.generations.get(this.getStripe(key)) != loadGeneration) {
+            this.misses.remove(key, created);
+        }
+    }
+
+    /**
+     * Checks if the given key is a cached miss.
+     *
+     * @param key key to be checked
+     * @return true if the key is a cached miss, otherwise false
+     */
+    private boolean isMiss(String key) {
+        Long created = this.misses.get(key);
+        if (created == null) {
+            return false;
+        }
+        if (this.isExpired(created, this.missTimeToLive)) {
+            this.misses.remove(key, created);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isExpired(long created, long ttl) {
+        return this.isExpired(created, ttl, System.currentTimeMillis());
+    }
+
+    private boolean isExpired(long created, long ttl, long now) {
+        if (ttl < 0) {
+            return false;
+        }
+        return now - created > ttl * 1000;
+    }
+
+    private ReentrantLock getLock(String key) {
+        return this.locks[this.getStripe(key)];
+    }
+
+    private int getStripe(String key) {
+        return (key.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    /**
+     * This interface defines a loader of the values of a cache.
+     *
+     * @param <V> type of the loaded values
+     */
+    public interface Loader<V> {
+
+        /**
+         * Loads the value of the given key.
+         *
+         * @param key key of the value
+         * @return value of the key or null
+         */
+        V load(String key);
+    }
+
+    /**
+     * This interface defines an update that's applied to a cached value.
+     *
+     * @param <V> type of the cached value
+     */
+    public interface Update<V> {
+
+        /**
+         * Returns the updated value. The given value must not be modified.
+         *
+         * @param value current value
+         * @return updated value or null, if the value must be loaded again
+         */
+        V apply(V value);
+    }
+
+    /**
+     * Cached value and its creation time.
+     */
+    private static class Entry<V> {
+
+        private final V value;
+        private final long created;
+
+        Entry(V value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is the base class of the in-memory caches which size is limited
+ * by the total weight of the cached values, e.g. the rendered map images or
+ * the outputs of the resolver. The weight of a value is returned by the
+ * abstract weigh method, usually it's the size of the value in bytes. When
+ * the maximum weight is exceeded, the least recently used values are removed
+ * from the cache.
+ *
+ * The cache is divided into segments by the hash code of the key, and every
+ * segment has its own lock and an equal share of the maximum weight, so
+ * threads using different segments don't block each other. The least
+ * recently used values are removed from the segment that exceeds its share.
+ * Values that are heavier than the share of one segment are not cached.
+ *
+ * Every value belongs to an owner, and the values of an owner can be
+ * invalidated at once.
+ *
+ * @param <V> type of the cached values
+ * @author Petteri Kivimäki
+ */
+public abstract class WeightedLruCache<V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(WeightedLruCache.class.getName());
+    private final String name;
+    private final List<Segment> segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs and initializes a new WeightedLruCache object.
+     *
+     * @param name name of the cached values that's used in the log messages
+     * @param segments number of segments, at least one
+     * @param maxWeight maximum total weight of the cached values
+     */
+    protected WeightedLruCache(String name, int segments, long maxWeight) {
+        this.name = name;
+        this.segments = new ArrayList<Segment>();
+        for (int i = 0; i < Math.max(segments, 1); i++) {
+            this.segments.add(new Segment());
+        }
+        this.setMaxWeight(maxWeight);
+    }
+
+    /**
+     * Returns the weight of the given value.
+     *
+     * @param value cached value
+     * @return weight of the value
+     */
+    protected abstract long weigh(V value);
+
+    /**
+     * Returns the code of the owner of the given value.
+     *
+     * @param value cached value
+     * @return owner code
+     */
+    protected abstract String getOwner(V value);
+
+    /**
+     * Checks if the given value has expired. Expired values are removed when
+     * they're requested. The default implementation returns always false.
+     *
+     * @param value cached value
+     * @return true if the value has expired; otherwise false
+     */
+    protected boolean isExpired(V value) {
+        return false;
+    }
+
+    /**
+     * Sets the maximum total weight of the cached values. The weight is
+     * divided equally between the segments.
+     *
+     * @param maxWeight maximum weight
+     */
+    public void setMaxWeight(long maxWeight) {
+        long segmentWeight = maxWeight / this.segments.size();
+        for (Segment segment : this.segments) {
+            segment.setMaxWeight(segmentWeight);
+        }
+    }
+
+    /**
+     * Returns the value matching the given key. If no value is found or it
+     * has expired, null is returned.
+     *
+     * @param key cache key
+     * @return value matching the given key or null
+     */
+    public V get(String key) {
+        return this.get(key, null);
+    }
+
+    /**
+     * Returns the value matching the given key, if it's accepted by the given
+     * filter. A value that has expired or that isn't accepted is removed from
+     * the cache, and null is returned.
+     *
+     * @param key cache key
+     * @param filter filter that the value must pass, may be null
+     * @return value matching the given key or null
+     */
+    public V get(String key, Filter<V> filter) {
+        V value = this.getSegment(key).get(key, filter);
+        if (value == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Adds the given value to the cache. Values that are heavier than the
+     * share of one segment are not cached.
+     *
+     * @param key cache key
+     * @param value value to be cached
+     * @return true if the value was cached; otherwise false
+     */
+    public boolean put(String key, V value) {
+        long weight = this.weigh(value);
+        if (!this.getSegment(key).put(key, value, weight)) {
+            logger.debug("Entry is heavier than a segment of the {} cache. Weight : {}.", this.name, weight);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the given key from the cache, if it's mapped to the given
+     * value.
+     *
+     * @param key cache key
+     * @param value cached value
+     * @return true if the value was removed; otherwise false
+     */
+    public boolean remove(String key, V value) {
+        return this.getSegment(key).remove(key, value);
+    }
+
+    /**
+     * Removes the values of the given owner from the cache.
+     *
+     * @param owner owner code
+     * @return number of removed values
+     */
+    public int invalidate(String owner) {
+        int count = 0;
+        for (Segment segment : this.segments) {
+            count += segment.removeOwner(owner);
+        }
+        logger.info("{} {} entries of owner \"{}\" invalidated.", new Object[]{count, this.name, owner});
+        return count;
+    }
+
+    /**
+     * Removes all the values from the cache.
+     */
+    public void invalidateAll() {
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+        logger.info("All the {} entries invalidated.", this.name);
+    }
+
+    /**
+     * Returns the number of cached values.
+     *
+     * @return number of values
+     */
+    public int getCount() {
+        int count = 0;
+        for (Segment segment : this.segments) {
+            count += segment.getCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the total weight of the cached values.
+     *
+     * @return total weight
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : this.segments) {
+            weight += segment.getWeight();
+        }
+        return weight;
+    }
+
+    /**
+     * Returns the number of requests that have found a value from the cache.
+     *
+     * @return number of hits
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Returns the number of requests that haven't found a value from the
+     * cache.
+     *
+     * @return number of misses
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the share of the requests that have found a value from the
+     * cache.
+     *
+     * @return hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long currentHits = this.hits.get();
+        long requests = currentHits + this.misses.get();
+        return requests == 0 ? 0 : (double) currentHits / requests;
+    }
+
+    /**
+     * Returns the segment of the given key.
+     *
+     * @param key cache key
+     * @return segment of the key
+     */
+    private Segment getSegment(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return this.segments.get((hash & 0x7fffffff) % this.segments.size());
+    }
+
+    /**
+     * Filter that's used for checking the cached values.
+     *
+     * @param <V> type of the cached values
+     */
+    public interface Filter<V> {
+
+        /**
+         * Returns true if the given value is accepted.
+         *
+         * @param value cached value
+         * @return true if the value is accepted; otherwise false
+         */
+        boolean accept(V value);
+    }
+
+    /**
+     * One segment of the cache. The values are held in an access ordered
+     * map, so the least recently used value is the first one.
+     */
+    private final class Segment {
+
+        private final LinkedHashMap<String, Weighted<V>> values = new LinkedHashMap<String, Weighted<V>>(16, 0.75f, true);
+        private long maxWeight;
+        private long weight;
+
+        synchronized void setMaxWeight(long maxWeight) {
+            this.maxWeight = maxWeight;
+            this.evict();
+        }
+
+        synchronized V get(String key, Filter<V> filter) {
+            Weighted<V> entry = this.values.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (isExpired(entry.value) || (filter != null && !filter.accept(entry.value))) {
+                this.values.remove(key);
+                this.weight -= entry.weight;
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized boolean put(String key, V value, long valueWeight) {
+            if (valueWeight > this.maxWeight) {
+                return false;
+            }
+            Weighted<V> old = this.values.put(key, new Weighted<V>(value, valueWeight));
+            if (old != null) {
+                this.weight -= old.weight;
+            }
+            this.weight += valueWeight;
+            this.evict();
+            return true;
+        }
+
+        synchronized boolean remove(String key, V value) {
+            Weighted<V> entry = this.values.get(key);
+            if (entry == null || entry.value != value) {
+                return false;
+            }
+            this.values.remove(key);
+            this.weight -= entry.weight;
+            return true;
+        }
+
+        synchronized int removeOwner(String owner) {
+            int count = 0;
+            Iterator<Weighted<V>> it = this.values.values().iterator();
+            while (it.hasNext()) {
+                Weighted<V> entry = it.next();
+                if (getOwner(entry.value).equals(owner)) {
+                    this.weight -= entry.weight;
+                    it.remove();
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        synchronized void clear() {
+            this.values.clear();
+            this.weight = 0;
+        }
+
+        synchronized int getCount() {
+            return this.values.size();
+        }
+
+        synchronized long getWeight() {
+            return this.weight;
+        }
+
+        /**
+         * Removes the least recently used values until the weight of the
+         * segment doesn't exceed its maximum weight.
+         */
+        private void evict() {
+            Iterator<Map.Entry<String, Weighted<V>>> it = this.values.entrySet().iterator();
+            while (this.weight > this.maxWeight && it.hasNext()) {
+                this.weight -= it.next().getValue().weight;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Cached value and its weight.
+     */
+    private static class Weighted<T> {
+
+        private final T value;
+        private final long weight;
+
+        Weighted(T value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
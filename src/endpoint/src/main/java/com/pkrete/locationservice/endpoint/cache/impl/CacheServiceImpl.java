@@ -0,0 +1,380 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.cache.impl;
+
+import com.pkrete.locationservice.endpoint.cache.CacheService;
+import com.pkrete.locationservice.endpoint.callnoparser.indexparser.CallnoIndexCache;
+import com.pkrete.locationservice.endpoint.drawer.BaseMapCache;
+import com.pkrete.locationservice.endpoint.drawer.MapImageCache;
+import com.pkrete.locationservice.endpoint.loader.TemplateManifest;
+import com.pkrete.locationservice.endpoint.model.illustration.Illustration;
+import com.pkrete.locationservice.endpoint.model.language.Language;
+import com.pkrete.locationservice.endpoint.model.location.Area;
+import com.pkrete.locationservice.endpoint.model.location.Description;
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.location.Note;
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.model.search.SearchIndex;
+import com.pkrete.locationservice.endpoint.model.subjectmatter.SubjectMatter;
+import com.pkrete.locationservice.endpoint.modifier.CallnoModification;
+import com.pkrete.locationservice.endpoint.modifier.RedirectRuleCache;
+import com.pkrete.locationservice.endpoint.owner.OwnerCache;
+import com.pkrete.locationservice.endpoint.resolver.ResponseCache;
+import com.pkrete.locationservice.endpoint.search.index.LocationSearchIndexCache;
+import com.pkrete.locationservice.endpoint.templateparser.TemplateCache;
+import com.pkrete.locationservice.endpoint.util.LocationServiceConstants;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.hibernate.Cache;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements the {@link CacheService CacheService} interface. It
+ * evicts the Hibernate second-level and query caches, the owner metadata,
+ * the compiled redirects, the call number indexes, the Exporter search
+ * indexes, the rendered map images, the decoded base maps, the parsed
+ * templates, the template manifests and the generated outputs.
+ *
+ * When the data of an owner is evicted, the Hibernate second-level cache
+ * entries of the owner's locations, their descriptions, notes, areas, subject
+ * matters, maps and images, the owner's search index entries, redirects and
+ * languages, and the owner itself are evicted together with the collection
+ * cache entries of the same entities. The ids of the entries are read from
+ * the database. Entities that have been deleted are not evicted, but they're
+ * not reachable anymore after the collections and the query results that
+ * referred to them have been evicted, and they expire after their time to
+ * live. The query cache regions are per owner, see
+ * {@link LocationServiceConstants#QUERY_CACHE_REGION_INDEX LocationServiceConstants}.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CacheServiceImpl implements CacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheServiceImpl.class.getName());
+    private static final String[] LOCATION_COLLECTIONS = new String[]{
+        Location.class.getName() + ".areas",
+        Location.class.getName() + ".subjectMatters",
+        Location.class.getName() + ".descriptions",
+        Location.class.getName() + ".notes",
+        Library.class.getName() + ".collections",
+        LibraryCollection.class.getName() + ".shelves"
+    };
+    private static final String OWNER_LANGUAGES = Owner.class.getName() + ".languages";
+    private SessionFactory sessionFactory;
+    private List<OwnerCache> ownerCaches = new ArrayList<OwnerCache>();
+    private List<RedirectRuleCache> redirectRuleCaches = new ArrayList<RedirectRuleCache>();
+    private List<CallnoIndexCache> indexCaches = new ArrayList<CallnoIndexCache>();
+    private List<LocationSearchIndexCache> searchIndexCaches = new ArrayList<LocationSearchIndexCache>();
+    private List<MapImageCache> mapImageCaches = new ArrayList<MapImageCache>();
+    private List<BaseMapCache> baseMapCaches = new ArrayList<BaseMapCache>();
+    private List<ResponseCache> responseCaches = new ArrayList<ResponseCache>();
+    private List<TemplateCache> templateCaches = new ArrayList<TemplateCache>();
+    private List<TemplateManifest> templateManifests = new ArrayList<TemplateManifest>();
+
+    /**
+     * Sets the session factory which caches are evicted.
+     *
+     * @param sessionFactory new value
+     */
+    public void setSessionFactory(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Sets the owner caches that are evicted.
+     *
+     * @param ownerCaches new value
+     */
+    public void setOwnerCaches(List<OwnerCache> ownerCaches) {
+        this.ownerCaches = ownerCaches;
+    }
+
+    /**
+     * Sets the redirect caches that are evicted.
+     *
+     * @param redirectRuleCaches new value
+     */
+    public void setRedirectRuleCaches(List<RedirectRuleCache> redirectRuleCaches) {
+        this.redirectRuleCaches = redirectRuleCaches;
+    }
+
+    /**
+     * Sets the call number index caches that are evicted.
+     *
+     * @param indexCaches new value
+     */
+    public void setIndexCaches(List<CallnoIndexCache> indexCaches) {
+        this.indexCaches = indexCaches;
+    }
+
+    /**
+     * Sets the Exporter search index caches that are evicted.
+     *
+     * @param searchIndexCaches new value
+     */
+    public void setSearchIndexCaches(List<LocationSearchIndexCache> searchIndexCaches) {
+        this.searchIndexCaches = searchIndexCaches;
+    }
+
+    /**
+     * Sets the map image caches that are evicted.
+     *
+     * @param mapImageCaches new value
+     */
+    public void setMapImageCaches(List<MapImageCache> mapImageCaches) {
+        this.mapImageCaches = mapImageCaches;
+    }
+
+    /**
+     * Sets the base map caches that are evicted.
+     *
+     * @param baseMapCaches new value
+     */
+    public void setBaseMapCaches(List<BaseMapCache> baseMapCaches) {
+        this.baseMapCaches = baseMapCaches;
+    }
+
+    /**
+     * Sets the response caches that are evicted.
+     *
+     * @param responseCaches new value
+     */
+    public void setResponseCaches(List<ResponseCache> responseCaches) {
+        this.responseCaches = responseCaches;
+    }
+
+    /**
+     * Sets the template caches that are evicted.
+     *
+     * @param templateCaches new value
+     */
+    public void setTemplateCaches(List<TemplateCache> templateCaches) {
+        this.templateCaches = templateCaches;
+    }
+
+    /**
+     * Sets the template manifests that are evicted.
+     *
+     * @param templateManifests new value
+     */
+    public void setTemplateManifests(List<TemplateManifest> templateManifests) {
+        this.templateManifests = templateManifests;
+    }
+
+    @Override
+    public void evict(String owner) {
+        evict(owner, null);
+    }
+
+    @Override
+    public void evict(String owner, Collection<Integer> libraryIds) {
+        evictHibernateCaches(owner);
+        for (OwnerCache ownerCache : ownerCaches) {
+            ownerCache.invalidate(owner);
+        }
+        for (RedirectRuleCache redirectRuleCache : redirectRuleCaches) {
+            redirectRuleCache.invalidate(owner);
+        }
+        for (CallnoIndexCache indexCache : indexCaches) {
+            indexCache.invalidate(owner);
+        }
+        for (LocationSearchIndexCache searchIndexCache : searchIndexCaches) {
+            if (libraryIds == null || libraryIds.isEmpty()) {
+                searchIndexCache.invalidate(owner);
+            } else {
+                searchIndexCache.updateLibraries(owner, libraryIds);
+            }
+        }
+        for (MapImageCache mapImageCache : mapImageCaches) {
+            mapImageCache.invalidate(owner);
+        }
+        for (BaseMapCache baseMapCache : baseMapCaches) {
+            baseMapCache.invalidate(owner);
+        }
+        evictTemplateCaches(owner);
+        if (libraryIds == null) {
+            logger.info("Caches evicted. Owner : \"{}\".", owner);
+        } else {
+            logger.info("Caches evicted. Owner : \"{}\", libraries : {}.", owner, libraryIds);
+        }
+    }
+
+    @Override
+    public void evictAll() {
+        evictHibernateCaches();
+        for (OwnerCache ownerCache : ownerCaches) {
+            ownerCache.invalidateAll();
+        }
+        for (RedirectRuleCache redirectRuleCache : redirectRuleCaches) {
+            redirectRuleCache.invalidateAll();
+        }
+        for (CallnoIndexCache indexCache : indexCaches) {
+            indexCache.invalidateAll();
+        }
+        for (LocationSearchIndexCache searchIndexCache : searchIndexCaches) {
+            searchIndexCache.invalidateAll();
+        }
+        for (MapImageCache mapImageCache : mapImageCaches) {
+            mapImageCache.invalidateAll();
+        }
+        for (BaseMapCache baseMapCache : baseMapCaches) {
+            baseMapCache.invalidateAll();
+        }
+        evictTemplateCaches(null);
+        logger.info("All caches evicted.");
+    }
+
+    @Override
+    public void evictTemplates(String owner) {
+        evictTemplateCaches(owner);
+        logger.info("Templates evicted. Owner : \"{}\".", owner);
+    }
+
+    /**
+     * Evicts the templates, template manifests and generated outputs of the
+     * given owner. If the owner is null, the templates and outputs of all the
+     * owners are evicted.
+     *
+     * @param owner code of the owner or null
+     */
+    private void evictTemplateCaches(String owner) {
+        for (ResponseCache responseCache : responseCaches) {
+            if (owner == null) {
+                responseCache.invalidateAll();
+            } else {
+                responseCache.invalidate(owner);
+            }
+        }
+        for (TemplateCache templateCache : templateCaches) {
+            if (owner == null) {
+                templateCache.invalidateAll();
+            } else {
+                templateCache.invalidate(owner);
+            }
+        }
+        for (TemplateManifest templateManifest : templateManifests) {
+            if (owner == null) {
+                templateManifest.invalidateAll();
+            } else {
+                templateManifest.invalidate(owner);
+            }
+        }
+    }
+
+    /**
+     * Evicts the entity, collection and query cache entries related to the
+     * given owner.
+     *
+     * @param owner code of the owner
+     */
+    private void evictHibernateCaches(String owner) {
+        if (sessionFactory == null) {
+            return;
+        }
+        Cache cache = sessionFactory.getCache();
+        if (cache == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int count = 0;
+        Session session = sessionFactory.openSession();
+        try {
+            // The ids must be read from the database and not from the caches
+            session.setCacheMode(CacheMode.IGNORE);
+            List<Integer> ids = ids(session, "select l.locationId from Location l where l.owner.code = :owner", owner);
+            for (Integer id : ids) {
+                cache.evictEntity(Location.class, id);
+                for (String role : LOCATION_COLLECTIONS) {
+                    cache.evictCollection(role, id);
+                }
+            }
+            count += ids.size();
+            count += evictEntities(cache, Description.class, ids(session, "select d.id from Location l join l.descriptions d where l.owner.code = :owner", owner));
+            count += evictEntities(cache, Note.class, ids(session, "select n.id from Location l join l.notes n where l.owner.code = :owner", owner));
+            count += evictEntities(cache, Area.class, ids(session, "select a.areaId from Location l join l.areas a where l.owner.code = :owner", owner));
+            count += evictEntities(cache, SubjectMatter.class, ids(session, "select s.id from Location l join l.subjectMatters s where l.owner.code = :owner", owner));
+            count += evictEntities(cache, Illustration.class, ids(session, "select m.id from Location l join l.map m where l.owner.code = :owner", owner));
+            count += evictEntities(cache, Illustration.class, ids(session, "select i.id from Location l join l.image i where l.owner.code = :owner", owner));
+            count += evictEntities(cache, SearchIndex.class, ids(session, "select si.id from SearchIndex si where si.owner.code = :owner", owner));
+            count += evictEntities(cache, CallnoModification.class, ids(session, "select c.id from CallnoModification c where c.owner.code = :owner", owner));
+            count += evictEntities(cache, Language.class, ids(session, "select lang.id from Owner o join o.languages lang where o.code = :owner", owner));
+            for (Integer id : ids(session, "select o.id from Owner o where o.code = :owner", owner)) {
+                cache.evictEntity(Owner.class, id);
+                cache.evictCollection(OWNER_LANGUAGES, id);
+                count++;
+            }
+        } finally {
+            session.close();
+        }
+        cache.evictQueryRegion(LocationServiceConstants.QUERY_CACHE_REGION_INDEX + "." + owner);
+        cache.evictQueryRegion(LocationServiceConstants.QUERY_CACHE_REGION_OWNER + "." + owner);
+        cache.evictQueryRegion(LocationServiceConstants.QUERY_CACHE_REGION_REDIRECT + "." + owner);
+        logger.debug("{} Hibernate cache entries of owner \"{}\" evicted in {} ms.", count, owner, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Evicts the entities of the given class with the given ids.
+     *
+     * @param cache second-level cache
+     * @param entityClass class of the entities
+     * @param ids ids of the entities
+     * @return number of evicted ids
+     */
+    private int evictEntities(Cache cache, Class entityClass, List<Integer> ids) {
+        for (Integer id : ids) {
+            cache.evictEntity(entityClass, id);
+        }
+        return ids.size();
+    }
+
+    /**
+     * Executes the given query, which has an "owner" parameter and which
+     * returns ids.
+     *
+     * @param session session that executes the query
+     * @param query HQL query
+     * @param owner code of the owner
+     * @return ids returned by the query
+     */
+    private List<Integer> ids(Session session, String query, String owner) {
+        return (List<Integer>) session.createQuery(query).setParameter("owner", owner).list();
+    }
+
+    /**
+     * Evicts all the entity, collection and query cache regions.
+     */
+    private void evictHibernateCaches() {
+        if (sessionFactory == null) {
+            return;
+        }
+        Cache cache = sessionFactory.getCache();
+        if (cache != null) {
+            cache.evictEntityRegions();
+            cache.evictCollectionRegions();
+            cache.evictDefaultQueryRegion();
+            cache.evictQueryRegions();
+        }
+    }
+}
@@ -23,6 +23,8 @@ import com.pkrete.locationservice.endpoint.service.Service;
 import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
 import com.pkrete.locationservice.endpoint.model.search.LocationType;
 import com.pkrete.locationservice.endpoint.modifier.Modifier;
+import com.pkrete.locationservice.endpoint.modifier.RedirectRule;
+import com.pkrete.locationservice.endpoint.modifier.RedirectRuleCache;
 import com.pkrete.locationservice.endpoint.util.LocationHelper;
 import java.util.List;
 import org.slf4j.Logger;
@@ -35,24 +37,36 @@ import org.slf4j.LoggerFactory;
  *
  * All the subclasses must implement the abstract <i>parse</i> method.
  *
+ * CallNoParser objects are shared between all the requests and they must not
+ * be modified after initialization. The request specific information is
+ * passed to the parser in a {@link ParserContext ParserContext} object.
+ *
  * @author Petteri Kivimäki
  */
 public abstract class CallNoParser {
 
     private static final Logger logger = LoggerFactory.getLogger(CallNoParser.class.getName());
     /**
-     * Service object handles the database.
+     * Default maximum number of not found redirects per request.
      */
-    protected Service dbService;
+    public static final int DEFAULT_MAX_REDIRECTS = 10;
     /**
-     * Generator object is responsible of generating the HTML code that is
-     * returned to the user.
+     * Service object handles the database.
      */
-    protected Generator generator;
+    protected Service dbService;
     /**
      * Modifier is responsible of processing not found redirects.
      */
     protected Modifier modifier;
+    /**
+     * Cache holding the compiled redirects. If redirect cache is not set, the
+     * redirects are read from the database on every request.
+     */
+    protected RedirectRuleCache redirectRuleCache;
+    /**
+     * Maximum number of not found redirects that are applied per request.
+     */
+    private int maxRedirects = DEFAULT_MAX_REDIRECTS;
     /**
      * Parser implements a LocatingStrategy.
      */
@@ -67,26 +81,14 @@ public abstract class CallNoParser {
         this.locatingStrategy = locatingStrategy;
     }
 
-    /**
-     * Constructs and initializes a CallNoParser object with the given generator
-     * object and limit
-     *
-     * @param generator the generator object that generates the html page
-     * returned to the user
-     */
-    protected CallNoParser(Generator generator) {
-        this.generator = generator;
-    }
-
     /**
      * Searches the given call number from the database.
      *
      * @param callno the call number to be searched
-     * @param lang the language of the UI
-     * @param owner owner of the location
+     * @param context context of the request
      * @return the HTML page returned to the user
      */
-    public abstract String parse(String callno, String lang, String owner);
+    public abstract String parse(String callno, ParserContext context);
 
     /**
      * Changes the database service object.
@@ -107,12 +109,24 @@ public abstract class CallNoParser {
     }
 
     /**
-     * Sets the generator variable.
+     * Sets the cache that holds the compiled redirects.
+     *
+     * @param redirectRuleCache new value
+     */
+    public void setRedirectRuleCache(RedirectRuleCache redirectRuleCache) {
+        this.redirectRuleCache = redirectRuleCache;
+    }
+
+    /**
+     * Sets the maximum number of not found redirects that are applied per
+     * request. Non-positive values are ignored.
      *
-     * @param generator new value
+     * @param maxRedirects new value
      */
-    public void setGenerator(Generator generator) {
-        this.generator = generator;
+    public void setMaxRedirects(int maxRedirects) {
+        if (maxRedirects > 0) {
+            this.maxRedirects = maxRedirects;
+        }
     }
 
     /**
@@ -121,26 +135,54 @@ public abstract class CallNoParser {
      * from the db all the CallnoModification objects related to the given owner
      * and checks, if the given call number matches with of them. If a match is
      * found, the call number will be modified according to the
-     * CallnoModification object.
+     * CallnoModification object. The number of redirects per request is
+     * limited, so that redirects modifying call numbers back and forth can not
+     * cause an endless loop.
      *
      * @param callno call number to be checked
-     * @param lang language of the UI
-     * @param owner owner of the location
+     * @param context context of the request
      * @return HTML page returned to the user
      */
-    public String notFound(String callno, String lang, String owner) {
+    public String notFound(String callno, ParserContext context) {
+        Generator generator = context.getGenerator();
+        String lang = context.getLang();
+        String owner = context.getOwner();
         logger.debug("Unable to find a location matching the given call number: \"{}\"", callno);
-        List<CallnoModification> list = dbService.getNotFoundRedirects(owner);
+        if (context.getRedirects() >= this.maxRedirects) {
+            logger.warn("Maximum number of not found redirects reached. Call number : \"{}\", owner : \"{}\".", callno, owner);
+            return generator.generateOutputNotFound(lang, callno, owner);
+        }
         /* Original call number */
         String orgCallno = callno;
+        callno = this.runNotFoundRedirects(callno, owner);
+        if (callno != null) {
+            context.addRedirect();
+            logger.debug("Not found redirect match! Redirect: \"{}\" -> \"{}\". Restart standard parsing process.", orgCallno, callno);
+            return parse(callno, context);
+        }
+        return generator.generateOutputNotFound(lang, orgCallno, owner);
+    }
+
+    /**
+     * Modifies the given call number according to the first not found
+     * redirect matching it. If none of the redirects match, null is returned.
+     *
+     * @param callno call number to be modified
+     * @param owner owner code
+     * @return modified call number or null
+     */
+    private String runNotFoundRedirects(String callno, String owner) {
+        if (this.redirectRuleCache != null) {
+            RedirectRule rule = this.redirectRuleCache.getNotFoundRedirects(owner, dbService).find(callno);
+            return rule == null ? null : rule.apply(callno);
+        }
+        List<CallnoModification> list = dbService.getNotFoundRedirects(owner);
         for (CallnoModification mod : list) {
             if (modifier.canBeModified(callno, mod)) {
-                callno = modifier.modify(callno, mod);
-                logger.debug("Not found redirect match! Redirect: \"{}\" -> \"{}\". Restart standard parsing process.", orgCallno, callno);
-                return parse(callno, lang, owner);
+                return modifier.modify(callno, mod);
             }
         }
-        return generator.generateOutputNotFound(lang, callno, owner);
+        return null;
     }
 
     /**
@@ -158,13 +200,15 @@ public abstract class CallNoParser {
      * object's call number are matching.
      *
      * @param callno the call number to be searched
-     * @param lang the language of the UI
-     * @param owner owner of the location
+     * @param context context of the request
      * @param location the location under which the location being searched
      * belongs to
      * @return the HTML page returned to the user
      */
-    public String parse(String callno, String lang, String owner, SimpleLocation location) {
+    public String parse(String callno, ParserContext context, SimpleLocation location) {
+        Generator generator = context.getGenerator();
+        String lang = context.getLang();
+        String owner = context.getOwner();
         List list = null;
 
         if (location.getLocationType() == LocationType.COLLECTION) {
@@ -190,7 +234,7 @@ public abstract class CallNoParser {
             // No matching sub location was found, return the location given as parameter
             return generator.generateOutput(dbService.getLibrary(location.getLocationId()), lang, callno);
         }
-        return this.parse(callno, lang, owner);
+        return this.parse(callno, context);
     }
 
     /**
@@ -17,15 +17,13 @@
  */
 package com.pkrete.locationservice.endpoint.callnoparser;
 
-import com.pkrete.locationservice.endpoint.generator.Generator;
-
 /**
- * Interface for factory classes generating {@link CallNoParser CallNoParser}
- * objects.
+ * Interface for factory classes providing {@link CallNoParser CallNoParser}
+ * objects. The returned parsers may be shared between concurrent requests.
  *
  * @author Petteri Kivimäki
  */
 public interface CallNoParserFactory {
 
-    CallNoParser createParser(Generator generator, String owner, LocatingStrategy strategy);
+    CallNoParser getParser(String owner, LocatingStrategy strategy);
 }
@@ -18,7 +18,8 @@
 package com.pkrete.locationservice.endpoint.callnoparser;
 
 import com.pkrete.locationservice.endpoint.callnoparser.simpleparser.SimpleCallNoParser;
-import com.pkrete.locationservice.endpoint.generator.Generator;
+import com.pkrete.locationservice.endpoint.modifier.Modifier;
+import com.pkrete.locationservice.endpoint.modifier.RedirectRuleCache;
 import com.pkrete.locationservice.endpoint.service.Service;
 import com.pkrete.locationservice.endpoint.util.ApplicationContextUtils;
 import java.util.Map;
@@ -26,14 +27,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * This class generates {@link CallNoParser CallNoParser} objects.
+ * This class provides {@link CallNoParser CallNoParser} objects. The parsers
+ * are shared between all the requests and they're never modified by this
+ * class, so the same parser can be used by concurrent requests.
  *
  * @author Petteri Kivimäki
  */
 public class CallNoParserFactoryImpl implements CallNoParserFactory {
 
     private static final Logger logger = LoggerFactory.getLogger(CallNoParserFactoryImpl.class.getName());
-    private Map<LocatingStrategy, CallNoParser> parsers;
+    private final Map<LocatingStrategy, CallNoParser> parsers;
+    private volatile CallNoParser defaultParser;
 
     /**
      * Constructs and initializes a new CallNoParserFactoryImpl.
@@ -52,16 +56,14 @@ public class CallNoParserFactoryImpl implements CallNoParserFactory {
     }
 
     /**
-     * Creates a new call number parser object.
+     * Returns the call number parser matching the given strategy.
      *
-     * @param generator the generator object that generates the html page
-     * returned to the user
      * @param owner owner code of the location that is being resolved
      * @param strategy defines the type of the parser that's being used
-     * @return new call number parser
+     * @return call number parser
      */
     @Override
-    public CallNoParser createParser(Generator generator, String owner, LocatingStrategy strategy) {
+    public CallNoParser getParser(String owner, LocatingStrategy strategy) {
         // If strategy is null, use default
         if (strategy == null) {
             logger.warn("Strategy parameter is null -> use \"SIMPLE\" call number parser. Owner : \"{}\".", owner);
@@ -71,15 +73,31 @@ public class CallNoParserFactoryImpl implements CallNoParserFactory {
         CallNoParser parser = this.parsers.get(strategy);
         // If parser is null, use default
         if (parser == null) {
-            parser = new SimpleCallNoParser(generator);
-            parser.setDbService((Service) ApplicationContextUtils.getApplicationContext().getBean("dbService"));
+            parser = getDefaultParser();
             logger.warn("Parser matching the given \"{}\" strategy is not available in the parsers list. Use \"SIMPLE\" strategy.", strategy);
             strategy = LocatingStrategy.SIMPLE;
         }
-        // Set generator
-        parser.setGenerator(generator);
         logger.debug("Use \"{}\" call number parser. Owner : \"{}\".", strategy, owner);
         // Return the parser
         return parser;
     }
+
+    /**
+     * Returns the parser that's used when the parsers list doesn't contain a
+     * parser matching the requested strategy. The parser is created when it's
+     * needed for the first time.
+     *
+     * @return default parser
+     */
+    private CallNoParser getDefaultParser() {
+        CallNoParser parser = this.defaultParser;
+        if (parser == null) {
+            parser = new SimpleCallNoParser();
+            parser.setDbService((Service) ApplicationContextUtils.getApplicationContext().getBean("dbService"));
+            parser.setModifier((Modifier) ApplicationContextUtils.getApplicationContext().getBean("callnoModifier"));
+            parser.setRedirectRuleCache((RedirectRuleCache) ApplicationContextUtils.getApplicationContext().getBean("redirectRuleCache"));
+            this.defaultParser = parser;
+        }
+        return parser;
+    }
 }
@@ -0,0 +1,98 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.callnoparser;
+
+import com.pkrete.locationservice.endpoint.generator.Generator;
+
+/**
+ * This class holds the request specific information that's needed when a call
+ * number is parsed. {@link CallNoParser CallNoParser} objects are shared
+ * between all the requests, so they must not store any request specific state
+ * themselves. Instead, a new ParserContext object is created for every request
+ * and passed to the parser. Apart from the counter of the not found redirects
+ * applied during the request, ParserContext objects are immutable.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ParserContext {
+
+    private final Generator generator;
+    private final String lang;
+    private final String owner;
+    private int redirects;
+
+    /**
+     * Constructs and initializes a new ParserContext object.
+     *
+     * @param generator the generator object that generates the output
+     * returned to the user
+     * @param lang the language of the UI
+     * @param owner owner of the location
+     */
+    public ParserContext(Generator generator, String lang, String owner) {
+        this.generator = generator;
+        this.lang = lang;
+        this.owner = owner;
+    }
+
+    /**
+     * Returns the generator object that generates the output returned to the
+     * user.
+     *
+     * @return generator object
+     */
+    public Generator getGenerator() {
+        return generator;
+    }
+
+    /**
+     * Returns the language of the UI.
+     *
+     * @return language code
+     */
+    public String getLang() {
+        return lang;
+    }
+
+    /**
+     * Returns the owner of the location.
+     *
+     * @return owner code
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the number of not found redirects that have been applied during
+     * the request.
+     *
+     * @return number of not found redirects
+     */
+    public int getRedirects() {
+        return redirects;
+    }
+
+    /**
+     * Increments the number of not found redirects that have been applied
+     * during the request.
+     */
+    public void addRedirect() {
+        this.redirects++;
+    }
+}
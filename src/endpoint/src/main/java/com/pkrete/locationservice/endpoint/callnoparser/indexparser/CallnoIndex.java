@@ -0,0 +1,195 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.callnoparser.indexparser;
+
+import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
+import java.text.RuleBasedCollator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * This class represents an in-memory call number index of a single owner. The
+ * index contains separate {@link CallnoTrie CallnoTrie} objects for shelves,
+ * collections and libraries, and it's built from the search index entries of
+ * the owner. The entries must be given in descending call number order, which
+ * is the order used by the database queries.
+ *
+ * Collections that don't have a location code are not added to the index, as
+ * they're skipped by the call number parsers.
+ *
+ * If the index is created with an interval pattern, it also provides a
+ * {@link CallnoIntervalIndex CallnoIntervalIndex} for every location type.
+ * Interval indexes are built when they're requested for the first time.
+ *
+ * CallnoIndex objects are immutable after they've been created, and they can
+ * be shared between multiple threads.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CallnoIndex {
+
+    private final String owner;
+    private final CallnoTrie shelves;
+    private final CallnoTrie collections;
+    private final CallnoTrie libraries;
+    private final long created;
+    private final Pattern pattern;
+    private final RuleBasedCollator collator;
+    private CallnoIntervalIndex shelfIntervals;
+    private CallnoIntervalIndex collectionIntervals;
+    private CallnoIntervalIndex libraryIntervals;
+
+    /**
+     * Constructs and initializes a new CallnoIndex object without interval
+     * support.
+     *
+     * @param owner owner code of the locations
+     * @param shelves search index entries of shelves
+     * @param collections search index entries of collections
+     * @param libraries search index entries of libraries
+     */
+    public CallnoIndex(String owner, List<SimpleLocation> shelves, List<SimpleLocation> collections, List<SimpleLocation> libraries) {
+        this(owner, shelves, collections, libraries, null, null);
+    }
+
+    /**
+     * Constructs and initializes a new CallnoIndex object.
+     *
+     * @param owner owner code of the locations
+     * @param shelves search index entries of shelves
+     * @param collections search index entries of collections
+     * @param libraries search index entries of libraries
+     * @param pattern syntax of the interval definition
+     * @param collator RuleBasedCollator that's used for call number comparisons
+     */
+    public CallnoIndex(String owner, List<SimpleLocation> shelves, List<SimpleLocation> collections, List<SimpleLocation> libraries, Pattern pattern, RuleBasedCollator collator) {
+        this.owner = owner;
+        this.pattern = pattern;
+        this.collator = collator;
+        this.shelves = new CallnoTrie();
+        this.collections = new CallnoTrie();
+        this.libraries = new CallnoTrie();
+        this.created = System.currentTimeMillis();
+
+        for (SimpleLocation location : shelves) {
+            this.shelves.add(location);
+        }
+        for (SimpleLocation location : collections) {
+            if (location.getLocationCode() == null || location.getLocationCode().isEmpty()) {
+                continue;
+            }
+            this.collections.add(location);
+        }
+        for (SimpleLocation location : libraries) {
+            this.libraries.add(location);
+        }
+    }
+
+    /**
+     * Returns the owner code of the locations in this index.
+     *
+     * @return owner code
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the shelves of this index.
+     *
+     * @return shelves
+     */
+    public CallnoTrie getShelves() {
+        return shelves;
+    }
+
+    /**
+     * Returns the collections of this index.
+     *
+     * @return collections
+     */
+    public CallnoTrie getCollections() {
+        return collections;
+    }
+
+    /**
+     * Returns the libraries of this index.
+     *
+     * @return libraries
+     */
+    public CallnoTrie getLibraries() {
+        return libraries;
+    }
+
+    /**
+     * Returns the interval index of the shelves. If this index doesn't support
+     * intervals, null is returned.
+     *
+     * @return interval index of the shelves or null
+     */
+    public synchronized CallnoIntervalIndex getShelfIntervals() {
+        if (this.shelfIntervals == null && this.pattern != null) {
+            this.shelfIntervals = new CallnoIntervalIndex(this.shelves, this.pattern, this.collator);
+        }
+        return this.shelfIntervals;
+    }
+
+    /**
+     * Returns the interval index of the collections. If this index doesn't
+     * support intervals, null is returned.
+     *
+     * @return interval index of the collections or null
+     */
+    public synchronized CallnoIntervalIndex getCollectionIntervals() {
+        if (this.collectionIntervals == null && this.pattern != null) {
+            this.collectionIntervals = new CallnoIntervalIndex(this.collections, this.pattern, this.collator);
+        }
+        return this.collectionIntervals;
+    }
+
+    /**
+     * Returns the interval index of the libraries. If this index doesn't
+     * support intervals, null is returned.
+     *
+     * @return interval index of the libraries or null
+     */
+    public synchronized CallnoIntervalIndex getLibraryIntervals() {
+        if (this.libraryIntervals == null && this.pattern != null) {
+            this.libraryIntervals = new CallnoIntervalIndex(this.libraries, this.pattern, this.collator);
+        }
+        return this.libraryIntervals;
+    }
+
+    /**
+     * Returns the time when this index was created in milliseconds.
+     *
+     * @return creation time in milliseconds
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Returns the total number of locations in this index.
+     *
+     * @return number of locations
+     */
+    public int size() {
+        return this.shelves.size() + this.collections.size() + this.libraries.size();
+    }
+}
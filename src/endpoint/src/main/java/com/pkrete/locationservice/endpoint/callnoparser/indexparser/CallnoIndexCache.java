@@ -0,0 +1,122 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.callnoparser.indexparser;
+
+import com.pkrete.locationservice.endpoint.cache.ExpiringCache;
+import com.pkrete.locationservice.endpoint.service.Service;
+import com.pkrete.locationservice.endpoint.util.LocationHelper;
+import com.pkrete.locationservice.endpoint.util.LocationServiceConstants;
+import java.text.RuleBasedCollator;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class holds the {@link CallnoIndex CallnoIndex} objects of all the
+ * owners in memory. The index of an owner is built from the search index
+ * entries returned by the Service object when it's requested for the first
+ * time, and after that it's kept in memory until it expires or it's
+ * invalidated. Expired indexes are rebuilt on the next request. The index of
+ * an owner is built by one thread at a time, see
+ * {@link ExpiringCache ExpiringCache}.
+ *
+ * If the time to live is negative, the indexes never expire and they must be
+ * invalidated explicitly.
+ *
+ * The interval regex, language and country are used for building the
+ * interval indexes, and they must match the settings of the call number
+ * parsers using this cache.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CallnoIndexCache extends ExpiringCache<CallnoIndex> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CallnoIndexCache.class.getName());
+    private Service dbService;
+    private String regex = LocationServiceConstants.INTERVAL_REGEX;
+    private String language = LocationServiceConstants.LANGUAGE;
+    private String country = LocationServiceConstants.COUNTRY;
+
+    /**
+     * Constructs and initializes a new CallnoIndexCache object.
+     */
+    public CallnoIndexCache() {
+        super("Call number index");
+    }
+
+    /**
+     * Changes the service object that's used for loading the search index
+     * entries.
+     *
+     * @param dbService new value
+     */
+    public void setDbService(Service dbService) {
+        this.dbService = dbService;
+    }
+
+    /**
+     * Sets the regex that's used for parsing interval definitions from call
+     * numbers.
+     *
+     * @param regex new regex
+     */
+    public void setRegex(String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * Sets language of the locale that's used for call number interval
+     * matching. Default is "fi".
+     *
+     * @param language language code (two lower case characters)
+     */
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    /**
+     * Sets country of the locale that's used for call number interval matching.
+     * Default is "FI".
+     *
+     * @param country country code (two upper case characters)
+     */
+    public void setCountry(String country) {
+        this.country = country;
+    }
+
+    /**
+     * Builds a new call number index for the given owner.
+     *
+     * @param owner owner code
+     * @return new call number index
+     */
+    @Override
+    protected CallnoIndex load(String owner) {
+        long start = System.currentTimeMillis();
+        // Every index gets its own collator, because RuleBasedCollator
+        // synchronizes all the comparisons
+        RuleBasedCollator collator = LocationHelper.createCollator(this.language, this.country);
+        CallnoIndex index = new CallnoIndex(owner,
+                this.dbService.getShelvesFromIndex(owner),
+                this.dbService.getCollectionsFromIndex(owner),
+                this.dbService.getLibrariesFromIndex(owner),
+                Pattern.compile(this.regex), collator);
+        logger.info("Call number index of owner \"{}\" built. {} locations indexed in {} ms.", owner, index.size(), System.currentTimeMillis() - start);
+        return index;
+    }
+}
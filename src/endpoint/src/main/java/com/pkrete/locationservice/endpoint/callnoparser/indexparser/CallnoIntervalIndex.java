@@ -0,0 +1,404 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.callnoparser.indexparser;
+
+import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
+import java.text.CollationKey;
+import java.text.RuleBasedCollator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class implements a precompiled index of call number intervals. Every
+ * call number that contains an interval definition is parsed only once into a
+ * base, an interval start and an interval end. The start and end are stored as
+ * CollationKey objects, so that they don't have to be processed by the
+ * collator again.
+ *
+ * The intervals are grouped by their base, and inside a group by the lengths
+ * of the interval start and end. Each sub group is sorted by the interval
+ * start, which makes it possible to binary search the intervals that begin
+ * before the given call number. The interval ends of the sub group are stored
+ * in a merge sort tree, which returns the lowest rank of the intervals that
+ * begin before the call number and end after it. The lookup time is
+ * O(log^2 n) in the size of the sub group, no matter how many intervals
+ * overlap.
+ *
+ * The matching rules are the same that are implemented by the
+ * {@link com.pkrete.locationservice.endpoint.util.LocationHelper#match(String, String, Pattern, RuleBasedCollator) LocationHelper.match}
+ * method. If several intervals match, the one with the lowest rank is
+ * returned.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CallnoIntervalIndex {
+
+    private static final Comparator<Interval> START_COMPARATOR = new Comparator<Interval>() {
+        @Override
+        public int compare(Interval i1, Interval i2) {
+            return i1.startKey.compareTo(i2.startKey);
+        }
+    };
+    private final RuleBasedCollator collator;
+    private final Map<String, Group[]> groups;
+    private final int size;
+
+    /**
+     * Constructs and initializes a new CallnoIntervalIndex object. All the
+     * locations of the given trie, which call number contains an interval
+     * definition, are added to the index. The rank of the location in the trie
+     * is used as the rank of the interval.
+     *
+     * @param trie locations to be indexed
+     * @param pattern syntax of the interval definition
+     * @param collator RuleBasedCollator that's used for call number comparisons
+     */
+    public CallnoIntervalIndex(CallnoTrie trie, Pattern pattern, RuleBasedCollator collator) {
+        this.collator = collator;
+        this.groups = new HashMap<String, Group[]>();
+
+        Map<String, Map<String, List<Interval>>> temp = new HashMap<String, Map<String, List<Interval>>>();
+        int count = 0;
+        for (int rank = 0; rank < trie.size(); rank++) {
+            Interval interval = this.parse(trie.get(rank).getCallNo(), rank, pattern);
+            if (interval == null) {
+                continue;
+            }
+            Map<String, List<Interval>> group = temp.get(interval.base);
+            if (group == null) {
+                group = new HashMap<String, List<Interval>>();
+                temp.put(interval.base, group);
+            }
+            String lengths = interval.start.length() + "-" + interval.end.length();
+            List<Interval> list = group.get(lengths);
+            if (list == null) {
+                list = new ArrayList<Interval>();
+                group.put(lengths, list);
+            }
+            list.add(interval);
+            count++;
+        }
+        this.size = count;
+
+        for (Map.Entry<String, Map<String, List<Interval>>> entry : temp.entrySet()) {
+            Group[] group = new Group[entry.getValue().size()];
+            int i = 0;
+            for (List<Interval> list : entry.getValue().values()) {
+                Interval[] intervals = list.toArray(new Interval[list.size()]);
+                Arrays.sort(intervals, START_COMPARATOR);
+                group[i++] = new Group(intervals);
+            }
+            this.groups.put(entry.getKey(), group);
+        }
+    }
+
+    /**
+     * Returns the rank of the interval that contains the given call number. If
+     * there are multiple matching intervals, the lowest rank is returned. Only
+     * intervals which rank is lower than the given limit are taken into
+     * account. If no interval matches the given call number, -1 is returned.
+     *
+     * @param callno call number to be searched
+     * @param limit upper limit for the rank, exclusive
+     * @return rank of the matching interval or -1
+     */
+    public int findRank(String callno, int limit) {
+        int result = -1;
+        int length = callno.length();
+        // Collation keys of the call number prefixes by length
+        Map<Integer, CollationKey> keys = new HashMap<Integer, CollationKey>();
+
+        for (int i = 0; i <= length; i++) {
+            // The base must be found from the beginning of the call number
+            // and it must end at a word boundary
+            if (i < length && callno.charAt(i) != ' ') {
+                continue;
+            }
+            Group[] group = this.groups.get(callno.substring(0, i));
+            if (group == null) {
+                continue;
+            }
+            for (Group sub : group) {
+                // Call number can not be longer than interval start
+                CollationKey key = this.getKey(callno, sub.startLength, keys);
+                // Intervals that begin before the call number
+                int count = this.upperBound(sub.intervals, key);
+                if (count == 0) {
+                    continue;
+                }
+                int rank;
+                if (length < sub.endLength) {
+                    // Call number is compared to the beginning of the
+                    // interval end
+                    rank = this.getPrefixEnds(sub, length).findMin(count, this.getKey(callno, length, keys));
+                } else {
+                    // Interval end can't be longer than the call number
+                    rank = sub.ends.findMin(count, this.getKey(callno, sub.endLength, keys));
+                }
+                if (rank < limit && (result < 0 || rank < result)) {
+                    result = rank;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of intervals in this index.
+     *
+     * @return number of intervals
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Parses the given call number into an Interval object. If the call number
+     * doesn't contain an interval definition, null is returned.
+     *
+     * @param callno call number to be parsed
+     * @param rank rank of the call number
+     * @param pattern syntax of the interval definition
+     * @return new Interval object or null
+     */
+    private Interval parse(String callno, int rank, Pattern pattern) {
+        Matcher matcher = pattern.matcher(callno);
+        if (!matcher.find()) {
+            return null;
+        }
+        String group1 = matcher.group(1);
+        String group2 = matcher.group(2);
+        String base = matcher.replaceAll("");
+        Interval interval = new Interval();
+        interval.rank = rank;
+        interval.base = base.trim();
+        interval.start = base + group1;
+        interval.end = base + group2;
+        interval.startKey = this.collator.getCollationKey(interval.start);
+        interval.endKey = this.collator.getCollationKey(interval.end);
+        return interval;
+    }
+
+    /**
+     * Returns the tree of the interval ends of the given sub group truncated
+     * to the given length. The trees are needed only for call numbers that
+     * are shorter than the interval ends, and they're created when they're
+     * needed for the first time.
+     *
+     * @param group sub group of intervals
+     * @param length length of the call number
+     * @return tree of the truncated interval ends
+     */
+    private EndTree getPrefixEnds(Group group, int length) {
+        EndTree tree = group.prefixEnds.get(length);
+        if (tree == null) {
+            CollationKey[] ends = new CollationKey[group.intervals.length];
+            for (int i = 0; i < ends.length; i++) {
+                ends[i] = this.collator.getCollationKey(group.intervals[i].end.substring(0, length));
+            }
+            tree = new EndTree(ends, group.intervals);
+            EndTree previous = group.prefixEnds.putIfAbsent(length, tree);
+            if (previous != null) {
+                tree = previous;
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Returns the collation key of the given call number truncated to the given
+     * length. The keys are cached in the given map.
+     *
+     * @param callno call number
+     * @param length maximum length of the call number
+     * @param keys collation keys of the call number prefixes
+     * @return collation key of the call number prefix
+     */
+    private CollationKey getKey(String callno, int length, Map<Integer, CollationKey> keys) {
+        if (length > callno.length()) {
+            length = callno.length();
+        }
+        CollationKey key = keys.get(length);
+        if (key == null) {
+            key = this.collator.getCollationKey(callno.substring(0, length));
+            keys.put(length, key);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the number of intervals which start is smaller than or equal to
+     * the given key.
+     *
+     * @param intervals intervals sorted by interval start
+     * @param key collation key of the call number
+     * @return number of intervals beginning before the call number
+     */
+    private int upperBound(Interval[] intervals, CollationKey key) {
+        int low = 0;
+        int high = intervals.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (intervals[mid].startKey.compareTo(key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Parsed interval definition.
+     */
+    private static class Interval {
+
+        private int rank;
+        private String base;
+        private String start;
+        private String end;
+        private CollationKey startKey;
+        private CollationKey endKey;
+    }
+
+    /**
+     * Intervals that have the same base, and which starts and ends have the
+     * same length. The intervals are sorted by interval start.
+     */
+    private static class Group {
+
+        private final Interval[] intervals;
+        private final int startLength;
+        private final int endLength;
+        private final EndTree ends;
+        private final ConcurrentMap<Integer, EndTree> prefixEnds;
+
+        Group(Interval[] intervals) {
+            this.intervals = intervals;
+            this.startLength = intervals[0].start.length();
+            this.endLength = intervals[0].end.length();
+            CollationKey[] keys = new CollationKey[intervals.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = intervals[i].endKey;
+            }
+            this.ends = new EndTree(keys, intervals);
+            this.prefixEnds = new ConcurrentHashMap<Integer, EndTree>();
+        }
+    }
+
+    /**
+     * Merge sort tree of interval ends. Every node covers a range of the
+     * intervals of a sub group, and it holds the ends of those intervals in
+     * descending order together with the lowest rank seen so far. The
+     * intervals that begin before a call number are covered by O(log n)
+     * nodes, and each node is binary searched for the ends that are not
+     * smaller than the call number.
+     */
+    private static class EndTree {
+
+        private final int size;
+        private final CollationKey[][] ends;
+        private final int[][] ranks;
+
+        EndTree(CollationKey[] keys, Interval[] intervals) {
+            this.size = keys.length;
+            this.ends = new CollationKey[4 * this.size][];
+            this.ranks = new int[4 * this.size][];
+            this.build(1, 0, this.size, keys, intervals);
+        }
+
+        /**
+         * Returns the lowest rank of the first count intervals which end is
+         * greater than or equal to the given key. If there's no such
+         * interval, Integer.MAX_VALUE is returned.
+         *
+         * @param count number of intervals from the beginning
+         * @param key collation key of the call number
+         * @return lowest rank or Integer.MAX_VALUE
+         */
+        int findMin(int count, CollationKey key) {
+            return this.findMin(1, 0, this.size, count, key);
+        }
+
+        private int findMin(int node, int low, int high, int count, CollationKey key) {
+            if (low >= count) {
+                return Integer.MAX_VALUE;
+            }
+            if (high <= count) {
+                CollationKey[] nodeEnds = this.ends[node];
+                int lo = 0;
+                int hi = nodeEnds.length;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (nodeEnds[mid].compareTo(key) >= 0) {
+                        lo = mid + 1;
+                    } else {
+                        hi = mid;
+                    }
+                }
+                return lo == 0 ? Integer.MAX_VALUE : this.ranks[node][lo - 1];
+            }
+            int mid = (low + high) >>> 1;
+            return Math.min(this.findMin(2 * node, low, mid, count, key), this.findMin(2 * node + 1, mid, high, count, key));
+        }
+
+        /**
+         * Builds the given node and returns the positions of its intervals
+         * sorted by interval end in descending order.
+         */
+        private int[] build(int node, int low, int high, CollationKey[] keys, Interval[] intervals) {
+            int[] sorted;
+            if (high - low == 1) {
+                sorted = new int[]{low};
+            } else {
+                int mid = (low + high) >>> 1;
+                int[] left = this.build(2 * node, low, mid, keys, intervals);
+                int[] right = this.build(2 * node + 1, mid, high, keys, intervals);
+                sorted = new int[left.length + right.length];
+                int i = 0;
+                int j = 0;
+                for (int k = 0; k < sorted.length; k++) {
+                    if (j == right.length || (i < left.length && keys[left[i]].compareTo(keys[right[j]]) >= 0)) {
+                        sorted[k] = left[i++];
+                    } else {
+                        sorted[k] = right[j++];
+                    }
+                }
+            }
+            CollationKey[] nodeEnds = new CollationKey[sorted.length];
+            int[] nodeRanks = new int[sorted.length];
+            int min = Integer.MAX_VALUE;
+            for (int k = 0; k < sorted.length; k++) {
+                nodeEnds[k] = keys[sorted[k]];
+                min = Math.min(min, intervals[sorted[k]].rank);
+                nodeRanks[k] = min;
+            }
+            this.ends[node] = nodeEnds;
+            this.ranks[node] = nodeRanks;
+            return sorted;
+        }
+    }
+}
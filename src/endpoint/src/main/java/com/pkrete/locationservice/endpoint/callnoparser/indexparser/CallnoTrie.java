@@ -0,0 +1,181 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.callnoparser.indexparser;
+
+import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class implements a word-boundary prefix trie that's keyed on call
+ * numbers. Every location added to the trie gets a rank that equals to its
+ * position in the insertion order. The locations must be added in the same
+ * order in which they would be scanned linearly, e.g. in descending call
+ * number order.
+ *
+ * A location matches the given call number, if and only if its call number
+ * matches according to the
+ * {@link com.pkrete.locationservice.endpoint.util.LocationHelper#match(String, String) LocationHelper.match}
+ * method. If there are several matching locations, the one with the lowest
+ * rank is returned, which means that the result is always the same that a
+ * linear scan would return. Searching the trie requires O(length of call
+ * number) steps regardless of the number of locations.
+ *
+ * After the trie has been built, it can be safely shared between multiple
+ * threads, as long as no more locations are added.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CallnoTrie {
+
+    private final Node root;
+    private final List<SimpleLocation> locations;
+
+    /**
+     * Constructs and initializes a new empty CallnoTrie object.
+     */
+    public CallnoTrie() {
+        this.root = new Node();
+        this.locations = new ArrayList<SimpleLocation>();
+    }
+
+    /**
+     * Adds the given location to the trie. The rank of the location is the
+     * number of locations added before it. Locations which call number is null
+     * are ignored. If a location with the same call number has already been
+     * added, the new location gets a rank, but it can never be returned by the
+     * find method, because a linear scan would never reach it.
+     *
+     * @param location location to be added
+     */
+    public void add(SimpleLocation location) {
+        if (location == null || location.getCallNo() == null) {
+            return;
+        }
+        int rank = this.locations.size();
+        this.locations.add(location);
+        String callno = location.getCallNo();
+        Node node = this.root;
+        for (int i = 0; i < callno.length(); i++) {
+            node = node.getOrCreateChild(callno.charAt(i));
+        }
+        if (node.rank < 0) {
+            node.rank = rank;
+        }
+    }
+
+    /**
+     * Returns the rank of the location that matches the given call number. If
+     * there are multiple matching locations, the lowest rank is returned. If no
+     * location matches the given call number, -1 is returned.
+     *
+     * @param callno call number to be searched
+     * @return rank of the matching location or -1
+     */
+    public int findRank(String callno) {
+        int result = -1;
+        Node node = this.root;
+        int length = callno.length();
+        for (int i = 0; node != null; i++) {
+            // The call number of the node must end at a word boundary
+            if (node.rank >= 0 && (i == length || callno.charAt(i) == ' ')) {
+                if (result < 0 || node.rank < result) {
+                    result = node.rank;
+                }
+            }
+            if (i == length) {
+                break;
+            }
+            node = node.getChild(callno.charAt(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the location that matches the given call number. If there are
+     * multiple matching locations, the one with the lowest rank is returned.
+     * If no location matches the given call number, null is returned.
+     *
+     * @param callno call number to be searched
+     * @return matching location or null
+     */
+    public SimpleLocation find(String callno) {
+        int rank = this.findRank(callno);
+        if (rank < 0) {
+            return null;
+        }
+        return this.locations.get(rank);
+    }
+
+    /**
+     * Returns the location with the given rank.
+     *
+     * @param rank rank of the location
+     * @return location with the given rank
+     */
+    public SimpleLocation get(int rank) {
+        return this.locations.get(rank);
+    }
+
+    /**
+     * Returns the number of locations in this trie.
+     *
+     * @return number of locations in this trie
+     */
+    public int size() {
+        return this.locations.size();
+    }
+
+    /**
+     * A single node of the trie. Child nodes are stored in arrays sorted by
+     * the character leading to the child, so that looking up a child is a
+     * binary search.
+     */
+    private static class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int rank = -1;
+
+        private Node getChild(char c) {
+            int idx = Arrays.binarySearch(this.keys, c);
+            return idx < 0 ? null : this.children[idx];
+        }
+
+        private Node getOrCreateChild(char c) {
+            int idx = Arrays.binarySearch(this.keys, c);
+            if (idx >= 0) {
+                return this.children[idx];
+            }
+            int pos = -idx - 1;
+            char[] newKeys = new char[this.keys.length + 1];
+            Node[] newChildren = new Node[this.children.length + 1];
+            System.arraycopy(this.keys, 0, newKeys, 0, pos);
+            System.arraycopy(this.children, 0, newChildren, 0, pos);
+            System.arraycopy(this.keys, pos, newKeys, pos + 1, this.keys.length - pos);
+            System.arraycopy(this.children, pos, newChildren, pos + 1, this.children.length - pos);
+            Node child = new Node();
+            newKeys[pos] = c;
+            newChildren[pos] = child;
+            this.keys = newKeys;
+            this.children = newChildren;
+            return child;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package com.pkrete.locationservice.endpoint.callnoparser.indexparser;
 
 import com.pkrete.locationservice.endpoint.callnoparser.CallNoParser;
 import com.pkrete.locationservice.endpoint.callnoparser.LocatingStrategy;
+import com.pkrete.locationservice.endpoint.callnoparser.ParserContext;
 import com.pkrete.locationservice.endpoint.generator.Generator;
 import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
 import com.pkrete.locationservice.endpoint.util.LocationHelper;
@@ -35,6 +36,12 @@ import java.util.List;
  */
 public class IndexCallNoParser extends CallNoParser {
 
+    /**
+     * In-memory call number index. If index cache is not set, the search index
+     * entries are read from the database on every request.
+     */
+    private CallnoIndexCache indexCache;
+
     /**
      * Constructs and initializes a IndexCallNoParser object.
      */
@@ -43,26 +50,30 @@ public class IndexCallNoParser extends CallNoParser {
     }
 
     /**
-     * Constructs and initializes a IndexCallNoParser object with the given
-     * generator.
+     * Sets the cache that holds the in-memory call number indexes.
      *
-     * @param generator the generator object that generates the html page
-     * returned to the user
+     * @param indexCache new value
      */
-    public IndexCallNoParser(Generator generator) {
-        super(generator);
+    public void setIndexCache(CallnoIndexCache indexCache) {
+        this.indexCache = indexCache;
     }
 
     /**
      * Searches the given call number from the database.
      *
      * @param callno the call number to be handled
-     * @param lang the language of the UI
-     * @param owner owner of the location
+     * @param context context of the request
      * @return the HTML page returned to the user
      */
     @Override
-    public String parse(String callno, String lang, String owner) {
+    public String parse(String callno, ParserContext context) {
+        Generator generator = context.getGenerator();
+        String lang = context.getLang();
+        String owner = context.getOwner();
+        if (this.indexCache != null) {
+            return this.parseFromIndex(callno, context);
+        }
+
         List<SimpleLocation> list = dbService.getShelvesFromIndex(owner);
         for (SimpleLocation index : list) {
             if (LocationHelper.match(index.getCallNo(), callno)) {
@@ -87,6 +98,39 @@ public class IndexCallNoParser extends CallNoParser {
             }
         }
 
-        return notFound(callno, lang, owner);
+        return notFound(callno, context);
+    }
+
+    /**
+     * Searches the given call number from the in-memory call number index of
+     * the owner. The result is the same that scanning the search index entries
+     * in descending call number order would return.
+     *
+     * @param callno the call number to be handled
+     * @param context context of the request
+     * @return the HTML page returned to the user
+     */
+    private String parseFromIndex(String callno, ParserContext context) {
+        Generator generator = context.getGenerator();
+        String lang = context.getLang();
+        String owner = context.getOwner();
+        CallnoIndex index = this.indexCache.get(owner);
+
+        SimpleLocation location = index.getShelves().find(callno);
+        if (location != null) {
+            return generator.generateOutput(dbService.getShelf(location.getLocationId()), lang, callno);
+        }
+
+        location = index.getCollections().find(callno);
+        if (location != null) {
+            return generator.generateOutput(dbService.getCollection(location.getLocationId()), lang, callno);
+        }
+
+        location = index.getLibraries().find(callno);
+        if (location != null) {
+            return generator.generateOutput(dbService.getLibrary(location.getLocationId()), lang, callno);
+        }
+
+        return notFound(callno, context);
     }
 }
@@ -19,14 +19,13 @@ package com.pkrete.locationservice.endpoint.callnoparser.indexparser;
 
 import com.pkrete.locationservice.endpoint.callnoparser.CallNoParser;
 import com.pkrete.locationservice.endpoint.callnoparser.LocatingStrategy;
+import com.pkrete.locationservice.endpoint.callnoparser.ParserContext;
 import com.pkrete.locationservice.endpoint.generator.Generator;
 import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
 import com.pkrete.locationservice.endpoint.util.LocationHelper;
 import com.pkrete.locationservice.endpoint.util.LocationServiceConstants;
-import java.text.Collator;
 import java.text.RuleBasedCollator;
 import java.util.List;
-import java.util.Locale;
 import java.util.regex.Pattern;
 
 /**
@@ -42,9 +41,15 @@ import java.util.regex.Pattern;
  */
 public class IndexIntervalCallNoParser extends CallNoParser {
 
-    private String regex = LocationServiceConstants.INTERVAL_REGEX;
+    private Pattern pattern = Pattern.compile(LocationServiceConstants.INTERVAL_REGEX);
     private String language = LocationServiceConstants.LANGUAGE;
     private String country = LocationServiceConstants.COUNTRY;
+    private volatile RuleBasedCollator collator = LocationHelper.createCollator(this.language, this.country);
+    /**
+     * In-memory call number index. If index cache is not set, the search index
+     * entries are read from the database on every request.
+     */
+    private CallnoIndexCache indexCache;
 
     /**
      * Constructs and initializes a IndexIntervalCallNoParser object.
@@ -53,17 +58,6 @@ public class IndexIntervalCallNoParser extends CallNoParser {
         super(LocatingStrategy.INDEX_INTERVAL);
     }
 
-    /**
-     * Constructs and initializes a IndexIntervalCallNoParser object with the
-     * given generator.
-     *
-     * @param generator the generator object that generates the html page
-     * returned to the user
-     */
-    public IndexIntervalCallNoParser(Generator generator) {
-        super(generator);
-    }
-
     /**
      * Sets the regex that's used for parsing interval definitions from call
      * numbers.
@@ -71,7 +65,7 @@ public class IndexIntervalCallNoParser extends CallNoParser {
      * @param regex new regex
      */
     public void setRegex(String regex) {
-        this.regex = regex;
+        this.pattern = Pattern.compile(regex);
     }
 
     /**
@@ -80,8 +74,9 @@ public class IndexIntervalCallNoParser extends CallNoParser {
      *
      * @param language language code (two lower case characters)
      */
-    public void setLanguage(String language) {
+    public synchronized void setLanguage(String language) {
         this.language = language;
+        this.collator = LocationHelper.createCollator(this.language, this.country);
     }
 
     /**
@@ -90,29 +85,49 @@ public class IndexIntervalCallNoParser extends CallNoParser {
      *
      * @param country country code (two upper case characters)
      */
-    public void setCountry(String country) {
+    public synchronized void setCountry(String country) {
         this.country = country;
+        this.collator = LocationHelper.createCollator(this.language, this.country);
+    }
+
+    /**
+     * Sets the cache that holds the in-memory call number indexes.
+     *
+     * @param indexCache new value
+     */
+    public void setIndexCache(CallnoIndexCache indexCache) {
+        this.indexCache = indexCache;
+    }
+
+    /**
+     * Returns the RuleBasedCollator object that's used for call number
+     * comparisons. The collator is created when the locale is set.
+     *
+     * @return RuleBasedCollator object
+     */
+    private RuleBasedCollator getCollator() {
+        return this.collator;
     }
 
     /**
      * Searches the given call number from the database.
      *
      * @param callno the call number to be handled
-     * @param lang the language of the UI
-     * @param owner owner of the location
+     * @param context context of the request
      * @return the HTML page returned to the user
      */
     @Override
-    public String parse(String callno, String lang, String owner) {
-        // Compile call number interval regex
-        Pattern pattern = Pattern.compile(regex);
-        // Create new Locale for Collator
-        Locale locale = new Locale(language, country);
-        // Get RuleBasedCollator object for call number comparisons
-        RuleBasedCollator collator = (RuleBasedCollator) Collator.getInstance(locale);
-        // Using the PRIMARY strength - base is taken into account,
-        // accent and case are ignored
-        collator.setStrength(Collator.PRIMARY);
+    public String parse(String callno, ParserContext context) {
+        Generator generator = context.getGenerator();
+        String lang = context.getLang();
+        String owner = context.getOwner();
+        if (this.indexCache != null) {
+            return this.parseFromIndex(callno, context);
+        }
+        // Precompiled call number interval regex
+        Pattern pattern = this.pattern;
+        // RuleBasedCollator object for call number comparisons
+        RuleBasedCollator collator = this.getCollator();
 
         // Get list of shelves from the index
         List<SimpleLocation> list = (List) dbService.getShelvesFromIndex(owner);
@@ -144,6 +159,59 @@ public class IndexIntervalCallNoParser extends CallNoParser {
             }
         }
 
-        return notFound(callno, lang, owner);
+        return notFound(callno, context);
+    }
+
+    /**
+     * Searches the given call number from the in-memory call number index of
+     * the owner. The result is the same that scanning the search index entries
+     * in descending call number order would return.
+     *
+     * @param callno the call number to be handled
+     * @param context context of the request
+     * @return the HTML page returned to the user
+     */
+    private String parseFromIndex(String callno, ParserContext context) {
+        Generator generator = context.getGenerator();
+        String lang = context.getLang();
+        String owner = context.getOwner();
+        CallnoIndex index = this.indexCache.get(owner);
+
+        SimpleLocation location = this.find(index.getShelves(), index.getShelfIntervals(), callno);
+        if (location != null) {
+            return generator.generateOutput(dbService.getShelf(location.getLocationId()), lang, callno);
+        }
+
+        location = this.find(index.getCollections(), index.getCollectionIntervals(), callno);
+        if (location != null) {
+            return generator.generateOutput(dbService.getCollection(location.getLocationId()), lang, callno);
+        }
+
+        location = this.find(index.getLibraries(), index.getLibraryIntervals(), callno);
+        if (location != null) {
+            return generator.generateOutput(dbService.getLibrary(location.getLocationId()), lang, callno);
+        }
+
+        return notFound(callno, context);
+    }
+
+    /**
+     * Returns the first location in the given trie that matches the given call
+     * number either directly or by an interval definition. The direct match is
+     * looked up from the trie, and the interval match from the interval index.
+     * If both exist, the one with the lower rank is returned.
+     *
+     * @param trie locations to be searched
+     * @param intervals interval index of the locations
+     * @param callno call number to be searched
+     * @return matching location or null
+     */
+    private SimpleLocation find(CallnoTrie trie, CallnoIntervalIndex intervals, String callno) {
+        int rank = trie.findRank(callno);
+        int intervalRank = intervals.findRank(callno, rank < 0 ? Integer.MAX_VALUE : rank);
+        if (intervalRank >= 0) {
+            return trie.get(intervalRank);
+        }
+        return rank < 0 ? null : trie.get(rank);
     }
 }
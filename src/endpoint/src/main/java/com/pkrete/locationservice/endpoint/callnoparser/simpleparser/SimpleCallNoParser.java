@@ -19,6 +19,7 @@ package com.pkrete.locationservice.endpoint.callnoparser.simpleparser;
 
 import com.pkrete.locationservice.endpoint.callnoparser.CallNoParser;
 import com.pkrete.locationservice.endpoint.callnoparser.LocatingStrategy;
+import com.pkrete.locationservice.endpoint.callnoparser.ParserContext;
 import com.pkrete.locationservice.endpoint.comparator.LocationComparator;
 import com.pkrete.locationservice.endpoint.generator.Generator;
 import com.pkrete.locationservice.endpoint.model.location.Location;
@@ -44,27 +45,18 @@ public class SimpleCallNoParser extends CallNoParser {
         super(LocatingStrategy.SIMPLE);
     }
 
-    /**
-     * Constructs and initializes a SimpleCallNoParser object with the given
-     * generator
-     *
-     * @param generator the generator object that generates the html page
-     * returned to the user
-     */
-    public SimpleCallNoParser(Generator generator) {
-        super(generator);
-    }
-
     /**
      * Searches the given call number from the database.
      *
      * @param callno the call number to be handled
-     * @param lang the language of the UI
-     * @param owner owner of the location
+     * @param context context of the request
      * @return the HTML page returned to the user
      */
     @Override
-    public String parse(String callno, String lang, String owner) {
+    public String parse(String callno, ParserContext context) {
+        Generator generator = context.getGenerator();
+        String lang = context.getLang();
+        String owner = context.getOwner();
         List<Location> list = dbService.getShelves(owner);
         Collections.sort(list, new LocationComparator());
         Collections.reverse(list);
@@ -95,6 +87,6 @@ public class SimpleCallNoParser extends CallNoParser {
             }
         }
 
-        return notFound(callno, lang, owner);
+        return notFound(callno, context);
     }
 }
@@ -19,83 +19,213 @@ package com.pkrete.locationservice.endpoint.callnoparser.stepparser;
 
 import com.pkrete.locationservice.endpoint.callnoparser.CallNoParser;
 import com.pkrete.locationservice.endpoint.callnoparser.LocatingStrategy;
+import com.pkrete.locationservice.endpoint.callnoparser.ParserContext;
 import com.pkrete.locationservice.endpoint.generator.Generator;
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.location.Shelf;
+import com.pkrete.locationservice.endpoint.util.LocationHelper;
+import com.pkrete.locationservice.endpoint.util.LocationServiceConstants;
+import java.text.CollationKey;
+import java.text.RuleBasedCollator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * The abstract <code>StepParser</code> class extends the
+ * The <code>StepParser</code> class extends the
  * {@link CallNoParser CallNoParser} class.
  *
- * StepParser follows the Chain of Responsibility design pattern which means
- * that it delegates the task to the next object in the chain if it's not able
- * to complete the given task. All the subclasses must implement the abstract
- * <i>parse</i> method defined in the CallNoParser base class.
+ * StepParser splits the given call number in words and generates all the
+ * contiguous word sequences (n-grams) of it. The n-grams are ordered so that
+ * longer sequences come first and sequences of the same length are ordered by
+ * their position in the call number, except single words that are ordered
+ * from the last word to the first one. Shelves, collections and libraries are
+ * then fetched with one query per location type, and the first location which
+ * location code matches an n-gram in the given order and which call number
+ * matches the given call number is returned.
+ *
+ * Only the first <i>maxDepth</i> words of the call number are taken into
+ * account.
  *
  * @author Petteri Kivimäki
  */
-public abstract class StepParser extends CallNoParser {
+public class StepParser extends CallNoParser {
 
     /**
-     * The maximum amount of words in the location information that the class in
-     * question can handle.
+     * The default maximum amount of words in the call number that are taken
+     * into account.
      */
-    protected int limit;
+    public static final int DEFAULT_MAX_DEPTH = 10;
     /**
-     * The next object in the chain.
+     * The maximum amount of words in the call number that are taken into
+     * account.
      */
-    protected StepParser next;
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    private String language = LocationServiceConstants.LANGUAGE;
+    private String country = LocationServiceConstants.COUNTRY;
+    private volatile RuleBasedCollator collator = LocationHelper.createCollator(this.language, this.country);
+
     /**
-     * The previous object in the chain.
+     * Constructs and initializes a StepParser object.
      */
-    protected StepParser previous;
+    public StepParser() {
+        super(LocatingStrategy.BASIC);
+    }
 
     /**
-     * Constructs and initializes new StepParser.
+     * Changes the maximum amount of words in the call number that are taken
+     * into account. Values smaller than one are ignored.
      *
-     * @param limit the maximum amount of words in the call number that the
-     * class can handle
+     * @param maxDepth new value
      */
-    protected StepParser(int limit) {
-        super(LocatingStrategy.BASIC);
-        this.limit = limit;
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth > 0) {
+            this.maxDepth = maxDepth;
+        }
     }
 
     /**
-     * Constructs and initializes new StepParser.
+     * Returns the maximum amount of words in the call number that are taken
+     * into account.
      *
-     * @param generator the generator object that generates the HTML page
-     * returned to the user
+     * @return maximum amount of words
      */
-    protected StepParser(Generator generator) {
-        super(generator);
+    public int getMaxDepth() {
+        return this.maxDepth;
     }
 
     /**
-     * Constructs and initializes a StepParser object with the given generator
-     * object and limit
+     * Sets language of the locale that's used for comparing location codes.
+     * Default is "fi".
      *
-     * @param generator the generator object that generates the HTML page
-     * returned to the user
-     * @param limit the maximum amount of words in the call number that the
-     * class can handle
+     * @param language language code (two lower case characters)
      */
-    protected StepParser(Generator generator, int limit) {
-        super(generator);
-        this.limit = limit;
+    public synchronized void setLanguage(String language) {
+        this.language = language;
+        this.collator = LocationHelper.createCollator(this.language, this.country);
+    }
+
+    /**
+     * Sets country of the locale that's used for comparing location codes.
+     * Default is "FI".
+     *
+     * @param country country code (two upper case characters)
+     */
+    public synchronized void setCountry(String country) {
+        this.country = country;
+        this.collator = LocationHelper.createCollator(this.language, this.country);
+    }
+
+    /**
+     * Searches the given call number from the database.
+     *
+     * @param callno the call number to be handled
+     * @param context context of the request
+     * @return the HTML page returned to the user
+     */
+    @Override
+    public String parse(String callno, ParserContext context) {
+        Generator generator = context.getGenerator();
+        String lang = context.getLang();
+        String owner = context.getOwner();
+        List<String> candidates = getCandidates(callno);
+        if (candidates.isEmpty()) {
+            return notFound(callno, context);
+        }
+
+        Shelf shelf = select(candidates, dbService.getShelvesByLocationCodes(candidates, owner), callno);
+        if (shelf != null) {
+            return generator.generateOutput(dbService.getShelf(shelf.getLocationId()), lang, callno);
+        }
+
+        LibraryCollection collection = select(candidates, dbService.getCollectionsByLocationCodes(candidates, owner), callno);
+        if (collection != null) {
+            return generator.generateOutput(dbService.getCollection(collection.getLocationId()), lang, callno);
+        }
+
+        Library library = select(candidates, dbService.getLibrariesByLocationCodes(candidates, owner), callno);
+        if (library != null) {
+            return generator.generateOutput(dbService.getLibrary(library.getLocationId()), lang, callno);
+        }
+
+        return notFound(callno, context);
+    }
+
+    /**
+     * Generates the n-grams of the given call number in the order in which
+     * they are matched against the location codes. Duplicates are removed so
+     * that only the first occurrence of each n-gram is kept.
+     *
+     * @param callno call number
+     * @return n-grams of the call number in precedence order
+     */
+    protected List<String> getCandidates(String callno) {
+        String[] words = callno.split(" ");
+        int depth = Math.min(words.length, maxDepth);
+        Set<String> candidates = new LinkedHashSet<String>();
+
+        for (int length = depth; length > 1; length--) {
+            for (int i = 0; i <= depth - length; i++) {
+                StringBuilder builder = new StringBuilder(words[i]);
+                for (int j = i + 1; j < i + length; j++) {
+                    builder.append(' ').append(words[j]);
+                }
+                candidates.add(builder.toString());
+            }
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            candidates.add(words[i]);
+        }
+        return new ArrayList<String>(candidates);
     }
 
     /**
-     * Constructs and initializes a StepParser object with the given generator
-     * object and limit
+     * Returns the first location which location code matches a candidate in
+     * the given order and which call number matches the given call number.
+     * Location codes are compared with the collator of the locale, which
+     * ignores case and accents like the case insensitive collation of the
+     * database does, so that every location returned by the database is found
+     * by the n-gram that matched it.
      *
-     * @param generator the generator object that generates the HTML page
-     * returned to the user
-     * @param limit the maximum amount of words in the call number that the
-     * class can handle
-     * @param previous CallNoParser object before this object in processing
-     * queue
+     * @param candidates n-grams in precedence order
+     * @param locations locations matching the n-grams
+     * @param callno call number
+     * @return matching location or null
      */
-    protected StepParser(Generator generator, int limit, StepParser previous) {
-        this(generator, limit);
-        this.previous = previous;
+    private <T extends Location> T select(List<String> candidates, List<T> locations, String callno) {
+        if (locations == null || locations.isEmpty()) {
+            return null;
+        }
+        RuleBasedCollator collator = this.collator;
+        Map<CollationKey, List<T>> byCode = new HashMap<CollationKey, List<T>>();
+        for (T location : locations) {
+            if (location.getLocationCode() == null) {
+                continue;
+            }
+            CollationKey key = collator.getCollationKey(location.getLocationCode());
+            List<T> list = byCode.get(key);
+            if (list == null) {
+                list = new ArrayList<T>();
+                byCode.put(key, list);
+            }
+            list.add(location);
+        }
+        for (String candidate : candidates) {
+            List<T> list = byCode.get(collator.getCollationKey(candidate));
+            if (list == null) {
+                continue;
+            }
+            for (T location : list) {
+                if (LocationHelper.match(location.getCallNo(), callno)) {
+                    return location;
+                }
+            }
+        }
+        return null;
     }
 }
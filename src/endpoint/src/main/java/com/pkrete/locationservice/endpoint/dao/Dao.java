@@ -39,8 +39,12 @@ public interface Dao {
 
     boolean save(SearchEvent event);
 
+    boolean save(List<SearchEvent> events);
+
     List getLibrary(String callno, String owner);
 
+    List<Library> getLibrariesByLocationCodes(List<String> callnos, String owner);
+
     List getLibraries(String owner);
 
     List<SearchIndex> getLibrariesFromIndex(String owner);
@@ -51,6 +55,8 @@ public interface Dao {
 
     List getCollection(String callno, String owner);
 
+    List<LibraryCollection> getCollectionsByLocationCodes(List<String> callnos, String owner);
+
     List getCollections(String owner);
 
     List<SearchIndex> getCollectionsFromIndex(String owner);
@@ -63,6 +69,8 @@ public interface Dao {
 
     List getShelf(String callno, String owner);
 
+    List<Shelf> getShelvesByLocationCodes(List<String> callnos, String owner);
+
     List getShelves(String owner);
 
     List<SearchIndex> getShelvesFromIndex(String owner);
@@ -87,6 +95,8 @@ public interface Dao {
 
     List<Library> getAllLocations(String owner);
 
+    List<Library> getAllLocations(String owner, int afterId, int maxResults);
+
     Owner getOwnerByCode(String code);
 
     LocatingStrategy getLocatingStrategy(String owner);
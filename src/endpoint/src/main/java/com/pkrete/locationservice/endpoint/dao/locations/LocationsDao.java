@@ -28,11 +28,19 @@ import com.pkrete.locationservice.endpoint.statistics.SearchEvent;
 import com.pkrete.locationservice.endpoint.model.location.Shelf;
 import com.pkrete.locationservice.endpoint.model.search.LocationType;
 import com.pkrete.locationservice.endpoint.model.search.SearchIndex;
+import com.pkrete.locationservice.endpoint.util.LocationServiceConstants;
+import java.util.ArrayList;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.springframework.orm.hibernate4.HibernateCallback;
 import org.springframework.orm.hibernate4.support.HibernateDaoSupport;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 /**
  * LocationDao class implements the Dao interface implementing all the methods
@@ -73,6 +81,49 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
         return true;
     }
 
+    /**
+     * Saves the given search events to the database. The events are flushed
+     * at once, so that the inserts are sent to the database in JDBC batches
+     * of hibernate.jdbc.batch_size statements. The events are removed from
+     * the session after flushing. If saving fails, none of the events is
+     * committed. Returns true if and only if all the search events were
+     * successfully added, otherwise false.
+     *
+     * @param events search events to be saved
+     * @return true if and only if all the events were successfully added;
+     * otherwise false
+     */
+    @Override
+    public boolean save(final List<SearchEvent> events) {
+        try {
+            getHibernateTemplate().execute(new HibernateCallback<Object>() {
+                @Override
+                public Object doInHibernate(Session session) throws HibernateException {
+                    try {
+                        for (SearchEvent event : events) {
+                            session.save(event);
+                        }
+                        session.flush();
+                    } finally {
+                        session.clear();
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            localLogger.error(e.getMessage(), e);
+            // Part of the batch may have been sent already, so the
+            // transaction must not be committed
+            try {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            } catch (NoTransactionException nte) {
+                localLogger.warn("No transaction to roll back.");
+            }
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Returns a list of libraries which call numbers match with the given call
      * number and that are related to the given owner.
@@ -89,6 +140,26 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
         return list;
     }
 
+    /**
+     * Returns a list of libraries which location codes are in the given list
+     * and that are related to the given owner. If the list is empty, an empty
+     * list is returned.
+     *
+     * @param callnos location codes that are used for searching
+     * @param owner owner of the object
+     * @return the libraries with the desired location codes
+     */
+    @Override
+    public List<Library> getLibrariesByLocationCodes(List<String> callnos, String owner) {
+        if (callnos == null || callnos.isEmpty()) {
+            return new ArrayList<Library>();
+        }
+        List<Library> list = (List<Library>) getHibernateTemplate().findByNamedParam(
+                "from Library as library where library.owner.code = :owner "
+                + "and library.locationCode in (:callnos)", new String[]{"owner", "callnos"}, new Object[]{owner, callnos});
+        return list;
+    }
+
     /**
      * Returns a list of libraries that are related to the given owner.
      *
@@ -111,10 +182,11 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
      */
     @Override
     public List<SearchIndex> getLibrariesFromIndex(String owner) {
-        List<SearchIndex> list = (List<SearchIndex>) getHibernateTemplate().findByNamedParam(
+        List<SearchIndex> list = (List<SearchIndex>) findByNamedParamCached(
                 "from SearchIndex si where si.locationType = '"
                 + LocationType.LIBRARY + "' and si.owner.code = :owner "
-                + "order by si.callNo desc", "owner", owner);
+                + "order by si.callNo desc", "owner", owner,
+                LocationServiceConstants.QUERY_CACHE_REGION_INDEX);
         return list;
     }
 
@@ -202,6 +274,27 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
         return list;
     }
 
+    /**
+     * Returns a list of collections which location codes are in the given
+     * list and that are related to the given owner. If the list is empty, an
+     * empty list is returned.
+     *
+     * @param callnos location codes that are used for searching
+     * @param owner owner of the object
+     * @return the collections with the desired location codes
+     */
+    @Override
+    public List<LibraryCollection> getCollectionsByLocationCodes(List<String> callnos, String owner) {
+        if (callnos == null || callnos.isEmpty()) {
+            return new ArrayList<LibraryCollection>();
+        }
+        List<LibraryCollection> list = (List<LibraryCollection>) getHibernateTemplate().findByNamedParam(
+                "from LibraryCollection as collection where "
+                + "collection.owner.code = :owner and "
+                + "collection.locationCode in (:callnos)", new String[]{"owner", "callnos"}, new Object[]{owner, callnos});
+        return list;
+    }
+
     /**
      * Returns a list of collections that are related to the given owner.
      *
@@ -225,10 +318,11 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
      */
     @Override
     public List<SearchIndex> getCollectionsFromIndex(String owner) {
-        List<SearchIndex> list = (List<SearchIndex>) getHibernateTemplate().findByNamedParam(
+        List<SearchIndex> list = (List<SearchIndex>) findByNamedParamCached(
                 "from SearchIndex si where si.locationType = '"
                 + LocationType.COLLECTION + "' and si.owner.code = :owner "
-                + "order by si.callNo desc", "owner", owner);
+                + "order by si.callNo desc", "owner", owner,
+                LocationServiceConstants.QUERY_CACHE_REGION_INDEX);
         return list;
     }
 
@@ -263,6 +357,9 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
                 + "left join fetch loc.image "
                 + "left join fetch loc.map "
                 + "left join fetch loc.areas "
+                + "left join fetch loc.library as lib "
+                + "left join fetch lib.image "
+                + "left join fetch lib.map "
                 + "where loc.locationId = :id", "id", id);
         if (list.isEmpty()) {
             return null;
@@ -296,6 +393,7 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
                 + "left join fetch loc.image "
                 + "left join fetch loc.map "
                 + "left join fetch loc.areas "
+                + "left join fetch loc.library "
                 + "where loc.locationId in (:ids) ", "ids", ids);
         for (LibraryCollection col : list) {
             Hibernate.initialize(col.getNotes());
@@ -332,6 +430,26 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
         return list;
     }
 
+    /**
+     * Returns a list of shelves which location codes are in the given list and
+     * that are related to the given owner. If the list is empty, an empty list
+     * is returned.
+     *
+     * @param callnos location codes that are used for searching
+     * @param owner owner of the object
+     * @return shelves with the desired location codes
+     */
+    @Override
+    public List<Shelf> getShelvesByLocationCodes(List<String> callnos, String owner) {
+        if (callnos == null || callnos.isEmpty()) {
+            return new ArrayList<Shelf>();
+        }
+        List<Shelf> list = (List<Shelf>) getHibernateTemplate().findByNamedParam(
+                "from Shelf as shelf where shelf.owner.code = :owner "
+                + "and shelf.locationCode in (:callnos)", new String[]{"owner", "callnos"}, new Object[]{owner, callnos});
+        return list;
+    }
+
     /**
      * Returns a list of shelves that are related to the given owner.
      *
@@ -354,10 +472,11 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
      */
     @Override
     public List<SearchIndex> getShelvesFromIndex(String owner) {
-        List<SearchIndex> list = (List<SearchIndex>) getHibernateTemplate().findByNamedParam(
+        List<SearchIndex> list = (List<SearchIndex>) findByNamedParamCached(
                 "from SearchIndex si where si.locationType = '"
                 + LocationType.SHELF + "' and si.owner.code = :owner "
-                + "order by si.callNo desc", "owner", owner);
+                + "order by si.callNo desc", "owner", owner,
+                LocationServiceConstants.QUERY_CACHE_REGION_INDEX);
         return list;
     }
 
@@ -381,7 +500,9 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
 
     /**
      * Returns the shelf which location id matches the given id. All the lazy
-     * relationships are loaded.
+     * relationships are loaded. The collection and the library are fetched
+     * with the shelf, and the lazy collections of all the three are loaded in
+     * batches, so the number of queries stays constant.
      *
      * @param id location id to be searched
      * @return shelf matching the given location id
@@ -393,6 +514,12 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
                 + "left join fetch loc.image "
                 + "left join fetch loc.map "
                 + "left join fetch loc.areas "
+                + "left join fetch loc.collection as col "
+                + "left join fetch col.image "
+                + "left join fetch col.map "
+                + "left join fetch col.library as lib "
+                + "left join fetch lib.image "
+                + "left join fetch lib.map "
                 + "where loc.locationId = :id", "id", id);
         if (list.isEmpty()) {
             return null;
@@ -429,6 +556,8 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
                 + "left join fetch loc.image "
                 + "left join fetch loc.map "
                 + "left join fetch loc.areas "
+                + "left join fetch loc.collection as col "
+                + "left join fetch col.library "
                 + "where loc.locationId in (:ids)", "ids", ids);
         for (Shelf shelf : list) {
             Hibernate.initialize(shelf.getNotes());
@@ -579,7 +708,58 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
                 + "left join fetch lib.map "
                 + "left join fetch lib.areas "
                 + "where lib.owner.code = :owner", "owner", owner);
-        for (Library lib : result) {
+        initializeLocations(result);
+        return result;
+    }
+
+    /**
+     * Returns a list of at most maxResults libraries that are related to the
+     * given owner and which id is greater than the given id. The libraries are
+     * ordered by id. All the lazy relationships are loaded. The ids of the
+     * page are fetched first, so that the limit is applied in the database
+     * and not to the joined rows.
+     *
+     * @param owner owner of the object
+     * @param afterId id of the last library of the previous page
+     * @param maxResults maximum number of libraries to be returned
+     * @return page of the libraries of the owner
+     */
+    @Override
+    public List<Library> getAllLocations(final String owner, final int afterId, final int maxResults) {
+        List<Integer> ids = getHibernateTemplate().execute(new HibernateCallback<List<Integer>>() {
+            @Override
+            public List<Integer> doInHibernate(Session session) throws HibernateException {
+                Query query = session.createQuery("select lib.locationId from Library lib "
+                        + "where lib.owner.code = :owner and lib.locationId > :afterId "
+                        + "order by lib.locationId");
+                query.setParameter("owner", owner);
+                query.setParameter("afterId", afterId);
+                query.setMaxResults(maxResults);
+                return query.list();
+            }
+        });
+        if (ids.isEmpty()) {
+            return new ArrayList<Library>();
+        }
+        List<Library> result = (List<Library>) getHibernateTemplate().findByNamedParam(
+                "select distinct lib from Library lib "
+                + "left join fetch lib.image "
+                + "left join fetch lib.map "
+                + "left join fetch lib.areas "
+                + "where lib.locationId in (:ids) "
+                + "order by lib.locationId", "ids", ids);
+        initializeLocations(result);
+        return result;
+    }
+
+    /**
+     * Loads the lazy relationships of the given libraries and their
+     * collections and shelves.
+     *
+     * @param libraries libraries to be initialized
+     */
+    private void initializeLocations(List<Library> libraries) {
+        for (Library lib : libraries) {
             Hibernate.initialize(lib.getNotes());
             Hibernate.initialize(lib.getDescriptions());
             for (LibraryCollection col : lib.getCollections()) {
@@ -599,7 +779,6 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
                 }
             }
         }
-        return result;
     }
 
     /**
@@ -610,8 +789,9 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
      */
     @Override
     public Owner getOwnerByCode(String code) {
-        List<Owner> list = (List<Owner>) getHibernateTemplate().findByNamedParam(
-                "from Owner owner where owner.code = :code", "code", code);
+        List<Owner> list = (List<Owner>) findByNamedParamCached(
+                "from Owner owner where owner.code = :code", "code", code,
+                LocationServiceConstants.QUERY_CACHE_REGION_OWNER);
         if (list.isEmpty()) {
             return null;
         }
@@ -628,8 +808,9 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
      */
     @Override
     public LocatingStrategy getLocatingStrategy(String owner) {
-        List<LocatingStrategy> strategies = (List<LocatingStrategy>) getHibernateTemplate().findByNamedParam(
-                "select locatingStrategy from Owner where code = :owner", "owner", owner);
+        List<LocatingStrategy> strategies = (List<LocatingStrategy>) findByNamedParamCached(
+                "select locatingStrategy from Owner where code = :owner", "owner", owner,
+                LocationServiceConstants.QUERY_CACHE_REGION_OWNER);
         if (strategies.isEmpty()) {
             return null;
         }
@@ -644,10 +825,11 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
      */
     @Override
     public List<CallnoModification> getNotFoundRedirects(String owner) {
-        List<CallnoModification> list = (List<CallnoModification>) getHibernateTemplate().findByNamedParam(
+        List<CallnoModification> list = (List<CallnoModification>) findByNamedParamCached(
                 "from NotFoundRedirect redirect "
                 + "where redirect.owner.code = :owner "
-                + "and redirect.isActive = true", "owner", owner);
+                + "and redirect.isActive = true", "owner", owner,
+                LocationServiceConstants.QUERY_CACHE_REGION_REDIRECT);
         return list;
     }
 
@@ -660,10 +842,11 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
      */
     @Override
     public List<CallnoModification> getPreprocessingRedirects(String owner) {
-        List<CallnoModification> list = (List<CallnoModification>) getHibernateTemplate().findByNamedParam(
+        List<CallnoModification> list = (List<CallnoModification>) findByNamedParamCached(
                 "from PreprocessingRedirect redirect "
                 + "where redirect.owner.code = :owner "
-                + "and redirect.isActive = true", "owner", owner);
+                + "and redirect.isActive = true", "owner", owner,
+                LocationServiceConstants.QUERY_CACHE_REGION_REDIRECT);
         return list;
     }
 
@@ -686,6 +869,33 @@ public class LocationsDao extends HibernateDaoSupport implements Dao {
         return list.get(0);
     }
 
+    /**
+     * Executes the given HQL query binding one named parameter to the given
+     * owner code. The results are stored in the query cache region of the
+     * owner, if the query cache is enabled. The name of the region is the
+     * given region followed by a dot and the owner code, so that the cached
+     * results of an owner can be evicted without evicting the results of the
+     * other owners.
+     *
+     * @param queryString HQL query
+     * @param paramName name of the parameter
+     * @param value owner code
+     * @param region query cache region
+     * @return results of the query
+     */
+    private List findByNamedParamCached(final String queryString, final String paramName, final String value, final String region) {
+        return getHibernateTemplate().execute(new HibernateCallback<List>() {
+            @Override
+            public List doInHibernate(Session session) throws HibernateException {
+                Query query = session.createQuery(queryString);
+                query.setParameter(paramName, value);
+                query.setCacheable(true);
+                query.setCacheRegion(region + "." + value);
+                return query.list();
+            }
+        });
+    }
+
     /**
      * Tests the DB connection by executing a simple test query. If the test
      * query succeeds the connection is OK, otherwise there's a problem.
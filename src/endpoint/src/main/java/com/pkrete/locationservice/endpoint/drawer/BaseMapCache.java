@@ -0,0 +1,123 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.drawer;
+
+import com.pkrete.locationservice.endpoint.cache.WeightedLruCache;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+
+/**
+ * This class holds decoded base map images in memory, so that a map that is
+ * shared by many locations is decoded only once. The images are identified by
+ * owner, language and map path, and the version of the map. The version is
+ * the modification time of the map file, and an image with an old version is
+ * never returned.
+ *
+ * The cached images are shared and they must not be modified. The weight of
+ * an image is the size of its raster data in bytes, and when the total weight
+ * exceeds the maximum weight, the least recently used images are removed.
+ * Decoded images are large, so the cache isn't divided into segments and the
+ * whole maximum weight is available for every image.
+ *
+ * @author Petteri Kivimäki
+ */
+public class BaseMapCache extends WeightedLruCache<BaseMapCache.BaseMap> {
+
+    /**
+     * Constructs and initializes a new BaseMapCache object.
+     */
+    public BaseMapCache() {
+        super("base map", 1, 67108864);
+    }
+
+    /**
+     * Returns the base map image matching the given parameters. If no image
+     * is found or the image has a different version, null is returned. The
+     * returned image must not be modified.
+     *
+     * @param owner owner code
+     * @param lang language of the map
+     * @param path path of the map
+     * @param version version of the map
+     * @return base map image or null
+     */
+    public BufferedImage get(String owner, String lang, String path, final long version) {
+        BaseMap map = this.get(getKey(owner, lang, path), new Filter<BaseMap>() {
+            @Override
+            public boolean accept(BaseMap map) {
+                return map.version == version;
+            }
+        });
+        return map == null ? null : map.image;
+    }
+
+    /**
+     * Adds the given base map image to the cache. Images that are heavier
+     * than the maximum weight of the cache are not cached. The image must not
+     * be modified after it has been added to the cache.
+     *
+     * @param owner owner code
+     * @param lang language of the map
+     * @param path path of the map
+     * @param version version of the map
+     * @param image decoded base map image
+     */
+    public void put(String owner, String lang, String path, long version, BufferedImage image) {
+        this.put(getKey(owner, lang, path), new BaseMap(owner, image, version));
+    }
+
+    @Override
+    protected long weigh(BaseMap map) {
+        DataBuffer buffer = map.image.getRaster().getDataBuffer();
+        long bits = (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType());
+        return bits / 8;
+    }
+
+    @Override
+    protected String getOwner(BaseMap map) {
+        return map.owner;
+    }
+
+    /**
+     * Builds the cache key of a base map.
+     *
+     * @param owner owner code
+     * @param lang language of the map
+     * @param path path of the map
+     * @return cache key
+     */
+    private static String getKey(String owner, String lang, String path) {
+        return owner + "|" + lang + "|" + path;
+    }
+
+    /**
+     * Cached base map image.
+     */
+    static class BaseMap {
+
+        private final String owner;
+        private final BufferedImage image;
+        private final long version;
+
+        BaseMap(String owner, BufferedImage image, long version) {
+            this.owner = owner;
+            this.image = image;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.drawer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.imageio.ImageIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class mirrors external maps into a local directory, so that the maps
+ * are not downloaded while serving requests. A map is downloaded in the
+ * request thread only when it's requested for the first time. After that the
+ * local copy is returned, and the copy is refreshed in the background when
+ * this object is run as a scheduled task.
+ *
+ * Refreshing uses conditional requests with the ETag and Last-Modified values
+ * of the previous response, and all the requests have connect and read
+ * timeouts. If the source is slow or down, or it returns something that isn't
+ * an image, the last good copy is kept.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ExternalMapMirror implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExternalMapMirror.class.getName());
+    private static final String IMAGE_SUFFIX = ".img";
+    private static final String META_SUFFIX = ".meta";
+    private final ConcurrentMap<String, Entry> entries;
+    private File directory;
+    private int connectTimeout = 2000;
+    private int readTimeout = 5000;
+    private long refreshInterval = 600000;
+
+    /**
+     * Constructs and initializes a new ExternalMapMirror object.
+     */
+    public ExternalMapMirror() {
+        this.entries = new ConcurrentHashMap<String, Entry>();
+        this.directory = new File(System.getProperty("java.io.tmpdir"), "location-service-maps");
+    }
+
+    /**
+     * Changes the directory where the local copies are stored. If the value
+     * is null or empty, the default directory is used, which is
+     * "location-service-maps" directory under the temp directory of the JVM.
+     *
+     * @param directory new directory
+     */
+    public void setDirectory(String directory) {
+        if (directory != null && !directory.trim().isEmpty()) {
+            this.directory = new File(directory.trim());
+        }
+    }
+
+    /**
+     * Sets the connect timeout of the downloads in milliseconds. Default is
+     * 2000.
+     *
+     * @param connectTimeout new value
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Sets the read timeout of the downloads in milliseconds. Default is
+     * 5000.
+     *
+     * @param readTimeout new value
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds after which a local copy is refreshed.
+     * The same interval is used for retrying failed downloads. Default is
+     * 600000.
+     *
+     * @param refreshInterval new value
+     */
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Returns the local copy of the map in the given URL. If the map hasn't
+     * been downloaded yet, it's downloaded before returning. If the map isn't
+     * available, null is returned.
+     *
+     * @param url URL of the map
+     * @return local copy of the map or null
+     */
+    public File get(String url) {
+        Entry entry = this.getEntry(url);
+        if (entry.file.exists()) {
+            return entry.file;
+        }
+        synchronized (entry) {
+            // Failed downloads are retried only after the refresh interval
+            if (!entry.file.exists() && this.isStale(entry)) {
+                this.download(entry);
+            }
+        }
+        return entry.file.exists() ? entry.file : null;
+    }
+
+    /**
+     * Returns the modification time of the local copy of the map in the given
+     * URL. The map is not downloaded by this method. If there's no local copy,
+     * zero is returned.
+     *
+     * @param url URL of the map
+     * @return modification time of the local copy or zero
+     */
+    public long getVersion(String url) {
+        return this.getEntry(url).file.lastModified();
+    }
+
+    /**
+     * Refreshes the local copies that haven't been checked during the refresh
+     * interval.
+     */
+    @Override
+    public void run() {
+        int count = 0;
+        for (Entry entry : this.entries.values()) {
+            synchronized (entry) {
+                if (this.isStale(entry)) {
+                    this.download(entry);
+                    count++;
+                }
+            }
+        }
+        if (count > 0) {
+            logger.debug("{} external maps checked.", count);
+        }
+    }
+
+    /**
+     * Returns the entry of the given URL. If the entry doesn't exist yet, it's
+     * created, and the ETag and Last-Modified values of a local copy left by
+     * a previous run are read.
+     *
+     * @param url URL of the map
+     * @return entry of the URL
+     */
+    private Entry getEntry(String url) {
+        Entry entry = this.entries.get(url);
+        if (entry == null) {
+            String name = hash(url);
+            entry = new Entry(url, new File(this.directory, name + IMAGE_SUFFIX), new File(this.directory, name + META_SUFFIX));
+            if (entry.file.exists()) {
+                this.readMeta(entry);
+            }
+            Entry old = this.entries.putIfAbsent(url, entry);
+            if (old != null) {
+                entry = old;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Checks if the given entry hasn't been checked during the refresh
+     * interval.
+     *
+     * @param entry entry to be checked
+     * @return true if the entry should be checked; otherwise false
+     */
+    private boolean isStale(Entry entry) {
+        return System.currentTimeMillis() - entry.checked >= this.refreshInterval;
+    }
+
+    /**
+     * Downloads the map of the given entry. If the entry has a local copy, a
+     * conditional request is used, and the copy is replaced only if a new
+     * valid image is received. The caller must hold the lock of the entry.
+     *
+     * @param entry entry to be downloaded
+     */
+    private void download(Entry entry) {
+        entry.checked = System.currentTimeMillis();
+        File temp = null;
+        try {
+            URLConnection connection = new URL(entry.url).openConnection();
+            connection.setConnectTimeout(this.connectTimeout);
+            connection.setReadTimeout(this.readTimeout);
+            connection.setUseCaches(false);
+            if (entry.file.exists()) {
+                if (entry.etag != null) {
+                    connection.setRequestProperty("If-None-Match", entry.etag);
+                }
+                if (entry.lastModified != null) {
+                    connection.setRequestProperty("If-Modified-Since", entry.lastModified);
+                }
+            }
+            if (connection instanceof HttpURLConnection) {
+                int status = ((HttpURLConnection) connection).getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED && entry.file.exists()) {
+                    logger.debug("External map not modified. URL : \"{}\"", entry.url);
+                    return;
+                }
+                if (status != HttpURLConnection.HTTP_OK) {
+                    logger.warn("Downloading external map failed. Status : {}, URL : \"{}\"", status, entry.url);
+                    // Read the error stream, so that the connection can be reused
+                    close(((HttpURLConnection) connection).getErrorStream());
+                    return;
+                }
+            }
+            if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+                throw new IOException("Unable to create directory: " + this.directory.getPath());
+            }
+            temp = File.createTempFile("map", ".tmp", this.directory);
+            copy(connection.getInputStream(), temp);
+            if (ImageIO.read(temp) == null) {
+                logger.warn("External map is not a supported image. URL : \"{}\"", entry.url);
+                return;
+            }
+            if (!temp.renameTo(entry.file)) {
+                entry.file.delete();
+                if (!temp.renameTo(entry.file)) {
+                    throw new IOException("Unable to replace file: " + entry.file.getPath());
+                }
+            }
+            temp = null;
+            entry.etag = connection.getHeaderField("ETag");
+            entry.lastModified = connection.getHeaderField("Last-Modified");
+            this.writeMeta(entry);
+            logger.info("External map downloaded. URL : \"{}\"", entry.url);
+        } catch (IOException ex) {
+            logger.warn("Downloading external map failed. URL : \"{}\". {}", entry.url, ex.getMessage());
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads the ETag and Last-Modified values of the given entry from its
+     * metadata file.
+     *
+     * @param entry entry to be read
+     */
+    private void readMeta(Entry entry) {
+        if (!entry.meta.exists()) {
+            return;
+        }
+        Properties properties = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(entry.meta);
+            properties.load(in);
+            entry.etag = properties.getProperty("etag");
+            entry.lastModified = properties.getProperty("lastModified");
+        } catch (IOException ex) {
+            logger.warn("Reading external map metadata failed. {}", ex.getMessage());
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Writes the URL, ETag and Last-Modified values of the given entry to its
+     * metadata file.
+     *
+     * @param entry entry to be written
+     * @throws IOException if writing fails
+     */
+    private void writeMeta(Entry entry) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", entry.url);
+        if (entry.etag != null) {
+            properties.setProperty("etag", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            properties.setProperty("lastModified", entry.lastModified);
+        }
+        OutputStream out = new FileOutputStream(entry.meta);
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Copies the given stream to the given file and closes the stream.
+     *
+     * @param in stream to be copied
+     * @param file target file
+     * @throws IOException if copying fails
+     */
+    private static void copy(InputStream in, File file) throws IOException {
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            close(in);
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the given stream quietly.
+     *
+     * @param in stream to be closed, may be null
+     */
+    private static void close(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException ex) {
+            logger.debug(ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the SHA-1 hash of the given URL as a hex string. The hash is
+     * used as the name of the local copy.
+     *
+     * @param url URL of the map
+     * @return hex string
+     */
+    private static String hash(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Local copy of an external map.
+     */
+    private static class Entry {
+
+        private final String url;
+        private final File file;
+        private final File meta;
+        private volatile String etag;
+        private volatile String lastModified;
+        private volatile long checked;
+
+        Entry(String url, File file, File meta) {
+            this.url = url;
+            this.file = file;
+            this.meta = meta;
+        }
+    }
+}
@@ -27,7 +27,10 @@ import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import javax.imageio.ImageIO;
 import org.slf4j.Logger;
@@ -44,6 +47,16 @@ public class MapDrawer implements Drawer {
 
     private static final Logger logger = LoggerFactory.getLogger(MapDrawer.class.getName());
     private ConverterService converterService;
+    /**
+     * Decoded base maps. If the cache is not set, the base map is decoded on
+     * every request.
+     */
+    private BaseMapCache baseMapCache;
+    /**
+     * Local copies of external maps. If the mirror is not set, external maps
+     * are read from their URL on every request.
+     */
+    private ExternalMapMirror externalMapMirror;
 
     /**
      * Changes the value of converterService instance variable
@@ -54,6 +67,24 @@ public class MapDrawer implements Drawer {
         this.converterService = converterService;
     }
 
+    /**
+     * Sets the cache that holds the decoded base maps.
+     *
+     * @param baseMapCache new value
+     */
+    public void setBaseMapCache(BaseMapCache baseMapCache) {
+        this.baseMapCache = baseMapCache;
+    }
+
+    /**
+     * Sets the mirror that holds the local copies of external maps.
+     *
+     * @param externalMapMirror new value
+     */
+    public void setExternalMapMirror(ExternalMapMirror externalMapMirror) {
+        this.externalMapMirror = externalMapMirror;
+    }
+
     /**
      * Creates a BufferedImage that presents the location of the given Location
      * object on a map.
@@ -87,22 +118,7 @@ public class MapDrawer implements Drawer {
         BufferedImage bufferedImage = null;
 
         try {
-            if (!location.getMap().getIsExternal()) {
-                // Build string that contains the absolute path of the map
-                StringBuilder mapsPath = new StringBuilder();
-                mapsPath.append(Settings.getInstance().getMapsPath(location.getOwner().getCode()));
-                mapsPath.append(lang).append("/").append(location.getMap().getPath());
-                // Create a new file
-                File file = new File(mapsPath.toString());
-                if (file.exists()) {
-                    bufferedImage = ImageIO.read(file);
-                } else {
-                    logger.error("The image file doesn't exist! Path: \"{}\"", file.getAbsolutePath());
-                }
-            } else {
-                // The image is external and accessed via its URL
-                bufferedImage = ImageIO.read(new URL(location.getMap().getPath()));
-            }
+            bufferedImage = this.getBaseMap(location, lang);
 
             if (bufferedImage != null) {
                 // Get drawing color as a HEX string
@@ -141,6 +157,93 @@ public class MapDrawer implements Drawer {
         return bufferedImage;
     }
 
+    /**
+     * Returns the base map of the given Location object as an image that can
+     * be drawn on. If the base map is cached, a copy of the cached image is
+     * returned, and otherwise the base map is decoded and added to the cache.
+     * If the map file doesn't exist, null is returned.
+     *
+     * @param location Location object
+     * @param lang language of the UI
+     * @return base map image or null
+     * @throws IOException if reading the map fails
+     */
+    private BufferedImage getBaseMap(Location location, String lang) throws IOException {
+        String owner = location.getOwner().getCode();
+        String path = location.getMap().getPath();
+        File file = null;
+        // Modification time of the map file works as the version of the map
+        long version = 0;
+        if (!location.getMap().getIsExternal()) {
+            // Create a new file
+            file = getMapFile(location, lang);
+            if (!file.exists()) {
+                logger.error("The image file doesn't exist! Path: \"{}\"", file.getAbsolutePath());
+                return null;
+            }
+            version = file.lastModified();
+        } else if (this.externalMapMirror != null) {
+            file = this.externalMapMirror.get(path);
+            if (file == null) {
+                logger.error("The external map isn't available! URL: \"{}\"", path);
+                return null;
+            }
+            version = file.lastModified();
+        }
+
+        if (this.baseMapCache != null) {
+            BufferedImage cached = this.baseMapCache.get(owner, lang, path, version);
+            if (cached != null) {
+                return copy(cached);
+            }
+        }
+
+        BufferedImage image;
+        if (file != null) {
+            image = ImageIO.read(file);
+        } else {
+            // The image is external and accessed via its URL
+            image = ImageIO.read(new URL(path));
+        }
+
+        if (image != null && this.baseMapCache != null) {
+            // Cached image is never drawn on
+            this.baseMapCache.put(owner, lang, path, version, image);
+            return copy(image);
+        }
+        return image;
+    }
+
+    /**
+     * Returns a copy of the given image. The copy has the same color model
+     * and raster layout, so drawing on it gives the same result as drawing on
+     * the original image.
+     *
+     * @param image image to be copied
+     * @return copy of the image
+     */
+    private static BufferedImage copy(BufferedImage image) {
+        ColorModel colorModel = image.getColorModel();
+        WritableRaster raster = image.copyData(null);
+        return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Returns the map file of the given Location object. The map of the
+     * location must not be external.
+     *
+     * @param location Location object
+     * @param lang language of the UI
+     * @return map file of the location
+     */
+    static File getMapFile(Location location, String lang) {
+        // Build string that contains the absolute path of the map
+        StringBuilder mapsPath = new StringBuilder();
+        mapsPath.append(Settings.getInstance().getMapsPath(location.getOwner().getCode()));
+        mapsPath.append(lang).append("/").append(location.getMap().getPath());
+        return new File(mapsPath.toString());
+    }
+
     /**
      * Parses red, green or blue component value from the given HEX color string
      * according to the rgb parameter value.
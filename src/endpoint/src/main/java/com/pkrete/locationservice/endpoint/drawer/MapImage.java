@@ -0,0 +1,95 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.drawer;
+
+/**
+ * This class represents a map image that has been encoded as a png image. In
+ * addition to the image data, the class holds the information that's needed
+ * for HTTP cache validation.
+ *
+ * @author Petteri Kivimäki
+ */
+public class MapImage {
+
+    private final String owner;
+    private final byte[] data;
+    private final String etag;
+    private final long lastModified;
+
+    /**
+     * Constructs and initializes a new MapImage object.
+     *
+     * @param owner code of the owner of the location
+     * @param data encoded png image
+     * @param etag entity tag of the image
+     * @param lastModified time when the image was rendered in milliseconds,
+     * rounded down to seconds
+     */
+    public MapImage(String owner, byte[] data, String etag, long lastModified) {
+        this.owner = owner;
+        this.data = data;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Returns the code of the owner of the location.
+     *
+     * @return owner code
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the encoded png image. The returned array must not be modified.
+     *
+     * @return encoded png image
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns the entity tag of the image. The entity tag is calculated from
+     * the image data, and it's quoted.
+     *
+     * @return entity tag
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Returns the time when the image was rendered.
+     *
+     * @return time in milliseconds
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the size of the image data in bytes.
+     *
+     * @return size in bytes
+     */
+    public int getSize() {
+        return data.length;
+    }
+}
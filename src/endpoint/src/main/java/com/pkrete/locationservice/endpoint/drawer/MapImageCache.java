@@ -0,0 +1,73 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.drawer;
+
+import com.pkrete.locationservice.endpoint.cache.WeightedLruCache;
+
+/**
+ * This class holds rendered {@link MapImage MapImage} objects in memory. The
+ * total size of the cached images is limited, and when the limit is exceeded,
+ * the least recently used images are removed from the cache.
+ *
+ * The cache key must identify everything that affects the rendered image, so
+ * modified maps and locations get new keys. Old images are removed when they
+ * become the least recently used ones, or when the images of the owner are
+ * invalidated.
+ *
+ * @author Petteri Kivimäki
+ */
+public class MapImageCache extends WeightedLruCache<MapImage> {
+
+    private static final int SEGMENTS = 8;
+
+    /**
+     * Constructs and initializes a new MapImageCache object.
+     */
+    public MapImageCache() {
+        super("map image", SEGMENTS, 33554432);
+    }
+
+    /**
+     * Sets the maximum total size of the cached images in bytes. Default is 32
+     * MB.
+     *
+     * @param maxSize maximum size in bytes
+     */
+    public void setMaxSize(long maxSize) {
+        this.setMaxWeight(maxSize);
+    }
+
+    /**
+     * Returns the total size of the cached images in bytes.
+     *
+     * @return size in bytes
+     */
+    public long getSize() {
+        return this.getWeight();
+    }
+
+    @Override
+    protected long weigh(MapImage image) {
+        return image.getSize();
+    }
+
+    @Override
+    protected String getOwner(MapImage image) {
+        return image.getOwner();
+    }
+}
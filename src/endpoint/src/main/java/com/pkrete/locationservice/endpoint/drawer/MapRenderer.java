@@ -0,0 +1,163 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.drawer;
+
+import com.pkrete.locationservice.endpoint.model.illustration.Map;
+import com.pkrete.locationservice.endpoint.model.location.Area;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import javax.imageio.ImageIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class renders the maps of Location objects as png images. The position
+ * of the location is drawn on the map by a {@link Drawer Drawer} object, and
+ * the encoded images are cached in a {@link MapImageCache MapImageCache}
+ * object.
+ *
+ * The cache key consists of the location, language, map, map file
+ * modification time, colors, opacities and areas, so a modification of any of
+ * them produces a new image.
+ *
+ * @author Petteri Kivimäki
+ */
+public class MapRenderer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MapRenderer.class.getName());
+    private Drawer drawer;
+    private MapImageCache cache;
+    private ExternalMapMirror externalMapMirror;
+
+    /**
+     * Sets the drawer that draws the position of the location on the map.
+     *
+     * @param drawer new value
+     */
+    public void setDrawer(Drawer drawer) {
+        this.drawer = drawer;
+    }
+
+    /**
+     * Sets the cache that holds the rendered images. If the cache is not
+     * set, the image is drawn on every request.
+     *
+     * @param cache new value
+     */
+    public void setCache(MapImageCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the mirror that holds the local copies of external maps. The
+     * modification time of the local copy is used as the version of an
+     * external map, and it must be the same mirror that the drawer uses.
+     *
+     * @param externalMapMirror new value
+     */
+    public void setExternalMapMirror(ExternalMapMirror externalMapMirror) {
+        this.externalMapMirror = externalMapMirror;
+    }
+
+    /**
+     * Returns a png image that presents the location of the given Location
+     * object on a map. If drawing the image fails, null is returned.
+     *
+     * @param location Location object
+     * @param lang language of the UI
+     * @return png image or null
+     */
+    public MapImage render(Location location, String lang) {
+        String key = null;
+        if (this.cache != null && location != null && location.getMap() != null && !location.getMap().isGoogleMap()) {
+            key = this.getKey(location, lang);
+            MapImage image = this.cache.get(key);
+            if (image != null) {
+                return image;
+            }
+        }
+
+        BufferedImage bufferedImage = this.drawer.draw(location, lang);
+        if (bufferedImage == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(bufferedImage, "png", out);
+        } catch (IOException ex) {
+            logger.error("Encoding map image failed. {}", ex.getMessage());
+            return null;
+        }
+        byte[] data = out.toByteArray();
+        // Last-Modified header has a precision of one second
+        long lastModified = System.currentTimeMillis() / 1000 * 1000;
+        MapImage image = new MapImage(location.getOwner().getCode(), data, this.getEtag(data), lastModified);
+
+        if (key != null) {
+            this.cache.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Builds the cache key of the map of the given location.
+     *
+     * @param location Location object
+     * @param lang language of the UI
+     * @return cache key
+     */
+    private String getKey(Location location, String lang) {
+        Map map = location.getMap();
+        // Modification time of the map file works as the version of the map
+        long version = 0;
+        if (!map.getIsExternal()) {
+            version = MapDrawer.getMapFile(location, lang).lastModified();
+        } else if (this.externalMapMirror != null) {
+            version = this.externalMapMirror.getVersion(map.getPath());
+        }
+        StringBuilder key = new StringBuilder();
+        key.append(location.getLocationId()).append('|').append(lang);
+        key.append('|').append(map.getId()).append('|').append(map.getPath());
+        key.append('|').append(version);
+        key.append('|').append(map.getColor()).append('|').append(map.getOpacity());
+        key.append('|').append(location.getOwner().getColor());
+        key.append('|').append(location.getOwner().getOpacity());
+        for (Area area : location.getAreas()) {
+            key.append('|').append(area.getX1()).append(',').append(area.getY1());
+            key.append(',').append(area.getX2()).append(',').append(area.getY2());
+            key.append(',').append(area.getAngle());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Calculates the entity tag of the given image data.
+     *
+     * @param data image data
+     * @return quoted entity tag
+     */
+    private String getEtag(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(data.length) + "\"";
+    }
+}
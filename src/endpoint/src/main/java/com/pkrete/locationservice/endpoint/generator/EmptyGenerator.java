@@ -37,14 +37,46 @@ import java.util.Map;
 public abstract class EmptyGenerator implements Generator {
 
     protected Map<String, String> filters;
+    /**
+     * Tells if the default filters have been replaced using the setter. The
+     * default filters are applied by the single pass methods of the
+     * {@link Escaper Escaper} class.
+     */
+    private boolean customFilters;
 
     /**
-     * Sets the filters variable.
+     * Sets the filters variable. The filters are regular expressions that are
+     * replaced with the corresponding values in the given order.
      *
      * @param filters new value
      */
     public void setFilters(Map<String, String> filters) {
         this.filters = filters;
+        this.customFilters = true;
+    }
+
+    /**
+     * Returns true if the default filters have been replaced.
+     *
+     * @return true if custom filters are used; otherwise false
+     */
+    protected boolean hasCustomFilters() {
+        return this.customFilters;
+    }
+
+    /**
+     * Applies the filters to the given string one by one.
+     *
+     * @param data string to be filtered
+     * @return filtered string
+     */
+    protected String applyFilters(String data) {
+        // Loop through the filters and replace all the keys with 
+        // the corresponding value
+        for (Map.Entry<String, String> filter : this.filters.entrySet()) {
+            data = data.replaceAll(filter.getKey(), filter.getValue());
+        }
+        return data;
     }
 
     /**
@@ -146,6 +178,6 @@ public abstract class EmptyGenerator implements Generator {
      * @return given string without HTML tags
      */
     public String stripHtml(String content) {
-        return content.replaceAll("\\<.*?\\>", "");
+        return Escaper.stripHtml(content);
     }
 }
@@ -0,0 +1,210 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.generator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * This class offers single pass escaping methods for the generators. The
+ * methods produce the same output as the default filters of the generators,
+ * but they go through the given string only once. The escaped string can be
+ * appended directly to the output, so that no intermediate strings are
+ * created. If there's nothing to escape, the methods returning a string
+ * return the given string as such without creating new objects.
+ *
+ * @author Petteri Kivimäki
+ */
+public final class Escaper {
+
+    /**
+     * Constructs and initializes a new Escaper object.
+     */
+    private Escaper() {
+    }
+
+    /**
+     * Escapes the characters that have a special meaning in XML: &amp;, &lt;,
+     * &gt;, &quot; and &apos;.
+     *
+     * @param data string to be escaped
+     * @return escaped string
+     */
+    public static String escapeXml(String data) {
+        int length = data.length();
+        int i = 0;
+        while (i < length && getXmlEntity(data.charAt(i)) == null) {
+            i++;
+        }
+        if (i == length) {
+            return data;
+        }
+        StringBuilder builder = new StringBuilder(length + 16);
+        escapeXml(data, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Escapes the characters that have a special meaning in XML and appends
+     * the result to the given builder.
+     *
+     * @param data string to be escaped
+     * @param builder builder where the escaped string is appended
+     */
+    public static void escapeXml(String data, StringBuilder builder) {
+        int length = data.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            String entity = getXmlEntity(data.charAt(i));
+            if (entity != null) {
+                builder.append(data, start, i).append(entity);
+                start = i + 1;
+            }
+        }
+        builder.append(data, start, length);
+    }
+
+    /**
+     * Escapes the characters that have a special meaning in XML and writes
+     * the result to the given writer.
+     *
+     * @param data string to be escaped
+     * @param out writer where the escaped string is written
+     * @throws IOException if writing fails
+     */
+    public static void escapeXml(String data, Writer out) throws IOException {
+        int length = data.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            String entity = getXmlEntity(data.charAt(i));
+            if (entity != null) {
+                out.write(data, start, i - start);
+                out.write(entity);
+                start = i + 1;
+            }
+        }
+        out.write(data, start, length - start);
+    }
+
+    /**
+     * Escapes the quotation marks of the given string with a backslash.
+     *
+     * @param data string to be escaped
+     * @return escaped string
+     */
+    public static String escapeJson(String data) {
+        if (data.indexOf('"') < 0) {
+            return data;
+        }
+        StringBuilder builder = new StringBuilder(data.length() + 8);
+        escapeJson(data, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Escapes the quotation marks of the given string with a backslash and
+     * appends the result to the given builder.
+     *
+     * @param data string to be escaped
+     * @param builder builder where the escaped string is appended
+     */
+    public static void escapeJson(String data, StringBuilder builder) {
+        int start = 0;
+        for (int i = data.indexOf('"'); i >= 0; i = data.indexOf('"', i + 1)) {
+            builder.append(data, start, i).append('\\');
+            start = i;
+        }
+        builder.append(data, start, data.length());
+    }
+
+    /**
+     * Strips all the HTML tags from the given string. A tag starts with "&lt;"
+     * and ends with the next "&gt;" on the same line.
+     *
+     * @param content string to be modified
+     * @return given string without HTML tags
+     */
+    public static String stripHtml(String content) {
+        int start = content.indexOf('<');
+        if (start < 0) {
+            return content;
+        }
+        int length = content.length();
+        StringBuilder builder = new StringBuilder(length);
+        builder.append(content, 0, start);
+        int i = start;
+        while (i < length) {
+            char c = content.charAt(i);
+            if (c == '<') {
+                int end = findTagEnd(content, i + 1);
+                if (end >= 0) {
+                    i = end + 1;
+                    continue;
+                }
+            }
+            builder.append(c);
+            i++;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the index of the first "&gt;" after the given index on the same
+     * line. If the line doesn't contain "&gt;", -1 is returned.
+     *
+     * @param content string to be searched
+     * @param from index where the search starts
+     * @return index of "&gt;" or -1
+     */
+    private static int findTagEnd(String content, int from) {
+        for (int i = from; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '>') {
+                return i;
+            }
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the XML entity matching the given character. If the character
+     * doesn't need to be escaped, null is returned.
+     *
+     * @param c character to be escaped
+     * @return XML entity or null
+     */
+    private static String getXmlEntity(char c) {
+        switch (c) {
+            case '&':
+                return "&amp;";
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '"':
+                return "&quot;";
+            case '\'':
+                return "&apos;";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.generator;
+
+import com.pkrete.locationservice.endpoint.model.language.Language;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * An interface for generators that are able to write the batch output
+ * directly to a Writer. The locations are written one by one as they are
+ * read from the given Iterable, so the whole output is never held in memory.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface StreamingGenerator {
+
+    /**
+     * Writes output containing all the given locations to the given writer.
+     * The output is the same that generateBatchOutput method returns.
+     *
+     * @param locations locations to be written
+     * @param languages list of available languages in the system
+     * @param children if true, the children of the locations are included
+     * @param out writer where the output is written
+     * @throws IOException if writing the output fails
+     */
+    void writeBatchOutput(Iterable<? extends Location> locations, List<Language> languages, boolean children, Writer out) throws IOException;
+}
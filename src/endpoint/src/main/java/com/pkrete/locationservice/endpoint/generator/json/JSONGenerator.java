@@ -18,6 +18,7 @@
 package com.pkrete.locationservice.endpoint.generator.json;
 
 import com.pkrete.locationservice.endpoint.generator.EmptyGenerator;
+import com.pkrete.locationservice.endpoint.generator.Escaper;
 import com.pkrete.locationservice.endpoint.model.location.Area;
 import com.pkrete.locationservice.endpoint.model.location.Description;
 import com.pkrete.locationservice.endpoint.model.location.Library;
@@ -164,7 +165,9 @@ public class JSONGenerator extends EmptyGenerator {
         StringBuilder builder = new StringBuilder();
         builder.append("{\"error\":");
         builder.append("{\"code\":\"").append(errorCode).append("\",");
-        builder.append("\"message\":\"").append(escape(errorMsg)).append("\"}");
+        builder.append("\"message\":\"");
+        escape(errorMsg, builder);
+        builder.append("\"}");
         builder.append("}");
         return builder.toString();
     }
@@ -182,24 +185,36 @@ public class JSONGenerator extends EmptyGenerator {
 
         builder.append("\"locationid\":").append(location.getLocationId()).append(",");
 
-        builder.append("\"locationcode\":\"").append(escape(location.getLocationCode())).append("\",");
+        builder.append("\"locationcode\":\"");
+        escape(location.getLocationCode(), builder);
+        builder.append("\",");
 
-        builder.append("\"callnumber\":\"").append(escape(location.getCallNo())).append("\",");
+        builder.append("\"callnumber\":\"");
+        escape(location.getCallNo(), builder);
+        builder.append("\",");
 
-        builder.append("\"floor\":\"").append(escape(location.getFloor())).append("\"");
+        builder.append("\"floor\":\"");
+        escape(location.getFloor(), builder);
+        builder.append("\"");
 
         for (Description desc : location.getDescriptions()) {
             if (desc.getLanguage().getCode().equals(lang)) {
-                builder.append(",\"description\":{\"lang\":\"").append(escape(desc.getLanguage().getCode())).append("\",\"value\":\"");
-                builder.append(escape(desc.getDescription())).append("\"}");
+                builder.append(",\"description\":{\"lang\":\"");
+                escape(desc.getLanguage().getCode(), builder);
+                builder.append("\",\"value\":\"");
+                escape(desc.getDescription(), builder);
+                builder.append("\"}");
                 break;
             }
         }
 
         for (Note note : location.getNotes()) {
             if (note.getLanguage().getCode().equals(lang)) {
-                builder.append(",\"note\":{\"lang\":\"").append(escape(note.getLanguage().getCode())).append("\",\"value\":\"");
-                builder.append(escape(note.getNote())).append("\"}");
+                builder.append(",\"note\":{\"lang\":\"");
+                escape(note.getLanguage().getCode(), builder);
+                builder.append("\",\"value\":\"");
+                escape(note.getNote(), builder);
+                builder.append("\"}");
                 break;
             }
         }
@@ -219,9 +234,12 @@ public class JSONGenerator extends EmptyGenerator {
                 builder.append(",\"map\":{\"lang\":\"undefined\",");
                 builder.append("\"url\":\"").append(location.getMap().getPath()).append("\"}");
             } else {
-                builder.append(",\"map\":{\"lang\":\"").append(escape(lang)).append("\",\"url\":\"");
+                builder.append(",\"map\":{\"lang\":\"");
+                escape(lang, builder);
+                builder.append("\",\"url\":\"");
                 builder.append(webpath).append("ImageCreator?locationId=").append(location.getLocationId());
-                builder.append("&lang=").append(lang).append("&owner=").append(escape(location.getOwner().getCode()));
+                builder.append("&lang=").append(lang).append("&owner=");
+                escape(location.getOwner().getCode(), builder);
                 builder.append("\"}");
             }
         }
@@ -252,13 +270,19 @@ public class JSONGenerator extends EmptyGenerator {
      */
     private void collectionToJSON(LibraryCollection location, String lang, String callno, StringBuilder builder) {
         if (location.hasCollectionCode()) {
-            builder.append(",\"collectioncode\":\"").append(escape(location.getCollectionCode())).append("\"");
+            builder.append(",\"collectioncode\":\"");
+            escape(location.getCollectionCode(), builder);
+            builder.append("\"");
         }
 
-        builder.append(",\"mainword\":\"").append(escape(location.getMainWord(callno))).append("\"");
+        builder.append(",\"mainword\":\"");
+        escape(location.getMainWord(callno), builder);
+        builder.append("\"");
 
         if (!location.getShelfNumber().isEmpty()) {
-            builder.append(",\"shelfnumber\":\"").append(escape(location.getShelfNumber())).append("\"");
+            builder.append(",\"shelfnumber\":\"");
+            escape(location.getShelfNumber(), builder);
+            builder.append("\"");
         }
         subjectsToJSON(location, lang, builder);
     }
@@ -273,13 +297,19 @@ public class JSONGenerator extends EmptyGenerator {
      */
     private void shelfToJSON(Shelf location, String lang, String callno, StringBuilder builder) {
         if (location.getCollection().hasCollectionCode()) {
-            builder.append(",\"collectioncode\":\"").append(escape(location.getCollection().getCollectionCode())).append("\"");
+            builder.append(",\"collectioncode\":\"");
+            escape(location.getCollection().getCollectionCode(), builder);
+            builder.append("\"");
         }
 
-        builder.append(",\"mainword\":\"").append(escape(location.getMainWord(callno))).append("\"");
+        builder.append(",\"mainword\":\"");
+        escape(location.getMainWord(callno), builder);
+        builder.append("\"");
 
         if (!location.getShelfNumber().isEmpty()) {
-            builder.append(",\"shelfnumber\":\"").append(escape(location.getShelfNumber())).append("\"");
+            builder.append(",\"shelfnumber\":\"");
+            escape(location.getShelfNumber(), builder);
+            builder.append("\"");
         }
         subjectsToJSON(location, lang, builder);
     }
@@ -300,20 +330,28 @@ public class JSONGenerator extends EmptyGenerator {
                     if (temp.length() > 0) {
                         temp.append(",");
                     }
-                    temp.append("{\"lang\":\"").append(escape(subject.getLanguage().getCode()));
-                    temp.append("\",\"value\":\"").append(escape(subject.getIndexTerm())).append("\"}");
+                    temp.append("{\"lang\":\"");
+                    escape(subject.getLanguage().getCode(), temp);
+                    temp.append("\",\"value\":\"");
+                    escape(subject.getIndexTerm(), temp);
+                    temp.append("\"}");
                 }
             }
             builder.append(temp).append("]");
         }
     }
 
-    private String escape(String data) {
-        // Loop through the filters and replace all the keys with 
-        // the corresponding value
-        for (String key : this.filters.keySet()) {
-            data = data.replaceAll(key, this.filters.get(key));
+    /**
+     * Escapes the given string and appends it to the given builder.
+     *
+     * @param data string to be escaped
+     * @param builder StringBuilder object
+     */
+    private void escape(String data, StringBuilder builder) {
+        if (this.hasCustomFilters()) {
+            builder.append(this.applyFilters(data));
+        } else {
+            Escaper.escapeJson(data, builder);
         }
-        return data;
     }
 }
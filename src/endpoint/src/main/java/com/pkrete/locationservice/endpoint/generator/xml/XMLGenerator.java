@@ -18,6 +18,7 @@
 package com.pkrete.locationservice.endpoint.generator.xml;
 
 import com.pkrete.locationservice.endpoint.generator.EmptyGenerator;
+import com.pkrete.locationservice.endpoint.generator.Escaper;
 import com.pkrete.locationservice.endpoint.model.location.Area;
 import com.pkrete.locationservice.endpoint.model.location.Description;
 import com.pkrete.locationservice.endpoint.model.location.Library;
@@ -181,7 +182,9 @@ public class XMLGenerator extends EmptyGenerator {
         builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
         builder.append("<error>\n");
         builder.append("<code>").append(errorCode).append("</code>\n");
-        builder.append("<message>").append(escape(errorMsg)).append("</message>\n");
+        builder.append("<message>");
+        escape(errorMsg, builder);
+        builder.append("</message>\n");
         builder.append("</error>\n");
         return builder.toString();
     }
@@ -202,19 +205,25 @@ public class XMLGenerator extends EmptyGenerator {
         if (location.getLocationCode().isEmpty()) {
             builder.append("<locationcode />");
         } else {
-            builder.append("<locationcode>").append(escape(location.getLocationCode())).append("</locationcode>\n");
+            builder.append("<locationcode>");
+            escape(location.getLocationCode(), builder);
+            builder.append("</locationcode>\n");
         }
 
         if (location.getCallNo().isEmpty()) {
             builder.append("<callnumber />");
         } else {
-            builder.append("<callnumber>").append(escape(location.getCallNo())).append("</callnumber>\n");
+            builder.append("<callnumber>");
+            escape(location.getCallNo(), builder);
+            builder.append("</callnumber>\n");
         }
 
         if (location.getFloor().isEmpty()) {
             builder.append("<floor />\n");
         } else {
-            builder.append("<floor>").append(escape(location.getFloor())).append("</floor>\n");
+            builder.append("<floor>");
+            escape(location.getFloor(), builder);
+            builder.append("</floor>\n");
         }
 
         if (location.getDescriptions().isEmpty()) {
@@ -223,8 +232,11 @@ public class XMLGenerator extends EmptyGenerator {
             boolean hit = false;
             for (Description desc : location.getDescriptions()) {
                 if (desc.getLanguage().getCode().equals(lang)) {
-                    builder.append("<description lang=\"").append(escape(desc.getLanguage().getCode())).append("\">");
-                    builder.append(escape(desc.getDescription())).append("</description>\n");
+                    builder.append("<description lang=\"");
+                    escape(desc.getLanguage().getCode(), builder);
+                    builder.append("\">");
+                    escape(desc.getDescription(), builder);
+                    builder.append("</description>\n");
                     hit = true;
                     break;
                 }
@@ -240,8 +252,11 @@ public class XMLGenerator extends EmptyGenerator {
             boolean hit = false;
             for (Note note : location.getNotes()) {
                 if (note.getLanguage().getCode().equals(lang)) {
-                    builder.append("<note lang=\"").append(escape(note.getLanguage().getCode())).append("\">");
-                    builder.append(escape(note.getNote())).append("</note>\n");
+                    builder.append("<note lang=\"");
+                    escape(note.getLanguage().getCode(), builder);
+                    builder.append("\">");
+                    escape(note.getNote(), builder);
+                    builder.append("</note>\n");
                     hit = true;
                     break;
                 }
@@ -260,18 +275,26 @@ public class XMLGenerator extends EmptyGenerator {
             } else {
                 url = webpath + imagesPath + location.getImage().getPath();
             }
-            builder.append("<image>").append(escape(url)).append("</image>\n");
+            builder.append("<image>");
+            escape(url, builder);
+            builder.append("</image>\n");
         }
 
         if (location.getMap() == null) {
             builder.append("<map />\n");
         } else {
             if (location.getMap().getIsExternal()) {
-                builder.append("<map lang=\"undefined\">").append(escape(location.getMap().getPath())).append("</map>\n");
+                builder.append("<map lang=\"undefined\">");
+                escape(location.getMap().getPath(), builder);
+                builder.append("</map>\n");
             } else {
                 builder.append("<map lang=\"").append(lang).append("\">");
-                builder.append(escape(webpath)).append("ImageCreator?locationId=").append(location.getLocationId());
-                builder.append("&amp;lang=").append(escape(lang)).append("&amp;owner=").append(escape(location.getOwner().getCode()));
+                escape(webpath, builder);
+                builder.append("ImageCreator?locationId=").append(location.getLocationId());
+                builder.append("&amp;lang=");
+                escape(lang, builder);
+                builder.append("&amp;owner=");
+                escape(location.getOwner().getCode(), builder);
                 builder.append("</map>\n");
             }
         }
@@ -300,7 +323,9 @@ public class XMLGenerator extends EmptyGenerator {
      */
     private void collectionToXml(LibraryCollection location, String lang, String callno, StringBuilder builder) {
         if (location.hasCollectionCode()) {
-            builder.append("<collectioncode>").append(escape(location.getCollectionCode())).append("</collectioncode>\n");
+            builder.append("<collectioncode>");
+            escape(location.getCollectionCode(), builder);
+            builder.append("</collectioncode>\n");
         } else {
             builder.append("<collectioncode />\n");
         }
@@ -308,12 +333,16 @@ public class XMLGenerator extends EmptyGenerator {
         if (location.getMainWord(callno).isEmpty()) {
             builder.append("<mainword />\n");
         } else {
-            builder.append("<mainword>").append(escape(location.getMainWord(callno))).append("</mainword>\n");
+            builder.append("<mainword>");
+            escape(location.getMainWord(callno), builder);
+            builder.append("</mainword>\n");
         }
         if (location.getShelfNumber().isEmpty()) {
             builder.append("<shelfnumber />\n");
         } else {
-            builder.append("<shelfnumber>").append(escape(location.getShelfNumber())).append("</shelfnumber>\n");
+            builder.append("<shelfnumber>");
+            escape(location.getShelfNumber(), builder);
+            builder.append("</shelfnumber>\n");
         }
         subjectsToXml(location, lang, builder);
     }
@@ -328,7 +357,9 @@ public class XMLGenerator extends EmptyGenerator {
      */
     private void shelfToXml(Shelf location, String lang, String callno, StringBuilder builder) {
         if (location.getCollection().hasCollectionCode()) {
-            builder.append("<collectioncode>").append(escape(location.getCollection().getCollectionCode())).append("</collectioncode>\n");
+            builder.append("<collectioncode>");
+            escape(location.getCollection().getCollectionCode(), builder);
+            builder.append("</collectioncode>\n");
         } else {
             builder.append("<collectioncode />\n");
         }
@@ -336,12 +367,16 @@ public class XMLGenerator extends EmptyGenerator {
         if (location.getMainWord(callno).isEmpty()) {
             builder.append("<mainword />\n");
         } else {
-            builder.append("<mainword>").append(escape(location.getMainWord(callno))).append("</mainword>\n");
+            builder.append("<mainword>");
+            escape(location.getMainWord(callno), builder);
+            builder.append("</mainword>\n");
         }
         if (location.getShelfNumber().isEmpty()) {
             builder.append("<shelfnumber />\n");
         } else {
-            builder.append("<shelfnumber>").append(escape(location.getShelfNumber())).append("</shelfnumber>\n");
+            builder.append("<shelfnumber>");
+            escape(location.getShelfNumber(), builder);
+            builder.append("</shelfnumber>\n");
         }
         subjectsToXml(location, lang, builder);
     }
@@ -361,8 +396,11 @@ public class XMLGenerator extends EmptyGenerator {
             StringBuilder temp = new StringBuilder();
             for (SubjectMatter subject : location.getSubjectMatters()) {
                 if (subject.getLanguage().getCode().equals(lang)) {
-                    temp.append("<subject lang=\"").append(escape(subject.getLanguage().getCode()));
-                    temp.append("\">").append(escape(subject.getIndexTerm())).append("</subject>\n");
+                    temp.append("<subject lang=\"");
+                    escape(subject.getLanguage().getCode(), temp);
+                    temp.append("\">");
+                    escape(subject.getIndexTerm(), temp);
+                    temp.append("</subject>\n");
                     hit = true;
                 }
             }
@@ -374,12 +412,17 @@ public class XMLGenerator extends EmptyGenerator {
         }
     }
 
-    private String escape(String data) {
-        // Loop through the filters and replace all the keys with 
-        // the corresponding value
-        for (String key : this.filters.keySet()) {
-            data = data.replaceAll(key, this.filters.get(key));
+    /**
+     * Escapes the given string and appends it to the given builder.
+     *
+     * @param data string to be escaped
+     * @param builder StringBuilder object
+     */
+    private void escape(String data, StringBuilder builder) {
+        if (this.hasCustomFilters()) {
+            builder.append(this.applyFilters(data));
+        } else {
+            Escaper.escapeXml(data, builder);
         }
-        return data;
     }
 }
@@ -18,6 +18,8 @@
 package com.pkrete.locationservice.endpoint.generator.xml;
 
 import com.pkrete.locationservice.endpoint.generator.EmptyGenerator;
+import com.pkrete.locationservice.endpoint.generator.Escaper;
+import com.pkrete.locationservice.endpoint.generator.StreamingGenerator;
 import com.pkrete.locationservice.endpoint.model.location.Area;
 import com.pkrete.locationservice.endpoint.model.location.Description;
 import com.pkrete.locationservice.endpoint.model.language.Language;
@@ -29,6 +31,10 @@ import com.pkrete.locationservice.endpoint.model.location.Shelf;
 import com.pkrete.locationservice.endpoint.model.search.LocationType;
 import com.pkrete.locationservice.endpoint.model.subjectmatter.SubjectMatter;
 import com.pkrete.locationservice.endpoint.util.Settings;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 
@@ -40,7 +46,7 @@ import java.util.List;
  *
  * @author Petteri Kivimäki
  */
-public class XmlBatchGenerator extends EmptyGenerator {
+public class XmlBatchGenerator extends EmptyGenerator implements StreamingGenerator {
 
     /**
      * Constructs and initializes a new XmlBatchGenerator object.
@@ -63,21 +69,43 @@ public class XmlBatchGenerator extends EmptyGenerator {
      */
     @Override
     public String generateBatchOutput(List locations, List<Language> languages, boolean children) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        StringWriter writer = new StringWriter();
+        try {
+            writeBatchOutput((List<Location>) locations, languages, children, writer);
+        } catch (IOException ioe) {
+            // StringWriter doesn't throw IOExceptions
+            throw new IllegalStateException(ioe);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes XML presentation of the given locations to the given writer.
+     * Every location is written as soon as it's read from the given
+     * Iterable.
+     *
+     * @param locations locations to be presented in XML
+     * @param languages list of available languages in the system
+     * @param children if true, the children of the locations are included
+     * @param out writer where the output is written
+     * @throws IOException if writing the output fails
+     */
+    @Override
+    public void writeBatchOutput(Iterable<? extends Location> locations, List<Language> languages, boolean children, Writer out) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
 
-        if (locations.isEmpty()) {
-            builder.append("<locations/>\n");
-            return builder.toString().trim();
+        Iterator<? extends Location> iterator = locations.iterator();
+        if (!iterator.hasNext()) {
+            out.write("<locations/>");
+            return;
         }
 
-        builder.append("<locations>\n");
-        for (Location location : (List<Location>) locations) {
-            builder.append(locationToXml(location, languages, children));
+        out.write("<locations>\n");
+        while (iterator.hasNext()) {
+            writeLocation(iterator.next(), languages, children, out);
         }
 
-        builder.append("</locations>\n");
-        return builder.toString().trim();
+        out.write("</locations>");
     }
 
     /**
@@ -99,167 +127,200 @@ public class XmlBatchGenerator extends EmptyGenerator {
     }
 
     /**
-     * Returns XML presentation of the given location.
+     * Writes XML presentation of the given location to the given writer. The
+     * closing location tag is not followed by a line break.
      *
      * @param location location to be presented in XML
      * @param languages list of available languages in the system
-     * @return XML presentation of the given location
+     * @param children if true, the children of the location are included
+     * @param out writer where the output is written
+     * @throws IOException if writing the output fails
      */
-    private String locationToXml(Location location, List<Language> languages, boolean children) {
-        StringBuilder builder = new StringBuilder();
+    private void writeLocation(Location location, List<Language> languages, boolean children, Writer out) throws IOException {
         String imagesPath = escape(Settings.getInstance().getImagesPath(location.getOwner().getCode()));
         String webpath = escape(Settings.getInstance().getWebpath());
         LocationType locationType = LocationType.LIBRARY;
 
         if (location instanceof Library) {
             locationType = LocationType.LIBRARY;
-            builder.append("<location type=\"library\">\n");
+            out.append("<location type=\"library\">\n");
         } else if (location instanceof LibraryCollection) {
             locationType = LocationType.COLLECTION;
-            builder.append("<location type=\"collection\">\n");
+            out.append("<location type=\"collection\">\n");
         } else if (location instanceof Shelf) {
             locationType = LocationType.SHELF;
-            builder.append("<location type=\"shelf\">\n");
+            out.append("<location type=\"shelf\">\n");
         }
 
-        builder.append("<locationid>").append(location.getLocationId()).append("</locationid>\n");
+        out.append("<locationid>").append(String.valueOf(location.getLocationId())).append("</locationid>\n");
 
         if (locationType == LocationType.COLLECTION) {
-            builder.append("<libraryid>").append(((LibraryCollection) location).getLibrary().getLocationId()).append("</libraryid>\n");
+            out.append("<libraryid>").append(String.valueOf(((LibraryCollection) location).getLibrary().getLocationId())).append("</libraryid>\n");
         } else if (locationType == LocationType.SHELF) {
-            builder.append("<libraryid>").append(((Shelf) location).getCollection().getLibrary().getLocationId()).append("</libraryid>\n");
-            builder.append("<collectionid>").append(((Shelf) location).getCollection().getLocationId()).append("</collectionid>\n");
+            out.append("<libraryid>").append(String.valueOf(((Shelf) location).getCollection().getLibrary().getLocationId())).append("</libraryid>\n");
+            out.append("<collectionid>").append(String.valueOf(((Shelf) location).getCollection().getLocationId())).append("</collectionid>\n");
         }
 
-        builder.append("<name>").append(escape(location.getName())).append("</name>\n");
+        out.append("<name>");
+        escape(location.getName(), out);
+        out.append("</name>\n");
 
         if (location.getLocationCode().isEmpty()) {
-            builder.append("<locationcode />");
+            out.append("<locationcode />");
         } else {
-            builder.append("<locationcode>").append(escape(location.getLocationCode())).append("</locationcode>\n");
+            out.append("<locationcode>");
+            escape(location.getLocationCode(), out);
+            out.append("</locationcode>\n");
         }
 
         if (locationType == LocationType.COLLECTION) {
             if (((LibraryCollection) location).hasCollectionCode()) {
-                builder.append("<collectioncode>").append(escape(((LibraryCollection) location).getCollectionCode())).append("</collectioncode>\n");
+                out.append("<collectioncode>");
+                escape(((LibraryCollection) location).getCollectionCode(), out);
+                out.append("</collectioncode>\n");
             } else {
-                builder.append("<collectioncode />\n");
+                out.append("<collectioncode />\n");
             }
         } else if (locationType == LocationType.SHELF) {
             if (((Shelf) location).getCollection().hasCollectionCode()) {
-                builder.append("<collectioncode>").append(escape(((Shelf) location).getCollection().getCollectionCode())).append("</collectioncode>\n");
+                out.append("<collectioncode>");
+                escape(((Shelf) location).getCollection().getCollectionCode(), out);
+                out.append("</collectioncode>\n");
             } else {
-                builder.append("<collectioncode />\n");
+                out.append("<collectioncode />\n");
             }
         }
 
         if (location.getCallNo().isEmpty()) {
-            builder.append("<callnumber />");
+            out.append("<callnumber />");
         } else {
-            builder.append("<callnumber>").append(escape(location.getCallNo())).append("</callnumber>\n");
+            out.append("<callnumber>");
+            escape(location.getCallNo(), out);
+            out.append("</callnumber>\n");
         }
 
         if (location.getFloor().isEmpty()) {
-            builder.append("<floor />\n");
+            out.append("<floor />\n");
         } else {
-            builder.append("<floor>").append(escape(location.getFloor())).append("</floor>\n");
+            out.append("<floor>");
+            escape(location.getFloor(), out);
+            out.append("</floor>\n");
         }
 
         if (location.getDescriptions().isEmpty()) {
-            builder.append("<descriptions />\n");
+            out.append("<descriptions />\n");
         } else {
-            builder.append("<descriptions>\n");
+            out.append("<descriptions>\n");
             for (Description desc : location.getDescriptions()) {
-                builder.append("<description lang=\"").append(escape(desc.getLanguage().getCode())).append("\">");
-                builder.append(escape(desc.getDescription())).append("</description>\n");
+                out.append("<description lang=\"");
+                escape(desc.getLanguage().getCode(), out);
+                out.append("\">");
+                escape(desc.getDescription(), out);
+                out.append("</description>\n");
             }
-            builder.append("</descriptions>\n");
+            out.append("</descriptions>\n");
         }
 
         if (location.getNotes().isEmpty()) {
-            builder.append("<notes />\n");
+            out.append("<notes />\n");
         } else {
-            builder.append("<notes>\n");
+            out.append("<notes>\n");
             for (Note note : location.getNotes()) {
-                builder.append("<note lang=\"").append(escape(note.getLanguage().getCode())).append("\">");
-                builder.append(escape(note.getNote())).append("</note>\n");
+                out.append("<note lang=\"");
+                escape(note.getLanguage().getCode(), out);
+                out.append("\">");
+                escape(note.getNote(), out);
+                out.append("</note>\n");
             }
-            builder.append("</notes>\n");
+            out.append("</notes>\n");
         }
 
         if (location.getStaffNotePri() != null) {
             if (location.getStaffNotePri().isEmpty()) {
-                builder.append("<staffNote1 />\n");
+                out.append("<staffNote1 />\n");
             } else {
-                builder.append("<staffNote1>").append(escape(location.getStaffNotePri())).append("</staffNote1>\n");
+                out.append("<staffNote1>");
+                escape(location.getStaffNotePri(), out);
+                out.append("</staffNote1>\n");
             }
         } else {
-            builder.append("<staffNote1 />\n");
+            out.append("<staffNote1 />\n");
         }
 
         if (location.getStaffNoteSec() != null) {
             if (location.getStaffNoteSec().isEmpty()) {
-                builder.append("<staffNote2 />\n");
+                out.append("<staffNote2 />\n");
             } else {
-                builder.append("<staffNote2>").append(escape(location.getStaffNoteSec())).append("</staffNote2>\n");
+                out.append("<staffNote2>");
+                escape(location.getStaffNoteSec(), out);
+                out.append("</staffNote2>\n");
             }
         } else {
-            builder.append("<staffNote2 />\n");
+            out.append("<staffNote2 />\n");
         }
 
         if (location.getImage() == null) {
-            builder.append("<image />\n");
+            out.append("<image />\n");
         } else {
-            StringBuilder url = new StringBuilder();
-            if (location.getImage().getIsExternal()) {
-                url.append(escape(location.getImage().getPath()));
-            } else {
-                url.append(webpath).append(imagesPath).append(escape(location.getImage().getPath()));
+            out.append("<image>");
+            if (!location.getImage().getIsExternal()) {
+                out.append(webpath).append(imagesPath);
             }
-            builder.append("<image>").append(url).append("</image>\n");
+            escape(location.getImage().getPath(), out);
+            out.append("</image>\n");
         }
 
         if (location.getMap() == null) {
-            builder.append("<maps />\n");
+            out.append("<maps />\n");
         } else {
-            builder.append("<maps>\n");
+            out.append("<maps>\n");
             if (location.getMap().getIsExternal()) {
-                builder.append("<map lang=\"undefined\">").append(escape(location.getMap().getPath())).append("</map>\n");
+                out.append("<map lang=\"undefined\">");
+                escape(location.getMap().getPath(), out);
+                out.append("</map>\n");
             } else {
                 for (Language lang : languages) {
-                    builder.append("<map lang=\"").append(escape(lang.getCode())).append("\">");
-                    builder.append(webpath).append("ImageCreator?locationId=").append(location.getLocationId());
-                    builder.append("&amp;lang=").append(escape(lang.getCode())).append("&amp;owner=").append(escape(location.getOwner().getCode()));
-                    builder.append("</map>\n");
+                    out.append("<map lang=\"");
+                    escape(lang.getCode(), out);
+                    out.append("\">");
+                    out.append(webpath).append("ImageCreator?locationId=").append(String.valueOf(location.getLocationId()));
+                    out.append("&amp;lang=");
+                    escape(lang.getCode(), out);
+                    out.append("&amp;owner=");
+                    escape(location.getOwner().getCode(), out);
+                    out.append("</map>\n");
                 }
             }
-            builder.append("</maps>\n");
+            out.append("</maps>\n");
         }
 
         if (location.getAreas().isEmpty()) {
-            builder.append("<areas />\n");
+            out.append("<areas />\n");
         } else {
-            builder.append("<areas>\n");
+            out.append("<areas>\n");
             for (Area area : location.getAreas()) {
-                builder.append("<area x1=\"").append(area.getX1()).append("\" ");
-                builder.append("y1=\"").append(area.getY1()).append("\" ");
-                builder.append("x2=\"").append(area.getX2()).append("\" ");
-                builder.append("y2=\"").append(area.getY2()).append("\" ");
-                builder.append("angle=\"").append(area.getAngle()).append("\" />\n");
+                out.append("<area x1=\"").append(String.valueOf(area.getX1())).append("\" ");
+                out.append("y1=\"").append(String.valueOf(area.getY1())).append("\" ");
+                out.append("x2=\"").append(String.valueOf(area.getX2())).append("\" ");
+                out.append("y2=\"").append(String.valueOf(area.getY2())).append("\" ");
+                out.append("angle=\"").append(String.valueOf(area.getAngle())).append("\" />\n");
             }
-            builder.append("</areas>\n");
+            out.append("</areas>\n");
         }
 
         if (locationType != LocationType.LIBRARY) {
             if (location.getSubjectMatters().isEmpty()) {
-                builder.append("<subjects />\n");
+                out.append("<subjects />\n");
             } else {
-                builder.append("<subjects>\n");
+                out.append("<subjects>\n");
                 for (SubjectMatter subject : location.getSubjectMatters()) {
-                    builder.append("<subject lang=\"").append(escape(subject.getLanguage().getCode()));
-                    builder.append("\">").append(escape(subject.getIndexTerm())).append("</subject>\n");
+                    out.append("<subject lang=\"");
+                    escape(subject.getLanguage().getCode(), out);
+                    out.append("\">");
+                    escape(subject.getIndexTerm(), out);
+                    out.append("</subject>\n");
                 }
-                builder.append("</subjects>\n");
+                out.append("</subjects>\n");
             }
         }
 
@@ -268,56 +329,80 @@ public class XmlBatchGenerator extends EmptyGenerator {
                 if (children) {
                     Library lib = (Library) location;
                     if (lib.getCollections().isEmpty()) {
-                        builder.append("<collections />\n");
+                        out.append("<collections />\n");
                     } else {
-                        builder.append("<collections>\n");
+                        out.append("<collections>\n");
                         for (LibraryCollection col : lib.getCollections()) {
-                            builder.append(locationToXml(col, languages, true)).append("\n");
+                            writeLocation(col, languages, true, out);
+                            out.append("\n");
                         }
-                        builder.append("</collections>\n");
+                        out.append("</collections>\n");
                     }
                 }
-                builder.append("</location>\n");
+                out.append("</location>");
                 break;
             case COLLECTION:
                 LibraryCollection col = (LibraryCollection) location;
                 if (col.getShelfNumber().isEmpty()) {
-                    builder.append("<shelfnumber />\n");
+                    out.append("<shelfnumber />\n");
                 } else {
-                    builder.append("<shelfnumber>").append(escape(col.getShelfNumber())).append("</shelfnumber>\n");
+                    out.append("<shelfnumber>");
+                    escape(col.getShelfNumber(), out);
+                    out.append("</shelfnumber>\n");
                 }
                 if (children) {
                     if (col.getShelves().isEmpty()) {
-                        builder.append("<shelves />\n");
+                        out.append("<shelves />\n");
                     } else {
-                        builder.append("<shelves>\n");
+                        out.append("<shelves>\n");
                         for (Shelf shelf : col.getShelves()) {
-                            builder.append(locationToXml(shelf, languages, true)).append("\n");
+                            writeLocation(shelf, languages, true, out);
+                            out.append("\n");
                         }
-                        builder.append("</shelves>\n");
+                        out.append("</shelves>\n");
                     }
                 }
-                builder.append("</location>\n");
+                out.append("</location>");
                 break;
             case SHELF:
                 Shelf shelf = (Shelf) location;
                 if (shelf.getShelfNumber().isEmpty()) {
-                    builder.append("<shelfnumber />\n");
+                    out.append("<shelfnumber />\n");
                 } else {
-                    builder.append("<shelfnumber>").append(escape(shelf.getShelfNumber())).append("</shelfnumber>\n");
+                    out.append("<shelfnumber>");
+                    escape(shelf.getShelfNumber(), out);
+                    out.append("</shelfnumber>\n");
                 }
-                builder.append("</location>\n");
+                out.append("</location>");
                 break;
         }
-        return builder.toString().trim();
     }
 
+    /**
+     * Escapes the given string.
+     *
+     * @param data string to be escaped
+     * @return escaped string
+     */
     private String escape(String data) {
-        // Loop through the filters and replace all the keys with 
-        // the corresponding value
-        for (String key : this.filters.keySet()) {
-            data = data.replaceAll(key, this.filters.get(key));
+        if (this.hasCustomFilters()) {
+            return this.applyFilters(data);
+        }
+        return Escaper.escapeXml(data);
+    }
+
+    /**
+     * Escapes the given string and writes it to the given writer.
+     *
+     * @param data string to be escaped
+     * @param out writer where the output is written
+     * @throws IOException if writing the output fails
+     */
+    private void escape(String data, Writer out) throws IOException {
+        if (this.hasCustomFilters()) {
+            out.write(this.applyFilters(data));
+        } else {
+            Escaper.escapeXml(data, out);
         }
-        return data;
     }
 }
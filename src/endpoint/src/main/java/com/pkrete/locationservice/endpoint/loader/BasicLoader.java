@@ -21,9 +21,11 @@ import com.pkrete.locationservice.endpoint.model.location.Library;
 import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
 import com.pkrete.locationservice.endpoint.util.Settings;
 import com.pkrete.locationservice.endpoint.model.location.Shelf;
+import com.pkrete.locationservice.endpoint.templateparser.Template;
+import com.pkrete.locationservice.endpoint.templateparser.TemplateCache;
+import com.pkrete.locationservice.endpoint.templateparser.TemplateLine;
 import com.pkrete.locationservice.endpoint.templateparser.TemplateParser;
 import java.io.*;
-import java.util.Scanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,14 +43,17 @@ import org.slf4j.LoggerFactory;
 public class BasicLoader implements Loader {
 
     private final static Logger logger = LoggerFactory.getLogger(BasicLoader.class.getName());
-    private String encoding;
+    private final static String NL = System.getProperty("line.separator");
     private TemplateParser parser;
+    private TemplateCache templateCache;
+    private TemplateManifest templateManifest;
 
     /**
      * Constructs and initializes an OutputLoader object.
      */
     public BasicLoader() {
-        this.encoding = "UTF-8";
+        this.templateCache = new TemplateCache();
+        this.templateManifest = new TemplateManifest();
     }
 
     /**
@@ -70,6 +75,24 @@ public class BasicLoader implements Loader {
         this.parser = parser;
     }
 
+    /**
+     * Sets the cache that holds the parsed templates.
+     *
+     * @param templateCache new value
+     */
+    public void setTemplateCache(TemplateCache templateCache) {
+        this.templateCache = templateCache;
+    }
+
+    /**
+     * Sets the manifest that's used for checking if a template exists.
+     *
+     * @param templateManifest new value
+     */
+    public void setTemplateManifest(TemplateManifest templateManifest) {
+        this.templateManifest = templateManifest;
+    }
+
     /**
      * Loads the template that is shown to the user when the location doesn't
      * exist in the database.
@@ -84,7 +107,7 @@ public class BasicLoader implements Loader {
         StringBuilder builder = new StringBuilder();
         builder.append(getPath(owner)).append(lang).append("/template_not_found.txt");
         File file = new File(builder.toString());
-        if (!file.exists()) {
+        if (!exists(builder.toString())) {
             logger.error("Template doesn't exist : \"{}\"", builder.toString());
             return "<html>\n<head>\n</head>\n<body>\n</body>\n</html>\n";
         }
@@ -106,7 +129,7 @@ public class BasicLoader implements Loader {
         StringBuilder builder = new StringBuilder();
         builder.append(getPath(owner)).append(lang).append("/template_not_available.txt");
         File file = new File(builder.toString());
-        if (!file.exists()) {
+        if (!exists(builder.toString())) {
             logger.error("Template doesn't exist : \"{}\"", builder.toString());
             return "<html>\n<head>\n</head>\n<body>\n</body>\n</html>\n";
         }
@@ -128,21 +151,18 @@ public class BasicLoader implements Loader {
      */
     @Override
     public String loadTemplate(String lang, String template, String status, String callno, String owner) {
+        Template parsed = templateCache.get(template);
+        if (parsed == null) {
+            return "";
+        }
         StringBuilder text = new StringBuilder();
-        String NL = System.getProperty("line.separator");
-        Scanner scanner = null;
         try {
-            scanner = new Scanner(new FileInputStream(template), encoding);
-            while (scanner.hasNextLine()) {
-                text.append(parser.parse(scanner.nextLine(), lang, status, callno, this, owner));
+            for (TemplateLine line : parsed.getLines()) {
+                parser.parse(line, lang, status, callno, this, owner, text);
                 text.append(NL);
             }
         } catch (Exception e) {
             logger.error(e.getMessage());
-        } finally {
-            if (scanner != null) {
-                scanner.close();
-            }
         }
         return text.toString();
     }
@@ -158,7 +178,7 @@ public class BasicLoader implements Loader {
     @Override
     public String loadTemplate(String lang, Shelf shelf, String callno) {
         String fileName = getTemplateName(shelf, lang);
-        if (!new File(fileName).exists()) {
+        if (!exists(fileName)) {
             logger.error("Template doesn't exist : \"{}\"", fileName);
             return "<html>\n<head>\n</head>\n<body>\n</body>\n</html>\n";
         }
@@ -177,21 +197,18 @@ public class BasicLoader implements Loader {
      */
     @Override
     public String loadTemplate(String lang, Shelf shelf, String callno, String template) {
+        Template parsed = templateCache.get(template);
+        if (parsed == null) {
+            return "";
+        }
         StringBuilder text = new StringBuilder();
-        String NL = System.getProperty("line.separator");
-        Scanner scanner = null;
         try {
-            scanner = new Scanner(new FileInputStream(template), encoding);
-            while (scanner.hasNextLine()) {
-                text.append(parser.parse(scanner.nextLine(), lang, shelf, callno, this));
+            for (TemplateLine line : parsed.getLines()) {
+                parser.parse(line, lang, shelf, callno, this, text);
                 text.append(NL);
             }
         } catch (Exception e) {
             logger.error(e.getMessage());
-        } finally {
-            if (scanner != null) {
-                scanner.close();
-            }
         }
         return text.toString();
     }
@@ -208,7 +225,7 @@ public class BasicLoader implements Loader {
     @Override
     public String loadTemplate(String lang, LibraryCollection collection, String callno) {
         String fileName = getTemplateName(collection, lang);
-        if (!new File(fileName).exists()) {
+        if (!exists(fileName)) {
             logger.error("Template doesn't exist : \"{}\"", fileName);
             return "<html>\n<head>\n</head>\n<body>\n</body>\n</html>\n";
         }
@@ -227,21 +244,18 @@ public class BasicLoader implements Loader {
      */
     @Override
     public String loadTemplate(String lang, LibraryCollection collection, String callno, String template) {
+        Template parsed = templateCache.get(template);
+        if (parsed == null) {
+            return "";
+        }
         StringBuilder text = new StringBuilder();
-        String NL = System.getProperty("line.separator");
-        Scanner scanner = null;
         try {
-            scanner = new Scanner(new FileInputStream(template), encoding);
-            while (scanner.hasNextLine()) {
-                text.append(parser.parse(scanner.nextLine(), lang, collection, callno, this));
+            for (TemplateLine line : parsed.getLines()) {
+                parser.parse(line, lang, collection, callno, this, text);
                 text.append(NL);
             }
         } catch (Exception e) {
             logger.error(e.getMessage());
-        } finally {
-            if (scanner != null) {
-                scanner.close();
-            }
         }
         return text.toString();
     }
@@ -257,7 +271,7 @@ public class BasicLoader implements Loader {
     @Override
     public String loadTemplate(String lang, Library library, String callno) {
         String fileName = getTemplateName(library, lang);
-        if (!new File(fileName).exists()) {
+        if (!exists(fileName)) {
             logger.error("Template doesn't exist : \"{}\"", fileName);
             return "<html>\n<head>\n</head>\n<body>\n</body>\n</html>\n";
         }
@@ -276,21 +290,18 @@ public class BasicLoader implements Loader {
      */
     @Override
     public String loadTemplate(String lang, Library library, String callno, String template) {
+        Template parsed = templateCache.get(template);
+        if (parsed == null) {
+            return "";
+        }
         StringBuilder text = new StringBuilder();
-        String NL = System.getProperty("line.separator");
-        Scanner scanner = null;
         try {
-            scanner = new Scanner(new FileInputStream(template), encoding);
-            while (scanner.hasNextLine()) {
-                text.append(parser.parse(scanner.nextLine(), lang, library, callno, this));
+            for (TemplateLine line : parsed.getLines()) {
+                parser.parse(line, lang, library, callno, this, text);
                 text.append(NL);
             }
         } catch (Exception e) {
             logger.error(e.getMessage());
-        } finally {
-            if (scanner != null) {
-                scanner.close();
-            }
         }
         return text.toString();
     }
@@ -306,7 +317,7 @@ public class BasicLoader implements Loader {
         if (shelf.getCollection().hasCollectionCode()) {
             builder.append(templateBase).append(shelf.getCallNoForTemplateName(true)).append(templateExtension);
             file = new File(builder.toString());
-            if (file.exists()) {
+            if (exists(builder.toString())) {
                 logger.debug("Template found : \"{}\"", builder.toString());
                 return file.getAbsolutePath();
             }
@@ -315,7 +326,7 @@ public class BasicLoader implements Loader {
         builder.setLength(0);
         builder.append(templateBase).append(shelf.getCallNoForTemplateName(false)).append(templateExtension);
         file = new File(builder.toString());
-        if (file.exists()) {
+        if (exists(builder.toString())) {
             logger.debug("Template found : \"{}\"", builder.toString());
             return file.getAbsolutePath();
         }
@@ -324,7 +335,7 @@ public class BasicLoader implements Loader {
             builder.setLength(0);
             builder.append(templateBase).append(shelf.getCollection().getCallNoForTemplateName(true)).append(templateExtension);
             file = new File(builder.toString());
-            if (file.exists()) {
+            if (exists(builder.toString())) {
                 logger.debug("Template found : \"{}\"", builder.toString());
                 return file.getAbsolutePath();
             }
@@ -333,7 +344,7 @@ public class BasicLoader implements Loader {
         builder.setLength(0);
         builder.append(templateBase).append(shelf.getCollection().getCallNoForTemplateName(false)).append(templateExtension);
         file = new File(builder.toString());
-        if (file.exists()) {
+        if (exists(builder.toString())) {
             logger.debug("Template found : \"{}\"", builder.toString());
             return file.getAbsolutePath();
         }
@@ -341,7 +352,7 @@ public class BasicLoader implements Loader {
         builder.setLength(0);
         builder.append(templateBase).append(shelf.getCollection().getLibrary().getCallNoForTemplateName(true)).append(templateExtension);
         file = new File(builder.toString());
-        if (file.exists()) {
+        if (exists(builder.toString())) {
             logger.debug("Template found : \"{}\"", builder.toString());
             return file.getAbsolutePath();
         }
@@ -363,7 +374,7 @@ public class BasicLoader implements Loader {
         if (collection.hasCollectionCode()) {
             builder.append(templateBase).append(collection.getCallNoForTemplateName(true)).append(templateExtension);
             file = new File(builder.toString());
-            if (file.exists()) {
+            if (exists(builder.toString())) {
                 logger.debug("Template found : \"{}\"", builder.toString());
                 return file.getAbsolutePath();
             }
@@ -372,7 +383,7 @@ public class BasicLoader implements Loader {
         builder.setLength(0);
         builder.append(templateBase).append(collection.getCallNoForTemplateName(false)).append(templateExtension);
         file = new File(builder.toString());
-        if (file.exists()) {
+        if (exists(builder.toString())) {
             logger.debug("Template found : \"{}\"", builder.toString());
             return file.getAbsolutePath();
         }
@@ -380,7 +391,7 @@ public class BasicLoader implements Loader {
         builder.setLength(0);
         builder.append(templateBase).append(collection.getLibrary().getCallNoForTemplateName(true)).append(templateExtension);
         file = new File(builder.toString());
-        if (file.exists()) {
+        if (exists(builder.toString())) {
             logger.debug("Template found : \"{}\"", builder.toString());
             return file.getAbsolutePath();
         }
@@ -397,7 +408,7 @@ public class BasicLoader implements Loader {
 
         builder.append(path).append(lang).append("/template_library_").append(library.getCallNoForTemplateName(true)).append(".txt");
         File file = new File(builder.toString());
-        if (file.exists()) {
+        if (exists(builder.toString())) {
             logger.debug("Template found : \"{}\"", builder.toString());
             return file.getAbsolutePath();
         }
@@ -422,7 +433,7 @@ public class BasicLoader implements Loader {
         StringBuilder builder = new StringBuilder();
         builder.append(getPath(owner)).append(lang).append("/template_other_").append(template.replaceAll(" ", "_"));
         File file = new File(builder.toString());
-        if (!file.exists()) {
+        if (!exists(builder.toString())) {
             logger.warn("Template not found : \"{}\"", builder.toString());
             return null;
         }
@@ -430,6 +441,18 @@ public class BasicLoader implements Loader {
         return file.getAbsolutePath();
     }
 
+    /**
+     * Checks if the template file with the given path exists. The check is
+     * done using the template manifest.
+     *
+     * @param path path of the template file
+     * @return true if the file exists, otherwise false
+     */
+    private boolean exists(String path) {
+        int index = path.lastIndexOf('/') + 1;
+        return templateManifest.exists(path.substring(0, index), path.substring(index));
+    }
+
     private String getPath(String owner) {
         return Settings.getInstance().getTemplatesPath(owner);
     }
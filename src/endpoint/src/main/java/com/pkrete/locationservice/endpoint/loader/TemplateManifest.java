@@ -0,0 +1,185 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.loader;
+
+import com.pkrete.locationservice.endpoint.util.Settings;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class holds the names of the files in the template directories in
+ * memory, so that the existence of a template can be checked without
+ * accessing the file system. The contents of a directory are listed when
+ * the directory is requested for the first time. After that, the modification
+ * time of the directory is checked at most once in every check interval, and
+ * if the directory has changed, it's listed again.
+ *
+ * If the check interval is negative, the directories are never checked and
+ * the manifest must be invalidated explicitly.
+ *
+ * @author Petteri Kivimäki
+ */
+public class TemplateManifest {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateManifest.class.getName());
+    private final ConcurrentMap<String, Directory> directories;
+    private long checkInterval = 5;
+
+    /**
+     * Constructs and initializes a new TemplateManifest object.
+     */
+    public TemplateManifest() {
+        this.directories = new ConcurrentHashMap<String, Directory>();
+    }
+
+    /**
+     * Sets the minimum time in seconds between two modification checks of a
+     * directory. Zero means that the directory is checked on every request
+     * and negative value means that the directory is never checked. Default
+     * is 5 seconds.
+     *
+     * @param checkInterval check interval in seconds
+     */
+    public void setCheckInterval(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Checks if the given file exists in the given directory. If the file name
+     * contains a path separator, the file system is checked directly.
+     *
+     * @param directory path of the directory ending with a path separator
+     * @param fileName name of the file
+     * @return true if the file exists, otherwise false
+     */
+    public boolean exists(String directory, String fileName) {
+        if (fileName.indexOf('/') != -1 || fileName.indexOf(File.separatorChar) != -1) {
+            return new File(directory + fileName).exists();
+        }
+        return this.get(directory).contains(fileName);
+    }
+
+    /**
+     * Removes the template directories of the given owner from the manifest.
+     * The directories are listed again on the next request.
+     *
+     * @param owner owner code
+     */
+    public void invalidate(String owner) {
+        String prefix = Settings.getInstance().getTemplatesPath(owner);
+        Iterator<String> it = this.directories.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+        logger.info("Template manifest of owner \"{}\" invalidated.", owner);
+    }
+
+    /**
+     * Removes all the directories from the manifest.
+     */
+    public void invalidateAll() {
+        this.directories.clear();
+        logger.info("Template manifest invalidated.");
+    }
+
+    /**
+     * Returns the names of the files in the given directory. If the directory
+     * isn't listed yet or it has changed, it's listed before returning.
+     *
+     * @param path path of the directory
+     * @return names of the files in the directory
+     */
+    private Set<String> get(String path) {
+        Directory dir = this.directories.get(path);
+        long now = System.currentTimeMillis();
+        if (dir != null && !this.isModified(dir, path, now)) {
+            return dir.files;
+        }
+        dir = this.list(path, now);
+        this.directories.put(path, dir);
+        return dir.files;
+    }
+
+    /**
+     * Checks if the given directory has changed after it was listed. The
+     * directory is checked only if the check interval has passed since the
+     * last check.
+     *
+     * @param dir directory to be checked
+     * @param path path of the directory
+     * @param now current time
+     * @return true if the directory has changed; otherwise false
+     */
+    private boolean isModified(Directory dir, String path, long now) {
+        if (this.checkInterval < 0 || now - dir.checked < this.checkInterval * 1000) {
+            return false;
+        }
+        if (new File(path).lastModified() != dir.lastModified) {
+            logger.debug("Template directory modified : \"{}\"", path);
+            return true;
+        }
+        dir.checked = now;
+        return false;
+    }
+
+    /**
+     * Lists the files in the given directory.
+     *
+     * @param path path of the directory
+     * @param now current time
+     * @return listed directory
+     */
+    private Directory list(String path, long now) {
+        File file = new File(path);
+        long lastModified = file.lastModified();
+        Set<String> files = new HashSet<String>();
+        String[] names = file.list();
+        if (names == null) {
+            logger.warn("Template directory doesn't exist : \"{}\"", path);
+        } else {
+            Collections.addAll(files, names);
+        }
+        logger.debug("Template directory listed : \"{}\". {} files found.", path, files.size());
+        return new Directory(Collections.unmodifiableSet(files), lastModified, now);
+    }
+
+    /**
+     * This class holds the file names of a single directory.
+     */
+    private static class Directory {
+
+        private final Set<String> files;
+        private final long lastModified;
+        private volatile long checked;
+
+        Directory(Set<String> files, long lastModified, long checked) {
+            this.files = files;
+            this.lastModified = lastModified;
+            this.checked = checked;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts the durations of a single processing stage into
+ * cumulative buckets. The bucket bounds are fixed, and all the counters are
+ * updated without locking.
+ *
+ * @author Petteri Kivimäki
+ */
+public class Histogram {
+
+    /**
+     * Upper bounds of the buckets in seconds. The last bucket has no upper
+     * bound.
+     */
+    public static final double[] BOUNDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+    private final String labels;
+    private final AtomicLongArray buckets;
+    private final AtomicLong sum;
+    private final AtomicLong errors;
+
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            BOUNDS_NANOS[i] = (long) (BOUNDS[i] * 1000000000L);
+        }
+    }
+
+    /**
+     * Constructs and initializes a new Histogram object.
+     *
+     * @param labels labels of the histogram in the text exposition format
+     */
+    public Histogram(String labels) {
+        this.labels = labels;
+        this.buckets = new AtomicLongArray(BOUNDS.length + 1);
+        this.sum = new AtomicLong();
+        this.errors = new AtomicLong();
+    }
+
+    /**
+     * Returns the labels of the histogram in the text exposition format, e.g.
+     * <code>stage="dao",owner="TEST"</code>.
+     *
+     * @return labels
+     */
+    public String getLabels() {
+        return labels;
+    }
+
+    /**
+     * Adds the given duration to the histogram.
+     *
+     * @param nanos duration in nanoseconds
+     * @param error true if the stage ended with an exception
+     */
+    public void observe(long nanos, boolean error) {
+        int i = 0;
+        while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) {
+            i++;
+        }
+        this.buckets.incrementAndGet(i);
+        this.sum.addAndGet(nanos);
+        if (error) {
+            this.errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the cumulative counts of the buckets. The last value is the
+     * total count.
+     *
+     * @return cumulative bucket counts
+     */
+    public long[] getCumulativeCounts() {
+        long[] counts = new long[BOUNDS.length + 1];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += this.buckets.get(i);
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the sum of the observed durations in seconds.
+     *
+     * @return sum in seconds
+     */
+    public double getSum() {
+        return this.sum.get() / 1000000000.0;
+    }
+
+    /**
+     * Returns the number of stages that ended with an exception.
+     *
+     * @return number of errors
+     */
+    public long getErrors() {
+        return this.errors.get();
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.metrics;
+
+/**
+ * This class holds the tags of the request that's being processed by the
+ * current thread, and tells if the durations of the request are recorded.
+ *
+ * @author Petteri Kivimäki
+ */
+public class MetricsContext {
+
+    private final String owner;
+    private final String format;
+    private final boolean sampled;
+    private String strategy = "";
+
+    /**
+     * Constructs and initializes a new MetricsContext object.
+     *
+     * @param owner owner code
+     * @param format output format
+     * @param sampled true if the durations of the request are recorded
+     */
+    public MetricsContext(String owner, String format, boolean sampled) {
+        this.owner = owner;
+        this.format = format;
+        this.sampled = sampled;
+    }
+
+    /**
+     * Returns the owner code.
+     *
+     * @return owner code
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the output format.
+     *
+     * @return output format
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * Returns true if the durations of the request are recorded.
+     *
+     * @return true if the request is sampled; otherwise false
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * Returns the locating strategy of the owner.
+     *
+     * @return locating strategy or an empty string
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Sets the locating strategy of the owner.
+     *
+     * @param strategy locating strategy
+     */
+    public void setStrategy(String strategy) {
+        this.strategy = strategy;
+    }
+}
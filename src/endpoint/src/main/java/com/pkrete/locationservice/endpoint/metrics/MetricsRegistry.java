@@ -0,0 +1,286 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.metrics;
+
+import com.pkrete.locationservice.endpoint.owner.OwnerCache;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class collects the durations of the request processing stages into
+ * histograms that are tagged by stage, operation, owner, locating strategy
+ * and output format. The tags of the request are kept in a thread local
+ * {@link MetricsContext MetricsContext} that's set when the processing of a
+ * request begins.
+ *
+ * Only a part of the requests are recorded according to the sample rate. If
+ * the sample rate is zero, nothing is recorded and timing a stage costs only
+ * a single field read.
+ *
+ * The owner code comes from the request, so only codes of existing owners
+ * are used as tags. Other codes are recorded as "unknown" owner, which keeps
+ * the number of histograms bounded.
+ *
+ * @author Petteri Kivimäki
+ */
+public class MetricsRegistry {
+
+    private static final String NAME = "locationservice_stage_duration_seconds";
+    private static final String ERRORS = "locationservice_stage_errors_total";
+    private static final String UNKNOWN_OWNER = "unknown";
+    private final ThreadLocal<MetricsContext> context;
+    private final ConcurrentMap<String, Histogram> histograms;
+    private volatile double sampleRate;
+    private OwnerCache ownerCache;
+
+    /**
+     * Constructs and initializes a new MetricsRegistry object.
+     */
+    public MetricsRegistry() {
+        this.context = new ThreadLocal<MetricsContext>();
+        this.histograms = new ConcurrentHashMap<String, Histogram>();
+    }
+
+    /**
+     * Sets the share of the requests which durations are recorded, between 0
+     * and 1. Zero disables recording completely. Default is 0.
+     *
+     * @param sampleRate sample rate
+     */
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = Math.max(0, Math.min(1, sampleRate));
+    }
+
+    /**
+     * Changes the cache that's used for checking that the owner codes of the
+     * requests exist. If the cache is not set, all the requests are recorded
+     * as "unknown" owner.
+     *
+     * @param ownerCache new value
+     */
+    public void setOwnerCache(OwnerCache ownerCache) {
+        this.ownerCache = ownerCache;
+    }
+
+    /**
+     * Returns true if recording is enabled.
+     *
+     * @return true if the sample rate is greater than zero; otherwise false
+     */
+    public boolean isEnabled() {
+        return this.sampleRate > 0;
+    }
+
+    /**
+     * Begins the processing of a request in the current thread. The request is
+     * sampled according to the sample rate. Calls to this method must be
+     * followed by a call to the end method.
+     *
+     * @param owner owner code
+     * @param format output format
+     */
+    public void begin(String owner, Object format) {
+        if (!this.isEnabled()) {
+            return;
+        }
+        boolean sampled = this.sample();
+        // Owner is looked up only if the request is recorded
+        String label = sampled ? this.getOwnerLabel(owner) : UNKNOWN_OWNER;
+        this.context.set(new MetricsContext(label, String.valueOf(format), sampled));
+    }
+
+    /**
+     * Sets the locating strategy of the request that's being processed by the
+     * current thread.
+     *
+     * @param strategy locating strategy
+     */
+    public void setStrategy(Object strategy) {
+        MetricsContext ctx = this.context.get();
+        if (ctx != null && strategy != null) {
+            ctx.setStrategy(strategy.toString());
+        }
+    }
+
+    /**
+     * Ends the processing of the request in the current thread.
+     */
+    public void end() {
+        if (this.isEnabled()) {
+            this.context.remove();
+        }
+    }
+
+    /**
+     * Returns true if the durations of the current request are recorded.
+     * Stages that are run outside a request are sampled one by one.
+     *
+     * @return true if the durations are recorded; otherwise false
+     */
+    public boolean isSampled() {
+        if (!this.isEnabled()) {
+            return false;
+        }
+        MetricsContext ctx = this.context.get();
+        return ctx == null ? this.sample() : ctx.isSampled();
+    }
+
+    /**
+     * Records the duration of the given stage that was started at the given
+     * time. The tags are read from the context of the current request.
+     *
+     * @param stage name of the stage
+     * @param operation name of the operation, e.g. a method name
+     * @param start start time from System.nanoTime
+     * @param error true if the stage ended with an exception
+     */
+    public void record(String stage, String operation, long start, boolean error) {
+        long nanos = System.nanoTime() - start;
+        MetricsContext ctx = this.context.get();
+        String owner = ctx == null ? "" : ctx.getOwner();
+        String strategy = ctx == null ? "" : ctx.getStrategy();
+        String format = ctx == null ? "" : ctx.getFormat();
+        StringBuilder labels = new StringBuilder();
+        appendLabel(labels, "stage", stage);
+        appendLabel(labels, "operation", operation);
+        appendLabel(labels, "owner", owner);
+        appendLabel(labels, "strategy", strategy);
+        appendLabel(labels, "format", format);
+        String key = labels.toString();
+        Histogram histogram = this.histograms.get(key);
+        if (histogram == null) {
+            Histogram newHistogram = new Histogram(key);
+            histogram = this.histograms.putIfAbsent(key, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        histogram.observe(nanos, error);
+    }
+
+    /**
+     * Removes all the recorded durations.
+     */
+    public void clear() {
+        this.histograms.clear();
+    }
+
+    /**
+     * Writes all the histograms to the given writer in the Prometheus text
+     * exposition format.
+     *
+     * @param out writer where the histograms are written
+     * @throws IOException if writing fails
+     */
+    public void write(Writer out) throws IOException {
+        List<String> keys = new ArrayList<String>(this.histograms.keySet());
+        Collections.sort(keys);
+        out.write("# HELP " + NAME + " Time spent in the request processing stages.\n");
+        out.write("# TYPE " + NAME + " histogram\n");
+        for (String key : keys) {
+            Histogram histogram = this.histograms.get(key);
+            long[] counts = histogram.getCumulativeCounts();
+            for (int i = 0; i < counts.length; i++) {
+                String bound = i < Histogram.BOUNDS.length ? format(Histogram.BOUNDS[i]) : "+Inf";
+                out.write(NAME + "_bucket{" + key + ",le=\"" + bound + "\"} " + counts[i] + "\n");
+            }
+            out.write(NAME + "_sum{" + key + "} " + format(histogram.getSum()) + "\n");
+            out.write(NAME + "_count{" + key + "} " + counts[counts.length - 1] + "\n");
+        }
+        out.write("# HELP " + ERRORS + " Processing stages that ended with an exception.\n");
+        out.write("# TYPE " + ERRORS + " counter\n");
+        for (String key : keys) {
+            out.write(ERRORS + "{" + key + "} " + this.histograms.get(key).getErrors() + "\n");
+        }
+    }
+
+    /**
+     * Returns the given owner code if the owner exists; otherwise returns
+     * "unknown".
+     *
+     * @param owner owner code
+     * @return owner code or "unknown"
+     */
+    private String getOwnerLabel(String owner) {
+        if (owner == null || owner.isEmpty() || this.ownerCache == null) {
+            return UNKNOWN_OWNER;
+        }
+        return this.ownerCache.get(owner) == null ? UNKNOWN_OWNER : owner;
+    }
+
+    /**
+     * Decides if a request is sampled.
+     *
+     * @return true if the request is sampled; otherwise false
+     */
+    private boolean sample() {
+        double rate = this.sampleRate;
+        return rate >= 1 || Math.random() < rate;
+    }
+
+    /**
+     * Appends the given label to the given builder. Backslashes, quotes and
+     * line breaks in the value are escaped.
+     *
+     * @param builder builder where the label is appended
+     * @param name label name
+     * @param value label value
+     */
+    private static void appendLabel(StringBuilder builder, String name, String value) {
+        if (builder.length() > 0) {
+            builder.append(',');
+        }
+        builder.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                builder.append('\\').append(c);
+            } else if (c == '\n') {
+                builder.append("\\n");
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    /**
+     * Formats the given number without exponent.
+     *
+     * @param value number to be formatted
+     * @return formatted number
+     */
+    private static String format(double value) {
+        String str = String.format(Locale.US, "%.6f", value);
+        // Remove trailing zeros
+        int end = str.length();
+        while (str.charAt(end - 1) == '0') {
+            end--;
+        }
+        if (str.charAt(end - 1) == '.') {
+            end--;
+        }
+        return str.substring(0, end);
+    }
+}
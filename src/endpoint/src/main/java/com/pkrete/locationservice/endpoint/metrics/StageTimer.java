@@ -0,0 +1,69 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * This interceptor records the durations of the intercepted method calls
+ * in the {@link MetricsRegistry MetricsRegistry} using the configured stage
+ * name and the name of the method as the operation. If the current request is
+ * not sampled, the call is passed on without timing it.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StageTimer implements MethodInterceptor {
+
+    private MetricsRegistry registry;
+    private String stage;
+
+    /**
+     * Sets the registry where the durations are recorded.
+     *
+     * @param registry new value
+     */
+    public void setRegistry(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Sets the name of the stage, e.g. "dao".
+     *
+     * @param stage new value
+     */
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (!this.registry.isSampled()) {
+            return invocation.proceed();
+        }
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            Object result = invocation.proceed();
+            error = false;
+            return result;
+        } finally {
+            this.registry.record(this.stage, invocation.getMethod().getName(), start, error);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.modifier;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * This class represents a compiled {@link CallnoModification CallnoModification}.
+ * The condition of the modification is compiled only once, and if the
+ * condition is anchored to the beginning of the call number and it starts with
+ * literal characters, the literal prefix is checked before running the regex.
+ *
+ * The rule counts how many times it has been applied. The counter is shared
+ * between the rules that are built from the same modification.
+ *
+ * @author Petteri Kivimäki
+ */
+public class RedirectRule {
+
+    private static final String META_CHARS = ".[]{}()\\*+?^$|";
+    private final int id;
+    private final String owner;
+    private final RedirectType type;
+    private final String condition;
+    private final String operation;
+    private final Pattern pattern;
+    private final String prefix;
+    private final AtomicLong hits;
+
+    /**
+     * Constructs and initializes a new RedirectRule object.
+     *
+     * @param modification modification that's compiled
+     * @param owner owner code
+     * @param type type of the redirect
+     * @param hits counter of the applied redirects
+     * @throws java.util.regex.PatternSyntaxException if the condition is not a
+     * valid regex
+     */
+    public RedirectRule(CallnoModification modification, String owner, RedirectType type, AtomicLong hits) {
+        this.id = modification.getId();
+        this.owner = owner;
+        this.type = type;
+        this.condition = modification.getCondition();
+        this.operation = modification.getOperation();
+        this.pattern = Pattern.compile(this.condition);
+        this.prefix = getLiteralPrefix(this.condition);
+        this.hits = hits;
+    }
+
+    /**
+     * Returns the id of the modification.
+     *
+     * @return modification id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the owner code.
+     *
+     * @return owner code
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the type of the redirect.
+     *
+     * @return redirect type
+     */
+    public RedirectType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the condition of the modification.
+     *
+     * @return condition regex
+     */
+    public String getCondition() {
+        return condition;
+    }
+
+    /**
+     * Returns how many times this rule has been applied.
+     *
+     * @return number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Checks if the given call number matches the condition of this rule.
+     *
+     * @param callno call number to be checked
+     * @return true if the call number matches; otherwise false
+     */
+    public boolean matches(String callno) {
+        if (this.prefix != null && !callno.startsWith(this.prefix)) {
+            return false;
+        }
+        return this.pattern.matcher(callno).find();
+    }
+
+    /**
+     * Modifies the given call number according to this rule and increments
+     * the hit counter. This method must be called only if the call number
+     * matches the condition.
+     *
+     * @param callno call number to be modified
+     * @return modified call number
+     */
+    public String apply(String callno) {
+        this.hits.incrementAndGet();
+        return this.pattern.matcher(callno).replaceAll(this.operation);
+    }
+
+    /**
+     * Returns the literal characters that all the strings matching the given
+     * regex must start with. If the regex is not anchored to the beginning of
+     * the input, or it contains alternations, null is returned.
+     *
+     * @param regex regex to be checked
+     * @return literal prefix or null
+     */
+    protected static String getLiteralPrefix(String regex) {
+        if (!regex.startsWith("^") || regex.indexOf('|') >= 0) {
+            return null;
+        }
+        int end = 1;
+        while (end < regex.length() && META_CHARS.indexOf(regex.charAt(end)) < 0) {
+            end++;
+        }
+        // A quantifier that allows zero occurrences applies to the last
+        // literal character
+        if (end < regex.length() && "?*{".indexOf(regex.charAt(end)) >= 0) {
+            end--;
+        }
+        return end > 1 ? regex.substring(1, end) : null;
+    }
+}
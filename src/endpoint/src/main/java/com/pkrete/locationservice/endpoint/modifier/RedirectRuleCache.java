@@ -0,0 +1,219 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.modifier;
+
+import com.pkrete.locationservice.endpoint.cache.ExpiringCache;
+import com.pkrete.locationservice.endpoint.service.Service;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.PatternSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class holds the compiled preprocessing and not found redirects of all
+ * the owners in memory. The redirects of an owner are loaded from the given
+ * Service object when they're requested for the first time, and after that
+ * they're kept in memory until they expire or they're invalidated. Expired
+ * redirects are reloaded on the next request. Both types of redirects are
+ * held in their own {@link ExpiringCache ExpiringCache}.
+ *
+ * If the time to live is negative, the redirects never expire and they must
+ * be invalidated explicitly.
+ *
+ * The hit counters of the redirects are kept over reloads, so that it's
+ * possible to see which redirects are actually used.
+ *
+ * @author Petteri Kivimäki
+ */
+public class RedirectRuleCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedirectRuleCache.class.getName());
+    private final RuleSetCache preprocessingRedirects;
+    private final RuleSetCache notFoundRedirects;
+    private final ConcurrentMap<String, AtomicLong> hits;
+
+    /**
+     * Constructs and initializes a new RedirectRuleCache object.
+     */
+    public RedirectRuleCache() {
+        this.preprocessingRedirects = new RuleSetCache("Preprocessing redirects");
+        this.notFoundRedirects = new RuleSetCache("Not found redirects");
+        this.hits = new ConcurrentHashMap<String, AtomicLong>();
+    }
+
+    /**
+     * Sets the time in seconds after which the redirects are reloaded.
+     * Negative value means that the redirects never expire. Default is 300
+     * seconds.
+     *
+     * @param timeToLive time to live in seconds
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.preprocessingRedirects.setTimeToLive(timeToLive);
+        this.notFoundRedirects.setTimeToLive(timeToLive);
+    }
+
+    /**
+     * Returns the preprocessing redirects of the given owner. If the redirects
+     * haven't been loaded yet or they have expired, they're loaded from the
+     * given service before returning.
+     *
+     * @param owner owner code
+     * @param service service object that's used for loading the redirects
+     * @return preprocessing redirects of the owner
+     */
+    public RedirectRuleSet getPreprocessingRedirects(String owner, Service service) {
+        return this.preprocessingRedirects.get(owner, new RuleSetLoader(RedirectType.PREPROCESSING, service));
+    }
+
+    /**
+     * Returns the not found redirects of the given owner. If the redirects
+     * haven't been loaded yet or they have expired, they're loaded from the
+     * given service before returning.
+     *
+     * @param owner owner code
+     * @param service service object that's used for loading the redirects
+     * @return not found redirects of the owner
+     */
+    public RedirectRuleSet getNotFoundRedirects(String owner, Service service) {
+        return this.notFoundRedirects.get(owner, new RuleSetLoader(RedirectType.NOT_FOUND, service));
+    }
+
+    /**
+     * Returns all the redirects that are currently in the cache.
+     *
+     * @return list of redirects
+     */
+    public List<RedirectRule> getRules() {
+        List<RedirectRule> rules = new ArrayList<RedirectRule>();
+        for (RedirectRuleSet set : this.preprocessingRedirects.values()) {
+            rules.addAll(set.getRules());
+        }
+        for (RedirectRuleSet set : this.notFoundRedirects.values()) {
+            rules.addAll(set.getRules());
+        }
+        return rules;
+    }
+
+    /**
+     * Removes the redirects of the given owner from the cache. The redirects
+     * are reloaded on the next request.
+     *
+     * @param owner owner code
+     */
+    public void invalidate(String owner) {
+        this.preprocessingRedirects.invalidate(owner);
+        this.notFoundRedirects.invalidate(owner);
+    }
+
+    /**
+     * Removes the redirects of all the owners from the cache.
+     */
+    public void invalidateAll() {
+        this.preprocessingRedirects.invalidateAll();
+        this.notFoundRedirects.invalidateAll();
+    }
+
+    /**
+     * Loads and compiles the redirects of the given owner. Redirects with an
+     * invalid condition are skipped.
+     *
+     * @param owner owner code
+     * @param type type of the redirects
+     * @param service service object that's used for loading the redirects
+     * @return compiled redirects
+     */
+    private RedirectRuleSet load(String owner, RedirectType type, Service service) {
+        List<CallnoModification> modifications;
+        if (type == RedirectType.PREPROCESSING) {
+            modifications = service.getPreprocessingRedirects(owner);
+        } else {
+            modifications = service.getNotFoundRedirects(owner);
+        }
+        List<RedirectRule> rules = new ArrayList<RedirectRule>();
+        for (CallnoModification modification : modifications) {
+            try {
+                rules.add(new RedirectRule(modification, owner, type, this.getCounter(type, modification.getId())));
+            } catch (PatternSyntaxException ex) {
+                logger.warn("Invalid condition in redirect {}, skipped. Owner : \"{}\".", modification.getId(), owner);
+            }
+        }
+        logger.debug("{} {} redirects of owner \"{}\" loaded.", rules.size(), type, owner);
+        return new RedirectRuleSet(rules);
+    }
+
+    /**
+     * Returns the hit counter of the given redirect. A new counter is created
+     * if it doesn't exist yet.
+     *
+     * @param type type of the redirect
+     * @param id id of the redirect
+     * @return hit counter
+     */
+    private AtomicLong getCounter(RedirectType type, int id) {
+        String key = type + ":" + id;
+        AtomicLong counter = this.hits.get(key);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = this.hits.putIfAbsent(key, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Loads the redirects of one type from the service given by the caller.
+     */
+    private class RuleSetLoader implements ExpiringCache.Loader<RedirectRuleSet> {
+
+        private final RedirectType type;
+        private final Service service;
+
+        RuleSetLoader(RedirectType type, Service service) {
+            this.type = type;
+            this.service = service;
+        }
+
+        @Override
+        public RedirectRuleSet load(String owner) {
+            return RedirectRuleCache.this.load(owner, this.type, this.service);
+        }
+    }
+
+    /**
+     * Cache of the redirects of one type. The redirects are always loaded
+     * with a RuleSetLoader, because the service is given by the caller.
+     */
+    private static class RuleSetCache extends ExpiringCache<RedirectRuleSet> {
+
+        RuleSetCache(String name) {
+            super(name);
+        }
+
+        @Override
+        protected RedirectRuleSet load(String owner) {
+            throw new UnsupportedOperationException("Redirects must be loaded with a service.");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.modifier;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * This class holds the compiled redirects of a single owner and type in the
+ * order they are processed. If possible, the conditions of all the rules are
+ * combined into a single alternation that's used for checking whether any
+ * of the rules match, so that call numbers without a matching rule are
+ * handled in a single pass. Conditions using back references, inline flags,
+ * special constructs or quotations are not combined, because their meaning
+ * could change inside the alternation.
+ *
+ * @author Petteri Kivimäki
+ */
+public class RedirectRuleSet {
+
+    private static final Pattern UNSAFE = Pattern.compile("\\\\[1-9]|\\\\k<|\\\\Q|\\(\\?");
+    private final List<RedirectRule> rules;
+    private final Pattern filter;
+    private final long created;
+
+    /**
+     * Constructs and initializes a new RedirectRuleSet object.
+     *
+     * @param rules compiled rules in processing order
+     */
+    public RedirectRuleSet(List<RedirectRule> rules) {
+        this.rules = Collections.unmodifiableList(rules);
+        this.filter = buildFilter(rules);
+        this.created = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the rules of this set.
+     *
+     * @return list of rules
+     */
+    public List<RedirectRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns the time when this set was created.
+     *
+     * @return creation time in milliseconds
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Returns the first rule matching the given call number. If none of the
+     * rules match, null is returned.
+     *
+     * @param callno call number to be checked
+     * @return first matching rule or null
+     */
+    public RedirectRule find(String callno) {
+        if (this.rules.isEmpty()) {
+            return null;
+        }
+        if (this.filter != null && !this.filter.matcher(callno).find()) {
+            return null;
+        }
+        for (RedirectRule rule : this.rules) {
+            if (rule.matches(callno)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Combines the conditions of the given rules into a single alternation.
+     * If there are less than two rules or some of the conditions can not be
+     * combined, null is returned.
+     *
+     * @param rules rules to be combined
+     * @return combined pattern or null
+     */
+    private static Pattern buildFilter(List<RedirectRule> rules) {
+        if (rules.size() < 2) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (RedirectRule rule : rules) {
+            if (UNSAFE.matcher(rule.getCondition()).find()) {
+                return null;
+            }
+            if (builder.length() > 0) {
+                builder.append('|');
+            }
+            builder.append("(?:").append(rule.getCondition()).append(')');
+        }
+        try {
+            return Pattern.compile(builder.toString());
+        } catch (PatternSyntaxException ex) {
+            return null;
+        }
+    }
+}
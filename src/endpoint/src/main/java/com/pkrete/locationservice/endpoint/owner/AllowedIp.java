@@ -0,0 +1,174 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.owner;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents a single entry of the list of IP addresses that are
+ * allowed to access the Exporter interface. An entry is either an IP address,
+ * an IP address range in CIDR notation, e.g. "192.168.0.0/16", or a regular
+ * expression that's matched against the IP address string, e.g.
+ * "192\\.168\\..*". Entries are parsed only once, and IP addresses and ranges
+ * are matched by comparing address bits.
+ *
+ * @author Petteri Kivimäki
+ */
+public class AllowedIp {
+
+    private static final Logger logger = LoggerFactory.getLogger(AllowedIp.class.getName());
+    private static final Pattern IPV4 = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}(/\\d{1,2})?");
+    private static final Pattern IPV6 = Pattern.compile("[0-9a-fA-F]*:[0-9a-fA-F:.]*(/\\d{1,3})?");
+    private final byte[] network;
+    private final int prefix;
+    private final Pattern pattern;
+
+    /**
+     * Constructs and initializes a new AllowedIp object that matches the
+     * given address range.
+     *
+     * @param network network address
+     * @param prefix number of significant bits in the network address
+     */
+    private AllowedIp(byte[] network, int prefix) {
+        this.network = network;
+        this.prefix = prefix;
+        this.pattern = null;
+    }
+
+    /**
+     * Constructs and initializes a new AllowedIp object that matches the
+     * given regular expression.
+     *
+     * @param pattern compiled regular expression
+     */
+    private AllowedIp(Pattern pattern) {
+        this.network = null;
+        this.prefix = 0;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Parses the given entry of an allow-list. If the entry is empty or it's
+     * not valid, null is returned.
+     *
+     * @param entry entry to be parsed
+     * @return AllowedIp object or null
+     */
+    public static AllowedIp parse(String entry) {
+        entry = entry.trim();
+        if (entry.isEmpty()) {
+            return null;
+        }
+        if (isAddress(entry)) {
+            int slash = entry.indexOf('/');
+            byte[] address = toBytes(slash < 0 ? entry : entry.substring(0, slash));
+            if (address != null) {
+                int prefix = slash < 0 ? address.length * 8 : Integer.parseInt(entry.substring(slash + 1));
+                if (prefix <= address.length * 8) {
+                    return new AllowedIp(address, prefix);
+                }
+            }
+        }
+        try {
+            return new AllowedIp(Pattern.compile(entry));
+        } catch (PatternSyntaxException ex) {
+            logger.warn("Invalid allowed IP entry \"{}\" ignored.", entry);
+            return null;
+        }
+    }
+
+    /**
+     * Checks if the given IP address matches this entry.
+     *
+     * @param ip IP address string
+     * @param address IP address bytes, or null if the string is not an IP
+     * address
+     * @return true if the address matches; otherwise false
+     */
+    public boolean matches(String ip, byte[] address) {
+        if (this.pattern != null) {
+            return this.pattern.matcher(ip).matches();
+        }
+        if (address == null || address.length != this.network.length) {
+            return false;
+        }
+        int bytes = this.prefix / 8;
+        for (int i = 0; i < bytes; i++) {
+            if (address[i] != this.network[i]) {
+                return false;
+            }
+        }
+        int bits = this.prefix % 8;
+        if (bits == 0) {
+            return true;
+        }
+        int mask = (0xFF << (8 - bits)) & 0xFF;
+        return (address[bytes] & mask) == (this.network[bytes] & mask);
+    }
+
+    /**
+     * Checks if the given string is an IP address or an address range in CIDR
+     * notation.
+     *
+     * @param str string to be checked
+     * @return true if the string is an address; otherwise false
+     */
+    private static boolean isAddress(String str) {
+        return IPV4.matcher(str).matches() || IPV6.matcher(str).matches();
+    }
+
+    /**
+     * Converts the given IP address string to bytes. If the string is not an
+     * IP address, null is returned. Host names are never resolved.
+     *
+     * @param ip IP address string
+     * @return address bytes or null
+     */
+    public static byte[] toBytes(String ip) {
+        if (ip == null || ip.indexOf('/') >= 0) {
+            return null;
+        }
+        if (IPV4.matcher(ip).matches()) {
+            String[] octets = ip.split("\\.");
+            byte[] address = new byte[4];
+            for (int i = 0; i < 4; i++) {
+                int octet = Integer.parseInt(octets[i]);
+                if (octet > 255) {
+                    return null;
+                }
+                address[i] = (byte) octet;
+            }
+            return address;
+        }
+        if (IPV6.matcher(ip).matches()) {
+            // IPv6 literals are parsed without name service lookups
+            try {
+                return InetAddress.getByName(ip).getAddress();
+            } catch (UnknownHostException ex) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
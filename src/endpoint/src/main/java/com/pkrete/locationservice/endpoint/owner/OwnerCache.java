@@ -0,0 +1,77 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.owner;
+
+import com.pkrete.locationservice.endpoint.cache.ExpiringCache;
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.service.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class holds the {@link OwnerMetadata OwnerMetadata} objects of the
+ * owners in memory. The metadata of an owner is loaded from the Service object
+ * when it's requested for the first time, and after that it's kept in memory
+ * until it expires or it's invalidated. Expired metadata is reloaded on the
+ * next request. Owners that don't exist are remembered for the miss time to
+ * live, which is 10 seconds by default, so that requests with unknown owner
+ * codes don't query the database every time.
+ *
+ * If the time to live is negative, the metadata never expires and it must be
+ * invalidated explicitly.
+ *
+ * @author Petteri Kivimäki
+ */
+public class OwnerCache extends ExpiringCache<OwnerMetadata> {
+
+    private static final Logger logger = LoggerFactory.getLogger(OwnerCache.class.getName());
+    private Service dbService;
+
+    /**
+     * Constructs and initializes a new OwnerCache object.
+     */
+    public OwnerCache() {
+        super("Metadata");
+        this.setMissTimeToLive(10);
+    }
+
+    /**
+     * Changes the service object that's used for loading the owners.
+     *
+     * @param dbService new value
+     */
+    public void setDbService(Service dbService) {
+        this.dbService = dbService;
+    }
+
+    /**
+     * Loads the metadata of the owner with the given code.
+     *
+     * @param code owner code
+     * @return metadata of the owner or null
+     */
+    @Override
+    protected OwnerMetadata load(String code) {
+        Owner owner = this.dbService.getOwnerByCode(code);
+        if (owner == null) {
+            return null;
+        }
+        logger.debug("Metadata of owner \"{}\" loaded.", code);
+        return new OwnerMetadata(owner, owner.getLocatingStrategy());
+    }
+}
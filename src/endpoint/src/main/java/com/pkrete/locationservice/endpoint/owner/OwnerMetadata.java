@@ -0,0 +1,130 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.owner;
+
+import com.pkrete.locationservice.endpoint.callnoparser.LocatingStrategy;
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds an {@link Owner Owner} object and the information derived
+ * from it that's needed on every request: the locating strategy and the parsed
+ * list of IP addresses that are allowed to access the Exporter interface.
+ *
+ * The Owner object is shared between requests, and it must not be modified.
+ *
+ * @author Petteri Kivimäki
+ */
+public class OwnerMetadata {
+
+    private final Owner owner;
+    private final LocatingStrategy locatingStrategy;
+    private final List<AllowedIp> allowedIps;
+    private final long created;
+
+    /**
+     * Constructs and initializes a new OwnerMetadata object.
+     *
+     * @param owner Owner object
+     * @param locatingStrategy locating strategy of the owner
+     */
+    public OwnerMetadata(Owner owner, LocatingStrategy locatingStrategy) {
+        this.owner = owner;
+        this.locatingStrategy = locatingStrategy;
+        this.created = System.currentTimeMillis();
+        List<AllowedIp> ips = new ArrayList<AllowedIp>();
+        if (owner.getAllowedIPs() != null) {
+            for (String entry : owner.getAllowedIPs().split("\n")) {
+                AllowedIp ip = AllowedIp.parse(entry);
+                if (ip != null) {
+                    ips.add(ip);
+                }
+            }
+        }
+        this.allowedIps = Collections.unmodifiableList(ips);
+    }
+
+    /**
+     * Returns the Owner object.
+     *
+     * @return Owner object
+     */
+    public Owner getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the code of the owner.
+     *
+     * @return owner code
+     */
+    public String getCode() {
+        return owner.getCode();
+    }
+
+    /**
+     * Returns the locating strategy of the owner.
+     *
+     * @return locating strategy or null
+     */
+    public LocatingStrategy getLocatingStrategy() {
+        return locatingStrategy;
+    }
+
+    /**
+     * Returns the parsed list of IP addresses that are allowed to access the
+     * Exporter interface.
+     *
+     * @return list of allowed IP addresses
+     */
+    public List<AllowedIp> getAllowedIps() {
+        return allowedIps;
+    }
+
+    /**
+     * Returns the time when this object was created.
+     *
+     * @return creation time in milliseconds
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Checks if the given IP address is allowed to access the Exporter
+     * interface. All the addresses are allowed, if the Exporter is visible
+     * for everybody.
+     *
+     * @param ip IP address string
+     * @return true if the address is allowed; otherwise false
+     */
+    public boolean isAllowed(String ip) {
+        if (owner.getExporterVisible()) {
+            return true;
+        }
+        byte[] address = AllowedIp.toBytes(ip);
+        for (AllowedIp allowedIp : allowedIps) {
+            if (allowedIp.matches(ip, address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
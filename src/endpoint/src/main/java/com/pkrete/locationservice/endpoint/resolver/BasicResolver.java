@@ -19,18 +19,17 @@ package com.pkrete.locationservice.endpoint.resolver;
 
 import com.pkrete.locationservice.endpoint.generator.Generator;
 import com.pkrete.locationservice.endpoint.modifier.CallnoModification;
+import com.pkrete.locationservice.endpoint.modifier.RedirectRule;
 import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
 import com.pkrete.locationservice.endpoint.model.location.Shelf;
 import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
 import com.pkrete.locationservice.endpoint.service.Service;
 import com.pkrete.locationservice.endpoint.util.LocationHelper;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.text.Collator;
 import java.text.RuleBasedCollator;
 
 /**
@@ -80,6 +79,16 @@ public class BasicResolver extends Resolver {
      */
     @Override
     protected String runPreprocessingRedirects(String callno, String owner, Service localService) {
+        /* Use the compiled redirects, if redirect cache is set. */
+        if (this.redirectRuleCache != null) {
+            RedirectRule rule = this.redirectRuleCache.getPreprocessingRedirects(owner, localService).find(callno);
+            if (rule == null) {
+                return callno;
+            }
+            String modified = rule.apply(callno);
+            logger.debug("Found reprocessing redirect match! Redirect: \"{}\" -> \"{}\".", callno, modified);
+            return modified;
+        }
         /* Run through preprocessing redirects. */
         List<CallnoModification> redirects = localService.getPreprocessingRedirects(owner);
         /* Original call number */
@@ -167,15 +176,10 @@ public class BasicResolver extends Resolver {
      */
     @Override
     protected Shelf runShelvesByCollectionCodeCheck(String collection, String callno, String owner, Service localService) {
-        // Compile call number interval regex
-        Pattern pattern = Pattern.compile(intervalRegex);
-        // Create new Locale for Collator
-        Locale locale = new Locale(language, country);
-        // Get RuleBasedCollator object for call number comparisons
-        RuleBasedCollator collator = (RuleBasedCollator) Collator.getInstance(locale);
-        // Using the PRIMARY strength - base is taken into account,
-        // accent and case are ignored
-        collator.setStrength(Collator.PRIMARY);
+        // Precompiled call number interval regex
+        Pattern pattern = this.getIntervalPattern();
+        // RuleBasedCollator object for call number comparisons
+        RuleBasedCollator collator = this.getCollator();
         // Get shelves by collection code
         List list = localService.getShelvesByCollectionCode(owner, collection);
         for (SimpleLocation location : (List<SimpleLocation>) list) {
@@ -200,15 +204,10 @@ public class BasicResolver extends Resolver {
      */
     @Override
     protected LibraryCollection runCollectionsByCollectionCodeCheck(String collection, String callno, String owner, Service localService) {
-        // Compile call number interval regex
-        Pattern pattern = Pattern.compile(intervalRegex);
-        // Create new Locale for Collator
-        Locale locale = new Locale(language, country);
-        // Get RuleBasedCollator object for call number comparisons
-        RuleBasedCollator collator = (RuleBasedCollator) Collator.getInstance(locale);
-        // Using the PRIMARY strength - base is taken into account,
-        // accent and case are ignored
-        collator.setStrength(Collator.PRIMARY);
+        // Precompiled call number interval regex
+        Pattern pattern = this.getIntervalPattern();
+        // RuleBasedCollator object for call number comparisons
+        RuleBasedCollator collator = this.getCollator();
         // Get collections by collection code
         List list = localService.getCollectionsByCollectionCode(owner, collection);
         for (LibraryCollection location : (List<LibraryCollection>) list) {
@@ -0,0 +1,111 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.resolver;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class represents a single item of a batch that's resolved by the
+ * {@link Resolver#resolveAll Resolver.resolveAll} method. The owner, language
+ * and output format are shared by all the items of the batch. The resolver
+ * records the time that was spent on resolving the item.
+ *
+ * @author Petteri Kivimäki
+ */
+public class BatchItem {
+
+    private final String callno;
+    private final String collection;
+    private final String id;
+    private final boolean status;
+    private final AtomicLong processingTime;
+
+    /**
+     * Constructs and initializes a new BatchItem object.
+     *
+     * @param callno the call number to be resolved
+     * @param collection collection code that's related to the location
+     * @param id id number of the Location object to be searched or null
+     * @param status status of the publication, true = available, false =
+     * charged
+     */
+    public BatchItem(String callno, String collection, String id, boolean status) {
+        this.callno = callno;
+        this.collection = collection;
+        this.id = id;
+        this.status = status;
+        this.processingTime = new AtomicLong(-1);
+    }
+
+    /**
+     * Returns the call number to be resolved.
+     *
+     * @return call number
+     */
+    public String getCallno() {
+        return callno;
+    }
+
+    /**
+     * Returns the collection code that's related to the location.
+     *
+     * @return collection code
+     */
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * Returns the id number of the Location object to be searched.
+     *
+     * @return id number or null
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the status of the publication.
+     *
+     * @return true if the publication is available; otherwise false
+     */
+    public boolean getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the time in milliseconds that was spent on resolving the item.
+     *
+     * @return processing time in milliseconds, or -1 if the item hasn't been
+     * resolved
+     */
+    public long getProcessingTime() {
+        return processingTime.get();
+    }
+
+    /**
+     * Sets the time in milliseconds that was spent on resolving the item.
+     * Only the first value is stored, so that a resolver thread that
+     * finishes after the item has timed out doesn't change the time.
+     *
+     * @param processingTime processing time in milliseconds
+     */
+    public void setProcessingTime(long processingTime) {
+        this.processingTime.compareAndSet(-1, processingTime);
+    }
+}
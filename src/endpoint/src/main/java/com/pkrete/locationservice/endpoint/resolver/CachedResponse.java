@@ -0,0 +1,81 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.resolver;
+
+/**
+ * This class represents an output generated by the {@link Resolver Resolver}
+ * that's stored in the {@link ResponseCache ResponseCache}. CachedResponse
+ * objects are immutable.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CachedResponse {
+
+    private final String owner;
+    private final String output;
+    private final long created;
+
+    /**
+     * Constructs and initializes a new CachedResponse object.
+     *
+     * @param owner owner code
+     * @param output generated output
+     */
+    public CachedResponse(String owner, String output) {
+        this.owner = owner;
+        this.output = output;
+        this.created = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the owner code.
+     *
+     * @return owner code
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the generated output.
+     *
+     * @return output
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * Returns the time when the output was generated.
+     *
+     * @return creation time in milliseconds
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Returns the size of the output in bytes. Strings take two bytes per
+     * character in memory.
+     *
+     * @return size in bytes
+     */
+    public long getSize() {
+        return 2L * output.length();
+    }
+}
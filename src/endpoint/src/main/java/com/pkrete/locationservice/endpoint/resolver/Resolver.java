@@ -21,14 +21,30 @@ import com.pkrete.locationservice.endpoint.generator.Generator;
 import com.pkrete.locationservice.endpoint.callnoparser.CallNoParser;
 import com.pkrete.locationservice.endpoint.callnoparser.CallNoParserFactory;
 import com.pkrete.locationservice.endpoint.callnoparser.LocatingStrategy;
+import com.pkrete.locationservice.endpoint.callnoparser.ParserContext;
 import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
 import com.pkrete.locationservice.endpoint.model.location.Shelf;
 import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
+import com.pkrete.locationservice.endpoint.metrics.MetricsRegistry;
 import com.pkrete.locationservice.endpoint.modifier.Modifier;
+import com.pkrete.locationservice.endpoint.modifier.RedirectRuleCache;
+import com.pkrete.locationservice.endpoint.owner.OwnerCache;
+import com.pkrete.locationservice.endpoint.owner.OwnerMetadata;
 import com.pkrete.locationservice.endpoint.service.Service;
+import com.pkrete.locationservice.endpoint.util.LocationHelper;
 import com.pkrete.locationservice.endpoint.util.LocationServiceConstants;
 import com.pkrete.locationservice.endpoint.util.ServiceFactory;
+import java.text.RuleBasedCollator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,9 +61,46 @@ public abstract class Resolver {
     protected CallNoParserFactory callNoParserFactory;
     protected Map<OutputFormat, Generator> generators;
     protected ServiceFactory serviceFactory;
+    /**
+     * Cache holding the metadata of the owners. If owner cache is not set, the
+     * locating strategy is read from the database on every request.
+     */
+    protected OwnerCache ownerCache;
+    /**
+     * Cache holding the compiled redirects. If redirect cache is not set, the
+     * redirects are read from the database on every request.
+     */
+    protected RedirectRuleCache redirectRuleCache;
+    /**
+     * Cache holding the generated outputs. If response cache is not set, the
+     * output is generated on every request.
+     */
+    protected ResponseCache responseCache;
+    /**
+     * Registry where the durations of the processing stages are recorded. If
+     * metrics registry is not set, nothing is recorded.
+     */
+    protected MetricsRegistry metrics;
+    /**
+     * Executor that resolves the items of a batch concurrently. If batch
+     * executor is not set, the items are resolved one by one.
+     */
+    protected ExecutorService batchExecutor;
+    /**
+     * Time in milliseconds after which the unresolved items of a batch are
+     * cancelled.
+     */
+    protected long batchTimeout = 30000;
     protected String intervalRegex = LocationServiceConstants.INTERVAL_REGEX;
     protected String language = LocationServiceConstants.LANGUAGE;
     protected String country = LocationServiceConstants.COUNTRY;
+    /**
+     * Compiled interval regex and collator are immutable, and they're
+     * replaced only when the settings change, so that the lookups don't have
+     * to lock.
+     */
+    private volatile Pattern intervalPattern = Pattern.compile(this.intervalRegex);
+    private volatile RuleBasedCollator collator = LocationHelper.createCollator(this.language, this.country);
 
     protected abstract String runPreprocessingRedirects(String callno, String owner, Service localService);
 
@@ -93,6 +146,62 @@ public abstract class Resolver {
         this.serviceFactory = serviceFactory;
     }
 
+    /**
+     * Sets the cache that holds the metadata of the owners.
+     *
+     * @param ownerCache new value
+     */
+    public void setOwnerCache(OwnerCache ownerCache) {
+        this.ownerCache = ownerCache;
+    }
+
+    /**
+     * Sets the cache that holds the compiled redirects.
+     *
+     * @param redirectRuleCache new value
+     */
+    public void setRedirectRuleCache(RedirectRuleCache redirectRuleCache) {
+        this.redirectRuleCache = redirectRuleCache;
+    }
+
+    /**
+     * Sets the cache that holds the generated outputs.
+     *
+     * @param responseCache new value
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Sets the registry where the durations of the processing stages are
+     * recorded.
+     *
+     * @param metrics new value
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the executor that resolves the items of a batch concurrently.
+     *
+     * @param batchExecutor new value
+     */
+    public void setBatchExecutor(ExecutorService batchExecutor) {
+        this.batchExecutor = batchExecutor;
+    }
+
+    /**
+     * Sets the time in milliseconds after which the items of a batch that
+     * haven't been resolved yet are cancelled.
+     *
+     * @param batchTimeout new value
+     */
+    public void setBatchTimeout(long batchTimeout) {
+        this.batchTimeout = batchTimeout;
+    }
+
     /**
      * Sets the callNoParserFactory variable.
      *
@@ -117,8 +226,9 @@ public abstract class Resolver {
      *
      * @param regex new regex
      */
-    public void setIntervalRegex(String regex) {
+    public synchronized void setIntervalRegex(String regex) {
         this.intervalRegex = regex;
+        this.intervalPattern = Pattern.compile(regex);
     }
 
     /**
@@ -127,8 +237,9 @@ public abstract class Resolver {
      *
      * @param language language code (two lower case characters)
      */
-    public void setLanguage(String language) {
+    public synchronized void setLanguage(String language) {
         this.language = language;
+        this.collator = LocationHelper.createCollator(this.language, this.country);
     }
 
     /**
@@ -137,8 +248,71 @@ public abstract class Resolver {
      *
      * @param country country code (two upper case characters)
      */
-    public void setCountry(String country) {
+    public synchronized void setCountry(String country) {
         this.country = country;
+        this.collator = LocationHelper.createCollator(this.language, this.country);
+    }
+
+    /**
+     * Returns the compiled regex that's used for parsing interval definitions
+     * from call numbers. The regex is compiled when it's set.
+     *
+     * @return compiled interval regex
+     */
+    protected Pattern getIntervalPattern() {
+        return this.intervalPattern;
+    }
+
+    /**
+     * Returns the RuleBasedCollator object that's used for call number
+     * interval matching. The collator is created when the locale is set.
+     *
+     * @return RuleBasedCollator object
+     */
+    protected RuleBasedCollator getCollator() {
+        return this.collator;
+    }
+
+    /**
+     * Returns the start time of a processing stage, if the durations of the
+     * current request are recorded. Otherwise -1 is returned.
+     *
+     * @return start time from System.nanoTime or -1
+     */
+    protected long startStage() {
+        if (this.metrics != null && this.metrics.isSampled()) {
+            return System.nanoTime();
+        }
+        return -1;
+    }
+
+    /**
+     * Records the duration of a resolver stage that was started at the given
+     * time. Nothing is recorded if the start time is negative.
+     *
+     * @param operation name of the stage
+     * @param start start time returned by startStage method
+     */
+    protected void endStage(String operation, long start) {
+        if (start >= 0) {
+            this.metrics.record("resolver", operation, start, false);
+        }
+    }
+
+    /**
+     * Returns the locating strategy of the given owner. The strategy is read
+     * from the owner cache, if it's set, and otherwise from the default
+     * service.
+     *
+     * @param owner owner code
+     * @return locating strategy of the owner or null
+     */
+    protected LocatingStrategy getLocatingStrategy(String owner) {
+        if (this.ownerCache == null) {
+            return this.serviceFactory.get().getLocatingStrategy(owner);
+        }
+        OwnerMetadata metadata = this.ownerCache.get(owner);
+        return metadata == null ? null : metadata.getLocatingStrategy();
     }
 
     /**
@@ -157,6 +331,179 @@ public abstract class Resolver {
      * @return the HTML page that is returned to the user
      */
     public String resolve(String callno, String lang, boolean status, String owner, String collection, OutputFormat format, String id) {
+        return this.resolve(callno, lang, status, owner, collection, format, id, null);
+    }
+
+    /**
+     * Fetches the information related to all the given items. All the items
+     * share the same owner, language and output format, so the locating
+     * strategy, service and call number parser of the owner are looked up
+     * only once. If the batch executor is set, the items are resolved
+     * concurrently, and the items that haven't been resolved when the batch
+     * timeout expires are cancelled. An error output is returned for the
+     * items that failed or were cancelled. The outputs are returned in the
+     * same order as the items, and the processing time of every item is set.
+     *
+     * @param items the items to be resolved
+     * @param lang the language of the UI
+     * @param owner owner of the locations
+     * @param format output format
+     * @return outputs of the items in the same order as the items
+     */
+    public List<String> resolveAll(List<BatchItem> items, final String lang, final String owner, final OutputFormat format) {
+        List<String> outputs = new ArrayList<String>(items.size());
+        if (items.isEmpty()) {
+            return outputs;
+        }
+        final OwnerLookup lookup;
+        if (this.metrics != null) {
+            this.metrics.begin(owner, format);
+        }
+        try {
+            long start = this.startStage();
+            lookup = this.lookup(owner);
+            this.endStage("locatingStrategy", start);
+        } finally {
+            if (this.metrics != null) {
+                this.metrics.end();
+            }
+        }
+
+        if (this.batchExecutor == null || items.size() == 1) {
+            for (BatchItem item : items) {
+                outputs.add(this.resolve(item, lang, owner, format, lookup));
+            }
+            return outputs;
+        }
+
+        long start = System.currentTimeMillis();
+        long deadline = start + this.batchTimeout;
+        List<Future<String>> futures = new ArrayList<Future<String>>(items.size());
+        for (final BatchItem item : items) {
+            futures.add(this.batchExecutor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return resolve(item, lang, owner, format, lookup);
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                BatchItem item = items.get(i);
+                try {
+                    outputs.add(futures.get(i).get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS));
+                } catch (ExecutionException ee) {
+                    logger.error("Resolving call number \"{}\" failed.", item.getCallno(), ee.getCause());
+                    outputs.add(this.generateError(format));
+                } catch (TimeoutException te) {
+                    item.setProcessingTime(System.currentTimeMillis() - start);
+                    futures.get(i).cancel(true);
+                    logger.error("Resolving call number \"{}\" timed out after {} ms.", item.getCallno(), this.batchTimeout);
+                    outputs.add(this.generateError(format));
+                }
+            }
+        } catch (InterruptedException ie) {
+            for (Future<String> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Resolving a batch was interrupted.", ie);
+        }
+        return outputs;
+    }
+
+    /**
+     * Resolves the given item of a batch and sets its processing time.
+     *
+     * @param item the item to be resolved
+     * @param lang the language of the UI
+     * @param owner owner of the location
+     * @param format output format
+     * @param lookup owner specific objects
+     * @return output of the item
+     */
+    private String resolve(BatchItem item, String lang, String owner, OutputFormat format, OwnerLookup lookup) {
+        long start = System.currentTimeMillis();
+        try {
+            return this.resolve(item.getCallno(), lang, item.getStatus(), owner, item.getCollection(), format, item.getId(), lookup);
+        } finally {
+            item.setProcessingTime(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Generates the error output of a batch item that failed or timed out.
+     *
+     * @param format output format
+     * @return error output, or an empty string if there's no generator for
+     * the format
+     */
+    private String generateError(OutputFormat format) {
+        Generator generator = this.generators.get(format);
+        return generator == null ? "" : generator.generateError("500", "Internal server error.");
+    }
+
+    /**
+     * Fetches the information related to the given call number using the
+     * given owner specific objects. If the lookup is null, the objects are
+     * looked up when they're needed.
+     *
+     * @param callno the call number to be resolved
+     * @param lang the language of the UI
+     * @param status of the publication, 0 = available, 1 = charged
+     * @param owner owner of the location
+     * @param collection collection code that's related to the location
+     * @param format output format
+     * @param id id number of the Location object to be searched
+     * @param lookup owner specific objects or null
+     * @return the HTML page that is returned to the user
+     */
+    private String resolve(String callno, String lang, boolean status, String owner, String collection, OutputFormat format, String id, OwnerLookup lookup) {
+        if (this.metrics == null || !this.metrics.isEnabled()) {
+            return this.process(callno, lang, status, owner, collection, format, id, lookup);
+        }
+        this.metrics.begin(owner, format);
+        long start = this.startStage();
+        boolean error = true;
+        try {
+            String output = this.process(callno, lang, status, owner, collection, format, id, lookup);
+            error = false;
+            return output;
+        } finally {
+            if (start >= 0) {
+                this.metrics.record("resolve", "resolve", start, error);
+            }
+            this.metrics.end();
+        }
+    }
+
+    /**
+     * Looks up the locating strategy of the given owner and the service and
+     * call number parser matching the strategy.
+     *
+     * @param owner owner code
+     * @return owner specific objects
+     */
+    private OwnerLookup lookup(String owner) {
+        LocatingStrategy strategy = this.getLocatingStrategy(owner);
+        return new OwnerLookup(strategy, this.serviceFactory.get(strategy), this.callNoParserFactory.getParser(owner, strategy));
+    }
+
+    /**
+     * Returns the output related to the given call number either from the
+     * response cache or by generating it.
+     *
+     * @param callno the call number to be resolved
+     * @param lang the language of the UI
+     * @param status of the publication, 0 = available, 1 = charged
+     * @param owner owner of the location
+     * @param collection collection code that's related to the location
+     * @param format output format
+     * @param id id number of the Location object to be searched
+     * @param lookup owner specific objects or null
+     * @return the HTML page that is returned to the user
+     */
+    private String process(String callno, String lang, boolean status, String owner, String collection, OutputFormat format, String id, OwnerLookup lookup) {
         /* Get the output generator defined by the format */
         Generator generator = generators.get(format);
         /* Generator cannot be null */
@@ -169,16 +516,55 @@ public abstract class Resolver {
             logger.debug("Use \"{}\" as output format.", format);
         }
 
+        /* Return the cached output, if it exists. */
+        if (this.responseCache == null || !this.responseCache.isCacheable(owner)) {
+            return this.generate(generator, callno, lang, status, owner, collection, id, lookup);
+        }
+        String key = ResponseCache.getKey(callno, lang, status, owner, collection, format, id);
+        String output = this.responseCache.getOutput(key);
+        if (output != null) {
+            logger.debug("Output found from the response cache.");
+            return output;
+        }
+        long generation = this.responseCache.getGeneration(owner);
+        output = this.generate(generator, callno, lang, status, owner, collection, id, lookup);
+        this.responseCache.put(key, owner, output, generation);
+        return output;
+    }
+
+    /**
+     * Generates the output related to the given call number using the given
+     * generator.
+     *
+     * @param generator generator that generates the output
+     * @param callno the call number to be resolved
+     * @param lang the language of the UI
+     * @param status of the publication, 0 = available, 1 = charged
+     * @param owner owner of the location
+     * @param collection collection code that's related to the location
+     * @param id id number of the Location object to be searched
+     * @param lookup owner specific objects or null
+     * @return the HTML page that is returned to the user
+     */
+    private String generate(Generator generator, String callno, String lang, boolean status, String owner, String collection, String id, OwnerLookup lookup) {
         /* If status is false, the item is not available. */
         if (!status) {
             logger.debug("Not available: {\"lang:\"{}\",\"callno\":\"{}\",\"owner\":\"{}\"}", lang, callno, owner);
             return generator.generateOutputNotAvailable(lang, callno, owner);
         }
 
-        // Get locating strategy related to the owner
-        LocatingStrategy strategy = this.serviceFactory.get().getLocatingStrategy(owner);
-        // Get Service object matching the locating strategy
-        Service localService = this.serviceFactory.get(strategy);
+        // Get locating strategy related to the owner, and the Service and
+        // CallNoParser objects matching the locating strategy
+        long start;
+        if (lookup == null) {
+            start = this.startStage();
+            lookup = this.lookup(owner);
+            this.endStage("locatingStrategy", start);
+        }
+        if (this.metrics != null) {
+            this.metrics.setStrategy(lookup.strategy);
+        }
+        Service localService = lookup.service;
 
         /* If id parameter is not null, try to search by id. */
         if (id != null) {
@@ -206,10 +592,14 @@ public abstract class Resolver {
         logger.debug("Parameters : {\"callno\":\"{}\",\"lang\":\"{}\",\"collection\":\"{}\",\"owner\":\"{}\"}", callno, lang, collection, owner);
 
         /* Get the CallNoParser that is defined in settings. */
-        CallNoParser parser = callNoParserFactory.createParser(generator, owner, strategy);
+        CallNoParser parser = lookup.parser;
+        /* Request specific information is passed to the shared parser. */
+        ParserContext context = new ParserContext(generator, lang, owner);
 
         /* Run preprocessing redirects. */
+        start = this.startStage();
         callno = runPreprocessingRedirects(callno, owner, localService);
+        this.endStage("preprocessingRedirects", start);
 
         /* If the collection code parameter is not empty, look for locations */
         /* with the given collection code. It's possible to have multiple */
@@ -217,20 +607,26 @@ public abstract class Resolver {
         /* code is needed to recognize them from each other. */
         if (!collection.isEmpty()) {
             /* Run through locations that have Match beginning checkbox checked. */
+            start = this.startStage();
             SimpleLocation temp = runMatchBeginningByCollectionCodeCheck(callno, owner, collection, localService);
+            this.endStage("matchBeginningByCollectionCode", start);
             if (temp != null) {
                 logger.debug("Match beginning by collection code check hit! Location id : \"{}\"", temp.getLocationId());
-                return parser.parse(callno, lang, owner, temp);
+                return parser.parse(callno, context, temp);
             }
 
+            start = this.startStage();
             Shelf shelf = runShelvesByCollectionCodeCheck(collection, callno, owner, localService);
+            this.endStage("shelvesByCollectionCode", start);
             if (shelf != null) {
                 logger.debug("Check shelves by collection code hit! Shelf id : \"{}\"", shelf.getLocationId());
                 return generator.generateOutput(shelf, lang, callno);
             }
 
             /* Then check the collections. */
+            start = this.startStage();
             LibraryCollection libCollection = runCollectionsByCollectionCodeCheck(collection, callno, owner, localService);
+            this.endStage("collectionsByCollectionCode", start);
             if (libCollection != null) {
                 logger.debug("Check collections by collection code hit! Collection id : \"{}\"", libCollection.getLocationId());
                 return generator.generateOutput(libCollection, lang, callno);
@@ -239,16 +635,34 @@ public abstract class Resolver {
         }
 
         /* Run through locations that have Match beginning checkbox checked. */
+        start = this.startStage();
         SimpleLocation location = runMatchBeginningCheck(callno, owner, localService);
+        this.endStage("matchBeginning", start);
         if (location != null) {
             logger.debug("Match beginning check hit! Location id : \"{}\"", location.getLocationId());
-            return parser.parse(callno, lang, owner, location);
+            return parser.parse(callno, context, location);
         }
 
         if (logger.isDebugEnabled()) {
             logger.debug("Start standard parsing process.");
         }
         /* Begin the standard call number parsing process. */
-        return parser.parse(callno, lang, owner);
+        return parser.parse(callno, context);
+    }
+
+    /**
+     * Holds the objects that are looked up by the owner of the request.
+     */
+    private static final class OwnerLookup {
+
+        private final LocatingStrategy strategy;
+        private final Service service;
+        private final CallNoParser parser;
+
+        OwnerLookup(LocatingStrategy strategy, Service service, CallNoParser parser) {
+            this.strategy = strategy;
+            this.service = service;
+            this.parser = parser;
+        }
     }
 }
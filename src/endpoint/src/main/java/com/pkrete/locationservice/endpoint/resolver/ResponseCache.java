@@ -0,0 +1,271 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.resolver;
+
+import com.pkrete.locationservice.endpoint.cache.WeightedLruCache;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class holds the outputs generated by the {@link Resolver Resolver} in
+ * memory. The total size of the cached outputs is limited, and when the limit
+ * is exceeded, the least recently used outputs are removed from the cache.
+ * Outputs expire after the time to live of the owner, and they are
+ * invalidated by owner when the locations, templates, redirects or languages
+ * of the owner are modified.
+ *
+ * The cache is divided into segments, so concurrent requests don't wait for
+ * each other, and the generations of the owners are held in a concurrent map.
+ *
+ * Outputs of excluded owners and outputs generated by templates containing
+ * the $DEBUG tag are not cached.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ResponseCache extends WeightedLruCache<CachedResponse> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class.getName());
+    private static final String DEBUG_MARKER = "<b>DEBUG INFO</b>";
+    private static final int SEGMENTS = 16;
+    private final ConcurrentMap<String, AtomicLong> generations;
+    private final AtomicLong generation;
+    private volatile Map<String, Long> ownerTimeToLive = new HashMap<String, Long>();
+    private volatile List<String> excludedOwners = new ArrayList<String>();
+    private volatile boolean excludeDebug = true;
+    private volatile long timeToLive = 60;
+
+    /**
+     * Constructs and initializes a new ResponseCache object.
+     */
+    public ResponseCache() {
+        super("cached output", SEGMENTS, 16777216);
+        this.generations = new ConcurrentHashMap<String, AtomicLong>();
+        this.generation = new AtomicLong();
+    }
+
+    /**
+     * Sets the maximum total size of the cached outputs in bytes. Default is
+     * 16 MB.
+     *
+     * @param maxSize maximum size in bytes
+     */
+    public void setMaxSize(long maxSize) {
+        this.setMaxWeight(maxSize);
+    }
+
+    /**
+     * Sets the time in seconds after which the outputs expire. Negative value
+     * means that the outputs never expire. Default is 60 seconds.
+     *
+     * @param timeToLive time to live in seconds
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Sets owner specific times to live in seconds. The keys are owner codes.
+     * Owners that are not included use the default time to live.
+     *
+     * @param ownerTimeToLive owner specific times to live
+     */
+    public void setOwnerTimeToLive(Map<String, Long> ownerTimeToLive) {
+        this.ownerTimeToLive = new HashMap<String, Long>(ownerTimeToLive);
+    }
+
+    /**
+     * Sets the codes of the owners which outputs are never cached.
+     *
+     * @param excludedOwners list of owner codes
+     */
+    public void setExcludedOwners(List<String> excludedOwners) {
+        this.excludedOwners = new ArrayList<String>(excludedOwners);
+    }
+
+    /**
+     * Sets if the outputs generated by templates containing the $DEBUG tag
+     * are excluded. Default is true.
+     *
+     * @param excludeDebug new value
+     */
+    public void setExcludeDebug(boolean excludeDebug) {
+        this.excludeDebug = excludeDebug;
+    }
+
+    /**
+     * Returns true if the outputs of the given owner can be cached.
+     *
+     * @param owner owner code
+     * @return true if the outputs of the owner can be cached; otherwise false
+     */
+    public boolean isCacheable(String owner) {
+        return !this.excludedOwners.contains(owner);
+    }
+
+    /**
+     * Returns the cache key matching the given request parameters.
+     *
+     * @param callno call number
+     * @param lang language of the UI
+     * @param status status of the publication
+     * @param owner owner code
+     * @param collection collection code
+     * @param format output format
+     * @param id id of the location
+     * @return cache key
+     */
+    public static String getKey(String callno, String lang, boolean status, String owner, String collection, OutputFormat format, String id) {
+        StringBuilder key = new StringBuilder();
+        key.append(owner).append('\u0000').append(format).append('\u0000');
+        key.append(status).append('\u0000').append(lang).append('\u0000');
+        key.append(collection).append('\u0000').append(id).append('\u0000');
+        key.append(callno);
+        return key.toString();
+    }
+
+    /**
+     * Returns the output matching the given key. If no output is found or it
+     * has expired, null is returned.
+     *
+     * @param key cache key
+     * @return output matching the given key or null
+     */
+    public String getOutput(String key) {
+        CachedResponse response = this.get(key);
+        return response == null ? null : response.getOutput();
+    }
+
+    /**
+     * Returns the current generation of the given owner. The generation
+     * changes every time the outputs of the owner are invalidated. The
+     * generation must be read before generating an output that's added to
+     * the cache.
+     *
+     * @param owner owner code
+     * @return generation of the owner
+     */
+    public long getGeneration(String owner) {
+        AtomicLong ownerGeneration = this.generations.get(owner);
+        return this.generation.get() + (ownerGeneration == null ? 0 : ownerGeneration.get());
+    }
+
+    /**
+     * Adds the given output to the cache. The output is not cached if the
+     * owner's outputs have been invalidated after the given generation was
+     * read, so outputs generated from modified data are never cached. Outputs
+     * that are larger than the maximum size of the cache, and outputs
+     * generated by debug templates are not cached either.
+     *
+     * @param key cache key
+     * @param owner owner code
+     * @param output output to be cached
+     * @param generation generation of the owner when the output generation
+     * started
+     */
+    public void put(String key, String owner, String output, long generation) {
+        if (generation != this.getGeneration(owner)) {
+            logger.debug("Outputs of owner \"{}\" invalidated during the request, output not cached.", owner);
+            return;
+        }
+        if (this.excludeDebug && output.contains(DEBUG_MARKER)) {
+            return;
+        }
+        CachedResponse response = new CachedResponse(owner, output);
+        if (!this.put(key, response)) {
+            return;
+        }
+        // Invalidation increments the generation before removing the outputs.
+        // If the generation has changed, the invalidation may have missed
+        // the output that was just added.
+        if (generation != this.getGeneration(owner)) {
+            this.remove(key, response);
+            logger.debug("Outputs of owner \"{}\" invalidated during the request, output not cached.", owner);
+        }
+    }
+
+    /**
+     * Removes the outputs of the given owner from the cache.
+     *
+     * @param owner owner code
+     * @return number of removed outputs
+     */
+    @Override
+    public int invalidate(String owner) {
+        AtomicLong ownerGeneration = this.generations.get(owner);
+        if (ownerGeneration == null) {
+            AtomicLong created = new AtomicLong();
+            ownerGeneration = this.generations.putIfAbsent(owner, created);
+            if (ownerGeneration == null) {
+                ownerGeneration = created;
+            }
+        }
+        ownerGeneration.incrementAndGet();
+        return super.invalidate(owner);
+    }
+
+    /**
+     * Removes all the outputs from the cache.
+     */
+    @Override
+    public void invalidateAll() {
+        this.generation.incrementAndGet();
+        super.invalidateAll();
+    }
+
+    /**
+     * Returns the total size of the cached outputs in bytes.
+     *
+     * @return size in bytes
+     */
+    public long getSize() {
+        return this.getWeight();
+    }
+
+    @Override
+    protected long weigh(CachedResponse response) {
+        return response.getSize();
+    }
+
+    @Override
+    protected String getOwner(CachedResponse response) {
+        return response.getOwner();
+    }
+
+    /**
+     * Checks if the given output has expired.
+     *
+     * @param response output to be checked
+     * @return true if the output has expired; otherwise false
+     */
+    @Override
+    protected boolean isExpired(CachedResponse response) {
+        Long ttl = this.ownerTimeToLive.get(response.getOwner());
+        long seconds = ttl == null ? this.timeToLive : ttl;
+        if (seconds < 0) {
+            return false;
+        }
+        return System.currentTimeMillis() - response.getCreated() > seconds * 1000;
+    }
+}
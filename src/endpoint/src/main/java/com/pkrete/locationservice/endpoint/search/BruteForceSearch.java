@@ -28,6 +28,7 @@ import com.pkrete.locationservice.endpoint.model.subjectmatter.SubjectMatter;
 import com.pkrete.locationservice.endpoint.model.search.Position;
 import com.pkrete.locationservice.endpoint.model.search.SearchType;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Pattern;
 import org.slf4j.Logger;
@@ -44,6 +45,17 @@ import org.slf4j.LoggerFactory;
 public class BruteForceSearch extends Search {
 
     private static final Logger logger = LoggerFactory.getLogger(BruteForceSearch.class.getName());
+    private int batchSize = 10;
+
+    /**
+     * Sets the number of libraries that are loaded from the database at a
+     * time. Default is 10.
+     *
+     * @param batchSize new value
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize < 1 ? 1 : batchSize;
+    }
 
     /**
      * Searches locations matching the given conditions. The search is
@@ -60,56 +72,160 @@ public class BruteForceSearch extends Search {
      */
     @Override
     public List<Location> search(String search, Position position, SearchType type, Owner owner, boolean children) {
+        return search(search, position, type, owner, children, 0, 0);
+    }
+
+    /**
+     * Searches locations matching the given conditions and returns one page
+     * of the results. The results are collected from the locations returned
+     * by the stream method.
+     *
+     * @param search search string
+     * @param position position of the search string in the target field
+     * indicated by the type
+     * @param type type of the search - target field
+     * @param owner owner of the locations
+     * @param children children if true, all the sub locations are included
+     * @param offset number of results to be skipped
+     * @param limit maximum number of results, zero means no limit
+     * @return list of matching locations
+     */
+    @Override
+    public List<Location> search(String search, Position position, SearchType type, Owner owner, boolean children, int offset, int limit) {
+        List<Location> results = new ArrayList<Location>();
+        for (Location location : this.stream(search, position, type, owner, children, offset, limit)) {
+            results.add(location);
+        }
+        return results;
+    }
+
+    /**
+     * Searches locations matching the given conditions and returns one page
+     * of the results. The libraries of the owner are loaded from the database
+     * batchSize libraries at a time in id order while the results are
+     * iterated, and the search stops as soon as the requested page is full.
+     * Only the current batch is kept in memory, also when there's no limit.
+     *
+     * @param search search string
+     * @param position position of the search string in the target field
+     * indicated by the type
+     * @param type type of the search - target field
+     * @param owner owner of the locations
+     * @param children children if true, all the sub locations are included
+     * @param offset number of results to be skipped
+     * @param limit maximum number of results, zero means no limit
+     * @return matching locations
+     */
+    @Override
+    public Iterable<Location> stream(String search, Position position, final SearchType type, Owner owner, boolean children, final int offset, final int limit) {
         if (logger.isDebugEnabled()) {
             StringBuilder builder = new StringBuilder("Exporter search - search string : \"");
             builder.append(search).append("\", type : \"").append(type);
             builder.append("\", owner : \"").append(owner.getCode());
             builder.append("\", position : \"").append(position.toString());
             builder.append("\", children : ").append(children);
+            builder.append(", offset : ").append(offset);
+            builder.append(", limit : ").append(limit);
             logger.debug(builder.toString());
         }
         // Pattern for escaping regex special characters
         Pattern pattern = Pattern.compile("([\\\\*+\\[\\](){}\\$.?\\^|])");
-        search = escapeRegex(search, pattern);
+        final String escaped = escapeRegex(search, pattern);
 
-        logger.debug("Search string after escaping regex special characters: \"{}\".", search);
+        logger.debug("Search string after escaping regex special characters: \"{}\".", escaped);
 
-        // Get all the libraries related to the given owner.
-        // All the collections and shelves related to the libraries
-        // are loaded too.
-        List<Library> libraries = dbService.getAllLocations((owner == null ? "" : owner.getCode()));
-        List results = new ArrayList<Location>();
+        final String ownerCode = (owner == null ? "" : owner.getCode());
+        final String searchStr = buildSearchStr(escaped, position);
+
+        return new Iterable<Location>() {
+            @Override
+            public Iterator<Location> iterator() {
+                return new LocationBatchIterator() {
+                    private int skip = Math.max(offset, 0);
+                    private int afterId = 0;
+                    private int fetched = 0;
+                    private int found = 0;
+                    private boolean done = false;
 
-        logger.debug("Fetched {} libraries from the database. Start searching.", libraries.size());
+                    @Override
+                    protected List<Location> nextBatch() {
+                        List<Location> results = new ArrayList<Location>();
+                        while (!this.done && results.isEmpty()) {
+                            // Get the next batch of libraries related to the
+                            // given owner. All the collections and shelves
+                            // related to the libraries are loaded too.
+                            List<Library> libraries = dbService.getAllLocations(ownerCode, this.afterId, batchSize);
+                            if (libraries.isEmpty()) {
+                                this.done = true;
+                                break;
+                            }
+                            this.fetched += libraries.size();
+                            this.afterId = libraries.get(libraries.size() - 1).getLocationId();
+
+                            List batchResults = getResults(libraries, type, escaped, searchStr);
+                            for (Object location : batchResults) {
+                                if (this.skip > 0) {
+                                    this.skip--;
+                                } else if (limit <= 0 || this.found < limit) {
+                                    results.add((Location) location);
+                                    this.found++;
+                                }
+                            }
+                            // Stop when the page is full, the location matching
+                            // the id has been found or the last batch has been
+                            // handled
+                            if ((limit > 0 && this.found >= limit)
+                                    || (type == SearchType.ID && !batchResults.isEmpty())
+                                    || libraries.size() < batchSize) {
+                                this.done = true;
+                            }
+                        }
+                        if (this.done && results.isEmpty()) {
+                            logger.debug("Search completed. Searched {} libraries. Found {} locations matching the conditions.", this.fetched, this.found);
+                        }
+                        return results;
+                    }
+                };
+            }
+        };
+    }
 
+    /**
+     * Searches locations matching the given conditions from the given
+     * libraries.
+     *
+     * @param libraries list of libraries to be searched
+     * @param type type of the search - target field
+     * @param search escaped search string
+     * @param searchStr regex built from the search string
+     * @return list of matching locations
+     */
+    private List getResults(List<Library> libraries, SearchType type, String search, String searchStr) {
         // Do search according to the search type
         if (type == SearchType.CALLNO) {
-            results = getResultsByCallNo(libraries, buildSearchStr(search, position));
+            return getResultsByCallNo(libraries, searchStr);
         } else if (type == SearchType.CODE) {
-            results = getResultsByLocationCode(libraries, buildSearchStr(search, position));
+            return getResultsByLocationCode(libraries, searchStr);
         } else if (type == SearchType.ID) {
-            results = getResultsByLocationId(libraries, search);
+            return getResultsByLocationId(libraries, search);
         } else if (type == SearchType.DESC) {
-            results = getResultsByDesc(libraries, buildSearchStr(search, position));
+            return getResultsByDesc(libraries, searchStr);
         } else if (type == SearchType.NOTE) {
-            results = getResultsByNote(libraries, buildSearchStr(search, position));
+            return getResultsByNote(libraries, searchStr);
         } else if (type == SearchType.SUBJECT) {
-            results = getResultsBySubjectMatter(libraries, buildSearchStr(search, position));
+            return getResultsBySubjectMatter(libraries, searchStr);
         } else if (type == SearchType.STAFFNOTE1) {
-            results = getResultsByStaffNotePri(libraries, buildSearchStr(search, position));
+            return getResultsByStaffNotePri(libraries, searchStr);
         } else if (type == SearchType.STAFFNOTE2) {
-            results = getResultsByStaffNoteSec(libraries, buildSearchStr(search, position));
+            return getResultsByStaffNoteSec(libraries, searchStr);
         } else if (type == SearchType.FLOOR) {
-            results = getResultsByFloor(libraries, buildSearchStr(search, position));
+            return getResultsByFloor(libraries, searchStr);
         } else if (type == SearchType.SHELF) {
-            results = getResultsByShelfNumber(libraries, buildSearchStr(search, position));
+            return getResultsByShelfNumber(libraries, searchStr);
         } else if (type == SearchType.ALL) {
-            results = libraries;
+            return libraries;
         }
-
-        logger.debug("Search completed. Found {} locations matching the conditions.", results.size());
-
-        return results;
+        return new ArrayList<Location>();
     }
 
     /**
@@ -0,0 +1,299 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.search;
+
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.model.search.LocationType;
+import com.pkrete.locationservice.endpoint.model.search.Position;
+import com.pkrete.locationservice.endpoint.model.search.SearchType;
+import com.pkrete.locationservice.endpoint.search.index.LocationSearchIndex;
+import com.pkrete.locationservice.endpoint.search.index.LocationSearchIndexCache;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class extends the abstract {@link Search Search} class and implements
+ * the abstract search method by using the in-memory search index of the owner.
+ * The matching locations are looked up from the index, and only the locations
+ * on the requested page are loaded from the database. The results are the
+ * same and in the same order as the results of the
+ * {@link BruteForceSearch BruteForceSearch}.
+ *
+ * Searches that the index doesn't support, e.g. searches of type ALL, are
+ * passed to the fallback search. If verify is set, every search is run with
+ * the fallback search too, and the results of the fallback search are
+ * returned if the results differ.
+ *
+ * When the results are streamed, the matching locations are loaded from the
+ * database batchSize locations at a time.
+ *
+ * @author Petteri Kivimäki
+ */
+public class IndexedSearch extends Search {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexedSearch.class.getName());
+    private LocationSearchIndexCache indexCache;
+    private Search fallback;
+    private boolean verify;
+    private int batchSize = 100;
+
+    /**
+     * Sets the cache that holds the search indexes of the owners.
+     *
+     * @param indexCache new value
+     */
+    public void setIndexCache(LocationSearchIndexCache indexCache) {
+        this.indexCache = indexCache;
+    }
+
+    /**
+     * Sets the search that's used when the index can not be used, and for
+     * verifying the results.
+     *
+     * @param fallback new value
+     */
+    public void setFallback(Search fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Sets if the results are verified by running the fallback search too.
+     * Default is false.
+     *
+     * @param verify new value
+     */
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    /**
+     * Sets the number of locations that are loaded from the database at a
+     * time when the results are streamed. Default is 100.
+     *
+     * @param batchSize new value
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize < 1 ? 1 : batchSize;
+    }
+
+    /**
+     * Searches locations matching the given conditions.
+     *
+     * @param search search string
+     * @param position position of the search string in the target field
+     * indicated by the type
+     * @param type type of the search - target field
+     * @param owner owner of the locations
+     * @param children children if true, all the sub locations are included
+     * @return list of matching locations
+     */
+    @Override
+    public List<Location> search(String search, Position position, SearchType type, Owner owner, boolean children) {
+        return search(search, position, type, owner, children, 0, 0);
+    }
+
+    /**
+     * Searches locations matching the given conditions and returns one page
+     * of the results.
+     *
+     * @param search search string
+     * @param position position of the search string in the target field
+     * indicated by the type
+     * @param type type of the search - target field
+     * @param owner owner of the locations
+     * @param children children if true, all the sub locations are included
+     * @param offset number of results to be skipped
+     * @param limit maximum number of results, zero means no limit
+     * @return list of matching locations
+     */
+    @Override
+    public List<Location> search(String search, Position position, SearchType type, Owner owner, boolean children, int offset, int limit) {
+        String ownerCode = (owner == null ? "" : owner.getCode());
+        LocationSearchIndex index = this.getIndex(ownerCode);
+        if (index == null || !index.supports(type)) {
+            return this.fallback.search(search, position, type, owner, children, offset, limit);
+        }
+
+        int[] matches = index.find(type, search.toUpperCase(), position);
+        logger.debug("Index search completed. Found {} locations matching the conditions.", matches.length);
+
+        // Apply paging
+        int from = Math.min(Math.max(offset, 0), matches.length);
+        int to = limit <= 0 ? matches.length : (int) Math.min((long) from + limit, matches.length);
+
+        List<Location> results = this.load(index, matches, from, to, children);
+
+        if (this.verify) {
+            List<Location> expected = this.fallback.search(search, position, type, owner, children, offset, limit);
+            if (!this.sameLocations(results, expected)) {
+                logger.warn("Index search and fallback search returned different results. Owner : \"{}\", type : \"{}\", search : \"{}\". Use the fallback results.", new Object[]{ownerCode, type, search});
+                return expected;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Searches locations matching the given conditions and returns one page
+     * of the results. The matching locations are looked up from the index
+     * at once, but they're loaded from the database batchSize locations at a
+     * time while the results are iterated. If verify is set, the results are
+     * not streamed.
+     *
+     * @param search search string
+     * @param position position of the search string in the target field
+     * indicated by the type
+     * @param type type of the search - target field
+     * @param owner owner of the locations
+     * @param children children if true, all the sub locations are included
+     * @param offset number of results to be skipped
+     * @param limit maximum number of results, zero means no limit
+     * @return matching locations
+     */
+    @Override
+    public Iterable<Location> stream(String search, Position position, SearchType type, Owner owner, final boolean children, int offset, int limit) {
+        String ownerCode = (owner == null ? "" : owner.getCode());
+        final LocationSearchIndex index = this.getIndex(ownerCode);
+        if (index == null || !index.supports(type)) {
+            return this.fallback.stream(search, position, type, owner, children, offset, limit);
+        }
+        if (this.verify) {
+            return this.search(search, position, type, owner, children, offset, limit);
+        }
+
+        final int[] matches = index.find(type, search.toUpperCase(), position);
+        logger.debug("Index search completed. Found {} locations matching the conditions.", matches.length);
+
+        // Apply paging
+        final int from = Math.min(Math.max(offset, 0), matches.length);
+        final int to = limit <= 0 ? matches.length : (int) Math.min((long) from + limit, matches.length);
+
+        return new Iterable<Location>() {
+            @Override
+            public Iterator<Location> iterator() {
+                return new LocationBatchIterator() {
+                    private int next = from;
+
+                    @Override
+                    protected List<Location> nextBatch() {
+                        List<Location> results = new ArrayList<Location>();
+                        // Skip batches which locations have all been deleted
+                        // after the index was built
+                        while (results.isEmpty() && this.next < to) {
+                            int end = (int) Math.min((long) this.next + batchSize, to);
+                            results = load(index, matches, this.next, end, children);
+                            this.next = end;
+                        }
+                        return results;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the search index of the given owner. If getting the index
+     * fails, null is returned.
+     *
+     * @param ownerCode code of the owner
+     * @return search index of the owner or null
+     */
+    private LocationSearchIndex getIndex(String ownerCode) {
+        if (this.indexCache == null) {
+            return null;
+        }
+        try {
+            return this.indexCache.get(ownerCode);
+        } catch (RuntimeException e) {
+            logger.error("Getting the search index of owner \"{}\" failed. Use the fallback search.", ownerCode);
+            logger.error(e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Loads the given locations from the database and returns them in the
+     * given order. If a location is returned many times by the index, it's
+     * included many times in the results.
+     *
+     * @param index search index
+     * @param matches location numbers
+     * @param from first location number to be loaded, inclusive
+     * @param to last location number to be loaded, exclusive
+     * @param children if true, all the sub locations are loaded
+     * @return loaded locations
+     */
+    private List<Location> load(LocationSearchIndex index, int[] matches, int from, int to, boolean children) {
+        List<Integer> libraryIds = new ArrayList<Integer>();
+        List<Integer> collectionIds = new ArrayList<Integer>();
+        List<Integer> shelfIds = new ArrayList<Integer>();
+        for (int i = from; i < to; i++) {
+            int id = index.getId(matches[i]);
+            LocationType locationType = index.getType(matches[i]);
+            if (locationType == LocationType.LIBRARY) {
+                libraryIds.add(id);
+            } else if (locationType == LocationType.COLLECTION) {
+                collectionIds.add(id);
+            } else {
+                shelfIds.add(id);
+            }
+        }
+        List<Location> results = new ArrayList<Location>(to - from);
+        if (to == from) {
+            return results;
+        }
+        Map<Integer, Location> locations = new HashMap<Integer, Location>();
+        for (Location location : this.dbService.getLocations(libraryIds, collectionIds, shelfIds, children)) {
+            locations.put(location.getLocationId(), location);
+        }
+        for (int i = from; i < to; i++) {
+            Location location = locations.get(index.getId(matches[i]));
+            // The location may have been deleted after the index was built
+            if (location != null) {
+                results.add(location);
+            }
+        }
+        logger.debug("Fetched {} full Location objects from the database.", results.size());
+        return results;
+    }
+
+    /**
+     * Checks if the given lists contain the same locations in the same order.
+     *
+     * @param results first list
+     * @param expected second list
+     * @return true if the lists contain the same locations; otherwise false
+     */
+    private boolean sameLocations(List<Location> results, List<Location> expected) {
+        if (results.size() != expected.size()) {
+            return false;
+        }
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).getLocationId() != expected.get(i).getLocationId()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.search;
+
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This abstract class implements an iterator that reads the locations in
+ * batches. The next batch is requested only when all the locations of the
+ * current batch have been returned, and the iteration ends when an empty
+ * batch is returned. Only the current batch is referenced by the iterator.
+ *
+ * Every batch is loaded by a separate Service call, which runs in its own
+ * transaction. The Hibernate session is closed when the call returns, so the
+ * locations of the previous batches are not held by the session either.
+ *
+ * @author Petteri Kivimäki
+ */
+public abstract class LocationBatchIterator implements Iterator<Location> {
+
+    private Iterator<? extends Location> batch;
+    private boolean done;
+
+    /**
+     * Returns the next batch of locations. An empty list means that there
+     * are no more locations.
+     *
+     * @return next batch of locations
+     */
+    protected abstract List<? extends Location> nextBatch();
+
+    @Override
+    public boolean hasNext() {
+        while (!this.done && (this.batch == null || !this.batch.hasNext())) {
+            // Release the previous batch before the next one is loaded
+            this.batch = null;
+            List<? extends Location> locations = this.nextBatch();
+            if (locations.isEmpty()) {
+                this.done = true;
+            } else {
+                this.batch = locations.iterator();
+            }
+        }
+        return !this.done;
+    }
+
+    @Override
+    public Location next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return this.batch.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -22,6 +22,7 @@ import com.pkrete.locationservice.endpoint.model.owner.Owner;
 import com.pkrete.locationservice.endpoint.model.search.Position;
 import com.pkrete.locationservice.endpoint.model.search.SearchType;
 import com.pkrete.locationservice.endpoint.service.Service;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -38,6 +39,69 @@ public abstract class Search {
 
     public abstract List<Location> search(String search, Position position, SearchType type, Owner owner, boolean children);
 
+    /**
+     * Searches locations matching the given conditions and returns one page
+     * of the results. The first offset results are skipped, and at most limit
+     * results are returned. Limit zero means that all the remaining results
+     * are returned. Subclasses may override this method to avoid searching
+     * beyond the requested page.
+     *
+     * @param search search string
+     * @param position position of the search string in the target field
+     * indicated by the type
+     * @param type type of the search - target field
+     * @param owner owner of the locations
+     * @param children children if true, all the sub locations are included
+     * @param offset number of results to be skipped
+     * @param limit maximum number of results, zero means no limit
+     * @return list of matching locations
+     */
+    public List<Location> search(String search, Position position, SearchType type, Owner owner, boolean children, int offset, int limit) {
+        return getPage(search(search, position, type, owner, children), offset, limit);
+    }
+
+    /**
+     * Searches locations matching the given conditions and returns one page
+     * of the results as an Iterable that may load the results lazily while
+     * they're iterated. This method should be used when the results are
+     * written to the response one by one, so that the whole result set is
+     * never held in memory. The default implementation returns the list
+     * returned by the search method. Subclasses may override this method to
+     * load the results in batches.
+     *
+     * @param search search string
+     * @param position position of the search string in the target field
+     * indicated by the type
+     * @param type type of the search - target field
+     * @param owner owner of the locations
+     * @param children children if true, all the sub locations are included
+     * @param offset number of results to be skipped
+     * @param limit maximum number of results, zero means no limit
+     * @return matching locations
+     */
+    public Iterable<Location> stream(String search, Position position, SearchType type, Owner owner, boolean children, int offset, int limit) {
+        return search(search, position, type, owner, children, offset, limit);
+    }
+
+    /**
+     * Returns one page of the given results. The first offset results are
+     * skipped, and at most limit results are returned. Limit zero means that
+     * all the remaining results are returned.
+     *
+     * @param results list of results
+     * @param offset number of results to be skipped
+     * @param limit maximum number of results, zero means no limit
+     * @return page of the results
+     */
+    protected List<Location> getPage(List<Location> results, int offset, int limit) {
+        if (offset <= 0 && limit <= 0) {
+            return results;
+        }
+        int from = Math.min(Math.max(offset, 0), results.size());
+        int to = limit <= 0 ? results.size() : (int) Math.min((long) from + limit, results.size());
+        return new ArrayList<Location>(results.subList(from, to));
+    }
+
     /**
      * Sets the dbService variable.
      *
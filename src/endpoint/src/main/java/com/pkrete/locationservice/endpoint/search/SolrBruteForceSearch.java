@@ -18,24 +18,28 @@
 package com.pkrete.locationservice.endpoint.search;
 
 import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
 import com.pkrete.locationservice.endpoint.model.owner.Owner;
 import com.pkrete.locationservice.endpoint.model.search.LocationType;
 import com.pkrete.locationservice.endpoint.model.search.Position;
 import com.pkrete.locationservice.endpoint.model.search.SearchType;
-import com.pkrete.locationservice.endpoint.solr.model.LocationDocument;
 import com.pkrete.locationservice.endpoint.solr.service.LocationIndexService;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This class extends the abstract {@link Search Search} class and implements
- * the abstract search method. This class implements the search by
- * systematically enumerating all the possible locations and checking if they
- * match the given conditions. The search is done against Solr and only the
- * locations matching the conditions are fully loaded from the db.
+ * the abstract search method. The search conditions are translated into a
+ * Solr query, and the search and the paging are done in Solr. Only the ids of
+ * the locations on the requested page are returned by Solr, and only those
+ * locations are fully loaded from the db. When the results are streamed, they
+ * are fetched from Solr and loaded from the db batchSize locations at a time.
+ *
+ * Searches of type ALL are passed to the fallback search, which pages through
+ * the libraries of the owner in the db.
  *
  * @author Petteri Kivimäki
  */
@@ -43,6 +47,8 @@ public class SolrBruteForceSearch extends Search {
 
     private static final Logger logger = LoggerFactory.getLogger(SolrBruteForceSearch.class.getName());
     private LocationIndexService locationIndexService;
+    private Search fallback;
+    private int batchSize = 100;
 
     /**
      * Sets the location index service variable value.
@@ -54,9 +60,27 @@ public class SolrBruteForceSearch extends Search {
     }
 
     /**
-     * Searches locations matching the given conditions. The search is
-     * implemented by systematically enumerating all the possible locations and
-     * checking if they match the given conditions.
+     * Sets the search that's used for searches of type ALL.
+     *
+     * @param fallback new value
+     */
+    public void setFallback(Search fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Sets the number of locations that are fetched from Solr and loaded
+     * from the db at a time when the results are streamed. Default is 100.
+     *
+     * @param batchSize new value
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize < 1 ? 1 : batchSize;
+    }
+
+    /**
+     * Searches locations matching the given conditions. The search is done in
+     * Solr.
      *
      * @param search search string
      * @param position position of the search string in the target field
@@ -68,309 +92,138 @@ public class SolrBruteForceSearch extends Search {
      */
     @Override
     public List<Location> search(String search, Position position, SearchType type, Owner owner, boolean children) {
+        return this.search(search, position, type, owner, children, 0, 0);
+    }
+
+    /**
+     * Searches locations matching the given conditions and returns one page
+     * of the results. The search and the paging are done in Solr, so the
+     * number of locations loaded from the db doesn't exceed the page size.
+     * Libraries are returned first, then collections and then shelves.
+     *
+     * @param search search string
+     * @param position position of the search string in the target field
+     * indicated by the type
+     * @param type type of the search - target field
+     * @param owner owner of the locations
+     * @param children children if true, all the sub locations are included
+     * @param offset number of results to be skipped
+     * @param limit maximum number of results, zero means no limit
+     * @return list of matching locations
+     */
+    @Override
+    public List<Location> search(String search, Position position, SearchType type, Owner owner, boolean children, int offset, int limit) {
         if (logger.isDebugEnabled()) {
             StringBuilder builder = new StringBuilder("Exporter search - search string : \"");
             builder.append(search).append("\", type : \"").append(type);
             builder.append("\", owner : \"").append(owner.getCode());
             builder.append("\", position : \"").append(position.toString());
             builder.append("\", children : ").append(children);
+            builder.append(", offset : ").append(offset);
+            builder.append(", limit : ").append(limit);
             logger.debug(builder.toString());
         }
 
-        // Variable for results
-        List<Location> results;
-
-        // If search type is all, no need to continue
-        // Just return all the locations related to the owner
+        // If search type is all, no need to continue. All the locations
+        // related to the owner are paged through the db.
         if (type == SearchType.ALL) {
-            results = (List) this.dbService.getAllLocations(owner.getCode());
-            logger.debug("Found {} locations matching the conditions.", results.size());
-            return results;
+            return this.fallback.search(search, position, type, owner, children, offset, limit);
         }
 
-        // Pattern for escaping regex special characters
-        Pattern pattern = Pattern.compile("([\\\\*+\\[\\](){}\\$.?\\^|])");
-        search = escapeRegex(search, pattern);
-
-        logger.debug("Search string after escaping regex special characters: \"{}\"", search);
-
-        //
-        // Get all the location documents related to the given owner.
-        List<LocationDocument> locations = (List) this.locationIndexService.getAllLocations(owner.getCode());
-        // List for temp results
-        List tempResults = new ArrayList<LocationDocument>();
+        // Get the ids and types of the matching locations from Solr
+        List<SimpleLocation> documents = this.locationIndexService.search(owner.getCode(), type, position, search, offset, limit);
 
-        logger.debug("Fetched {} LocationDocuments from Solr. Start searching.", locations.size());
+        logger.debug("Search completed. Found {} LocationDocuments matching the conditions.", documents.size());
 
-        // Do search according to the search type
-        if (type == SearchType.CALLNO) {
-            tempResults = getResultsByCallNo(locations, buildSearchStr(search, position));
-        } else if (type == SearchType.CODE) {
-            tempResults = getResultsByLocationCode(locations, buildSearchStr(search, position));
-        } else if (type == SearchType.ID) {
-            tempResults = getResultsByLocationId(locations, search);
-        } else if (type == SearchType.DESC) {
-            tempResults = getResultsByDesc(locations, buildSearchStr(search, position));
-        } else if (type == SearchType.NOTE) {
-            tempResults = getResultsByNote(locations, buildSearchStr(search, position));
-        } else if (type == SearchType.SUBJECT) {
-            tempResults = getResultsBySubjectMatter(locations, buildSearchStr(search, position));
-        } else if (type == SearchType.STAFFNOTE1) {
-            tempResults = getResultsByStaffNotePri(locations, buildSearchStr(search, position));
-        } else if (type == SearchType.STAFFNOTE2) {
-            tempResults = getResultsByStaffNoteSec(locations, buildSearchStr(search, position));
-        } else if (type == SearchType.FLOOR) {
-            tempResults = getResultsByFloor(locations, buildSearchStr(search, position));
-        } else if (type == SearchType.SHELF) {
-            tempResults = getResultsByShelfNumber(locations, buildSearchStr(search, position));
-        }
-
-        logger.debug("Search completed. Found {} LocationDocuments matching the conditions.", tempResults.size());
-        logger.debug("Fetch full Location objects from the database.");
-
-        // Get library, collection and shelf ids
-        List<Integer> libraryIds = this.getIds(tempResults, LocationType.LIBRARY);
-        List<Integer> collectionIds = this.getIds(tempResults, LocationType.COLLECTION);
-        List<Integer> schelfIds = this.getIds(tempResults, LocationType.SHELF);
-        // Get full Location objects from the db
-        results = this.dbService.getLocations(libraryIds, collectionIds, schelfIds, children);
-
-        logger.debug("Fetched {} full Location objects from the database.", results.size());
-
-        return results;
-    }
-
-    /**
-     * Performs a search by call number. Goes through the given list of location
-     * documents and returns a list containing all the LocationDocument objects
-     * which call number matches the given search string.
-     *
-     * @param locations list of locations to be searched
-     * @param searchStr search string
-     * @return list of LocationDocuments which call number matches the search
-     * string
-     */
-    private List getResultsByCallNo(List<LocationDocument> locations, String searchStr) {
-        List results = new ArrayList<LocationDocument>();
-        for (LocationDocument doc : locations) {
-            if (doc.getCallNo().toUpperCase().matches(searchStr)) {
-                results.add(doc);
-            }
-        }
-        return results;
-    }
-
-    /**
-     * Performs a search by location code. Goes through the given list of
-     * location documents and returns a list containing all the LocationDocument
-     * objects which location code matches the given search string.
-     *
-     * @param locations list of locations to be searched
-     * @param searchStr search string
-     * @return list of LocationDocuments which location code matches the search
-     * string
-     */
-    private List getResultsByLocationCode(List<LocationDocument> locations, String searchStr) {
-        List results = new ArrayList<LocationDocument>();
-        for (LocationDocument doc : locations) {
-            if (doc.getLocationCode().toUpperCase().matches(searchStr)) {
-                results.add(doc);
-            }
-        }
-        return results;
-    }
-
-    /**
-     * Performs a search by description. Goes through the given list of location
-     * documents and returns a list containing all the LocationDocument objects
-     * which descriptions match the given search string.
-     *
-     * @param locations list of locations to be searched
-     * @param searchStr search string
-     * @return list of LocationDocuments which descriptions match the search
-     * string
-     */
-    private List getResultsByDesc(List<LocationDocument> locations, String searchStr) {
-        List results = new ArrayList<LocationDocument>();
-        for (LocationDocument doc : locations) {
-            if (doc.getDescriptions() != null && !doc.getDescriptions().isEmpty()) {
-                for (String desc : doc.getDescriptions()) {
-                    if (desc.toUpperCase().matches(searchStr)) {
-                        results.add(doc);
-                    }
-                }
-            }
-        }
-        return results;
+        return this.load(documents, children);
     }
 
     /**
-     * Performs a search by note. Goes through the given list of location
-     * documents and returns a list containing all the LocationDocument objects
-     * which notes match the given search string.
+     * Searches locations matching the given conditions and returns one page
+     * of the results. The results are fetched from Solr and loaded from the
+     * db batchSize locations at a time while they're iterated.
      *
-     * @param locations list of locations to be searched
-     * @param searchStr search string
-     * @return list of LocationDocuments which notes match the search string
+     * @param search search string
+     * @param position position of the search string in the target field
+     * indicated by the type
+     * @param type type of the search - target field
+     * @param owner owner of the locations
+     * @param children children if true, all the sub locations are included
+     * @param offset number of results to be skipped
+     * @param limit maximum number of results, zero means no limit
+     * @return matching locations
      */
-    private List getResultsByNote(List<LocationDocument> locations, String searchStr) {
-        List results = new ArrayList<LocationDocument>();
-        for (LocationDocument doc : locations) {
-            if (doc.getNotes() != null && !doc.getNotes().isEmpty()) {
-                for (String note : doc.getNotes()) {
-                    if (note.toUpperCase().matches(searchStr)) {
-                        results.add(doc);
-                    }
-                }
-            }
+    @Override
+    public Iterable<Location> stream(final String search, final Position position, final SearchType type, Owner owner, final boolean children, final int offset, final int limit) {
+        if (type == SearchType.ALL) {
+            return this.fallback.stream(search, position, type, owner, children, offset, limit);
         }
-        return results;
-    }
-
-    /**
-     * Performs a search by subject matters. Goes through the given list of
-     * location documents and returns a list containing all the LocationDocument
-     * objects which subject matters match the given search string.
-     *
-     * @param locations list of locations to be searched
-     * @param searchStr search string
-     * @return list of LocationDocuments which subject matters match the search
-     * string
-     */
-    private List getResultsBySubjectMatter(List<LocationDocument> locations, String searchStr) {
-        List results = new ArrayList<LocationDocument>();
-        for (LocationDocument doc : locations) {
-            if (doc.getSubjectMatters() != null && !doc.getSubjectMatters().isEmpty()) {
-                for (String subject : doc.getSubjectMatters()) {
-                    if (subject.toUpperCase().matches(searchStr)) {
-                        results.add(doc);
+        final String ownerCode = owner.getCode();
+        return new Iterable<Location>() {
+            @Override
+            public Iterator<Location> iterator() {
+                return new LocationBatchIterator() {
+                    private int start = Math.max(offset, 0);
+                    private int found = 0;
+                    private boolean done = false;
+
+                    @Override
+                    protected List<Location> nextBatch() {
+                        List<Location> results = new ArrayList<Location>();
+                        // Locations deleted after they were indexed are
+                        // skipped, so a batch may be empty
+                        while (!this.done && results.isEmpty()) {
+                            int rows = limit > 0 ? Math.min(limit - this.found, batchSize) : batchSize;
+                            List<SimpleLocation> documents = locationIndexService.search(ownerCode, type, position, search, this.start, rows);
+                            this.start += documents.size();
+                            this.found += documents.size();
+                            if (documents.size() < rows || (limit > 0 && this.found >= limit)) {
+                                this.done = true;
+                            }
+                            if (!documents.isEmpty()) {
+                                results = load(documents, children);
+                            }
+                        }
+                        return results;
                     }
-                }
+                };
             }
-        }
-        return results;
+        };
     }
 
     /**
-     * Performs a search by primary staff note. Goes through the given list of
-     * location documents and returns a list containing all the LocationDocument
-     * objects which primary staff note matches the given search string.
+     * Loads the given locations from the db.
      *
-     * @param locations list of locations to be searched
-     * @param searchStr search string
-     * @return list of LocationDocuments which primary staff note matches the
-     * search string
+     * @param documents ids and types of the locations
+     * @param children if true, all the sub locations are loaded
+     * @return full Location objects
      */
-    private List getResultsByStaffNotePri(List<LocationDocument> locations, String searchStr) {
-        List results = new ArrayList<LocationDocument>();
-        for (LocationDocument doc : locations) {
-            if (doc.getStaffNotePri() != null && doc.getStaffNotePri().toUpperCase().matches(searchStr)) {
-                results.add(doc);
-            }
-        }
-        return results;
-    }
-
-    /**
-     * Performs a search by secondary staff note. Goes through the given list of
-     * location documents and returns a list containing all the LocationDocument
-     * objects which secondary staff note matches the given search string.
-     *
-     * @param locations list of locations to be searched
-     * @param searchStr search string
-     * @return list of LocationDocuments which secondary staff note matches the
-     * search string
-     */
-    private List getResultsByStaffNoteSec(List<LocationDocument> locations, String searchStr) {
-        List results = new ArrayList<LocationDocument>();
-        for (LocationDocument doc : locations) {
-            if (doc.getStaffNoteSec() != null && doc.getStaffNoteSec().toUpperCase().matches(searchStr)) {
-                results.add(doc);
-            }
-        }
-        return results;
-    }
-
-    /**
-     * Performs a search by location id. Goes through the given list of location
-     * documents and returns a list containing all the LocationDocument objects
-     * which location id matches the given search string.
-     *
-     * @param locations list of locations to be searched
-     * @param searchStr search string
-     * @return list of LocationDocuments which location id matches the search
-     * string
-     */
-    private List getResultsByLocationId(List<LocationDocument> locations, String searchStr) {
-        List results = new ArrayList<LocationDocument>();
-        int id = 0;
-        try {
-            id = Integer.parseInt(searchStr);
-        } catch (NumberFormatException nfe) {
-            return results;
-        }
-
-        for (LocationDocument doc : locations) {
-            if (doc.getLocationId() == id) {
-                results.add(doc);
-                return results;
-            }
-        }
-        return results;
-    }
+    private List<Location> load(List<SimpleLocation> documents, boolean children) {
+        logger.debug("Fetch full Location objects from the database.");
+        // Get library, collection and shelf ids
+        List<Integer> libraryIds = this.getIds(documents, LocationType.LIBRARY);
+        List<Integer> collectionIds = this.getIds(documents, LocationType.COLLECTION);
+        List<Integer> schelfIds = this.getIds(documents, LocationType.SHELF);
+        // Get full Location objects from the db
+        List<Location> results = this.dbService.getLocations(libraryIds, collectionIds, schelfIds, children);
 
-    /**
-     * Performs a search by floor. Goes through the given list of location
-     * documents and returns a list containing all the LocationDocument objects
-     * which floor matches the given search string.
-     *
-     * @param locations list of locations to be searched
-     * @param searchStr search string
-     * @return list of LocationDocuments which floor attribute matches the
-     * search string
-     */
-    private List getResultsByFloor(List<LocationDocument> locations, String searchStr) {
-        List results = new ArrayList<LocationDocument>();
-        for (LocationDocument doc : locations) {
-            if (doc.getFloor() != null && doc.getFloor().toUpperCase().matches(searchStr)) {
-                results.add(doc);
-            }
-        }
-        return results;
-    }
+        logger.debug("Fetched {} full Location objects from the database.", results.size());
 
-    /**
-     * Performs a search by shelf number. Goes through the given list of
-     * location documents and returns a list containing all the LocationDocument
-     * objects which shelf number matches the given search string.
-     *
-     * @param locations list of locations to be searched
-     * @param searchStr search string
-     * @return list of LocationDocuments which shelf number matches the search
-     * string
-     */
-    private List getResultsByShelfNumber(List<LocationDocument> locations, String searchStr) {
-        List results = new ArrayList<LocationDocument>();
-        for (LocationDocument doc : locations) {
-            if (doc.getShelf() != null && doc.getShelf().toUpperCase().matches(searchStr)) {
-                results.add(doc);
-            }
-        }
         return results;
     }
 
     /**
      * Returns a list of ids of locations representing the given location type.
-     * Goes through the given list of LocationDocuments and picks the location
-     * ids representing the given type.
+     * Goes through the given list of locations and picks the location ids
+     * representing the given type.
      *
-     * @param documents list of LocationDocuments to be checked
+     * @param documents list of locations to be checked
      * @param type LocationType to be searched
      * @return list of ids
      */
-    private List<Integer> getIds(List<LocationDocument> documents, LocationType type) {
+    private List<Integer> getIds(List<SimpleLocation> documents, LocationType type) {
         List<Integer> result = new ArrayList<Integer>();
-        for (LocationDocument doc : documents) {
+        for (SimpleLocation doc : documents) {
             if (doc.getLocationType() == type) {
                 result.add(doc.getLocationId());
             }
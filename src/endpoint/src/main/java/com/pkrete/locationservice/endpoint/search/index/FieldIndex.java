@@ -0,0 +1,327 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.search.index;
+
+import com.pkrete.locationservice.endpoint.model.search.Position;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is an inverted index of the values of a single searchable field,
+ * e.g. call number or description. Every value is an entry that's identified
+ * by its position in the index, and every entry refers to the location that
+ * the value belongs to. A location may have many entries, e.g. one for every
+ * description.
+ *
+ * The entries are indexed three ways: sorted by value for prefix and exact
+ * searches, sorted by reversed value for suffix searches, and as trigram
+ * postings for substring searches. The candidates found from the index are
+ * always verified against the value, so the result is exactly the same as
+ * matching every value with the regular expression built by the
+ * {@link com.pkrete.locationservice.endpoint.search.Search Search} class.
+ *
+ * The values must be in upper case. Objects of this class are immutable.
+ *
+ * @author Petteri Kivimäki
+ */
+public class FieldIndex {
+
+    private static final int GRAM = 3;
+    private final String[] values;
+    private final int[] locations;
+    private final int[] byValue;
+    private final String[] sortedValues;
+    private final int[] byReversedValue;
+    private final String[] sortedReversedValues;
+    private final Map<String, int[]> grams;
+
+    /**
+     * Constructs and initializes a new FieldIndex object. The values must be
+     * given in the order in which the results are returned.
+     *
+     * @param values upper case values of the field
+     * @param locations location number of every value
+     */
+    public FieldIndex(List<String> values, List<Integer> locations) {
+        int size = values.size();
+        this.values = values.toArray(new String[size]);
+        this.locations = new int[size];
+        for (int i = 0; i < size; i++) {
+            this.locations[i] = locations.get(i);
+        }
+        final String[] reversed = new String[size];
+        for (int i = 0; i < size; i++) {
+            reversed[i] = new StringBuilder(this.values[i]).reverse().toString();
+        }
+        this.byValue = sort(this.values);
+        this.sortedValues = arrange(this.values, this.byValue);
+        this.byReversedValue = sort(reversed);
+        this.sortedReversedValues = arrange(reversed, this.byReversedValue);
+        this.grams = buildGrams(this.values);
+    }
+
+    /**
+     * Returns the number of entries in this index.
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return this.values.length;
+    }
+
+    /**
+     * Returns the location numbers of all the entries which value matches the
+     * given search string in the given position. The location numbers are
+     * returned in entry order, and if many values of the same location match,
+     * the location number is returned many times.
+     *
+     * @param search upper case search string
+     * @param position position of the search string in the value
+     * @return location numbers of the matching entries
+     */
+    public int[] find(String search, Position position) {
+        int[] candidates;
+        if (position == Position.FIRST || position == Position.MATCH) {
+            candidates = range(this.sortedValues, this.byValue, search);
+        } else if (position == Position.LAST) {
+            candidates = range(this.sortedReversedValues, this.byReversedValue, new StringBuilder(search).reverse().toString());
+        } else {
+            candidates = this.gramCandidates(search);
+        }
+        int[] results = new int[candidates.length];
+        int count = 0;
+        for (int entry : candidates) {
+            if (matches(this.values[entry], search, position)) {
+                results[count++] = this.locations[entry];
+            }
+        }
+        return Arrays.copyOf(results, count);
+    }
+
+    /**
+     * Checks if the given value matches the given search string in the given
+     * position. The rules are the same that the regular expressions
+     * "^S.*", ".*S$", "^S$" and ".*S.*" follow when the whole value must
+     * match. Because "." doesn't match line terminators, the part of the
+     * value outside the search string must not contain line terminators.
+     *
+     * @param value value to be checked
+     * @param search search string
+     * @param position position of the search string in the value
+     * @return true if the value matches; otherwise false
+     */
+    static boolean matches(String value, String search, Position position) {
+        if (position == Position.MATCH) {
+            return value.equals(search);
+        } else if (position == Position.FIRST) {
+            return value.startsWith(search) && !hasLineTerminator(value, search.length(), value.length());
+        } else if (position == Position.LAST) {
+            int end = value.length() - search.length();
+            return value.endsWith(search) && !hasLineTerminator(value, 0, end);
+        }
+        int index = value.indexOf(search);
+        while (index >= 0) {
+            if (!hasLineTerminator(value, 0, index) && !hasLineTerminator(value, index + search.length(), value.length())) {
+                return true;
+            }
+            // Empty search string is found at every index up to the length
+            index = index < value.length() ? value.indexOf(search, index + 1) : -1;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the given range of the given string contains characters that
+     * the regular expression "." doesn't match.
+     *
+     * @param value string to be checked
+     * @param start start index, inclusive
+     * @param end end index, exclusive
+     * @return true if the range contains line terminators; otherwise false
+     */
+    private static boolean hasLineTerminator(String value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the entries which value starts with the given prefix in entry
+     * order.
+     *
+     * @param sorted values in sorted order
+     * @param order entry numbers of the sorted values
+     * @param prefix prefix to be searched
+     * @return sorted entry numbers
+     */
+    private static int[] range(String[] sorted, int[] order, String prefix) {
+        int from = Arrays.binarySearch(sorted, prefix);
+        if (from < 0) {
+            from = -from - 1;
+        } else {
+            // Find the first one of equal values
+            while (from > 0 && sorted[from - 1].equals(prefix)) {
+                from--;
+            }
+        }
+        int to = from;
+        while (to < sorted.length && sorted[to].startsWith(prefix)) {
+            to++;
+        }
+        int[] result = Arrays.copyOfRange(order, from, to);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the entries that contain all the trigrams of the given search
+     * string in entry order. If the search string is shorter than a trigram,
+     * all the entries are returned.
+     *
+     * @param search search string
+     * @return sorted entry numbers
+     */
+    private int[] gramCandidates(String search) {
+        if (search.length() < GRAM) {
+            int[] all = new int[this.values.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] result = null;
+        for (int i = 0; i + GRAM <= search.length(); i++) {
+            int[] postings = this.grams.get(search.substring(i, i + GRAM));
+            if (postings == null) {
+                return new int[0];
+            }
+            result = result == null ? postings : intersect(result, postings);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the intersection of the given sorted arrays.
+     *
+     * @param a sorted array
+     * @param b sorted array
+     * @return sorted intersection
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the entry numbers of the given values in value order.
+     *
+     * @param values values to be sorted
+     * @return entry numbers in value order
+     */
+    private static int[] sort(final String[] values) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return values[o1].compareTo(values[o2]);
+            }
+        });
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the given values in the given order.
+     *
+     * @param values values to be arranged
+     * @param order entry numbers in the new order
+     * @return arranged values
+     */
+    private static String[] arrange(String[] values, int[] order) {
+        String[] result = new String[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = values[order[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Builds the trigram postings of the given values. The postings of every
+     * trigram contain the entry numbers in ascending order.
+     *
+     * @param values values to be indexed
+     * @return trigram postings
+     */
+    private static Map<String, int[]> buildGrams(String[] values) {
+        Map<String, List<Integer>> temp = new HashMap<String, List<Integer>>();
+        for (int entry = 0; entry < values.length; entry++) {
+            String value = values[entry];
+            for (int i = 0; i + GRAM <= value.length(); i++) {
+                String gram = value.substring(i, i + GRAM);
+                List<Integer> postings = temp.get(gram);
+                if (postings == null) {
+                    postings = new ArrayList<Integer>();
+                    temp.put(gram, postings);
+                }
+                // The same trigram may occur many times in the same value
+                if (postings.isEmpty() || postings.get(postings.size() - 1) != entry) {
+                    postings.add(entry);
+                }
+            }
+        }
+        Map<String, int[]> result = new HashMap<String, int[]>(temp.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Integer>> gram : temp.entrySet()) {
+            List<Integer> postings = gram.getValue();
+            int[] array = new int[postings.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = postings.get(i);
+            }
+            result.put(gram.getKey(), array);
+        }
+        return result;
+    }
+}
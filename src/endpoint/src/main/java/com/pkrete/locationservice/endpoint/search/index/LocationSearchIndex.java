@@ -0,0 +1,396 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.search.index;
+
+import com.pkrete.locationservice.endpoint.model.location.Description;
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.location.Note;
+import com.pkrete.locationservice.endpoint.model.location.Shelf;
+import com.pkrete.locationservice.endpoint.model.search.LocationType;
+import com.pkrete.locationservice.endpoint.model.search.Position;
+import com.pkrete.locationservice.endpoint.model.search.SearchType;
+import com.pkrete.locationservice.endpoint.model.subjectmatter.SubjectMatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds the search index of a single owner. The index contains a
+ * {@link FieldIndex FieldIndex} for every searchable field, and the type and
+ * id of every location of the owner.
+ *
+ * The locations are numbered in the same order in which
+ * {@link com.pkrete.locationservice.endpoint.search.BruteForceSearch BruteForceSearch}
+ * goes through them: the libraries are ordered by id, every library is
+ * followed by its collections, and every collection is followed by its
+ * shelves. The fields contain the same values that BruteForceSearch compares,
+ * so the search results are returned in the same order and with the same
+ * duplicates. Null values are not indexed.
+ *
+ * The values of every library and its collections and shelves are kept in a
+ * segment of their own, so that a modified library can be replaced without
+ * loading the other libraries again. Replacing a library creates a new index,
+ * which field indexes are rebuilt from the segments in memory.
+ *
+ * Objects of this class are immutable and they're created by using the
+ * Builder class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class LocationSearchIndex {
+
+    private final String owner;
+    private final long created;
+    private final List<Segment> segments;
+    private final LocationType[] types;
+    private final int[] ids;
+    private final Map<Integer, Integer> idToLocation;
+    private final Map<SearchType, FieldIndex> fields;
+
+    /**
+     * Constructs and initializes a new LocationSearchIndex object.
+     *
+     * @param owner owner code
+     * @param created creation time of the index
+     * @param segments segments ordered by library id
+     */
+    private LocationSearchIndex(String owner, long created, List<Segment> segments) {
+        this.owner = owner;
+        this.created = created;
+        this.segments = Collections.unmodifiableList(segments);
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.ids.size();
+        }
+        this.types = new LocationType[size];
+        this.ids = new int[size];
+        this.idToLocation = new HashMap<Integer, Integer>(size * 4 / 3 + 1);
+        Map<SearchType, List<String>> values = new EnumMap<SearchType, List<String>>(SearchType.class);
+        Map<SearchType, List<Integer>> locations = new EnumMap<SearchType, List<Integer>>(SearchType.class);
+        for (SearchType type : Segment.FIELDS) {
+            values.put(type, new ArrayList<String>());
+            locations.put(type, new ArrayList<Integer>());
+        }
+        int offset = 0;
+        for (Segment segment : segments) {
+            for (int i = 0; i < segment.ids.size(); i++) {
+                this.types[offset + i] = segment.types.get(i);
+                this.ids[offset + i] = segment.ids.get(i);
+                if (!this.idToLocation.containsKey(this.ids[offset + i])) {
+                    this.idToLocation.put(this.ids[offset + i], offset + i);
+                }
+            }
+            for (SearchType type : Segment.FIELDS) {
+                values.get(type).addAll(segment.values.get(type));
+                List<Integer> fieldLocations = locations.get(type);
+                for (int location : segment.locations.get(type)) {
+                    fieldLocations.add(offset + location);
+                }
+            }
+            offset += segment.ids.size();
+        }
+        this.fields = new EnumMap<SearchType, FieldIndex>(SearchType.class);
+        for (SearchType type : Segment.FIELDS) {
+            this.fields.put(type, new FieldIndex(values.get(type), locations.get(type)));
+        }
+    }
+
+    /**
+     * Returns the owner code of this index.
+     *
+     * @return owner code
+     */
+    public String getOwner() {
+        return this.owner;
+    }
+
+    /**
+     * Returns the creation time of this index in milliseconds.
+     *
+     * @return creation time of this index
+     */
+    public long getCreated() {
+        return this.created;
+    }
+
+    /**
+     * Returns the number of locations in this index.
+     *
+     * @return number of locations
+     */
+    public int size() {
+        return this.ids.length;
+    }
+
+    /**
+     * Returns the type of the given location.
+     *
+     * @param location location number
+     * @return type of the location
+     */
+    public LocationType getType(int location) {
+        return this.types[location];
+    }
+
+    /**
+     * Returns the id of the given location.
+     *
+     * @param location location number
+     * @return id of the location
+     */
+    public int getId(int location) {
+        return this.ids[location];
+    }
+
+    /**
+     * Returns true if this index is able to handle searches of the given type.
+     *
+     * @param type search type
+     * @return true if the type is supported; otherwise false
+     */
+    public boolean supports(SearchType type) {
+        return type == SearchType.ID || this.fields.containsKey(type);
+    }
+
+    /**
+     * Returns the location numbers of the locations matching the given
+     * search. The search string must be in upper case, and it's matched as
+     * plain text. Id searches return at most one location.
+     *
+     * @param type search type
+     * @param search upper case search string
+     * @param position position of the search string in the field
+     * @return location numbers of the matching locations
+     */
+    public int[] find(SearchType type, String search, Position position) {
+        if (type == SearchType.ID) {
+            Integer location = null;
+            try {
+                location = this.idToLocation.get(Integer.parseInt(search));
+            } catch (NumberFormatException nfe) {
+                // Not a number -> no results
+            }
+            return location == null ? new int[0] : new int[]{location};
+        }
+        FieldIndex field = this.fields.get(type);
+        if (field == null) {
+            return new int[0];
+        }
+        return field.find(search, position);
+    }
+
+    /**
+     * Returns a new index where the library with the given id is replaced
+     * with the given library. If the library is null, the library with the
+     * given id is removed. If the index doesn't contain the library yet, it's
+     * added in id order. The creation time of the new index is the same as
+     * the creation time of this index.
+     *
+     * @param libraryId id of the library
+     * @param library new version of the library or null
+     * @return new index
+     */
+    public LocationSearchIndex replaceLibrary(int libraryId, Library library) {
+        List<Segment> list = new ArrayList<Segment>(this.segments);
+        int low = 0;
+        int high = list.size() - 1;
+        int position = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = list.get(mid).libraryId;
+            if (id < libraryId) {
+                low = mid + 1;
+            } else if (id > libraryId) {
+                high = mid - 1;
+            } else {
+                position = mid;
+                break;
+            }
+        }
+        if (position >= 0) {
+            if (library == null) {
+                list.remove(position);
+            } else {
+                list.set(position, new Segment(library));
+            }
+        } else if (library != null) {
+            list.add(low, new Segment(library));
+        } else {
+            return this;
+        }
+        return new LocationSearchIndex(this.owner, this.created, list);
+    }
+
+    /**
+     * This class builds LocationSearchIndex objects. The libraries must be
+     * added in id order.
+     */
+    public static class Builder {
+
+        private final String owner;
+        private final List<Segment> segments = new ArrayList<Segment>();
+
+        /**
+         * Constructs and initializes a new Builder object.
+         *
+         * @param owner owner code
+         */
+        public Builder(String owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Adds the given libraries and their collections and shelves to the
+         * index.
+         *
+         * @param libraries libraries to be added
+         */
+        public void add(List<Library> libraries) {
+            for (Library lib : libraries) {
+                this.segments.add(new Segment(lib));
+            }
+        }
+
+        /**
+         * Builds a new LocationSearchIndex object.
+         *
+         * @return new index
+         */
+        public LocationSearchIndex build() {
+            return new LocationSearchIndex(this.owner, System.currentTimeMillis(), this.segments);
+        }
+    }
+
+    /**
+     * The values of a single library and its collections and shelves. The
+     * location numbers of a segment start from zero. Objects of this class
+     * are not modified after they've been created.
+     */
+    private static class Segment {
+
+        private static final List<SearchType> FIELDS = new ArrayList<SearchType>();
+        private final int libraryId;
+        private final List<LocationType> types = new ArrayList<LocationType>();
+        private final List<Integer> ids = new ArrayList<Integer>();
+        private final Map<SearchType, List<String>> values = new EnumMap<SearchType, List<String>>(SearchType.class);
+        private final Map<SearchType, List<Integer>> locations = new EnumMap<SearchType, List<Integer>>(SearchType.class);
+
+        static {
+            for (SearchType type : SearchType.values()) {
+                if (type != SearchType.ID && type != SearchType.ALL) {
+                    FIELDS.add(type);
+                }
+            }
+        }
+
+        /**
+         * Constructs and initializes a new Segment object that contains the
+         * given library and its collections and shelves.
+         *
+         * @param lib library
+         */
+        Segment(Library lib) {
+            this.libraryId = lib.getLocationId();
+            for (SearchType type : FIELDS) {
+                this.values.put(type, new ArrayList<String>());
+                this.locations.put(type, new ArrayList<Integer>());
+            }
+            int location = this.addLocation(lib, LocationType.LIBRARY);
+            this.add(SearchType.CALLNO, location, lib.getLocationCode());
+            this.addCommon(lib, location);
+            for (LibraryCollection col : lib.getCollections()) {
+                location = this.addLocation(col, LocationType.COLLECTION);
+                this.add(SearchType.CALLNO, location, col.getCallNo());
+                this.addCommon(col, location);
+                this.addSubjects(col, location);
+                this.add(SearchType.SHELF, location, col.getShelfNumber());
+                for (Shelf shelf : col.getShelves()) {
+                    location = this.addLocation(shelf, LocationType.SHELF);
+                    this.add(SearchType.CALLNO, location, shelf.getCallNo());
+                    this.addCommon(shelf, location);
+                    this.addSubjects(shelf, location);
+                    this.add(SearchType.SHELF, location, shelf.getShelfNumber());
+                }
+            }
+        }
+
+        /**
+         * Adds the given location and returns its location number.
+         *
+         * @param location location to be added
+         * @param type type of the location
+         * @return location number
+         */
+        private int addLocation(Location location, LocationType type) {
+            this.types.add(type);
+            this.ids.add(location.getLocationId());
+            return this.ids.size() - 1;
+        }
+
+        /**
+         * Adds the fields that all the location types have.
+         *
+         * @param location location to be added
+         * @param number location number
+         */
+        private void addCommon(Location location, int number) {
+            this.add(SearchType.CODE, number, location.getLocationCode());
+            for (Description desc : location.getDescriptions()) {
+                this.add(SearchType.DESC, number, desc.getDescription());
+            }
+            for (Note note : location.getNotes()) {
+                this.add(SearchType.NOTE, number, note.getNote());
+            }
+            this.add(SearchType.STAFFNOTE1, number, location.getStaffNotePri());
+            this.add(SearchType.STAFFNOTE2, number, location.getStaffNoteSec());
+            this.add(SearchType.FLOOR, number, location.getFloor());
+        }
+
+        /**
+         * Adds the subject matters of the given location.
+         *
+         * @param location location to be added
+         * @param number location number
+         */
+        private void addSubjects(Location location, int number) {
+            for (SubjectMatter subject : location.getSubjectMatters()) {
+                this.add(SearchType.SUBJECT, number, subject.getIndexTerm());
+            }
+        }
+
+        /**
+         * Adds the given value to the given field.
+         *
+         * @param type search type of the field
+         * @param number location number
+         * @param value value to be added
+         */
+        private void add(SearchType type, int number, String value) {
+            if (value == null) {
+                return;
+            }
+            this.values.get(type).add(value.toUpperCase());
+            this.locations.get(type).add(number);
+        }
+    }
+}
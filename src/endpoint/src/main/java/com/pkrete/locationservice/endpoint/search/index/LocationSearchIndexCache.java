@@ -0,0 +1,154 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.search.index;
+
+import com.pkrete.locationservice.endpoint.cache.ExpiringCache;
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.service.Service;
+import java.util.Collection;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class holds the {@link LocationSearchIndex LocationSearchIndex} objects
+ * of all the owners in memory. The index of an owner is built from the
+ * locations returned by the Service object when it's requested for the first
+ * time, and after that it's kept in memory until it expires or it's
+ * invalidated. Expired and invalidated indexes are rebuilt on the next
+ * request. The index of an owner is built by one thread at a time, see
+ * {@link ExpiringCache ExpiringCache}.
+ *
+ * When the locations of an owner are modified through the admin, only the
+ * modified libraries are reloaded and replaced in the index. Modifications
+ * that don't tell the modified libraries invalidate the whole index of the
+ * owner.
+ *
+ * If the time to live is negative, the indexes never expire and they must be
+ * invalidated explicitly.
+ *
+ * @author Petteri Kivimäki
+ */
+public class LocationSearchIndexCache extends ExpiringCache<LocationSearchIndex> {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationSearchIndexCache.class.getName());
+    private Service dbService;
+    private int batchSize = 10;
+
+    /**
+     * Constructs and initializes a new LocationSearchIndexCache object.
+     */
+    public LocationSearchIndexCache() {
+        super("Search index");
+    }
+
+    /**
+     * Changes the service object that's used for loading the locations.
+     *
+     * @param dbService new value
+     */
+    public void setDbService(Service dbService) {
+        this.dbService = dbService;
+    }
+
+    /**
+     * Sets the number of libraries that are loaded from the database at a
+     * time when an index is built. Default is 10.
+     *
+     * @param batchSize new value
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize < 1 ? 1 : batchSize;
+    }
+
+    /**
+     * Reloads the libraries with the given ids and replaces them in the
+     * index of the given owner. Libraries that don't exist anymore are
+     * removed from the index. If the owner has no index in the cache, nothing
+     * is done. If reloading fails, the index of the owner is invalidated.
+     *
+     * @param owner owner code
+     * @param libraryIds ids of the modified libraries
+     */
+    public void updateLibraries(final String owner, final Collection<Integer> libraryIds) {
+        long start = System.currentTimeMillis();
+        boolean updated;
+        try {
+            updated = this.update(owner, new ExpiringCache.Update<LocationSearchIndex>() {
+                @Override
+                public LocationSearchIndex apply(LocationSearchIndex index) {
+                    for (int libraryId : libraryIds) {
+                        index = index.replaceLibrary(libraryId, loadLibrary(owner, libraryId));
+                    }
+                    return index;
+                }
+            });
+        } catch (RuntimeException ex) {
+            logger.error("Updating search index of owner \"{}\" failed.", owner, ex);
+            this.invalidate(owner);
+            return;
+        }
+        if (updated) {
+            logger.info("Search index of owner \"{}\" updated. {} libraries reloaded in {} ms.", owner, libraryIds.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Loads the library with the given id and its collections and shelves.
+     *
+     * @param owner owner code
+     * @param libraryId id of the library
+     * @return library or null, if the owner has no library with the given id
+     */
+    private Library loadLibrary(String owner, int libraryId) {
+        List<Library> libraries = this.dbService.getAllLocations(owner, libraryId - 1, 1);
+        if (libraries.isEmpty() || libraries.get(0).getLocationId() != libraryId) {
+            return null;
+        }
+        return libraries.get(0);
+    }
+
+    /**
+     * Builds a new search index for the given owner. The libraries are loaded
+     * batchSize libraries at a time in the same order that's used by the
+     * brute force search.
+     *
+     * @param owner owner code
+     * @return new search index
+     */
+    @Override
+    protected LocationSearchIndex load(String owner) {
+        long start = System.currentTimeMillis();
+        LocationSearchIndex.Builder builder = new LocationSearchIndex.Builder(owner);
+        int afterId = 0;
+        while (true) {
+            List<Library> libraries = this.dbService.getAllLocations(owner, afterId, this.batchSize);
+            if (libraries.isEmpty()) {
+                break;
+            }
+            builder.add(libraries);
+            afterId = libraries.get(libraries.size() - 1).getLocationId();
+            if (libraries.size() < this.batchSize) {
+                break;
+            }
+        }
+        LocationSearchIndex index = builder.build();
+        logger.info("Search index of owner \"{}\" built. {} locations indexed in {} ms.", owner, index.size(), System.currentTimeMillis() - start);
+        return index;
+    }
+}
@@ -39,8 +39,12 @@ public interface Service {
 
     boolean save(SearchEvent event);
 
+    boolean save(List<SearchEvent> events);
+
     List getLibrary(String callno, String owner);
 
+    List<Library> getLibrariesByLocationCodes(List<String> callnos, String owner);
+
     Library getLibrary(int id);
 
     List getLibraries(String owner);
@@ -49,6 +53,8 @@ public interface Service {
 
     List getCollection(String callno, String owner);
 
+    List<LibraryCollection> getCollectionsByLocationCodes(List<String> callnos, String owner);
+
     List getCollections(String owner);
 
     List<SimpleLocation> getCollectionsFromIndex(String owner);
@@ -59,6 +65,8 @@ public interface Service {
 
     List getShelf(String callno, String owner);
 
+    List<Shelf> getShelvesByLocationCodes(List<String> callnos, String owner);
+
     List getShelves(String owner);
 
     List<SimpleLocation> getShelvesFromIndex(String owner);
@@ -81,6 +89,8 @@ public interface Service {
 
     List<Library> getAllLocations(String owner);
 
+    List<Library> getAllLocations(String owner, int afterId, int maxResults);
+
     Owner getOwnerByCode(String code);
 
     LocatingStrategy getLocatingStrategy(String owner);
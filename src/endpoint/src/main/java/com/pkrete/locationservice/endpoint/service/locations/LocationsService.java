@@ -78,6 +78,20 @@ public class LocationsService implements Service {
         return dao.save(event);
     }
 
+    /**
+     * Saves the given search events to the database in a single transaction.
+     * Returns true if and only if all the search events were successfully
+     * added, otherwise false.
+     *
+     * @param events search events to be saved
+     * @return true if and only if all the events were successfully added;
+     * otherwise false
+     */
+    @Override
+    public boolean save(List<SearchEvent> events) {
+        return dao.save(events);
+    }
+
     /**
      * Returns a list of libraries which call numbers match with the given call
      * number and that related to the given owner.
@@ -91,6 +105,19 @@ public class LocationsService implements Service {
         return dao.getLibrary(callno, owner);
     }
 
+    /**
+     * Returns a list of libraries which location codes are in the given list and
+     * that are related to the given owner.
+     *
+     * @param callnos location codes that are used for searching
+     * @param owner owner of the object
+     * @return the libraries with the desired location codes
+     */
+    @Override
+    public List<Library> getLibrariesByLocationCodes(List<String> callnos, String owner) {
+        return dao.getLibrariesByLocationCodes(callnos, owner);
+    }
+
     /**
      * Returns the library which location id matches the given id. All the lazy
      * relationships are loaded.
@@ -139,6 +166,19 @@ public class LocationsService implements Service {
         return dao.getCollection(callno, owner);
     }
 
+    /**
+     * Returns a list of collections which location codes are in the given list and
+     * that are related to the given owner.
+     *
+     * @param callnos location codes that are used for searching
+     * @param owner owner of the object
+     * @return the collections with the desired location codes
+     */
+    @Override
+    public List<LibraryCollection> getCollectionsByLocationCodes(List<String> callnos, String owner) {
+        return dao.getCollectionsByLocationCodes(callnos, owner);
+    }
+
     /**
      * Returns a list of collections that are related to the given owner.
      *
@@ -200,6 +240,19 @@ public class LocationsService implements Service {
         return dao.getShelf(callno, owner);
     }
 
+    /**
+     * Returns a list of shelves which location codes are in the given list and
+     * that are related to the given owner.
+     *
+     * @param callnos location codes that are used for searching
+     * @param owner owner of the object
+     * @return the shelves with the desired location codes
+     */
+    @Override
+    public List<Shelf> getShelvesByLocationCodes(List<String> callnos, String owner) {
+        return dao.getShelvesByLocationCodes(callnos, owner);
+    }
+
     /**
      * Returns a list of shelves that are related to the given owner.
      *
@@ -337,6 +390,23 @@ public class LocationsService implements Service {
         return dao.getAllLocations(owner);
     }
 
+    /**
+     * Returns a list of at most maxResults libraries that are related to the
+     * given owner and which id is greater than the given id. The libraries are
+     * ordered by id, so the next page can be fetched by passing the id of the
+     * last library as afterId.
+     *
+     * @param owner owner of the object
+     * @param afterId id of the last library of the previous page, zero for the
+     * first page
+     * @param maxResults maximum number of libraries to be returned
+     * @return page of the libraries of the owner
+     */
+    @Override
+    public List<Library> getAllLocations(String owner, int afterId, int maxResults) {
+        return dao.getAllLocations(owner, afterId, maxResults);
+    }
+
     /**
      * Returns the owner with the given code.
      *
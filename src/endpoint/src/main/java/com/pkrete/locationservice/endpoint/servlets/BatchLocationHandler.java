@@ -0,0 +1,231 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.servlets;
+
+import com.pkrete.locationservice.endpoint.converter.ConverterService;
+import com.pkrete.locationservice.endpoint.generator.Generator;
+import com.pkrete.locationservice.endpoint.resolver.BatchItem;
+import com.pkrete.locationservice.endpoint.resolver.OutputFormat;
+import com.pkrete.locationservice.endpoint.resolver.Resolver;
+import com.pkrete.locationservice.endpoint.statistics.SearchEvent;
+import com.pkrete.locationservice.endpoint.statistics.SearchEventStatisticsQueue;
+import com.pkrete.locationservice.endpoint.statistics.SearchEventType;
+import com.pkrete.locationservice.endpoint.util.ApplicationContextUtils;
+import com.pkrete.locationservice.endpoint.util.PropertiesUtil;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The BatchLocationHandler servlet class receives multiple call numbers of the
+ * same owner and the language of the UI via <code>POST</code> method and
+ * forwards them to the {@link Resolver Resolver} class. The call numbers are
+ * given as repeated callno parameters, and the optional collection, status and
+ * id parameters are matched to the call numbers by their position. The outputs
+ * are returned as a JSON array or inside a results element in XML in the same
+ * order as the call numbers. HTML output is not supported.
+ *
+ * All the parameters are validated by the
+ * BatchLocationHandlerValidationFilter class, so no validation is needed in
+ * BatchLocationHandler.
+ *
+ * @author Petteri Kivimäki
+ */
+public class BatchLocationHandler extends HttpServlet {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchLocationHandler.class.getName());
+    private static final String errorMessage = PropertiesUtil.getProperty("error.batchlocationhandler.400.message");
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    /**
+     * Processes requests for HTTP <code>POST</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    protected void processRequest(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        // Get request processing starting time
+        long start = System.currentTimeMillis();
+        // Get converter service from application context
+        ConverterService converter = (ConverterService) ApplicationContextUtils.getApplicationContext().getBean("converter");
+        // Get output format, HTML is not supported
+        OutputFormat format = (OutputFormat) converter.convert(request.getParameter("output"), OutputFormat.class, OutputFormat.JSON);
+        boolean supported = format == OutputFormat.XML || format == OutputFormat.JSON;
+        if (!supported) {
+            logger.warn("Bad request! Reason : output format \"{}\" is not supported!", format);
+            format = OutputFormat.JSON;
+        }
+
+        // Set response content type according to the output format
+        if (format == OutputFormat.XML) {
+            response.setContentType("text/xml;charset=UTF-8");
+        } else {
+            response.setContentType("application/json;charset=UTF-8");
+        }
+
+        // Get request parameters
+        // Language code
+        String lang = request.getParameter("lang");
+        // Owner code
+        String owner = request.getParameter("owner");
+        // Call numbers and the related collection codes, status codes and
+        // location ids - every array has a value for every call number
+        String[] callnos = request.getParameterValues("callno");
+        String[] collections = request.getParameterValues("collection");
+        String[] statuses = request.getParameterValues("status");
+        String[] ids = request.getParameterValues("id");
+
+        // BatchLocationHandlerValidationFilter has created "validRequest"
+        // attribute that tells if the request contains all the required
+        // parameters.
+        boolean valid = (Boolean) request.getAttribute("validRequest") && supported;
+
+        // Create writer for writing the output
+        PrintWriter out = response.getWriter();
+        // Initialize variable for the output string
+        String output = "";
+        List<BatchItem> items = new ArrayList<BatchItem>();
+
+        if (valid) {
+            // Fetch "resolver" bean from application context
+            Resolver resolver = (Resolver) ApplicationContextUtils.getApplicationContext().getBean("resolver");
+            for (int i = 0; i < callnos.length; i++) {
+                items.add(new BatchItem(callnos[i], collections[i], ids[i], statuses[i].compareTo("0") == 0));
+            }
+            // Find Location objects matching the given parameters
+            output = join(resolver.resolveAll(items, lang, owner, format), format);
+        } else {
+            // Invalid request -> set response status to 400 (Bad request)
+            response.setStatus(400);
+            // Fetch output generators from application context
+            Map<OutputFormat, Generator> generators = (Map<OutputFormat, Generator>) ApplicationContextUtils.getApplicationContext().getBean("generators");
+            // Get generator according to the output format
+            Generator generator = generators.get(format);
+            // If generator exists, generate error message, otherwise an
+            // empty string is returned
+            if (generator != null) {
+                if (errorMessage == null) {
+                    // If errorMessage is null, use default message
+                    output = generator.generateError("400", "Bad request. Invalid or missing parameters.");
+                    logger.warn("\"config.properties\" file is missing \"error.batchlocationhandler.400.message\" property.");
+                } else {
+                    output = generator.generateError("400", errorMessage);
+                }
+            } else {
+                logger.warn("Failed to generate error message, because no \"{}\" generator is configured. Processing aborted.", format);
+            }
+        }
+        try {
+            // Write output
+            out.print(output);
+            // Flush stream
+            out.flush();
+        } catch (Exception e) {
+            logger.error(e.getMessage());
+        } finally {
+            // Close stream
+            out.close();
+            // Add a SearchEvent for every item to DB. The processing time
+            // is the time spent on resolving the item, or the processing
+            // time of the whole batch, if the item wasn't resolved.
+            long batchTime = System.currentTimeMillis() - start;
+            for (int i = 0; i < items.size(); i++) {
+                long time = items.get(i).getProcessingTime();
+                SearchEventStatisticsQueue.getInstance().put(
+                        new SearchEvent(
+                                callnos[i],
+                                collections[i],
+                                lang,
+                                statuses[i],
+                                "*.*.*.*", // GDPR!
+                                SearchEventType.LOCATION_HANDLER,
+                                owner,
+                                time < 0 ? batchTime : time));
+            }
+        }
+    }
+
+    /**
+     * Joins the given outputs into a JSON array or into a results element in
+     * XML. The XML declarations of the outputs are removed.
+     *
+     * @param outputs outputs to be joined
+     * @param format output format
+     * @return joined outputs
+     */
+    private String join(List<String> outputs, OutputFormat format) {
+        StringBuilder builder = new StringBuilder();
+        if (format == OutputFormat.XML) {
+            builder.append(XML_DECLARATION).append("\n<results>\n");
+            for (String output : outputs) {
+                if (output.startsWith(XML_DECLARATION)) {
+                    output = output.substring(XML_DECLARATION.length()).trim();
+                }
+                builder.append(output).append("\n");
+            }
+            builder.append("</results>");
+        } else {
+            builder.append("[");
+            for (int i = 0; i < outputs.size(); i++) {
+                if (i > 0) {
+                    builder.append(",");
+                }
+                // Empty output is not valid JSON
+                builder.append(outputs.get(i).isEmpty() ? "null" : outputs.get(i));
+            }
+            builder.append("]");
+        }
+        return builder.toString();
+    }
+    // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
+
+    /**
+     * Handles the HTTP <code>POST</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        processRequest(request, response);
+    }
+
+    /**
+     * Returns a short description of the servlet.
+     *
+     * @return a String containing servlet description
+     */
+    @Override
+    public String getServletInfo() {
+        return "Resolves multiple call numbers of the same owner";
+    }// </editor-fold>
+}
@@ -0,0 +1,219 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.servlets;
+
+import com.pkrete.locationservice.endpoint.cache.CacheService;
+import com.pkrete.locationservice.endpoint.util.ApplicationContextUtils;
+import com.pkrete.locationservice.endpoint.util.PropertiesUtil;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This servlet is for maintenance purposes. The admin application calls it
+ * after modifying locations, owners or redirects so that the cached data is
+ * evicted and the changes become visible immediately. If the "owner"
+ * parameter is given, the data related to the owner is evicted, otherwise all
+ * the cached data is evicted. If the "scope" parameter is "templates", only
+ * the templates and the template manifest are evicted. The "library"
+ * parameter may be given many times together with the "owner" parameter, and
+ * it tells the ids of the libraries which locations were modified, so that
+ * the data related to the libraries can be updated instead of evicting it.
+ *
+ * Only <code>POST</code> requests are accepted. If the "cache.allowedIPs"
+ * property is set, only the IP addresses matching it are allowed to access the
+ * servlet. The property contains a comma separated list of regular
+ * expressions. If the "cache.secret" property is set, the request must contain
+ * the same value in the X-Cache-Secret header. If neither of the properties is
+ * set, all the requests are denied. The default configuration allows the
+ * loopback addresses, so that an admin running on the same server works out
+ * of the box.
+ *
+ * @author Petteri Kivimäki
+ */
+public class Cache extends HttpServlet {
+
+    private static final Logger logger = LoggerFactory.getLogger(Cache.class.getName());
+    private static final String allowedIPs = PropertiesUtil.getProperty("cache.allowedIPs");
+    private static final String secret = PropertiesUtil.getProperty("cache.secret");
+    private static final String SECRET_HEADER = "X-Cache-Secret";
+
+    /**
+     * Processes requests for HTTP <code>POST</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    protected void processRequest(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        // Get processing starting time
+        long start = System.currentTimeMillis();
+        response.setContentType("application/xml;charset=UTF-8");
+        PrintWriter out = response.getWriter();
+        String status = "OK";
+
+        if (!isAuthorized(request.getRemoteAddr(), request.getHeader(SECRET_HEADER))) {
+            logger.warn("Unauthorized cache eviction attempt registered. IP : \"{}\".", request.getRemoteAddr());
+            response.setStatus(401);
+            status = "Access denied";
+        } else {
+            // Get cacheService from application context
+            CacheService cacheService = (CacheService) ApplicationContextUtils.getApplicationContext().getBean("cacheService");
+            String owner = request.getParameter("owner");
+            if (owner != null && owner.isEmpty()) {
+                owner = null;
+            }
+            // "scope=templates" evicts only the templates
+            if ("templates".equals(request.getParameter("scope"))) {
+                cacheService.evictTemplates(owner);
+            } else if (owner == null) {
+                cacheService.evictAll();
+            } else {
+                List<Integer> libraryIds = getLibraryIds(request.getParameterValues("library"));
+                if (libraryIds == null) {
+                    cacheService.evict(owner);
+                } else {
+                    cacheService.evict(owner, libraryIds);
+                }
+            }
+        }
+
+        try {
+            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            out.println("<locationservice>");
+            out.print("<cachestatus>");
+            out.print(status);
+            out.println("</cachestatus>");
+            out.print("<processingtime>");
+            out.print(System.currentTimeMillis() - start);
+            out.println("</processingtime>");
+            out.println("</locationservice>");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Parses the given library ids. If the values are null or any of them
+     * is not a number, null is returned.
+     *
+     * @param values values of the library parameter
+     * @return library ids or null
+     */
+    private List<Integer> getLibraryIds(String[] values) {
+        if (values == null || values.length == 0) {
+            return null;
+        }
+        List<Integer> ids = new ArrayList<Integer>();
+        for (String value : values) {
+            try {
+                ids.add(Integer.parseInt(value));
+            } catch (NumberFormatException nfe) {
+                logger.warn("Invalid library id \"{}\". The caches of the owner are evicted completely.", value);
+                return null;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Checks if the request with the given IP address and secret is allowed to
+     * evict the caches. The IP address must match one of the allowed IP
+     * addresses, if they're defined, and the secret must match the configured
+     * secret, if it's defined. If neither of them is defined, all the requests
+     * are denied.
+     *
+     * @param ip IP address of the requestor
+     * @param requestSecret value of the secret header or null
+     * @return true if the request is allowed, otherwise false
+     */
+    private boolean isAuthorized(String ip, String requestSecret) {
+        boolean hasIPs = allowedIPs != null && !allowedIPs.isEmpty();
+        boolean hasSecret = secret != null && !secret.isEmpty();
+        if (!hasIPs && !hasSecret) {
+            return false;
+        }
+        if (hasIPs && !isAllowedIP(ip)) {
+            return false;
+        }
+        if (hasSecret) {
+            if (requestSecret == null) {
+                return false;
+            }
+            // Constant time comparison
+            Charset utf8 = Charset.forName("UTF-8");
+            return MessageDigest.isEqual(secret.getBytes(utf8), requestSecret.getBytes(utf8));
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the given IP address matches one of the allowed IP addresses.
+     *
+     * @param ip IP address of the requestor
+     * @return true if the IP is allowed, otherwise false
+     */
+    private boolean isAllowedIP(String ip) {
+        if (ip == null) {
+            return false;
+        }
+        String[] ips = allowedIPs.split(",");
+        for (int i = 0; i < ips.length; i++) {
+            if (ip.matches(ips[i].trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
+    /**
+     * Handles the HTTP <code>POST</code> method.
+     *
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        processRequest(request, response);
+    }
+
+    /**
+     * Returns a short description of the servlet.
+     *
+     * @return a String containing servlet description
+     */
+    @Override
+    public String getServletInfo() {
+        return "Evicts cached data";
+    }// </editor-fold>
+}
@@ -18,7 +18,9 @@
 package com.pkrete.locationservice.endpoint.servlets;
 
 import com.pkrete.locationservice.endpoint.generator.Generator;
+import com.pkrete.locationservice.endpoint.generator.StreamingGenerator;
 import com.pkrete.locationservice.endpoint.model.language.Language;
+import com.pkrete.locationservice.endpoint.model.location.Location;
 import com.pkrete.locationservice.endpoint.model.owner.Owner;
 import com.pkrete.locationservice.endpoint.statistics.SearchEvent;
 import com.pkrete.locationservice.endpoint.statistics.SearchEventStatisticsQueue;
@@ -52,7 +54,16 @@ import org.slf4j.LoggerFactory;
  * matching the given conditions. The downside of this implementation is that
  * response times get slower when the size of the database increases.
  *
- * The results are returned in XML format.
+ * Large result sets can be fetched in pages by using the optional offset and
+ * limit parameters. The first offset results are skipped and at most limit
+ * results are returned. Limit zero, which is the default, means no limit.
+ *
+ * The results are returned in XML format. If the generator implements the
+ * StreamingGenerator interface, the locations are loaded from the database in
+ * batches and written to the response one by one, and the whole document is
+ * never built in memory. If the export fails after a part of the document has
+ * already been sent, the connection is aborted so that the client doesn't
+ * take the truncated document for a complete one.
  *
  * @author Petteri Kivimäki
  */
@@ -61,6 +72,7 @@ public class Exporter extends HttpServlet {
     private static final Logger logger = LoggerFactory.getLogger(Exporter.class.getName());
     private static final String errorMessage = PropertiesUtil.getProperty("error.exporter.400.message");
     private static final String accessDeniedMessage = PropertiesUtil.getProperty("error.exporter.401.message");
+    private static final String internalErrorMessage = PropertiesUtil.getProperty("error.exporter.500.message");
 
     /**
      * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
@@ -90,6 +102,9 @@ public class Exporter extends HttpServlet {
         String searchStr = request.getParameter("search");
         SearchType type = (SearchType) converter.convert(request.getParameter("type"), SearchType.class, SearchType.CALLNO);
         Position position = (Position) converter.convert(request.getParameter("position"), Position.class, Position.ANY);
+        // Paging parameters, limit zero means no limit
+        int offset = converter.strToInt(request.getParameter("offset"));
+        int limit = converter.strToInt(request.getParameter("limit"));
         // Get attributes set by the filters
         boolean authorized = (Boolean) request.getAttribute("authorized");
         // ExporterValidationFilter has created "validRequest" attribute
@@ -99,6 +114,9 @@ public class Exporter extends HttpServlet {
         boolean valid = (Boolean) request.getAttribute("validRequest");
         // Initialize variable for the output
         String output = "";
+        // Search results that are streamed to the client
+        Iterable<Location> results = null;
+        List<Language> languages = null;
         // Variable that defines the name of the bean that's responsible of the search operation
         String searchBeanName = "exporterSearch";
         // If version is "2", change searchBean's name
@@ -131,23 +149,55 @@ public class Exporter extends HttpServlet {
             // Set owner code
             ownerCode = owner.getCode();
             // Get languages related to the current owner
-            List<Language> languages = owner.getLanguages();
+            languages = owner.getLanguages();
             // Get Search object from application context
             Search searcher = (Search) ApplicationContextUtils.getApplicationContext().getBean(searchBeanName);
-            // Search locations matching the conditions
-            List results = searcher.search(searchStr, position, type, owner, children);
-            logger.debug("Exporting {} locations. Owner : \"{}\".", results.size(), owner.getCode());
-            // Generate output
-            output = generator.generateBatchOutput(results, languages, children);
+            if (generator instanceof StreamingGenerator) {
+                // Search locations matching the conditions. The locations
+                // are loaded while they're written to the response.
+                results = searcher.stream(searchStr, position, type, owner, children, offset, limit);
+                logger.debug("Exporting locations. Owner : \"{}\".", owner.getCode());
+            } else {
+                // Search locations matching the conditions and generate output
+                List<Location> locations = searcher.search(searchStr, position, type, owner, children, offset, limit);
+                logger.debug("Exporting {} locations. Owner : \"{}\".", locations.size(), owner.getCode());
+                output = generator.generateBatchOutput(locations, languages, children);
+            }
         }
 
+        // Set to true if the response must not be completed normally
+        boolean aborted = false;
+
         try {
             // Send the response
-            out.println(output);
+            if (results != null) {
+                // Write the locations directly to the response one by one.
+                // The content length is not known beforehand, so the response
+                // is sent using chunked transfer encoding.
+                ((StreamingGenerator) generator).writeBatchOutput(results, languages, children, out);
+                out.println();
+            } else {
+                out.println(output);
+            }
         } catch (Exception e) {
-            logger.error(e.getMessage());
+            logger.error("Exporting locations failed. Owner : \"" + ownerCode + "\".", e);
+            if (!response.isCommitted()) {
+                // Nothing has been sent yet, replace the partial document
+                // with an error message
+                response.resetBuffer();
+                response.setStatus(500);
+                out.println(generator.generateError("500", internalErrorMessage));
+            } else {
+                // A part of the document has already been sent. Don't
+                // complete the response, and let the container abort the
+                // connection.
+                aborted = true;
+                throw new ServletException("Exporting locations failed after the response was committed.", e);
+            }
         } finally {
-            out.close();
+            if (!aborted) {
+                out.close();
+            }
             // Create new SearchEvent for the statistics
             SearchEventStatisticsQueue.getInstance().put(
                     new SearchEvent(
@@ -17,13 +17,12 @@
  */
 package com.pkrete.locationservice.endpoint.servlets;
 
-import com.pkrete.locationservice.endpoint.drawer.Drawer;
+import com.pkrete.locationservice.endpoint.drawer.MapImage;
+import com.pkrete.locationservice.endpoint.drawer.MapRenderer;
 import com.pkrete.locationservice.endpoint.model.location.Location;
 import java.io.*;
 import javax.servlet.*;
 import javax.servlet.http.*;
-import java.awt.image.*;
-import javax.imageio.*;
 import com.pkrete.locationservice.endpoint.service.Service;
 import com.pkrete.locationservice.endpoint.util.ApplicationContextUtils;
 import org.slf4j.Logger;
@@ -32,7 +31,8 @@ import org.slf4j.LoggerFactory;
 /**
  * The ImageCreator servlet class draws the location of the given
  * {@link Location Location} object on the map and returns the map as a png
- * image.
+ * image. The responses carry ETag and Last-Modified headers, and conditional
+ * requests are answered with 304 Not Modified if the image hasn't changed.
  *
  * @author Petteri Kivimäki
  */
@@ -55,7 +55,7 @@ public class ImageCreator extends HttpServlet {
         Service dbService = (Service) ApplicationContextUtils.getApplicationContext().getBean("dbService");
 
         // Set response content type
-        response.setContentType("image/jpeg");
+        response.setContentType("image/png");
         // Initialize variables
         String lang = request.getParameter("lang");
         String locationId = request.getParameter("locationId");
@@ -75,19 +75,26 @@ public class ImageCreator extends HttpServlet {
         Location location = dbService.getLocation(locationId, owner);
 
         try {
-            /* Fetch Spring's mapDrawer bean */
-            Drawer drawer = (Drawer) ApplicationContextUtils.getApplicationContext().getBean("mapDrawer");
-            if (drawer == null) {
-                logger.error("\"mapDrawer\" object could not be found! Check applicationContext.xml.");
+            /* Fetch Spring's mapRenderer bean */
+            MapRenderer renderer = (MapRenderer) ApplicationContextUtils.getApplicationContext().getBean("mapRenderer");
+            if (renderer == null) {
+                logger.error("\"mapRenderer\" object could not be found! Check applicationContext.xml.");
                 return;
             }
 
             // Create an image
-            BufferedImage bufferedImage = drawer.draw(location, lang);
+            MapImage image = renderer.render(location, lang);
 
-            if (bufferedImage != null) {
-                //Write the image as a png
-                ImageIO.write(bufferedImage, "png", response.getOutputStream());
+            if (image != null) {
+                response.setHeader("ETag", image.getEtag());
+                response.setDateHeader("Last-Modified", image.getLastModified());
+                if (isNotModified(request, image)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+                //Write the png image
+                response.setContentLength(image.getSize());
+                response.getOutputStream().write(image.getData());
             } else {
                 logger.warn("Drawing image failed! Parameters: {\"locationId\":{},\"owner\":\"{}\",\"lang\":\"{}\"}", locationId, owner, lang);
             }
@@ -95,6 +102,37 @@ public class ImageCreator extends HttpServlet {
             logger.error(e.getMessage());
         }
     }
+
+    /**
+     * Checks if the client already has the given image. If-None-Match header
+     * is checked first, and If-Modified-Since header is checked only if
+     * If-None-Match header is missing.
+     *
+     * @param request servlet request
+     * @param image image to be returned
+     * @return true if the image hasn't been modified; otherwise false
+     */
+    private boolean isNotModified(HttpServletRequest request, MapImage image) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String etag : ifNoneMatch.split(",")) {
+                etag = etag.trim();
+                if (etag.startsWith("W/")) {
+                    etag = etag.substring(2);
+                }
+                if (etag.equals("*") || etag.equals(image.getEtag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            return ifModifiedSince >= 0 && image.getLastModified() <= ifModifiedSince;
+        } catch (IllegalArgumentException iae) {
+            return false;
+        }
+    }
     // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
 
     /**
@@ -17,11 +17,20 @@
  */
 package com.pkrete.locationservice.endpoint.servlets;
 
+import com.pkrete.locationservice.endpoint.drawer.BaseMapCache;
+import com.pkrete.locationservice.endpoint.drawer.MapImageCache;
+import com.pkrete.locationservice.endpoint.modifier.RedirectRule;
+import com.pkrete.locationservice.endpoint.modifier.RedirectRuleCache;
+import com.pkrete.locationservice.endpoint.resolver.ResponseCache;
 import com.pkrete.locationservice.endpoint.service.Service;
 import com.pkrete.locationservice.endpoint.solr.service.LocationIndexService;
+import com.pkrete.locationservice.endpoint.statistics.StatisticsQueueProcessor;
 import com.pkrete.locationservice.endpoint.util.ApplicationContextUtils;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Locale;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -62,6 +71,19 @@ public class Info extends HttpServlet {
         // Get Location Service Endpoint version number
         String version = (String) ApplicationContextUtils.getApplicationContext().getBean("versionNumber");
 
+        // Get Hibernate statistics, if collecting statistics is enabled
+        SessionFactory sessionFactory = (SessionFactory) ApplicationContextUtils.getApplicationContext().getBean("sessionFactory");
+        Statistics stats = sessionFactory.getStatistics();
+        // Get the state of the search event statistics writer
+        StatisticsQueueProcessor processor = (StatisticsQueueProcessor) ApplicationContextUtils.getApplicationContext().getBean("statisticsProcessor");
+        // Get the map caches
+        MapImageCache mapImageCache = (MapImageCache) ApplicationContextUtils.getApplicationContext().getBean("mapImageCache");
+        BaseMapCache baseMapCache = (BaseMapCache) ApplicationContextUtils.getApplicationContext().getBean("baseMapCache");
+        // Get the LocationHandler response cache
+        ResponseCache responseCache = (ResponseCache) ApplicationContextUtils.getApplicationContext().getBean("responseCache");
+        // Get the compiled redirects
+        RedirectRuleCache redirectRuleCache = (RedirectRuleCache) ApplicationContextUtils.getApplicationContext().getBean("redirectRuleCache");
+
         // Test db connection
         if (!service.testDbConnection()) {
             dbStatus = "Database Error";
@@ -100,6 +122,127 @@ public class Info extends HttpServlet {
                 out.print("<solrstatus />");
                 out.print("<solrcode />");
             }
+            if (stats.isStatisticsEnabled()) {
+                out.println("<dbstatistics>");
+                out.print("<statements>");
+                out.print(stats.getPrepareStatementCount());
+                out.println("</statements>");
+                out.print("<queries>");
+                out.print(stats.getQueryExecutionCount());
+                out.println("</queries>");
+                out.print("<entityloads>");
+                out.print(stats.getEntityLoadCount());
+                out.println("</entityloads>");
+                out.print("<collectionloads>");
+                out.print(stats.getCollectionLoadCount());
+                out.println("</collectionloads>");
+                out.print("<cachehits>");
+                out.print(stats.getSecondLevelCacheHitCount());
+                out.println("</cachehits>");
+                out.print("<cachemisses>");
+                out.print(stats.getSecondLevelCacheMissCount());
+                out.println("</cachemisses>");
+                out.print("<querycachehits>");
+                out.print(stats.getQueryCacheHitCount());
+                out.println("</querycachehits>");
+                out.print("<querycachemisses>");
+                out.print(stats.getQueryCacheMissCount());
+                out.println("</querycachemisses>");
+                out.println("</dbstatistics>");
+            }
+            out.println("<searchevents>");
+            out.print("<queuesize>");
+            out.print(processor.getQueueSize());
+            out.println("</queuesize>");
+            out.print("<dropped>");
+            out.print(processor.getDroppedCount());
+            out.println("</dropped>");
+            out.print("<saved>");
+            out.print(processor.getSavedCount());
+            out.println("</saved>");
+            out.print("<lost>");
+            out.print(processor.getLostCount());
+            out.println("</lost>");
+            out.print("<journalsize>");
+            out.print(processor.getJournalSize());
+            out.println("</journalsize>");
+            out.print("<flushes>");
+            out.print(processor.getFlushCount());
+            out.println("</flushes>");
+            out.print("<failedflushes>");
+            out.print(processor.getFailedFlushCount());
+            out.println("</failedflushes>");
+            out.print("<lastflushtime>");
+            out.print(processor.getLastFlushTime());
+            out.println("</lastflushtime>");
+            out.print("<avgflushtime>");
+            out.print(processor.getAverageFlushTime());
+            out.println("</avgflushtime>");
+            out.print("<maxflushtime>");
+            out.print(processor.getMaxFlushTime());
+            out.println("</maxflushtime>");
+            out.println("</searchevents>");
+            out.println("<mapcache>");
+            out.print("<images>");
+            out.print(mapImageCache.getCount());
+            out.println("</images>");
+            out.print("<imagesize>");
+            out.print(mapImageCache.getSize());
+            out.println("</imagesize>");
+            out.print("<imagehits>");
+            out.print(mapImageCache.getHits());
+            out.println("</imagehits>");
+            out.print("<imagemisses>");
+            out.print(mapImageCache.getMisses());
+            out.println("</imagemisses>");
+            out.print("<basemaps>");
+            out.print(baseMapCache.getCount());
+            out.println("</basemaps>");
+            out.print("<basemapweight>");
+            out.print(baseMapCache.getWeight());
+            out.println("</basemapweight>");
+            out.print("<basemaphits>");
+            out.print(baseMapCache.getHits());
+            out.println("</basemaphits>");
+            out.print("<basemapmisses>");
+            out.print(baseMapCache.getMisses());
+            out.println("</basemapmisses>");
+            out.print("<basemaphitrate>");
+            out.print(String.format(Locale.US, "%.3f", baseMapCache.getHitRate()));
+            out.println("</basemaphitrate>");
+            out.println("</mapcache>");
+            out.println("<responsecache>");
+            out.print("<responses>");
+            out.print(responseCache.getCount());
+            out.println("</responses>");
+            out.print("<size>");
+            out.print(responseCache.getSize());
+            out.println("</size>");
+            out.print("<hits>");
+            out.print(responseCache.getHits());
+            out.println("</hits>");
+            out.print("<misses>");
+            out.print(responseCache.getMisses());
+            out.println("</misses>");
+            out.println("</responsecache>");
+            out.println("<redirects>");
+            for (RedirectRule rule : redirectRuleCache.getRules()) {
+                out.println("<redirect>");
+                out.print("<owner>");
+                out.print(rule.getOwner());
+                out.println("</owner>");
+                out.print("<type>");
+                out.print(rule.getType());
+                out.println("</type>");
+                out.print("<id>");
+                out.print(rule.getId());
+                out.println("</id>");
+                out.print("<hits>");
+                out.print(rule.getHits());
+                out.println("</hits>");
+                out.println("</redirect>");
+            }
+            out.println("</redirects>");
             out.print("<processingtime>");
             out.print(System.currentTimeMillis() - start);
             out.println("</processingtime>");
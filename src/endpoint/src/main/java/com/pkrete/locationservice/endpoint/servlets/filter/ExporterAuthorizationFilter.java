@@ -17,7 +17,7 @@
  */
 package com.pkrete.locationservice.endpoint.servlets.filter;
 
-import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.owner.OwnerMetadata;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
@@ -55,10 +55,10 @@ public class ExporterAuthorizationFilter implements Filter {
         // If the request is valid, check that the user is authorized to
         // access the servlet
         if ((Boolean) req.getAttribute("validRequest")) {
-            // Get Owner object
-            Owner owner = (Owner) req.getAttribute("owner");
+            // Get owner metadata
+            OwnerMetadata metadata = (OwnerMetadata) req.getAttribute("ownerMetadata");
             // Check that the user is authorized to access the servlet
-            if (isAuthorized(owner, (HttpServletRequest) req)) {
+            if (isAuthorized(metadata, (HttpServletRequest) req)) {
                 // If user is authorized, set "authorized" to true
                 req.setAttribute("authorized", true);
             } else {
@@ -75,7 +75,8 @@ public class ExporterAuthorizationFilter implements Filter {
     /**
      * Checks if the requestor is authorized to access the Exporter interface.
      * Requestor is authorized if the IP address matches an IP address defined
-     * in the owner's list of allowed IPs.
+     * in the owner's list of allowed IPs. The list is parsed only once when
+     * the owner metadata is loaded.
      *
      * Read the remote IP of a servlet request. This may be in one of two
      * places. If we are behind an Apache server with mod_proxy_http, we get the
@@ -88,12 +89,13 @@ public class ExporterAuthorizationFilter implements Filter {
      *
      * http://httpd.apache.org/docs/2.2/mod/mod_proxy.html
      *
-     * @param owner owner that defines the list of allowed IPs
+     * @param metadata metadata of the owner that defines the list of allowed
+     * IPs
      * @request request servlet request
      *
      */
-    private boolean isAuthorized(Owner owner, HttpServletRequest request) {
-        if (owner.getExporterVisible()) {
+    private boolean isAuthorized(OwnerMetadata metadata, HttpServletRequest request) {
+        if (metadata.getOwner().getExporterVisible()) {
             return true;
         } else {
             String ip = request.getRemoteAddr();
@@ -105,13 +107,7 @@ public class ExporterAuthorizationFilter implements Filter {
                     logger.error(uhe.getMessage());
                 }
             }
-            String[] ips = owner.getAllowedIPs().split("\n");
-            for (int i = 0; i < ips.length; i++) {
-                if (ip.matches(ips[i].trim())) {
-                    return true;
-                }
-            }
+            return metadata.isAllowed(ip);
         }
-        return false;
     }
 }
@@ -17,8 +17,8 @@
  */
 package com.pkrete.locationservice.endpoint.servlets.filter;
 
-import com.pkrete.locationservice.endpoint.model.owner.Owner;
-import com.pkrete.locationservice.endpoint.service.Service;
+import com.pkrete.locationservice.endpoint.owner.OwnerCache;
+import com.pkrete.locationservice.endpoint.owner.OwnerMetadata;
 import com.pkrete.locationservice.endpoint.servlets.request.ExporterRequest;
 import com.pkrete.locationservice.endpoint.util.ApplicationContextUtils;
 import java.io.IOException;
@@ -82,22 +82,49 @@ public class ExporterValidationFilter implements Filter {
             // "owner" is required -> invalid request
             return false;
         } else {
-            // Fetch Spring's dbService bean 
-            Service dbService = (Service) ApplicationContextUtils.getApplicationContext().getBean("dbService");
+            // Fetch Spring's ownerCache bean
+            OwnerCache ownerCache = (OwnerCache) ApplicationContextUtils.getApplicationContext().getBean("ownerCache");
             // Get owner code
             String ownerCode = req.getParameter("owner");
-            // Get the Owner object from the DB
-            Owner owner = dbService.getOwnerByCode(ownerCode);
+            // Get the owner metadata from the cache
+            OwnerMetadata metadata = ownerCache.get(ownerCode);
             // If owner is null, the request is not valid
-            if (owner == null) {
+            if (metadata == null) {
                 logger.warn("Bad request! Reason : owner \"{}\" doesn't exist!", ownerCode);
                 // "owner" is required -> invalid request
                 return false;
             } else {
-                // Set the Owner object as request attribute
-                req.setAttribute("owner", owner);
+                // Set the Owner object and its metadata as request attributes
+                req.setAttribute("owner", metadata.getOwner());
+                req.setAttribute("ownerMetadata", metadata);
             }
         }
-        return true;
+        // Validate "offset" and "limit" parameters - OPTIONAL
+        return isNonNegativeInteger(req, "offset") && isNonNegativeInteger(req, "limit");
+    }
+
+    /**
+     * Checks that the value of the given optional parameter is a
+     * non-negative integer, if the parameter is present in the request.
+     *
+     * @param req ServletRequest object to be checked
+     * @param name name of the parameter
+     * @return true if the parameter is missing or its value is a non-negative
+     * integer; otherwise false
+     */
+    private boolean isNonNegativeInteger(ServletRequest req, String name) {
+        String value = req.getParameter(name);
+        if (value == null || value.isEmpty()) {
+            return true;
+        }
+        try {
+            if (Integer.parseInt(value) >= 0) {
+                return true;
+            }
+        } catch (NumberFormatException nfe) {
+            // Handled below
+        }
+        logger.warn("Bad request! Reason : \"{}\" parameter must be a non-negative integer!", name);
+        return false;
     }
 }
@@ -0,0 +1,76 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.servlets.request;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * This class extends LocationHandlerRequest class and overrides
+ * getParameterValues method. The values of the repeated item parameters of the
+ * BatchLocationHandler servlet are validated the same way as the single values
+ * of the LocationHandler servlet. The values of an item are read from the same
+ * position of the callno, collection, status and id parameters, and if a
+ * parameter has less values than the callno parameter, default values are
+ * returned for the missing positions.
+ *
+ * @author Petteri Kivimäki
+ */
+public class BatchLocationHandlerRequest extends LocationHandlerRequest {
+
+    public BatchLocationHandlerRequest(HttpServletRequest request) {
+        super(request);
+    }
+
+    /**
+     * Returns an array containing all of the values of the given request
+     * parameter. The values of the item parameters are validated, and the
+     * array of an item parameter contains a value for every call number.
+     *
+     * @param name a String specifying the name of the parameter
+     * @return an array of String objects containing the parameter's values
+     */
+    @Override
+    public String[] getParameterValues(String name) {
+        HttpServletRequest req = (HttpServletRequest) super.getRequest();
+        if (!isItemParameter(name)) {
+            return req.getParameterValues(name);
+        }
+        String[] callnos = req.getParameterValues("callno");
+        if (callnos == null) {
+            return null;
+        }
+        String[] values = req.getParameterValues(name);
+        String[] results = new String[callnos.length];
+        for (int i = 0; i < results.length; i++) {
+            String value = values != null && i < values.length ? values[i] : null;
+            results[i] = setDefault(name, value);
+        }
+        return results;
+    }
+
+    /**
+     * Checks if the given parameter is a parameter that has a value for every
+     * item of the batch.
+     *
+     * @param name parameter name
+     * @return true if the parameter is an item parameter; otherwise false
+     */
+    private static boolean isItemParameter(String name) {
+        return name.equals("callno") || name.equals("collection") || name.equals("status") || name.equals("id");
+    }
+}
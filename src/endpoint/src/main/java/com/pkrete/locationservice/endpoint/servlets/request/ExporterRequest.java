@@ -113,6 +113,12 @@ public class ExporterRequest extends HttpServletRequestWrapper {
             // "version" is optional -> set default value
             return "1";
         }
+        // Validate "offset" and "limit" parameters - OPTIONAL
+        if ((name.equals("offset") || name.equals("limit")) && (value == null || value.isEmpty())) {
+            // "offset" and "limit" are optional -> set default value,
+            // limit zero means no limit
+            return "0";
+        }
         return value;
     }
 }
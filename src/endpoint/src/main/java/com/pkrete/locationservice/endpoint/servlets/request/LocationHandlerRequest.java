@@ -57,7 +57,7 @@ public class LocationHandlerRequest extends HttpServletRequestWrapper {
      * @param value parameter value
      * @return validated parameter value
      */
-    private String setDefault(String name, String value) {
+    protected String setDefault(String name, String value) {
         // Validate "owner" parameter - REQUIRED
         if (name.equals("owner") && value != null) {
             // The maximum length of the owner parameter is 10. If the length
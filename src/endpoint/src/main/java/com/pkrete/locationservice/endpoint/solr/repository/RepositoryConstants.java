@@ -59,4 +59,14 @@ public class RepositoryConstants {
     public static final String FIELD_STAFF_NOTE_SEC = "staff_note_sec";
     public static final String FIELD_SUBJECTS = "subjects";
     public static final String FIELD_SUBJECT_IDS = "subject_ids";
+    // Case insensitive search fields used by Exporter
+    public static final String FIELD_CALL_NUMBER_SEARCH = "call_number_search";
+    public static final String FIELD_LOCATION_CODE_SEARCH = "location_code_search";
+    public static final String FIELD_DESCRIPTIONS_SEARCH = "descriptions_search";
+    public static final String FIELD_NOTES_SEARCH = "notes_search";
+    public static final String FIELD_SUBJECTS_SEARCH = "subjects_search";
+    public static final String FIELD_STAFF_NOTE_PRI_SEARCH = "staff_note_pri_search";
+    public static final String FIELD_STAFF_NOTE_SEC_SEARCH = "staff_note_sec_search";
+    public static final String FIELD_FLOOR_SEARCH = "floor_search";
+    public static final String FIELD_SHELF_NUMBER_SEARCH = "shelf_number_search";
 }
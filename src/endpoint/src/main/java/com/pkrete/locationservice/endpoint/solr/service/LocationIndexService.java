@@ -18,6 +18,8 @@
 package com.pkrete.locationservice.endpoint.solr.service;
 
 import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
+import com.pkrete.locationservice.endpoint.model.search.Position;
+import com.pkrete.locationservice.endpoint.model.search.SearchType;
 import java.util.List;
 
 /**
@@ -48,5 +50,7 @@ public interface LocationIndexService {
 
     List<SimpleLocation> getShelvesFromIndex(String ownerCode);
 
+    List<SimpleLocation> search(String ownerCode, SearchType type, Position position, String search, int offset, int limit);
+
     boolean testConnection();
 }
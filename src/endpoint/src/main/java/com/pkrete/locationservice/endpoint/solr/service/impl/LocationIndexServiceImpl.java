@@ -19,11 +19,25 @@ package com.pkrete.locationservice.endpoint.solr.service.impl;
 
 import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
 import com.pkrete.locationservice.endpoint.model.search.LocationType;
+import com.pkrete.locationservice.endpoint.model.search.Position;
+import com.pkrete.locationservice.endpoint.model.search.SearchType;
 import com.pkrete.locationservice.endpoint.solr.model.DocumentType;
+import com.pkrete.locationservice.endpoint.solr.model.LocationDocument;
 import com.pkrete.locationservice.endpoint.solr.repository.LocationDocumentRepository;
 import com.pkrete.locationservice.endpoint.solr.repository.RepositoryConstants;
 import com.pkrete.locationservice.endpoint.solr.service.LocationIndexService;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Sort;
 
 /**
@@ -34,7 +48,30 @@ import org.springframework.data.domain.Sort;
  */
 public class LocationIndexServiceImpl implements LocationIndexService {
 
+    private static final Logger logger = LoggerFactory.getLogger(LocationIndexServiceImpl.class.getName());
+    /**
+     * Search fields matching the Exporter search types.
+     */
+    private static final Map<SearchType, String> SEARCH_FIELDS = new EnumMap<SearchType, String>(SearchType.class);
+    /**
+     * Location types in the order in which search results are returned.
+     */
+    private static final LocationType[] LOCATION_TYPES = {LocationType.LIBRARY, LocationType.COLLECTION, LocationType.SHELF};
     private LocationDocumentRepository repository;
+    private SolrServer solrServer;
+    private int pageSize = 1000;
+
+    static {
+        SEARCH_FIELDS.put(SearchType.CALLNO, RepositoryConstants.FIELD_CALL_NUMBER_SEARCH);
+        SEARCH_FIELDS.put(SearchType.CODE, RepositoryConstants.FIELD_LOCATION_CODE_SEARCH);
+        SEARCH_FIELDS.put(SearchType.DESC, RepositoryConstants.FIELD_DESCRIPTIONS_SEARCH);
+        SEARCH_FIELDS.put(SearchType.NOTE, RepositoryConstants.FIELD_NOTES_SEARCH);
+        SEARCH_FIELDS.put(SearchType.SUBJECT, RepositoryConstants.FIELD_SUBJECTS_SEARCH);
+        SEARCH_FIELDS.put(SearchType.STAFFNOTE1, RepositoryConstants.FIELD_STAFF_NOTE_PRI_SEARCH);
+        SEARCH_FIELDS.put(SearchType.STAFFNOTE2, RepositoryConstants.FIELD_STAFF_NOTE_SEC_SEARCH);
+        SEARCH_FIELDS.put(SearchType.FLOOR, RepositoryConstants.FIELD_FLOOR_SEARCH);
+        SEARCH_FIELDS.put(SearchType.SHELF, RepositoryConstants.FIELD_SHELF_NUMBER_SEARCH);
+    }
 
     /**
      * Sets the value of the repository variable.
@@ -45,6 +82,26 @@ public class LocationIndexServiceImpl implements LocationIndexService {
         this.repository = repository;
     }
 
+    /**
+     * Sets the Solr server that's used for searches that can't be expressed
+     * as repository methods.
+     *
+     * @param solrServer new value
+     */
+    public void setSolrServer(SolrServer solrServer) {
+        this.solrServer = solrServer;
+    }
+
+    /**
+     * Sets the maximum number of documents that are fetched from Solr in one
+     * request when all the search results are requested. Default is 1000.
+     *
+     * @param pageSize new value
+     */
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
     /**
      * Returns the location with the given id and owner code.
      *
@@ -170,6 +227,123 @@ public class LocationIndexServiceImpl implements LocationIndexService {
         return (List) this.repository.findByOwnerCodeAndLocationType(ownerCode, LocationType.SHELF, this.sortByCallNumberDesc());
     }
 
+    /**
+     * Returns one page of the locations of the given owner matching the given
+     * Exporter search. The search is done in Solr, and only the location id
+     * and type of the matching locations are transferred. Libraries are
+     * returned first, then collections and then shelves, and the locations of
+     * the same type are sorted by id. The first offset results are skipped,
+     * and at most limit results are returned. Limit zero means that all the
+     * remaining results are returned.
+     *
+     * Values are matched case insensitively as whole values like in
+     * {@link com.pkrete.locationservice.endpoint.search.Search Search}
+     * classes. Unlike regular expressions, wildcards match line terminators
+     * too.
+     *
+     * @param ownerCode owner of the locations
+     * @param type type of the search - target field
+     * @param position position of the search string in the target field
+     * @param search search string
+     * @param offset number of results to be skipped
+     * @param limit maximum number of results, zero means no limit
+     * @return list of locations that contain only the id and the type
+     */
+    @Override
+    public List<SimpleLocation> search(String ownerCode, SearchType type, Position position, String search, int offset, int limit) {
+        List<SimpleLocation> results = new ArrayList<SimpleLocation>();
+        String query = this.buildQuery(type, position, search);
+        if (query == null) {
+            return results;
+        }
+        int skip = Math.max(offset, 0);
+        try {
+            for (LocationType locationType : LOCATION_TYPES) {
+                if (limit > 0 && results.size() >= limit) {
+                    break;
+                }
+                int start = skip;
+                SolrDocumentList documents;
+                do {
+                    int rows = limit > 0 ? Math.min(limit - results.size(), this.pageSize) : this.pageSize;
+                    documents = this.query(ownerCode, locationType, query, start, rows);
+                    for (SolrDocument document : documents) {
+                        LocationDocument location = new LocationDocument();
+                        location.setLocationId((Integer) document.getFieldValue(RepositoryConstants.FIELD_DOCUMENT_ID));
+                        location.setLocationType(locationType);
+                        results.add(location);
+                    }
+                    start += documents.size();
+                } while (!documents.isEmpty() && start < documents.getNumFound() && (limit <= 0 || results.size() < limit));
+                // Skipped locations of this type are subtracted from the offset
+                skip = (int) Math.max(skip - documents.getNumFound(), 0);
+            }
+        } catch (SolrServerException ex) {
+            logger.error("Exporter search from Solr failed. {}", ex.getMessage());
+            return new ArrayList<SimpleLocation>();
+        }
+        return results;
+    }
+
+    /**
+     * Runs the given query against the locations of the given owner and type.
+     * Only the location ids are returned.
+     *
+     * @param ownerCode owner of the locations
+     * @param locationType type of the locations
+     * @param query query to be run
+     * @param start index of the first document to be returned
+     * @param rows maximum number of documents to be returned
+     * @return documents matching the query
+     * @throws SolrServerException if the query fails
+     */
+    private SolrDocumentList query(String ownerCode, LocationType locationType, String query, int start, int rows) throws SolrServerException {
+        SolrQuery solrQuery = new SolrQuery(query);
+        solrQuery.addFilterQuery(RepositoryConstants.FIELD_OWNER_CODE + ":" + ClientUtils.escapeQueryChars(ownerCode));
+        solrQuery.addFilterQuery(RepositoryConstants.FIELD_DOCUMENT_TYPE + ":" + DocumentType.LOCATION);
+        solrQuery.addFilterQuery(RepositoryConstants.FIELD_LOCATION_TYPE + ":" + locationType);
+        solrQuery.setFields(RepositoryConstants.FIELD_DOCUMENT_ID);
+        solrQuery.addSort(RepositoryConstants.FIELD_DOCUMENT_ID, SolrQuery.ORDER.asc);
+        solrQuery.setStart(start);
+        solrQuery.setRows(rows);
+        return this.solrServer.query(solrQuery).getResults();
+    }
+
+    /**
+     * Builds the Solr query matching the given Exporter search. Searches by id
+     * are matched against the location id, and other searches against the
+     * search field of the search type. Null is returned, if the search can't
+     * match any locations.
+     *
+     * @param type type of the search - target field
+     * @param position position of the search string in the target field
+     * @param search search string
+     * @return Solr query or null
+     */
+    private String buildQuery(SearchType type, Position position, String search) {
+        if (type == SearchType.ID) {
+            try {
+                return RepositoryConstants.FIELD_DOCUMENT_ID + ":" + Integer.parseInt(search);
+            } catch (NumberFormatException nfe) {
+                return null;
+            }
+        }
+        String field = SEARCH_FIELDS.get(type);
+        if (field == null) {
+            return null;
+        }
+        // Search fields are indexed in lower case
+        String value = ClientUtils.escapeQueryChars(search.toLowerCase());
+        if (position == Position.MATCH) {
+            return field + ":" + (value.isEmpty() ? "\"\"" : value);
+        } else if (position == Position.FIRST) {
+            return field + ":" + value + "*";
+        } else if (position == Position.LAST) {
+            return field + ":*" + value;
+        }
+        return field + ":*" + value + "*";
+    }
+
     /**
      * Returns a Sort object that sorts the results in ascending order by call
      * number.
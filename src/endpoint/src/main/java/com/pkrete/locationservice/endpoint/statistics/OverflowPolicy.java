@@ -0,0 +1,37 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.statistics;
+
+/**
+ * Overflow policy defines what happens when a new search event is added to a
+ * full {@link SearchEventStatisticsQueue SearchEventStatisticsQueue}. Adding
+ * an event never blocks the thread that's serving the request.
+ *
+ * @author Petteri Kivimäki
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The oldest event in the queue is removed and the new event is added.
+     */
+    DROP_OLDEST,
+    /**
+     * The new event is discarded.
+     */
+    DROP_NEWEST;
+}
@@ -0,0 +1,628 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.statistics;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/**
+ * This class implements an append-only journal for the
+ * {@link SearchEvent SearchEvent} objects that could not be saved to the
+ * database. The journal keeps the events on disk, so the heap usage doesn't
+ * depend on the length of the database outage, and the events survive a
+ * restart.
+ *
+ * The journal consists of segment files that are written one after another.
+ * New events are always appended to the newest segment, and a new segment is
+ * started when the size of the newest segment exceeds the max segment size.
+ * Every append is forced to the disk before it's acknowledged, and an append
+ * that fails is truncated away, so that a segment never ends with a partial
+ * batch written by a live process. If the total size of the journal would
+ * exceed the max journal size, the oldest segments are deleted and their
+ * events are lost.
+ * The events are read back one batch at a time starting from the oldest
+ * segment. After a batch has been saved, the read position of the segment is
+ * stored in a separate offset file, and the segment is deleted after all its
+ * events have been saved.
+ *
+ * Every event is stored as a length prefixed record. A record that can't be
+ * parsed, e.g. because it has an unsupported version, is skipped. If the
+ * length of a record is invalid or the record has been only partially
+ * written, e.g. because of a crash, the rest of the segment can't be read.
+ * A segment that hasn't been read completely is never deleted. Instead, it's
+ * renamed with a ".corrupt" suffix after all its readable events have been
+ * handled, so that it doesn't block the rest of the journal and the skipped
+ * events can still be recovered manually.
+ *
+ * @author Petteri Kivimäki
+ */
+public class SearchEventJournal {
+
+    private final static Logger logger = Logger.getLogger(SearchEventJournal.class.getName());
+    private static final String PREFIX = "events-";
+    private static final String SUFFIX = ".journal";
+    private static final String OFFSET_SUFFIX = ".offset";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+    private static final int VERSION = 1;
+    private File directory;
+    private long maxSegmentSize;
+    private long maxSize;
+    private File current;
+    private FileOutputStream out;
+    private FileChannel channel;
+    private long currentSize;
+    private long sequence;
+
+    /**
+     * Constructs and initializes a new SearchEventJournal object.
+     */
+    public SearchEventJournal() {
+        this.directory = new File(System.getProperty("java.io.tmpdir"), "location-service-journal");
+        this.maxSegmentSize = 10 * 1024 * 1024;
+        this.maxSize = 100 * 1024 * 1024;
+    }
+
+    /**
+     * Changes the directory where the segment files are stored. If the value
+     * is empty, the journal is stored in the "location-service-journal"
+     * directory under the temp directory of the JVM.
+     *
+     * @param directory new directory
+     */
+    public synchronized void setDirectory(String directory) {
+        if (directory != null && !directory.trim().isEmpty()) {
+            this.directory = new File(directory.trim());
+        }
+    }
+
+    /**
+     * Changes the size in bytes after which a new segment is started. Default
+     * is 10 MB.
+     *
+     * @param maxSegmentSize new value
+     */
+    public synchronized void setMaxSegmentSize(long maxSegmentSize) {
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    /**
+     * Changes the max total size of the segment files in bytes. When the
+     * limit is reached, the oldest segments are deleted to make room for the
+     * new events. Zero or a negative value means no limit. Default is 100 MB.
+     *
+     * @param maxSize new value
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Appends the given events to the journal. Returns true if and only if
+     * all the events were written and forced to the disk; otherwise false.
+     * If writing fails, none of the events are left in the journal.
+     *
+     * @param events events to be appended
+     * @return true if and only if all the events were written; otherwise
+     * false
+     */
+    public synchronized boolean append(List<SearchEvent> events) {
+        byte[] data;
+        try {
+            data = toBytes(events);
+        } catch (IOException ioe) {
+            logger.error("Serializing search events for the journal failed!", ioe);
+            return false;
+        }
+        if (this.maxSize > 0 && data.length > this.maxSize) {
+            logger.error("Search events exceed the max size of the journal. " + events.size() + " events dropped.");
+            return false;
+        }
+        long start = -1;
+        try {
+            if (this.out == null || this.currentSize >= this.maxSegmentSize) {
+                this.openSegment();
+            }
+            this.makeRoom(data.length);
+            if (this.out == null) {
+                // The current segment was dropped
+                this.openSegment();
+            }
+            start = this.currentSize;
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+            this.channel.force(false);
+            this.currentSize += data.length;
+            return true;
+        } catch (IOException ioe) {
+            logger.error("Writing search events to the journal failed!", ioe);
+            if (start >= 0) {
+                this.truncate(start);
+            }
+            this.closeSegment();
+            return false;
+        }
+    }
+
+    /**
+     * Serializes the given events into length prefixed records.
+     *
+     * @param events events to be serialized
+     * @return records of the events
+     * @throws IOException if serializing an event fails
+     */
+    private static byte[] toBytes(List<SearchEvent> events) throws IOException {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(256 * events.size());
+        DataOutputStream batchOut = new DataOutputStream(batch);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(bytes);
+        for (SearchEvent event : events) {
+            bytes.reset();
+            write(event, record);
+            record.flush();
+            batchOut.writeInt(bytes.size());
+            bytes.writeTo(batchOut);
+        }
+        batchOut.flush();
+        return batch.toByteArray();
+    }
+
+    /**
+     * Deletes the oldest segments until the given number of bytes can be
+     * appended without exceeding the max size of the journal. If the current
+     * segment has to be deleted too, it's closed first.
+     *
+     * @param needed number of bytes to be appended
+     */
+    private void makeRoom(long needed) {
+        if (this.maxSize <= 0) {
+            return;
+        }
+        File[] segments = this.listSegments();
+        long size = 0;
+        for (File segment : segments) {
+            size += segment.length();
+        }
+        for (int i = 0; i < segments.length && size + needed > this.maxSize; i++) {
+            File segment = segments[i];
+            if (segment.equals(this.current)) {
+                this.closeSegment();
+            }
+            long length = segment.length();
+            if (!segment.delete()) {
+                logger.error("Deleting journal segment failed! Segment: " + segment.getName());
+                continue;
+            }
+            File offsetFile = new File(segment.getPath() + OFFSET_SUFFIX);
+            if (offsetFile.exists() && !offsetFile.delete()) {
+                logger.warn("Deleting journal offset file failed! File: " + offsetFile.getName());
+            }
+            size -= length;
+            logger.warn("The journal is full. The oldest segment was dropped: " + segment.getName() + ", " + length + " bytes.");
+        }
+    }
+
+    /**
+     * Truncates the current segment to the given length, so that a partially
+     * written append is removed. If truncating fails, the segment is closed
+     * and the rest of it can't be read when it's replayed.
+     *
+     * @param length length of the segment before the append
+     */
+    private void truncate(long length) {
+        try {
+            this.channel.truncate(length);
+            this.channel.force(false);
+            this.currentSize = length;
+        } catch (IOException ioe) {
+            logger.error("Truncating journal segment failed! Segment: " + this.current.getName(), ioe);
+        }
+    }
+
+    /**
+     * Returns true if the journal doesn't contain any segments.
+     *
+     * @return true if the journal is empty; otherwise false
+     */
+    public synchronized boolean isEmpty() {
+        return this.listSegments().length == 0;
+    }
+
+    /**
+     * Returns the total size of the segment files in bytes.
+     *
+     * @return size of the journal in bytes
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (File segment : this.listSegments()) {
+            size += segment.length();
+        }
+        return size;
+    }
+
+    /**
+     * Closes the newest segment, so that no more events are appended to it.
+     * The closed segments can be replayed while new events are appended to a
+     * new segment. Returns the closed segments starting from the oldest.
+     *
+     * @return closed segments
+     */
+    public synchronized List<File> closeSegments() {
+        this.closeSegment();
+        return new ArrayList<File>(Arrays.asList(this.listSegments()));
+    }
+
+    /**
+     * Reads the events of the given closed segment in batches and passes
+     * every batch to the given handler. The read position is stored after
+     * every batch that the handler accepts, and the segment is deleted once
+     * all its events have been handled. If the segment contains records that
+     * can't be read, the readable events are handled and the segment is
+     * renamed with a ".corrupt" suffix instead of deleting it. If the handler
+     * rejects a batch or reading the segment fails, the reading stops and
+     * false is returned.
+     *
+     * @param segment segment to be replayed
+     * @param batchSize max number of events in a batch
+     * @param handler handler that saves the events
+     * @return true if all the readable events in the segment were handled;
+     * otherwise false
+     */
+    public boolean replay(File segment, int batchSize, BatchHandler handler) {
+        File offsetFile = new File(segment.getPath() + OFFSET_SUFFIX);
+        long offset = readOffset(offsetFile);
+        DataInputStream in = null;
+        long length = segment.length();
+        long position = 0;
+        int unreadable = 0;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+            while (position < offset) {
+                long skipped = in.skip(offset - position);
+                if (skipped <= 0) {
+                    throw new EOFException("Offset is beyond the end of the segment.");
+                }
+                position += skipped;
+            }
+            List<SearchEvent> batch = new ArrayList<SearchEvent>(batchSize);
+            long batchEnd = position;
+            while (true) {
+                SearchEvent event = null;
+                boolean end = true;
+                if (position + 4 <= length) {
+                    int recordLength = in.readInt();
+                    if (recordLength >= 0 && position + 4 + recordLength <= length) {
+                        byte[] data = new byte[recordLength];
+                        in.readFully(data);
+                        position += 4 + recordLength;
+                        end = false;
+                        try {
+                            event = read(data);
+                        } catch (IOException ioe) {
+                            unreadable++;
+                            logger.warn("Skipping unreadable journal record. Segment: " + segment.getName() + ", position: " + (position - 4 - recordLength) + ". " + ioe.getMessage());
+                        }
+                    }
+                }
+                if (event != null) {
+                    batch.add(event);
+                    batchEnd = position;
+                }
+                if (!batch.isEmpty() && (end || batch.size() >= batchSize)) {
+                    if (!handler.handle(batch)) {
+                        return false;
+                    }
+                    if (!segment.exists()) {
+                        // The segment was dropped because the journal is full
+                        return true;
+                    }
+                    writeOffset(offsetFile, batchEnd);
+                    batch.clear();
+                }
+                if (end) {
+                    break;
+                }
+            }
+        } catch (IOException ioe) {
+            logger.error("Reading search events from the journal failed! Segment: " + segment.getName(), ioe);
+            return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ioe) {
+                    logger.warn("Closing journal segment failed.", ioe);
+                }
+            }
+        }
+        if (position < length || unreadable > 0) {
+            logger.error("Journal segment contains unreadable data. " + unreadable + " records skipped, " + (length - position) + " bytes at the end of the segment not read. Segment: " + segment.getName());
+            quarantine(segment);
+            quarantine(offsetFile);
+        } else if (!segment.delete() || (offsetFile.exists() && !offsetFile.delete())) {
+            logger.warn("Deleting journal segment failed! Segment: " + segment.getName());
+        }
+        return true;
+    }
+
+    /**
+     * Renames the given file with a ".corrupt" suffix, so that it's not
+     * replayed anymore.
+     *
+     * @param file file to be renamed
+     */
+    private static void quarantine(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        File target = new File(file.getPath() + CORRUPT_SUFFIX);
+        if (file.renameTo(target)) {
+            logger.warn("Journal file moved aside: " + target.getPath());
+        } else {
+            logger.error("Renaming journal file failed! File: " + file.getPath());
+        }
+    }
+
+    /**
+     * Opens a new segment for writing.
+     *
+     * @throws IOException if creating the segment fails
+     */
+    private void openSegment() throws IOException {
+        this.closeSegment();
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory: " + this.directory.getPath());
+        }
+        File[] segments = this.listSegments();
+        if (segments.length > 0) {
+            this.sequence = Math.max(this.sequence, parseSequence(segments[segments.length - 1]));
+        }
+        this.sequence++;
+        this.current = new File(this.directory, PREFIX + String.format("%019d", this.sequence) + SUFFIX);
+        this.out = new FileOutputStream(this.current, true);
+        this.channel = this.out.getChannel();
+        this.currentSize = this.channel.size();
+        logger.info("New journal segment opened: " + this.current.getPath());
+    }
+
+    /**
+     * Closes the segment that's currently open for writing.
+     */
+    private void closeSegment() {
+        if (this.out != null) {
+            try {
+                this.out.close();
+            } catch (IOException ioe) {
+                logger.warn("Closing journal segment failed.", ioe);
+            }
+        }
+        this.out = null;
+        this.channel = null;
+        this.current = null;
+        this.currentSize = 0;
+    }
+
+    /**
+     * Returns the segment files sorted from the oldest to the newest.
+     *
+     * @return segment files
+     */
+    private File[] listSegments() {
+        File[] segments = this.directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }
+        });
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Parses the sequence number from the name of the given segment.
+     *
+     * @param segment segment file
+     * @return sequence number of the segment
+     */
+    private static long parseSequence(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException nfe) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the stored read position of a segment from the given file.
+     *
+     * @param offsetFile offset file
+     * @return read position or zero if the file doesn't exist
+     */
+    private static long readOffset(File offsetFile) {
+        if (!offsetFile.exists()) {
+            return 0;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(offsetFile));
+            return in.readLong();
+        } catch (IOException ioe) {
+            logger.warn("Reading journal offset failed. Reading the segment from the beginning.", ioe);
+            return 0;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ioe) {
+                    logger.warn("Closing journal offset file failed.", ioe);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores the read position of a segment to the given file.
+     *
+     * @param offsetFile offset file
+     * @param offset read position
+     * @throws IOException if writing the file fails
+     */
+    private static void writeOffset(File offsetFile, long offset) throws IOException {
+        DataOutputStream offsetOut = new DataOutputStream(new FileOutputStream(offsetFile));
+        try {
+            offsetOut.writeLong(offset);
+        } finally {
+            offsetOut.close();
+        }
+    }
+
+    /**
+     * Writes the given event to the given stream.
+     *
+     * @param event event to be written
+     * @param record target stream
+     * @throws IOException if writing fails
+     */
+    private static void write(SearchEvent event, DataOutputStream record) throws IOException {
+        record.writeByte(VERSION);
+        writeString(event.getCallno(), record);
+        writeString(event.getCollection(), record);
+        writeString(event.getLang(), record);
+        writeString(event.getStatus(), record);
+        writeString(event.getSearchType(), record);
+        writeString(event.getPosition(), record);
+        record.writeBoolean(event.getAuthorized());
+        writeString(event.getIpAddress(), record);
+        writeString(event.getEventType() == null ? null : event.getEventType().name(), record);
+        record.writeLong(event.getProcessingTime());
+        record.writeLong(event.getDate() == null ? -1 : event.getDate().getTime());
+        writeString(event.getOwner(), record);
+    }
+
+    /**
+     * Reads an event from the given record.
+     *
+     * @param data record
+     * @return event read from the record
+     * @throws IOException if the record is invalid
+     */
+    private static SearchEvent read(byte[] data) throws IOException {
+        try {
+            return readRecord(data);
+        } catch (IllegalArgumentException iae) {
+            // Unknown event type
+            throw new IOException(iae.getMessage());
+        }
+    }
+
+    /**
+     * Parses an event from the given record.
+     *
+     * @param data record
+     * @return event read from the record
+     * @throws IOException if the record is invalid
+     */
+    private static SearchEvent readRecord(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readByte() != VERSION) {
+            throw new IOException("Unsupported journal record version: " + data[0] + ".");
+        }
+        SearchEvent event = new SearchEvent();
+        event.setCallno(readString(in));
+        event.setCollection(readString(in));
+        event.setLang(readString(in));
+        event.setStatus(readString(in));
+        event.setSearchType(readString(in));
+        event.setPosition(readString(in));
+        event.setAuthorized(in.readBoolean());
+        event.setIpAddress(readString(in));
+        String type = readString(in);
+        event.setEventType(type == null ? null : SearchEventType.valueOf(type));
+        event.setProcessingTime(in.readLong());
+        long date = in.readLong();
+        event.setDate(date < 0 ? null : new Date(date));
+        event.setOwner(readString(in));
+        return event;
+    }
+
+    /**
+     * Writes the given nullable string to the given stream.
+     *
+     * @param value string to be written
+     * @param record target stream
+     * @throws IOException if writing fails
+     */
+    private static void writeString(String value, DataOutputStream record) throws IOException {
+        record.writeBoolean(value != null);
+        if (value != null) {
+            record.writeUTF(value);
+        }
+    }
+
+    /**
+     * Reads a nullable string from the given stream.
+     *
+     * @param in source stream
+     * @return string or null
+     * @throws IOException if reading fails
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return in.readUTF();
+    }
+
+    /**
+     * Handler that saves the batches of events read from the journal.
+     */
+    public interface BatchHandler {
+
+        /**
+         * Saves the given events. Returns true if and only if all the events
+         * were saved.
+         *
+         * @param events events to be saved
+         * @return true if and only if all the events were saved; otherwise
+         * false
+         */
+        boolean handle(List<SearchEvent> events);
+    }
+}
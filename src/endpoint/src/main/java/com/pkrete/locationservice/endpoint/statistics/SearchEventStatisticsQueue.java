@@ -17,8 +17,13 @@
  */
 package com.pkrete.locationservice.endpoint.statistics;
 
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This class presents a queue of {@link SearchEvent SearchEvent} objects that
@@ -26,10 +31,15 @@ import java.util.concurrent.LinkedBlockingQueue;
  * event that is stored to the database for statistical purposes.
  *
  * This queue is accessed via BlockingQueue interface and the queue
- * implementation uses LinkedBlockingQueue class. BlockingQueue implementation
+ * implementation uses ArrayBlockingQueue class. BlockingQueue implementation
  * is thread-safe. All queuing methods achieve their effects atomically using
  * internal locks or other forms of concurrency control.
  *
+ * The queue is bounded, and adding an event never blocks. If the queue is
+ * full, the configured {@link OverflowPolicy OverflowPolicy} defines which
+ * event is discarded. The number of discarded events is available through
+ * the getDroppedCount method.
+ *
  * This class implements Singleton design pattern, which means that only one
  * object is created runtime, and it's referenced by all the other objects.
  * Because of this, thread safe implementation is essential.
@@ -38,44 +48,102 @@ import java.util.concurrent.LinkedBlockingQueue;
  */
 public class SearchEventStatisticsQueue {
 
-    private BlockingQueue<SearchEvent> queue;
-    private static SearchEventStatisticsQueue ref;
+    private final static Logger logger = LoggerFactory.getLogger(SearchEventStatisticsQueue.class.getName());
+    private static final SearchEventStatisticsQueue ref = new SearchEventStatisticsQueue();
+    private volatile BlockingQueue<SearchEvent> queue;
+    private volatile OverflowPolicy overflowPolicy;
+    private final AtomicLong droppedCount;
+    private int capacity;
 
     /**
      * The class implements Singleton design pattern, so constructor must be
      * defined as private.
      */
     private SearchEventStatisticsQueue() {
-        this.queue = new LinkedBlockingQueue<SearchEvent>();
+        this.capacity = 10000;
+        this.overflowPolicy = OverflowPolicy.DROP_OLDEST;
+        this.droppedCount = new AtomicLong();
+        this.queue = new ArrayBlockingQueue<SearchEvent>(this.capacity);
     }
 
     /**
-     * Returns the SearchEventStatisticsQueue Singleton object. If the object
-     * doesn't exist yet, it's created.
+     * Returns the SearchEventStatisticsQueue Singleton object.
      *
      * @return SearchEventStatisticsQueue Singleton object
      */
     public static SearchEventStatisticsQueue getInstance() {
-        if (ref == null) {
-            ref = new SearchEventStatisticsQueue();
-        }
         return ref;
     }
 
     /**
-     * Inserts a new search event to the queue, waiting if necessary for space
-     * to become available.
+     * Changes the maximum number of events in the queue. The events that are
+     * already in the queue are moved to the new queue. This method should be
+     * called only when the application starts. Default is 10000.
+     *
+     * @param capacity new capacity
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity <= 0 || capacity == this.capacity) {
+            return;
+        }
+        BlockingQueue<SearchEvent> newQueue = new ArrayBlockingQueue<SearchEvent>(capacity);
+        BlockingQueue<SearchEvent> oldQueue = this.queue;
+        this.queue = newQueue;
+        this.capacity = capacity;
+        SearchEvent event;
+        while ((event = oldQueue.poll()) != null) {
+            this.put(event);
+        }
+        logger.info("Search event queue capacity set to {}.", capacity);
+    }
+
+    /**
+     * Returns the maximum number of events in the queue.
+     *
+     * @return maximum number of events in the queue
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Changes the policy that's applied when an event is added to a full
+     * queue. Default is DROP_OLDEST.
+     *
+     * @param overflowPolicy new value
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Returns the policy that's applied when an event is added to a full
+     * queue.
+     *
+     * @return overflow policy
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return this.overflowPolicy;
+    }
+
+    /**
+     * Inserts a new search event to the queue. This method never blocks. If
+     * the queue is full, either the oldest event in the queue or the given
+     * event is discarded depending on the overflow policy.
      *
      * @param msg message to be inserted
      */
     public void put(SearchEvent msg) {
-        try {
-            queue.put(msg);
-        } catch (InterruptedException iex) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Unexpected interruption");
+        BlockingQueue<SearchEvent> current = this.queue;
+        while (!current.offer(msg)) {
+            if (this.overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                this.dropped();
+                return;
+            }
+            if (current.poll() != null) {
+                this.dropped();
+            }
         }
-
     }
 
     /**
@@ -93,6 +161,44 @@ public class SearchEventStatisticsQueue {
         }
     }
 
+    /**
+     * Removes at most maxElements events from the queue and adds them to the
+     * given list. The method waits until at least one event is available.
+     * After that it waits at most maxWait milliseconds for the list to fill
+     * up. Returns the number of events added to the list.
+     *
+     * @param batch list where the events are added
+     * @param maxElements maximum number of events to be added
+     * @param maxWait maximum time to wait for more events in milliseconds
+     * after the first event has been received
+     * @return number of events added to the list
+     */
+    public int drainTo(List<SearchEvent> batch, int maxElements, long maxWait) {
+        BlockingQueue<SearchEvent> current = this.queue;
+        int count = 0;
+        try {
+            batch.add(current.take());
+            count++;
+            long deadline = System.currentTimeMillis() + maxWait;
+            while (count < maxElements) {
+                count += current.drainTo(batch, maxElements - count);
+                long remaining = deadline - System.currentTimeMillis();
+                if (count >= maxElements || remaining <= 0) {
+                    break;
+                }
+                SearchEvent event = current.poll(remaining, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    break;
+                }
+                batch.add(event);
+                count++;
+            }
+        } catch (InterruptedException iex) {
+            Thread.currentThread().interrupt();
+        }
+        return count;
+    }
+
     /**
      * Returns true if this queue contains no elements.
      *
@@ -101,4 +207,34 @@ public class SearchEventStatisticsQueue {
     public boolean isEmpty() {
         return queue.isEmpty();
     }
+
+    /**
+     * Returns the number of events in the queue.
+     *
+     * @return number of events in the queue
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of events that have been discarded, because the
+     * queue was full.
+     *
+     * @return number of discarded events
+     */
+    public long getDroppedCount() {
+        return this.droppedCount.get();
+    }
+
+    /**
+     * Increases the number of discarded events and logs a warning when the
+     * first event and after that every 1000th event is discarded.
+     */
+    private void dropped() {
+        long count = this.droppedCount.incrementAndGet();
+        if (count % 1000 == 1) {
+            logger.warn("Search event queue is full. {} search events discarded so far.", count);
+        }
+    }
 }
@@ -0,0 +1,125 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.statistics;
+
+import com.pkrete.locationservice.endpoint.service.Service;
+import java.io.File;
+import java.util.List;
+import org.apache.log4j.Logger;
+
+/**
+ * This class is responsible for saving the search events stored in the
+ * {@link SearchEventJournal SearchEventJournal} to the database. The replayer
+ * is run periodically in a JDK Timer based thread. If the journal is not
+ * empty and the database connection works, the journal is read in batches
+ * starting from the oldest segment, and every batch is saved in a single
+ * transaction. Only one batch is kept in memory at a time.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StatisticsJournalReplayer implements Runnable {
+
+    private final static Logger logger = Logger.getLogger(StatisticsJournalReplayer.class.getName());
+    private Service dbService;
+    private SearchEventJournal journal;
+    private int batchSize;
+    private volatile long replayedCount;
+
+    /**
+     * Constructs and initializes a new StatisticsJournalReplayer object.
+     */
+    public StatisticsJournalReplayer() {
+        this.batchSize = 100;
+    }
+
+    /**
+     * Changes the dbService object.
+     *
+     * @param dbService new value
+     */
+    public void setDbService(Service dbService) {
+        this.dbService = dbService;
+    }
+
+    /**
+     * Changes the journal that's replayed.
+     *
+     * @param journal new value
+     */
+    public void setJournal(SearchEventJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Sets the maximum number of events that are saved in a single
+     * transaction. Default is 100.
+     *
+     * @param batchSize new value
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize < 1 ? 1 : batchSize;
+    }
+
+    /**
+     * Returns the number of events that have been saved from the journal to
+     * the database.
+     *
+     * @return number of replayed events
+     */
+    public long getReplayedCount() {
+        return this.replayedCount;
+    }
+
+    /**
+     * Saves the events in the journal to the database, if the database
+     * connection works.
+     */
+    @Override
+    public void run() {
+        try {
+            if (this.journal.isEmpty()) {
+                return;
+            }
+            if (!this.dbService.testDbConnection()) {
+                logger.warn("Database is not available. Replaying the search event journal postponed.");
+                return;
+            }
+            logger.info("Replaying the search event journal. Journal size: " + this.journal.size() + " bytes.");
+            long start = this.replayedCount;
+            for (File segment : this.journal.closeSegments()) {
+                if (!this.journal.replay(segment, this.batchSize, new SearchEventJournal.BatchHandler() {
+                    @Override
+                    public boolean handle(List<SearchEvent> events) {
+                        if (!dbService.save(events)) {
+                            return false;
+                        }
+                        replayedCount += events.size();
+                        return true;
+                    }
+                })) {
+                    logger.error("Replaying the search event journal failed! Segment: " + segment.getName());
+                    break;
+                }
+            }
+            logger.info("Replaying the search event journal done. " + (this.replayedCount - start) + " search events saved. Journal size: " + this.journal.size() + " bytes.");
+        } catch (RuntimeException e) {
+            // Exceptions must not cancel the periodic execution
+            logger.error(e.getMessage(), e);
+        }
+    }
+}
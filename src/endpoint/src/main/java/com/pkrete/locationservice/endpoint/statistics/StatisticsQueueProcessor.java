@@ -35,6 +35,16 @@ import org.apache.log4j.Logger;
  * thread is started when the application starts, and it's making blocking
  * method calls, which means that it keeps on running until the shutdown.
  *
+ * The events are saved in batches. The processor waits for the first event,
+ * and after that collects events until the batch is full or the max wait
+ * time has passed. Then the whole batch is saved in a single transaction.
+ * The processor keeps track of the number and the duration of the flushes.
+ *
+ * The events that can not be saved are appended to a
+ * {@link SearchEventJournal SearchEventJournal} on disk, and
+ * {@link StatisticsJournalReplayer StatisticsJournalReplayer} saves them to
+ * the database when the connection works again.
+ *
  * @author Petteri Kivimäki
  */
 public class StatisticsQueueProcessor implements Runnable {
@@ -43,9 +53,18 @@ public class StatisticsQueueProcessor implements Runnable {
     private SearchEventStatisticsQueue queue;
     private Service dbService;
     private EmailService mailService;
-    private List<SearchEvent> recoveryQueue;
+    private SearchEventJournal journal;
     private int failedAttemptsCount = 0;
     private int failedAttemptsMaxLimit;
+    private int batchSize;
+    private long maxWait;
+    private volatile long flushCount;
+    private volatile long failedFlushCount;
+    private volatile long savedCount;
+    private volatile long lastFlushTime;
+    private volatile long maxFlushTime;
+    private volatile long totalFlushTime;
+    private volatile long lostCount;
 
     /**
      * Constructs and initializes a new StatisticsQueueProcessor object.
@@ -53,7 +72,8 @@ public class StatisticsQueueProcessor implements Runnable {
     public StatisticsQueueProcessor() {
         this.queue = SearchEventStatisticsQueue.getInstance();
         this.failedAttemptsMaxLimit = 5;
-        this.recoveryQueue = new ArrayList<SearchEvent>();
+        this.batchSize = 100;
+        this.maxWait = 1000;
         logger.info("StatisticsQueueProcessor initiated.");
     }
 
@@ -75,6 +95,16 @@ public class StatisticsQueueProcessor implements Runnable {
         this.mailService = mailService;
     }
 
+    /**
+     * Sets the journal where the events that can not be saved to the database
+     * are stored.
+     *
+     * @param journal new value
+     */
+    public void setJournal(SearchEventJournal journal) {
+        this.journal = journal;
+    }
+
     /**
      * Returns the current value of failed attempts max limit.
      *
@@ -94,22 +124,145 @@ public class StatisticsQueueProcessor implements Runnable {
     }
 
     /**
-     * Monitors the search event statistics queue and saves event to the db when
-     * one becomes available.
+     * Sets the maximum number of events that are saved in a single
+     * transaction. Default is 100.
+     *
+     * @param batchSize new value
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize < 1 ? 1 : batchSize;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds that the processor waits for the
+     * batch to fill up after the first event has been received. Default is
+     * 1000 milliseconds.
+     *
+     * @param maxWait new value
+     */
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Returns the number of events currently waiting in the queue.
+     *
+     * @return number of events in the queue
+     */
+    public int getQueueSize() {
+        return this.queue.size();
+    }
+
+    /**
+     * Returns the number of events that have been discarded, because the
+     * queue was full.
+     *
+     * @return number of discarded events
+     */
+    public long getDroppedCount() {
+        return this.queue.getDroppedCount();
+    }
+
+    /**
+     * Returns the number of batches that have been written to the database.
+     *
+     * @return number of flushes
+     */
+    public long getFlushCount() {
+        return this.flushCount;
+    }
+
+    /**
+     * Returns the number of batches that could not be written to the
+     * database.
+     *
+     * @return number of failed flushes
+     */
+    public long getFailedFlushCount() {
+        return this.failedFlushCount;
+    }
+
+    /**
+     * Returns the number of events that have been saved to the database.
+     *
+     * @return number of saved events
+     */
+    public long getSavedCount() {
+        return this.savedCount;
+    }
+
+    /**
+     * Returns the duration of the latest flush in milliseconds.
+     *
+     * @return duration of the latest flush in milliseconds
+     */
+    public long getLastFlushTime() {
+        return this.lastFlushTime;
+    }
+
+    /**
+     * Returns the duration of the slowest flush in milliseconds.
+     *
+     * @return duration of the slowest flush in milliseconds
+     */
+    public long getMaxFlushTime() {
+        return this.maxFlushTime;
+    }
+
+    /**
+     * Returns the average duration of the flushes in milliseconds.
+     *
+     * @return average duration of the flushes in milliseconds
+     */
+    public long getAverageFlushTime() {
+        long count = this.flushCount + this.failedFlushCount;
+        return count == 0 ? 0 : this.totalFlushTime / count;
+    }
+
+    /**
+     * Returns the size of the journal in bytes.
+     *
+     * @return size of the journal in bytes
+     */
+    public long getJournalSize() {
+        return this.journal == null ? 0 : this.journal.size();
+    }
+
+    /**
+     * Returns the number of events that could be saved neither to the
+     * database nor to the journal.
+     *
+     * @return number of lost events
+     */
+    public long getLostCount() {
+        return this.lostCount;
+    }
+
+    /**
+     * Monitors the search event statistics queue and saves events to the db
+     * in batches when they become available.
      */
     @Override
     public void run() {
-        logger.info("StatisticsQueueProcessor started. Failed attempts max limit set to " + this.failedAttemptsMaxLimit + ".");
-        SearchEvent event;
-        while ((event = queue.take()) != null && !Thread.currentThread().isInterrupted()) {
-            if (!dbService.save(event)) {
-                // Saving the event failed -> increase failedAttemptsCount
+        logger.info("StatisticsQueueProcessor started. Failed attempts max limit set to " + this.failedAttemptsMaxLimit + ". Batch size set to " + this.batchSize + ".");
+        List<SearchEvent> batch = new ArrayList<SearchEvent>(this.batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            batch.clear();
+            if (queue.drainTo(batch, this.batchSize, this.maxWait) == 0) {
+                continue;
+            }
+            if (!this.flush(batch)) {
+                // Saving the events failed -> increase failedAttemptsCount
                 this.failedAttemptsCount++;
-                logger.error("Saving the search event to the database failed! Failed attempts count current value: " + this.failedAttemptsCount);
-                // Add the event to the recovery queue so that it can be
+                logger.error("Saving " + batch.size() + " search events to the database failed! Failed attempts count current value: " + this.failedAttemptsCount);
+                // Add the events to the journal so that they can be
                 // accessed when the db starts working again
-                this.recoveryQueue.add(event);
-                logger.info("SearchEvent added to the recovery queue. Current queue size: " + this.recoveryQueue.size());
+                if (this.journal != null && this.journal.append(batch)) {
+                    logger.info(batch.size() + " search events added to the journal.");
+                } else {
+                    this.lostCount += batch.size();
+                    logger.error(batch.size() + " search events lost! Lost events count current value: " + this.lostCount);
+                }
                 // If failedAttemptsCount equals to failedAttemptsMaxLimit notify admin
                 if (this.failedAttemptsCount == this.failedAttemptsMaxLimit) {
                     logger.error("Failed attempts max limit reached! Notify admin!");
@@ -122,37 +275,50 @@ public class StatisticsQueueProcessor implements Runnable {
                     }
                 }
             } else {
-                // Try to recover recovery queue if queue not empty
-                if (!this.recoveryQueue.isEmpty()) {
-                    logger.info("Trying to save " + this.recoveryQueue.size() + " search events from the recovery queue.");
-                    // Create new queue for events that can not be added to the db
-                    List<SearchEvent> newQueue = new ArrayList<SearchEvent>();
-                    // Loop through the queue
-                    for (SearchEvent temp : this.recoveryQueue) {
-                        // If adding the event fails, add it to the new queue
-                        if (!this.dbService.save(temp)) {
-                            logger.error("Saving search event from the recovery queue failed!");
-                            newQueue.add(temp);
-                        }
-                    }
-                    // Replace the old queue with the new one
-                    this.recoveryQueue = newQueue;
-                    logger.info("Handling recovery queue done. Current recovery queue size : " + this.recoveryQueue.size());
-
-                    // If failedAttemptsMaxLimit has been reached, admin has been notified about the problem.
-                    // Notify admin about the recovery.
-                    if (this.failedAttemptsCount >= this.failedAttemptsMaxLimit) {
-                        logger.info("Notify admin about the recovery.");
-                        if (this.mailService.send(EmailMessageType.LOGGER_ERROR_RECOVERY)) {
-                            logger.info("Admin was succesfully notified!");
-                        } else {
-                            logger.error("Failed to notify admin!");
-                        }
+                // If failedAttemptsMaxLimit has been reached, admin has been notified about the problem.
+                // Notify admin about the recovery.
+                if (this.failedAttemptsCount >= this.failedAttemptsMaxLimit && this.mailService != null) {
+                    logger.info("Notify admin about the recovery.");
+                    if (this.mailService.send(EmailMessageType.LOGGER_ERROR_RECOVERY)) {
+                        logger.info("Admin was succesfully notified!");
+                    } else {
+                        logger.error("Failed to notify admin!");
                     }
                 }
-                // Saving the event succeedeed -> reset failedAttemptsCount
+                // Saving the events succeedeed -> reset failedAttemptsCount
                 this.failedAttemptsCount = 0;
             }
         }
     }
+
+    /**
+     * Saves the given events to the database in a single transaction and
+     * updates the flush statistics.
+     *
+     * @param events events to be saved
+     * @return true if and only if all the events were saved; otherwise false
+     */
+    private boolean flush(List<SearchEvent> events) {
+        long start = System.currentTimeMillis();
+        boolean success;
+        try {
+            success = this.dbService.save(events);
+        } catch (RuntimeException e) {
+            logger.error(e.getMessage(), e);
+            success = false;
+        }
+        long time = System.currentTimeMillis() - start;
+        this.lastFlushTime = time;
+        this.totalFlushTime += time;
+        if (time > this.maxFlushTime) {
+            this.maxFlushTime = time;
+        }
+        if (success) {
+            this.flushCount++;
+            this.savedCount += events.size();
+        } else {
+            this.failedFlushCount++;
+        }
+        return success;
+    }
 }
@@ -584,6 +584,75 @@ public class BasicTagParser implements TemplateParser {
         return lineOrg;
     }
 
+    /**
+     * Parses the given pre-parsed template line, replaces all the markup
+     * codes with corresponding information and appends the result to the
+     * given buffer. This class doesn't use the pre-parsed tags, but parses the
+     * original line.
+     *
+     * @param line template line to be parsed
+     * @param lang language of the UI
+     * @param shelf Shelf object to which the line is related
+     * @param callno call number of the location
+     * @param loader Loader object responsible of loading the template file
+     * @param out buffer where the parsed line is appended
+     */
+    public void parse(TemplateLine line, String lang, Shelf shelf, String callno, Loader loader, StringBuilder out) {
+        out.append(parse(line.getText(), lang, shelf, callno, loader));
+    }
+
+    /**
+     * Parses the given pre-parsed template line, replaces all the markup
+     * codes with corresponding information and appends the result to the
+     * given buffer. This class doesn't use the pre-parsed tags, but parses the
+     * original line.
+     *
+     * @param line template line to be parsed
+     * @param lang language of the UI
+     * @param collection LibraryCollection object to which the line is related
+     * @param callno call number of the location
+     * @param loader Loader object responsible of loading the template file
+     * @param out buffer where the parsed line is appended
+     */
+    public void parse(TemplateLine line, String lang, LibraryCollection collection, String callno, Loader loader, StringBuilder out) {
+        out.append(parse(line.getText(), lang, collection, callno, loader));
+    }
+
+    /**
+     * Parses the given pre-parsed template line, replaces all the markup
+     * codes with corresponding information and appends the result to the
+     * given buffer. This class doesn't use the pre-parsed tags, but parses the
+     * original line.
+     *
+     * @param line template line to be parsed
+     * @param lang language of the UI
+     * @param library Library object to which the line is related
+     * @param callno call number of the location
+     * @param loader Loader object responsible of loading the template file
+     * @param out buffer where the parsed line is appended
+     */
+    public void parse(TemplateLine line, String lang, Library library, String callno, Loader loader, StringBuilder out) {
+        out.append(parse(line.getText(), lang, library, callno, loader));
+    }
+
+    /**
+     * Parses the given pre-parsed template line, replaces all the markup
+     * codes with corresponding information and appends the result to the
+     * given buffer. This class doesn't use the pre-parsed tags, but parses the
+     * original line.
+     *
+     * @param line template line to be parsed
+     * @param lang language of the UI
+     * @param status status of the item
+     * @param callno call number of the location
+     * @param loader Loader object responsible of loading the template file
+     * @param owner owner code of the library
+     * @param out buffer where the parsed line is appended
+     */
+    public void parse(TemplateLine line, String lang, String status, String callno, Loader loader, String owner, StringBuilder out) {
+        out.append(parse(line.getText(), lang, status, callno, loader, owner));
+    }
+
     /**
      * Returns the name of the file which is included into another file. If a
      * filename can not be found, null is returned instead.
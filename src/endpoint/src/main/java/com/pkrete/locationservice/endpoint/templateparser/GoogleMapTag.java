@@ -0,0 +1,115 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.templateparser;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class renders the GOOGLE_MAP tag that embeds a Google map of the
+ * given address into a template. The tag doesn't depend on the location that
+ * is shown, so {@link TemplateLine TemplateLine} renders it once when the
+ * line is parsed.
+ *
+ * @author Petteri Kivimäki
+ */
+final class GoogleMapTag {
+
+    /* $GOOGLE_MAP('address', '14', 'link label', 'fi') */
+    private static final Pattern GOOGLE_MAP_PATTERN0 = Pattern.compile(".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](\\d{1,2})[\"\']\\s*,\\s*[\"\'](.{3,})[\"\']\\s*,\\s*[\"\']([a-z]{2})[\"\']\\s*\\)");
+    /* $GOOGLE_MAP('address', '14', 'link label') */
+    private static final Pattern GOOGLE_MAP_PATTERN1 = Pattern.compile(".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](\\d{1,2})[\"\']\\s*,\\s*[\"\'](.{3,})[\"\']\\s*\\)");
+    /* $GOOGLE_MAP('address', '14', 'fi') */
+    private static final Pattern GOOGLE_MAP_PATTERN2 = Pattern.compile(".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](\\d{1,2})[\"\']\\s*,\\s*[\"\']([a-z]{2})[\"\']\\s*\\)");
+    /* $GOOGLE_MAP('address', '14') */
+    private static final Pattern GOOGLE_MAP_PATTERN3 = Pattern.compile(".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](\\d{1,2})[\"\']\\s*\\)");
+    /* $GOOGLE_MAP('address', 'fi') */
+    private static final Pattern GOOGLE_MAP_PATTERN4 = Pattern.compile(".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\']([a-z]{2})[\"\']\\s*\\)");
+    /* $GOOGLE_MAP('address', 'label') */
+    private static final Pattern GOOGLE_MAP_PATTERN5 = Pattern.compile(".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](.{3,})[\"\']\\s*\\)");
+    /* $GOOGLE_MAP('address') */
+    private static final Pattern GOOGLE_MAP_PATTERN6 = Pattern.compile(".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*\\)");
+
+    private GoogleMapTag() {
+    }
+
+    /**
+     * Replaces the GOOGLE_MAP tag in the given line with an iframe that
+     * contains the map. If the arguments of the tag can not be parsed, an
+     * empty string is returned.
+     *
+     * @param line template line without comment markers
+     * @return line with the tag replaced
+     */
+    static String render(String line) {
+        StringBuilder iframe = new StringBuilder();
+        StringBuilder url = new StringBuilder();
+        StringBuilder link = new StringBuilder();
+        String baseUrl = "https://maps.google.com/?q=";
+
+        Matcher m = GOOGLE_MAP_PATTERN0.matcher(line);
+
+        if (m.find()) {
+            url.append(baseUrl).append(m.group(1)).append("&z=").append(m.group(2)).append("&hl=").append(m.group(4));
+            link.append("<div class=\"google_map_link_container\"><a class=\"google_map_link\" href=\"").append(url).append("\" target=\"new\">").append(m.group(3)).append("</a></div>");
+            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(url).append("&output=embed\"></iframe>").append(link);
+            return GOOGLE_MAP_PATTERN0.matcher(line).replaceAll(iframe.toString());
+        }
+
+        m = GOOGLE_MAP_PATTERN1.matcher(line);
+        if (m.find()) {
+            url.append(baseUrl).append(m.group(1)).append("&z=").append(m.group(2));
+            link.append("<div class=\"google_map_link_container\"><a class=\"google_map_link\" href=\"").append(url).append("\" target=\"new\">").append(m.group(3)).append("</a></div>");
+            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(url).append("&output=embed\"></iframe>").append(link);
+            return GOOGLE_MAP_PATTERN1.matcher(line).replaceAll(iframe.toString());
+        }
+
+        m = GOOGLE_MAP_PATTERN2.matcher(line);
+        if (m.find()) {
+            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(baseUrl).append(m.group(1)).append("&z=").append(m.group(2)).append("&hl=").append(m.group(3)).append("&output=embed\"></iframe>");
+            return GOOGLE_MAP_PATTERN2.matcher(line).replaceAll(iframe.toString());
+        }
+
+        m = GOOGLE_MAP_PATTERN3.matcher(line);
+        if (m.find()) {
+            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(baseUrl).append(m.group(1)).append("&z=").append(m.group(2)).append("&output=embed\"></iframe>");
+            return GOOGLE_MAP_PATTERN3.matcher(line).replaceAll(iframe.toString());
+        }
+
+        m = GOOGLE_MAP_PATTERN4.matcher(line);
+        if (m.find()) {
+            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(baseUrl).append(m.group(1)).append("&hl=").append(m.group(2)).append("&output=embed\"></iframe>");
+            return GOOGLE_MAP_PATTERN4.matcher(line).replaceAll(iframe.toString());
+        }
+
+        m = GOOGLE_MAP_PATTERN5.matcher(line);
+        if (m.find()) {
+            url.append(baseUrl).append(m.group(1));
+            link.append("<div class=\"google_map_link_container\"><a class=\"google_map_link\" href=\"").append(url).append("\" target=\"new\">").append(m.group(2)).append("</a></div>");
+            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(url).append("&output=embed\"></iframe>").append(link);
+            return GOOGLE_MAP_PATTERN5.matcher(line).replaceAll(iframe.toString());
+        }
+
+        m = GOOGLE_MAP_PATTERN6.matcher(line);
+        if (m.find()) {
+            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(baseUrl).append(m.group(1)).append("&output=embed\"></iframe>");
+            return GOOGLE_MAP_PATTERN6.matcher(line).replaceAll(iframe.toString());
+        }
+        return "";
+    }
+}
@@ -32,8 +32,6 @@ import com.pkrete.locationservice.endpoint.model.subjectmatter.SubjectMatter;
 import java.io.*;
 import java.net.URLEncoder;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,9 +46,9 @@ import org.slf4j.LoggerFactory;
  * templates.
  *
  * This class is optimized version of {@link BasicTagParser BasicTagParser}
- * class. Both classes do lot of String concatenation, and BasciTagParser uses
- * String objects and this class StringBuilder objects. This class also contains
- * some minor refactoring.
+ * class. The template lines are parsed in advance into
+ * {@link TemplateLine TemplateLine} objects, and the populated lines are
+ * appended to a single output buffer without regular expressions.
  *
  * @author Petteri Kivimäki
  */
@@ -70,196 +68,179 @@ public class OptimizedTagParser implements TemplateParser {
      * @return parsed string
      */
     public String parse(String line, String lang, Shelf shelf, String callno, Loader loader) {
-        if (!line.matches(".*<!--.*\\$.*-->.*")) {
-            return line;
+        StringBuilder out = new StringBuilder();
+        parse(new TemplateLine(line), lang, shelf, callno, loader, out);
+        return out.toString();
+    }
+
+    /**
+     * Parses the given pre-parsed template line, replaces all the markup
+     * codes with corresponding information and appends the result to the
+     * given buffer.
+     *
+     * @param template template line to be parsed
+     * @param lang language of the UI
+     * @param shelf Shelf object to which the string is related
+     * @param callno call number of the location
+     * @param loader Loader object responsible of loading the template file
+     * @param out buffer where the parsed line is appended
+     */
+    public void parse(TemplateLine template, String lang, Shelf shelf, String callno, Loader loader, StringBuilder out) {
+        if (!template.isDynamic()) {
+            out.append(template.getText());
+            return;
         }
 
-        if (line.matches(".*<!--.*\\$DEBUG.*-->.*")) {
-            StringBuilder text = new StringBuilder();
-            text.append("<b>DEBUG INFO</b><br /><br />\n");
+        if (template.isDebug()) {
+            out.append("<b>DEBUG INFO</b><br /><br />\n");
             for (java.util.Map.Entry<String, String> entry : this.getShelfTags().entrySet()) {
-                text.append(entry.getKey()).append(" : ");
-                text.append(parse(entry.getValue(), lang, shelf, callno, loader));
-                text.append("<br />\n");
+                out.append(entry.getKey()).append(" : ");
+                parse(new TemplateLine(entry.getValue()), lang, shelf, callno, loader, out);
+                out.append("<br />\n");
             }
-            return text.toString();
+            return;
         }
 
-        String lineOrg = line;
-
-        line = line.replaceAll("(<!--)|(-->)", "");
-
-        if (line.matches(".*\\$LINK\\(.+\\).*")) {
+        if (template.has(TemplateTag.LINK)) {
             // $LINK('fi', 'Suomi')
-            Pattern regex = Pattern.compile(".*\\$LINK\\(\\s*[\"\'](\\w+)[\"\']\\s*,\\s*[\"\'](.+)[\"\']\\s*\\)");
-            Matcher m = regex.matcher(line);
-            if (m.find()) {
-                StringBuilder url = new StringBuilder();
-                url.append("LocationHandler?callno=").append(encode(callno));
-                url.append("&status=0&lang=").append(m.group(1));
-                url.append("&owner=").append(shelf.getOwner().getCode());
-                url.append("&id=").append(shelf.getLocationId());
+            String[] args = template.getArguments(TemplateTag.LINK);
+            if (args != null) {
+                StringBuilder link = new StringBuilder();
+                link.append("<a href=\"LocationHandler?callno=").append(encode(callno));
+                link.append("&status=0&lang=").append(args[0]);
+                link.append("&owner=").append(shelf.getOwner().getCode());
+                link.append("&id=").append(shelf.getLocationId());
                 if (shelf.getCollection().hasCollectionCode()) {
-                    url.append("&collection=").append(shelf.getCollection().getCollectionCode());
+                    link.append("&collection=").append(shelf.getCollection().getCollectionCode());
                 }
-                StringBuilder link = new StringBuilder();
-                link.append("<a href=\"").append(url).append("\">").append(m.group(2)).append("</a>\n");
-                return line.replaceAll("\\$LINK\\(.+\\)", link.toString());
+                link.append("\">").append(args[1]).append("</a>\n");
+                template.render(TemplateTag.LINK, link, out);
+                return;
             }
         }
 
-        if (line.matches(".*\\$LINK_COLLECTION.*")) {
-            StringBuilder url = new StringBuilder();
-            url.append("LocationHandler?callno=").append(encode(shelf.getCollection().getCallNo()));
-            url.append("&status=0&lang=").append(lang);
-            url.append("&owner=").append(shelf.getOwner().getCode());
+        if (template.has(TemplateTag.LINK_COLLECTION)) {
+            StringBuilder link = new StringBuilder();
+            link.append("<a href=\"LocationHandler?callno=").append(encode(shelf.getCollection().getCallNo()));
+            link.append("&status=0&lang=").append(lang);
+            link.append("&owner=").append(shelf.getOwner().getCode());
             if (shelf.getCollection().hasCollectionCode()) {
-                url.append("&collection=").append(shelf.getCollection().getCollectionCode());
+                link.append("&collection=").append(shelf.getCollection().getCollectionCode());
             }
-            url.append("&id=").append(shelf.getCollection().getLocationId());
+            link.append("&id=").append(shelf.getCollection().getLocationId());
             String label = shelf.getCollection().getLocationCode();
             // $LINK_COLLECTION('Collection:')
-            Pattern regex = Pattern.compile(".*\\$LINK_COLLECTION\\(\\s*[\"\'](.+)[\"\']\\s*\\)");
-            Matcher m = regex.matcher(line);
-            if (m.find()) {
-                label = m.group(1);
+            String[] args = template.getArguments(TemplateTag.LINK_COLLECTION);
+            if (args != null) {
+                label = args[0];
             }
-            StringBuilder link = new StringBuilder();
-            link.append("<a href=\"").append(url).append("\">").append(label).append("</a>\n");
-            return line.replaceAll("\\$LINK_COLLECTION(\\(.+\\)|)", link.toString());
+            link.append("\">").append(label).append("</a>\n");
+            template.render(TemplateTag.LINK_COLLECTION, link, out);
+            return;
         }
 
-        if (line.matches(".*\\$INCLUDE\\(.+\\).*")) {
-            String template = parseIncludeFileName(line, lang);
-            template = loader.getTemplateOtherPath(template, lang, shelf.getOwner().getCode());
-            if (template != null) {
-                return loader.loadTemplate(lang, shelf, callno, template);
+        if (template.has(TemplateTag.INCLUDE)) {
+            String path = parseIncludeFileName(template);
+            path = loader.getTemplateOtherPath(path, lang, shelf.getOwner().getCode());
+            if (path != null) {
+                out.append(loader.loadTemplate(lang, shelf, callno, path));
             }
-            return "";
+            return;
         }
 
-        if (line.matches(".*\\$CALLNO.*")) {
-            return line.replace("$CALLNO", shelf.getCallNo());
+        if (template.has(TemplateTag.CALLNO)) {
+            template.render(TemplateTag.CALLNO, shelf.getCallNo(), out);
+            return;
         }
 
-        if (line.matches(".*\\$SHELF_LOCATION_CODE.*")) {
-            return line.replace("$SHELF_LOCATION_CODE", shelf.getLocationCode());
+        if (template.has(TemplateTag.SHELF_LOCATION_CODE)) {
+            template.render(TemplateTag.SHELF_LOCATION_CODE, shelf.getLocationCode(), out);
+            return;
         }
 
-        if (line.matches(".*\\$MAIN_WORD.*")) {
+        if (template.has(TemplateTag.MAIN_WORD)) {
             String callNo = shelf.getMainWord(callno);
-            if (callNo.length() == 0) {
-                return "";
+            if (callNo.length() > 0) {
+                template.render(TemplateTag.MAIN_WORD, callNo, out);
             }
-            return line.replace("$MAIN_WORD", callNo);
+            return;
         }
 
-        if (line.matches(".*\\$SHELF_NUMBER.*")) {
+        if (template.has(TemplateTag.SHELF_NUMBER)) {
             String number = shelf.getShelfNumber();
-            if (number.isEmpty()) {
-                return "";
+            if (!number.isEmpty()) {
+                template.render(TemplateTag.SHELF_NUMBER, number, out);
             }
-            return line.replace("$SHELF_NUMBER", number);
+            return;
         }
 
-        if (line.matches(".*\\$SHELF_FLOOR.*")) {
+        if (template.has(TemplateTag.SHELF_FLOOR)) {
             String floor = shelf.getFloor();
-            if (floor.isEmpty()) {
-                return "";
+            if (!floor.isEmpty()) {
+                template.render(TemplateTag.SHELF_FLOOR, floor, out);
             }
-            return line.replace("$SHELF_FLOOR", floor);
+            return;
         }
 
-        if (line.matches(".*\\$SHELF_SUBJECT.*")) {
-            String delimiter = ", ";
-            String end = "";
+        if (template.has(TemplateTag.SHELF_SUBJECT)) {
             // $SHELF_SUBJECT(', ', '.')
-            Pattern regex = Pattern.compile(".*\\$SHELF_SUBJECT\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](.+)[\"\']\\s*\\)");
-            Matcher m = regex.matcher(line);
-            if (m.find()) {
-                delimiter = m.group(1);
-                end = m.group(2);
-            }
-
-            if (!shelf.getSubjectMatters().isEmpty()) {
-                StringBuilder subjects = new StringBuilder();
-                for (SubjectMatter subject : shelf.getSubjectMatters()) {
-                    if (subject.getLanguage().getCode().equals(lang)) {
-                        subjects.append("<span class=\"subject_matter_shelf\">");
-                        subjects.append(subject.getIndexTerm());
-                        subjects.append("</span>");
-                        subjects.append(delimiter);
-                    }
-                }
-                if (subjects.length() > 0) {
-                    String result = subjects.toString();
-                    delimiter += "$";
-                    result = result.replaceAll(delimiter, end);
-                    return line.replaceAll("\\$SHELF_SUBJECT(\\((.+)\\)|)", result);
-                }
+            CharSequence subjects = buildSubjectMatters(shelf, lang, "subject_matter_shelf", template.getArguments(TemplateTag.SHELF_SUBJECT));
+            if (subjects != null) {
+                template.render(TemplateTag.SHELF_SUBJECT, subjects, out);
             }
-            return "";
+            return;
         }
 
-        if (line.matches(".*\\$SHELF_DESCRIPTION.*")) {
+        if (template.has(TemplateTag.SHELF_DESCRIPTION)) {
             for (Description desc : shelf.getDescriptions()) {
                 if (desc.getLanguage().getCode().equals(lang)) {
-                    return line.replace("$SHELF_DESCRIPTION", desc.getDescription());
+                    template.render(TemplateTag.SHELF_DESCRIPTION, desc.getDescription(), out);
+                    return;
                 }
             }
-            return "";
+            return;
         }
 
-        if (line.matches(".*\\$SHELF_NOTE.*")) {
+        if (template.has(TemplateTag.SHELF_NOTE)) {
             for (Note note : shelf.getNotes()) {
                 if (note.getLanguage().getCode().equals(lang)) {
-                    return line.replace("$SHELF_NOTE", note.getNote());
+                    template.render(TemplateTag.SHELF_NOTE, note.getNote(), out);
+                    return;
                 }
             }
-            return "";
+            return;
         }
 
-        if (line.matches(".*\\$SHELF_MAP.*")) {
+        if (template.has(TemplateTag.SHELF_MAP)) {
             Map map = shelf.getMap();
             if (map == null) {
-                return "";
+                return;
             }
             StringBuilder mapTag = new StringBuilder();
             if (map.isGoogleMap()) {
                 /* $SHELF_MAP("Link label") */
-                Pattern regex = Pattern.compile(".*\\$SHELF_MAP\\(\\s*[\"\'](.+)[\"\']\\s*\\)");
-                StringBuilder link = new StringBuilder("");
-                Matcher m = regex.matcher(line);
-                if (m.find()) {
-                    link.append("<div class=\"google_map_link_container\"><a class=\"google_map_link\" href=\"");
-                    link.append(map.getGoogleMapLinkUrl()).append("\" target=\"new\">");
-                    link.append(m.group(1)).append("</a></div>");
-                }
-                mapTag.append("<iframe class=\"google_map\" id=\"map_shelf\" src=\"").append(map.getGoogleMapEmbedUrl()).append("\"></iframe>").append(link);
-                return line.replaceAll("\\$SHELF_MAP(\\(.+\\)|)", mapTag.toString());
+                appendGoogleMap(mapTag, map, "map_shelf", template.getArguments(TemplateTag.SHELF_MAP));
+            } else {
+                mapTag.append("<img class=\"map\" id=\"map_shelf\" src=\"ImageCreator?");
+                mapTag.append("owner=").append(shelf.getOwner().getCode());
+                mapTag.append("&locationId=").append(shelf.getLocationId());
+                mapTag.append("&lang=").append(lang);
+                mapTag.append("\" usemap=\"#shelf_coords\" />\n");
+                buildCoordinatesMap(shelf, "shelf_coords", mapTag);
             }
-            mapTag.append("<img class=\"map\" id=\"map_shelf\" src=\"ImageCreator?");
-            mapTag.append("owner=").append(shelf.getOwner().getCode());
-            mapTag.append("&locationId=").append(shelf.getLocationId());
-            mapTag.append("&lang=").append(lang);
-            mapTag.append("\" usemap=\"#shelf_coords\" />\n").append(buildCoordinatesMap(shelf));
-            return line.replaceAll("\\$SHELF_MAP(\\(.+\\)|)", mapTag.toString());
+            template.render(TemplateTag.SHELF_MAP, mapTag, out);
+            return;
         }
 
-        if (line.matches(".*\\$SHELF_IMAGE.*")) {
+        if (template.has(TemplateTag.SHELF_IMAGE)) {
             Image img = shelf.getImage();
-            if (img == null) {
-                return "";
+            if (img != null) {
+                template.render(TemplateTag.SHELF_IMAGE, buildImage(img, "img_shelf", shelf.getOwner().getCode()), out);
             }
-            StringBuilder imgTag = new StringBuilder("<img class=\"image\" id=\"img_shelf\" src=\"");
-            if (!img.getIsExternal()) {
-                imgTag.append(Settings.getInstance().getImagesPath(shelf.getOwner().getCode()));
-            }
-            imgTag.append(img.getPath()).append("\" />");
-            return line.replace("$SHELF_IMAGE", imgTag.toString());
+            return;
         }
 
-        return parse(lineOrg, lang, shelf.getCollection(), callno, loader);
+        parse(template, lang, shelf.getCollection(), callno, loader, out);
     }
 
     /**
@@ -274,193 +255,176 @@ public class OptimizedTagParser implements TemplateParser {
      * @return parsed string
      */
     public String parse(String line, String lang, LibraryCollection collection, String callno, Loader loader) {
-        if (!line.matches(".*<!--.*\\$.*-->.*")) {
-            return line;
+        StringBuilder out = new StringBuilder();
+        parse(new TemplateLine(line), lang, collection, callno, loader, out);
+        return out.toString();
+    }
+
+    /**
+     * Parses the given pre-parsed template line, replaces all the markup
+     * codes with corresponding information and appends the result to the
+     * given buffer.
+     *
+     * @param template template line to be parsed
+     * @param lang language of the UI
+     * @param collection LibraryCollection object to which the string is related
+     * @param callno call number of the location
+     * @param loader Loader object responsible of loading the template file
+     * @param out buffer where the parsed line is appended
+     */
+    public void parse(TemplateLine template, String lang, LibraryCollection collection, String callno, Loader loader, StringBuilder out) {
+        if (!template.isDynamic()) {
+            out.append(template.getText());
+            return;
         }
 
-        if (line.matches(".*<!--.*\\$DEBUG.*-->.*")) {
-            StringBuilder text = new StringBuilder();
-            text.append("<b>DEBUG INFO</b><br /><br />\n");
+        if (template.isDebug()) {
+            out.append("<b>DEBUG INFO</b><br /><br />\n");
             for (java.util.Map.Entry<String, String> entry : this.getCollectionTags().entrySet()) {
-                text.append(entry.getKey()).append(" : ");
-                text.append(parse(entry.getValue(), lang, collection, callno, loader));
-                text.append("<br />\n");
+                out.append(entry.getKey()).append(" : ");
+                parse(new TemplateLine(entry.getValue()), lang, collection, callno, loader, out);
+                out.append("<br />\n");
             }
-            return text.toString();
+            return;
         }
 
-        String lineOrg = line;
-
-        line = line.replaceAll("(<!--)|(-->)", "");
-
-        if (line.matches(".*\\$LINK\\(.+\\).*")) {
-            Pattern regex = Pattern.compile(".*\\$LINK\\(\\s*[\"\'](\\w+)[\"\']\\s*,\\s*[\"\'](.+)[\"\']\\s*\\)");
-            Matcher m = regex.matcher(line);
-            if (m.find()) {
-                StringBuilder url = new StringBuilder();
-                url.append("LocationHandler?callno=").append(encode(callno));
-                url.append("&status=0&lang=").append(m.group(1));
-                url.append("&owner=").append(collection.getOwner().getCode());
-                url.append("&id=").append(collection.getLocationId());
+        if (template.has(TemplateTag.LINK)) {
+            String[] args = template.getArguments(TemplateTag.LINK);
+            if (args != null) {
+                StringBuilder link = new StringBuilder();
+                link.append("<a href=\"LocationHandler?callno=").append(encode(callno));
+                link.append("&status=0&lang=").append(args[0]);
+                link.append("&owner=").append(collection.getOwner().getCode());
+                link.append("&id=").append(collection.getLocationId());
 
                 if (collection.hasCollectionCode()) {
-                    url.append("&collection=").append(collection.getCollectionCode());
+                    link.append("&collection=").append(collection.getCollectionCode());
                 }
-                StringBuilder link = new StringBuilder();
-                link.append("<a href=\"").append(url).append("\">").append(m.group(2)).append("</a>\n");
-                return line.replaceAll("\\$LINK\\(.+\\)", link.toString());
+                link.append("\">").append(args[1]).append("</a>\n");
+                template.render(TemplateTag.LINK, link, out);
+                return;
             }
         }
 
-        if (line.matches(".*\\$LINK_LIBRARY.*")) {
-            StringBuilder url = new StringBuilder();
-            url.append("LocationHandler?callno=").append(encode(collection.getLibrary().getCallNo()));
-            url.append("&status=0&lang=").append(lang);
-            url.append("&owner=").append(collection.getOwner().getCode());
-            url.append("&id=").append(collection.getLibrary().getLocationId());
+        if (template.has(TemplateTag.LINK_LIBRARY)) {
+            StringBuilder link = new StringBuilder();
+            link.append("<a href=\"LocationHandler?callno=").append(encode(collection.getLibrary().getCallNo()));
+            link.append("&status=0&lang=").append(lang);
+            link.append("&owner=").append(collection.getOwner().getCode());
+            link.append("&id=").append(collection.getLibrary().getLocationId());
 
             String label = collection.getLibrary().getLocationCode();
             // $LINK_LIBRARY('Kirjasto:')
-            Pattern regex = Pattern.compile(".*\\$LINK_LIBRARY\\(\\s*[\"\'](.+)[\"\']\\s*\\)");
-            Matcher m = regex.matcher(line);
-            if (m.find()) {
-                label = m.group(1);
+            String[] args = template.getArguments(TemplateTag.LINK_LIBRARY);
+            if (args != null) {
+                label = args[0];
             }
-            StringBuilder link = new StringBuilder();
-            link.append("<a href=\"").append(url).append("\">").append(label).append("</a>\n");
-            return line.replaceAll("\\$LINK_LIBRARY(\\(.+\\)|)", link.toString());
+            link.append("\">").append(label).append("</a>\n");
+            template.render(TemplateTag.LINK_LIBRARY, link, out);
+            return;
         }
 
-        if (line.matches(".*\\$INCLUDE\\(.+\\).*")) {
-            String template = parseIncludeFileName(line, lang);
-            template = loader.getTemplateOtherPath(template, lang, collection.getOwner().getCode());
-            if (template != null) {
-                return loader.loadTemplate(lang, collection, callno, template);
+        if (template.has(TemplateTag.INCLUDE)) {
+            String path = parseIncludeFileName(template);
+            path = loader.getTemplateOtherPath(path, lang, collection.getOwner().getCode());
+            if (path != null) {
+                out.append(loader.loadTemplate(lang, collection, callno, path));
             }
-            return "";
+            return;
         }
 
-        if (line.matches(".*\\$CALLNO.*")) {
-            return line.replace("$CALLNO", collection.getCallNo());
+        if (template.has(TemplateTag.CALLNO)) {
+            template.render(TemplateTag.CALLNO, collection.getCallNo(), out);
+            return;
         }
 
-        if (line.matches(".*\\$MAIN_WORD.*")) {
+        if (template.has(TemplateTag.MAIN_WORD)) {
             String callNo = collection.getMainWord(callno);
-            if (callNo.length() == 0) {
-                return "";
+            if (callNo.length() > 0) {
+                template.render(TemplateTag.MAIN_WORD, callNo, out);
             }
-            return line.replace("$MAIN_WORD", callNo);
+            return;
         }
 
-        if (line.matches(".*\\$COLLECTION_LOCATION_CODE.*")) {
-            return line.replace("$COLLECTION_LOCATION_CODE", collection.getLocationCode());
+        if (template.has(TemplateTag.COLLECTION_LOCATION_CODE)) {
+            template.render(TemplateTag.COLLECTION_LOCATION_CODE, collection.getLocationCode(), out);
+            return;
         }
 
-        if (line.matches(".*\\$COLLECTION_SHELF_NUMBER.*")) {
+        if (template.has(TemplateTag.COLLECTION_SHELF_NUMBER)) {
             String number = collection.getShelfNumber();
-            if (number.isEmpty()) {
-                return "";
+            if (!number.isEmpty()) {
+                template.render(TemplateTag.COLLECTION_SHELF_NUMBER, number, out);
             }
-            return line.replace("$COLLECTION_SHELF_NUMBER", number);
+            return;
         }
 
-        if (line.matches(".*\\$COLLECTION_FLOOR.*")) {
+        if (template.has(TemplateTag.COLLECTION_FLOOR)) {
             String floor = collection.getFloor();
-            if (floor.isEmpty()) {
-                return "";
+            if (!floor.isEmpty()) {
+                template.render(TemplateTag.COLLECTION_FLOOR, floor, out);
             }
-            return line.replace("$COLLECTION_FLOOR", floor);
+            return;
         }
 
-        if (line.matches(".*\\$COLLECTION_SUBJECT.*")) {
-            String delimiter = ", ";
-            String end = "";
+        if (template.has(TemplateTag.COLLECTION_SUBJECT)) {
             // $COLLECTION_SUBJECT(', ', '.')
-            Pattern regex = Pattern.compile(".*\\$COLLECTION_SUBJECT\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](.+)[\"\']\\s*\\)");
-            Matcher m = regex.matcher(line);
-            if (m.find()) {
-                delimiter = m.group(1);
-                end = m.group(2);
-            }
-
-            if (!collection.getSubjectMatters().isEmpty()) {
-                StringBuilder subjects = new StringBuilder();
-                for (SubjectMatter subject : collection.getSubjectMatters()) {
-                    if (subject.getLanguage().getCode().equals(lang)) {
-                        subjects.append("<span class=\"subject_matter_collection\">");
-                        subjects.append(subject.getIndexTerm());
-                        subjects.append("</span>");
-                        subjects.append(delimiter);
-                    }
-                }
-                if (subjects.length() > 0) {
-                    String result = subjects.toString();
-                    delimiter += "$";
-                    result = result.replaceAll(delimiter, end);
-                    return line.replaceAll("\\$COLLECTION_SUBJECT(\\((.+)\\)|)", result);
-                }
+            CharSequence subjects = buildSubjectMatters(collection, lang, "subject_matter_collection", template.getArguments(TemplateTag.COLLECTION_SUBJECT));
+            if (subjects != null) {
+                template.render(TemplateTag.COLLECTION_SUBJECT, subjects, out);
             }
-            return "";
+            return;
         }
 
-        if (line.matches(".*\\$COLLECTION_DESCRIPTION.*")) {
+        if (template.has(TemplateTag.COLLECTION_DESCRIPTION)) {
             for (Description desc : collection.getDescriptions()) {
                 if (desc.getLanguage().getCode().equals(lang)) {
-                    return line.replace("$COLLECTION_DESCRIPTION", desc.getDescription());
+                    template.render(TemplateTag.COLLECTION_DESCRIPTION, desc.getDescription(), out);
+                    return;
                 }
             }
-            return "";
+            return;
         }
 
-        if (line.matches(".*\\$COLLECTION_NOTE.*")) {
+        if (template.has(TemplateTag.COLLECTION_NOTE)) {
             for (Note note : collection.getNotes()) {
                 if (note.getLanguage().getCode().equals(lang)) {
-                    return line.replace("$COLLECTION_NOTE", note.getNote());
+                    template.render(TemplateTag.COLLECTION_NOTE, note.getNote(), out);
+                    return;
                 }
             }
-            return "";
+            return;
         }
 
-        if (line.matches(".*\\$COLLECTION_MAP.*")) {
+        if (template.has(TemplateTag.COLLECTION_MAP)) {
             Map map = collection.getMap();
             if (map == null) {
-                return "";
+                return;
             }
             StringBuilder mapTag = new StringBuilder();
             if (map.isGoogleMap()) {
                 /* $COLLECTION_MAP("Link label") */
-                Pattern regex = Pattern.compile(".*\\$COLLECTION_MAP\\(\\s*[\"\'](.+)[\"\']\\s*\\)");
-                StringBuilder link = new StringBuilder("");
-                Matcher m = regex.matcher(line);
-                if (m.find()) {
-                    link.append("<div class=\"google_map_link_container\"><a class=\"google_map_link\" href=\"");
-                    link.append(map.getGoogleMapLinkUrl()).append("\" target=\"new\">");
-                    link.append(m.group(1)).append("</a></div>");
-                }
-                mapTag.append("<iframe class=\"google_map\" id=\"map_collection\" src=\"").append(map.getGoogleMapEmbedUrl()).append("\"></iframe>").append(link);
-                return line.replaceAll("\\$COLLECTION_MAP(\\(.+\\)|)", mapTag.toString());
+                appendGoogleMap(mapTag, map, "map_collection", template.getArguments(TemplateTag.COLLECTION_MAP));
+            } else {
+                mapTag.append("<img class=\"map\" id=\"map_collection\" src=\"ImageCreator?");
+                mapTag.append("owner=").append(collection.getOwner().getCode());
+                mapTag.append("&locationId=").append(collection.getLocationId());
+                mapTag.append("&lang=").append(lang);
+                mapTag.append("\" usemap=\"#collection_coords\" />\n");
+                buildCoordinatesMap(collection, "collection_coords", mapTag);
             }
-            mapTag.append("<img class=\"map\" id=\"map_collection\" src=\"ImageCreator?");
-            mapTag.append("owner=").append(collection.getOwner().getCode());
-            mapTag.append("&locationId=").append(collection.getLocationId());
-            mapTag.append("&lang=").append(lang);
-            mapTag.append("\" usemap=\"#collection_coords\" />\n").append(buildCoordinatesMap(collection));
-            return line.replaceAll("\\$COLLECTION_MAP(\\(.+\\)|)", mapTag.toString());
+            template.render(TemplateTag.COLLECTION_MAP, mapTag, out);
+            return;
         }
 
-        if (line.matches(".*\\$COLLECTION_IMAGE.*")) {
+        if (template.has(TemplateTag.COLLECTION_IMAGE)) {
             Image img = collection.getImage();
-            if (img == null) {
-                return "";
-            }
-            StringBuilder imgTag = new StringBuilder("<img class=\"image\" id=\"img_collection\" src=\"");
-            if (!img.getIsExternal()) {
-                imgTag.append(Settings.getInstance().getImagesPath(collection.getOwner().getCode()));
+            if (img != null) {
+                template.render(TemplateTag.COLLECTION_IMAGE, buildImage(img, "img_collection", collection.getOwner().getCode()), out);
             }
-            imgTag.append(img.getPath()).append("\" />");
-            return line.replace("$COLLECTION_IMAGE", imgTag.toString());
+            return;
         }
-        return parse(lineOrg, lang, collection.getLibrary(), callno, loader);
+        parse(template, lang, collection.getLibrary(), callno, loader, out);
     }
 
     /**
@@ -475,128 +439,134 @@ public class OptimizedTagParser implements TemplateParser {
      * @return parsed string
      */
     public String parse(String line, String lang, Library library, String callno, Loader loader) {
-        if (!line.matches(".*<!--.*\\$.*-->.*")) {
-            return line;
+        StringBuilder out = new StringBuilder();
+        parse(new TemplateLine(line), lang, library, callno, loader, out);
+        return out.toString();
+    }
+
+    /**
+     * Parses the given pre-parsed template line, replaces all the markup
+     * codes with corresponding information and appends the result to the
+     * given buffer.
+     *
+     * @param template template line to be parsed
+     * @param lang language of the UI
+     * @param library Library object to which the string is related
+     * @param callno call number of the location
+     * @param loader Loader object responsible of loading the template file
+     * @param out buffer where the parsed line is appended
+     */
+    public void parse(TemplateLine template, String lang, Library library, String callno, Loader loader, StringBuilder out) {
+        if (!template.isDynamic()) {
+            out.append(template.getText());
+            return;
         }
 
-        if (line.matches(".*<!--.*\\$DEBUG.*-->.*")) {
-            StringBuilder text = new StringBuilder();
-            text.append("<b>DEBUG INFO</b><br /><br />\n");
+        if (template.isDebug()) {
+            out.append("<b>DEBUG INFO</b><br /><br />\n");
             for (java.util.Map.Entry<String, String> entry : this.getLibraryTags().entrySet()) {
-                text.append(entry.getKey()).append(" : ");
-                text.append(parse(entry.getValue(), lang, library, callno, loader));
-                text.append("<br />\n");
+                out.append(entry.getKey()).append(" : ");
+                parse(new TemplateLine(entry.getValue()), lang, library, callno, loader, out);
+                out.append("<br />\n");
             }
-            return text.toString();
+            return;
         }
 
-        String lineOrg = line;
-
-        line = line.replaceAll("(<!--)|(-->)", "");
-
-        if (line.matches(".*\\$LINK\\(.+\\).*")) {
-            Pattern regex = Pattern.compile(".*\\$LINK\\(\\s*[\"\'](\\w+)[\"\']\\s*,\\s*[\"\'](.+)[\"\']\\s*\\)");
-            Matcher m = regex.matcher(line);
-            if (m.find()) {
-                StringBuilder url = new StringBuilder();
-                url.append("LocationHandler?callno=").append(encode(callno));
-                url.append("&status=0&lang=").append(m.group(1));
-                url.append("&owner=").append(library.getOwner().getCode());
-                url.append("&id=").append(library.getLocationId());
-
+        if (template.has(TemplateTag.LINK)) {
+            String[] args = template.getArguments(TemplateTag.LINK);
+            if (args != null) {
                 StringBuilder link = new StringBuilder();
-                link.append("<a href=\"").append(url).append("\">").append(m.group(2)).append("</a>\n");
-                return line.replaceAll("\\$LINK\\(.+\\)", link.toString());
+                link.append("<a href=\"LocationHandler?callno=").append(encode(callno));
+                link.append("&status=0&lang=").append(args[0]);
+                link.append("&owner=").append(library.getOwner().getCode());
+                link.append("&id=").append(library.getLocationId());
+                link.append("\">").append(args[1]).append("</a>\n");
+                template.render(TemplateTag.LINK, link, out);
+                return;
             }
         }
 
-        if (line.matches(".*\\$INCLUDE\\(.+\\).*")) {
-            String template = parseIncludeFileName(line, lang);
-            template = loader.getTemplateOtherPath(template, lang, library.getOwner().getCode());
-            if (template != null) {
-                return loader.loadTemplate(lang, library, callno, template);
+        if (template.has(TemplateTag.INCLUDE)) {
+            String path = parseIncludeFileName(template);
+            path = loader.getTemplateOtherPath(path, lang, library.getOwner().getCode());
+            if (path != null) {
+                out.append(loader.loadTemplate(lang, library, callno, path));
             }
-            return "";
+            return;
         }
 
-        if (line.matches(".*\\$CALLNO.*")) {
-            return line.replace("$CALLNO", library.getCallNo());
+        if (template.has(TemplateTag.CALLNO)) {
+            template.render(TemplateTag.CALLNO, library.getCallNo(), out);
+            return;
         }
 
-        if (line.matches(".*\\$LIBRARY_LOCATION_CODE.*")) {
-            return line.replace("$LIBRARY_LOCATION_CODE", library.getLocationCode());
+        if (template.has(TemplateTag.LIBRARY_LOCATION_CODE)) {
+            template.render(TemplateTag.LIBRARY_LOCATION_CODE, library.getLocationCode(), out);
+            return;
         }
 
-        if (line.matches(".*\\$LIBRARY_DESCRIPTION.*")) {
+        if (template.has(TemplateTag.LIBRARY_DESCRIPTION)) {
             for (Description desc : library.getDescriptions()) {
                 if (desc.getLanguage().getCode().equals(lang)) {
-                    return line.replace("$LIBRARY_DESCRIPTION", desc.getDescription());
+                    template.render(TemplateTag.LIBRARY_DESCRIPTION, desc.getDescription(), out);
+                    return;
                 }
             }
-            return "";
+            return;
         }
 
-        if (line.matches(".*\\$LIBRARY_NOTE.*")) {
+        if (template.has(TemplateTag.LIBRARY_NOTE)) {
             for (Note note : library.getNotes()) {
                 if (note.getLanguage().getCode().equals(lang)) {
-                    return line.replace("$LIBRARY_NOTE", note.getNote());
+                    template.render(TemplateTag.LIBRARY_NOTE, note.getNote(), out);
+                    return;
                 }
             }
-            return "";
+            return;
         }
 
-        if (line.matches(".*\\$GOOGLE_MAP.*")) {
-            return processGoogleMapTag(line);
+        if (template.has(TemplateTag.GOOGLE_MAP)) {
+            out.append(template.getGoogleMap());
+            return;
         }
 
-        if (line.matches(".*\\$LIBRARY_MAP.*")) {
+        if (template.has(TemplateTag.LIBRARY_MAP)) {
             Map map = library.getMap();
             if (map == null) {
-                return "";
+                return;
             }
             StringBuilder mapTag = new StringBuilder();
             if (map.isGoogleMap()) {
                 /* $LIBRARY_MAP("Link label") */
-                Pattern regex = Pattern.compile(".*\\$LIBRARY_MAP\\(\\s*[\"\'](.+)[\"\']\\s*\\)");
-                StringBuilder link = new StringBuilder("");
-                Matcher m = regex.matcher(line);
-                if (m.find()) {
-                    link.append("<div class=\"google_map_link_container\"><a class=\"google_map_link\" href=\"");
-                    link.append(map.getGoogleMapLinkUrl()).append("\" target=\"new\">");
-                    link.append(m.group(1)).append("</a></div>");
-                }
-                mapTag.append("<iframe class=\"google_map\" id=\"map_library\" src=\"").append(map.getGoogleMapEmbedUrl()).append("\"></iframe>").append(link);
-                return line.replaceAll("\\$LIBRARY_MAP(\\(.+\\)|)", mapTag.toString());
+                appendGoogleMap(mapTag, map, "map_library", template.getArguments(TemplateTag.LIBRARY_MAP));
+            } else {
+                mapTag.append("<img class=\"map\" id=\"map_library\" src=\"ImageCreator?");
+                mapTag.append("owner=").append(library.getOwner().getCode());
+                mapTag.append("&locationId=").append(library.getLocationId());
+                mapTag.append("&lang=").append(lang);
+                mapTag.append("\" usemap=\"#library_coords\" />\n");
+                buildCoordinatesMap(library, "library_coords", mapTag);
             }
-            mapTag.append("<img class=\"map\" id=\"map_library\" src=\"ImageCreator?");
-            mapTag.append("owner=").append(library.getOwner().getCode());
-            mapTag.append("&locationId=").append(library.getLocationId());
-            mapTag.append("&lang=").append(lang);
-            mapTag.append("\" usemap=\"#library_coords\" />\n").append(buildCoordinatesMap(library));
-            return line.replaceAll("\\$LIBRARY_MAP(\\(.+\\)|)", mapTag.toString());
+            template.render(TemplateTag.LIBRARY_MAP, mapTag, out);
+            return;
         }
 
-        if (line.matches(".*\\$LIBRARY_IMAGE.*")) {
+        if (template.has(TemplateTag.LIBRARY_IMAGE)) {
             Image img = library.getImage();
-            if (img == null) {
-                return "";
+            if (img != null) {
+                template.render(TemplateTag.LIBRARY_IMAGE, buildImage(img, "img_library", library.getOwner().getCode()), out);
             }
-            StringBuilder imgTag = new StringBuilder("<img class=\"image\" id=\"img_library\" src=\"");
-            if (!img.getIsExternal()) {
-                imgTag.append(Settings.getInstance().getImagesPath(library.getOwner().getCode()));
-            }
-            imgTag.append(img.getPath()).append("\" />");
-            return line.replace("$LIBRARY_IMAGE", imgTag.toString());
+            return;
         }
 
-        if (line.matches(".*\\$LIBRARY_FLOOR.*")) {
+        if (template.has(TemplateTag.LIBRARY_FLOOR)) {
             String floor = library.getFloor();
-            if (floor.isEmpty()) {
-                return "";
+            if (!floor.isEmpty()) {
+                template.render(TemplateTag.LIBRARY_FLOOR, floor, out);
             }
-            return line.replace("$LIBRARY_FLOOR", floor);
+            return;
         }
-        return lineOrg;
+        out.append(template.getText());
     }
 
     /**
@@ -612,41 +582,59 @@ public class OptimizedTagParser implements TemplateParser {
      * @return parsed string
      */
     public String parse(String line, String lang, String status, String callno, Loader loader, String owner) {
-        if (!line.matches(".*<!--.*\\$.*-->.*")) {
-            return line;
-        }
-
-        String lineOrg = line;
+        StringBuilder out = new StringBuilder();
+        parse(new TemplateLine(line), lang, status, callno, loader, owner, out);
+        return out.toString();
+    }
 
-        line = line.replaceAll("(<!--)|(-->)", "");
+    /**
+     * Parses the given pre-parsed template line, replaces all the markup
+     * codes with corresponding information and appends the result to the
+     * given buffer.
+     *
+     * @param template template line to be parsed
+     * @param lang language of the UI
+     * @param status status of the item
+     * @param callno call number of the location
+     * @param loader Loader object responsible of loading the template file
+     * @param owner owner code of the library
+     * @param out buffer where the parsed line is appended
+     */
+    public void parse(TemplateLine template, String lang, String status, String callno, Loader loader, String owner, StringBuilder out) {
+        if (!template.isDynamic()) {
+            out.append(template.getText());
+            return;
+        }
 
-        if (line.matches(".*\\$LINK\\(.+\\).*")) {
-            Pattern regex = Pattern.compile(".*\\$LINK\\(\\s*[\"\'](\\w+)[\"\']\\s*,\\s*[\"\'](.+)[\"\']\\s*\\)");
-            Matcher m = regex.matcher(line);
-            if (m.find()) {
-                StringBuilder url = new StringBuilder();
-                url.append("LocationHandler?callno=").append(encode(callno));
-                url.append("&status=").append(status);
-                url.append("&lang=").append(m.group(1));
-                url.append("&owner=").append(owner);
-                return line.replaceAll("\\$LINK\\(.+\\)", "<a href=\"" + url.toString() + "\">" + m.group(2) + "</a>\n");
+        if (template.has(TemplateTag.LINK)) {
+            String[] args = template.getArguments(TemplateTag.LINK);
+            if (args != null) {
+                StringBuilder link = new StringBuilder();
+                link.append("<a href=\"LocationHandler?callno=").append(encode(callno));
+                link.append("&status=").append(status);
+                link.append("&lang=").append(args[0]);
+                link.append("&owner=").append(owner);
+                link.append("\">").append(args[1]).append("</a>\n");
+                template.render(TemplateTag.LINK, link, out);
+                return;
             }
         }
 
-        if (line.matches(".*\\$INCLUDE\\(.+\\).*")) {
-            String template = parseIncludeFileName(line, lang);
-            template = loader.getTemplateOtherPath(template, lang, owner);
-            if (template != null) {
-                return loader.loadTemplate(lang, template, status, callno, owner);
+        if (template.has(TemplateTag.INCLUDE)) {
+            String path = parseIncludeFileName(template);
+            path = loader.getTemplateOtherPath(path, lang, owner);
+            if (path != null) {
+                out.append(loader.loadTemplate(lang, path, status, callno, owner));
             }
-            return "";
+            return;
         }
 
-        if (line.matches(".*\\$GOOGLE_MAP.*")) {
-            return processGoogleMapTag(line);
+        if (template.has(TemplateTag.GOOGLE_MAP)) {
+            out.append(template.getGoogleMap());
+            return;
         }
 
-        return lineOrg;
+        out.append(template.getText());
     }
 
     /**
@@ -654,14 +642,12 @@ public class OptimizedTagParser implements TemplateParser {
      * filename can not be found, null is returned instead.
      *
      * @param line single line of a template file that is processed
-     * @param lang language of the UI
      * @return name of the file or null if the filename can not be found
      */
-    private String parseIncludeFileName(String line, String lang) {
-        Pattern regex = Pattern.compile(".*\\$INCLUDE\\(\\s*[\"\'](.+)[\"\']\\s*\\)");
-        Matcher m = regex.matcher(line);
-        if (m.find()) {
-            String template = m.group(1);
+    private String parseIncludeFileName(TemplateLine line) {
+        String[] args = line.getArguments(TemplateTag.INCLUDE);
+        if (args != null) {
+            String template = args[0];
             if (!template.endsWith(".txt")) {
                 template += ".txt";
             }
@@ -720,111 +706,68 @@ public class OptimizedTagParser implements TemplateParser {
         return list;
     }
 
-    private String processGoogleMapTag(String line) {
-        /* $GOOGLE_MAP('address', '14', 'link label', 'fi') */
-        String pattern0 = ".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](\\d{1,2})[\"\']\\s*,\\s*[\"\'](.{3,})[\"\']\\s*,\\s*[\"\']([a-z]{2})[\"\']\\s*\\)";
-        /* $GOOGLE_MAP('address', '14', 'link label') */
-        String pattern1 = ".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](\\d{1,2})[\"\']\\s*,\\s*[\"\'](.{3,})[\"\']\\s*\\)";
-        /* $GOOGLE_MAP('address', '14', 'fi') */
-        String pattern2 = ".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](\\d{1,2})[\"\']\\s*,\\s*[\"\']([a-z]{2})[\"\']\\s*\\)";
-        /* $GOOGLE_MAP('address', '14') */
-        String pattern3 = ".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](\\d{1,2})[\"\']\\s*\\)";
-        /* $GOOGLE_MAP('address', 'fi') */
-        String pattern4 = ".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\']([a-z]{2})[\"\']\\s*\\)";
-        /* $GOOGLE_MAP('address', 'label') */
-        String pattern5 = ".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](.{3,})[\"\']\\s*\\)";
-        /* $GOOGLE_MAP('address') */
-        String pattern6 = ".*\\$GOOGLE_MAP\\(\\s*[\"\'](.+)[\"\']\\s*\\)";
-
-        StringBuilder iframe = new StringBuilder();
-        StringBuilder url = new StringBuilder();
-        StringBuilder link = new StringBuilder();
-        String baseUrl = "https://maps.google.com/?q=";
-
-        Pattern regex = Pattern.compile(pattern0);
-        Matcher m = regex.matcher(line);
-
-        if (m.find()) {
-            url.append(baseUrl).append(m.group(1)).append("&z=").append(m.group(2)).append("&hl=").append(m.group(4));
-            link.append("<div class=\"google_map_link_container\"><a class=\"google_map_link\" href=\"").append(url).append("\" target=\"new\">").append(m.group(3)).append("</a></div>");
-            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(url).append("&output=embed\"></iframe>").append(link);
-            return line.replaceAll(pattern0, iframe.toString());
-        }
-
-        regex = Pattern.compile(pattern1);
-        m = regex.matcher(line);
-        if (m.find()) {
-            url.append(baseUrl).append(m.group(1)).append("&z=").append(m.group(2));
-            link.append("<div class=\"google_map_link_container\"><a class=\"google_map_link\" href=\"").append(url).append("\" target=\"new\">").append(m.group(3)).append("</a></div>");
-            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(url).append("&output=embed\"></iframe>").append(link);
-            return line.replaceAll(pattern1, iframe.toString());
-        }
-
-        regex = Pattern.compile(pattern2);
-        m = regex.matcher(line);
-        if (m.find()) {
-            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(baseUrl).append(m.group(1)).append("&z=").append(m.group(2)).append("&hl=").append(m.group(3)).append("&output=embed\"></iframe>");
-            return line.replaceAll(pattern2, iframe.toString());
-        }
-
-        regex = Pattern.compile(pattern3);
-        m = regex.matcher(line);
-        if (m.find()) {
-            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(baseUrl).append(m.group(1)).append("&z=").append(m.group(2)).append("&output=embed\"></iframe>");
-            return line.replaceAll(pattern3, iframe.toString());
-        }
-
-        regex = Pattern.compile(pattern4);
-        m = regex.matcher(line);
-        if (m.find()) {
-            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(baseUrl).append(m.group(1)).append("&hl=").append(m.group(2)).append("&output=embed\"></iframe>");
-            return line.replaceAll(pattern4, iframe.toString());
-        }
-
-        regex = Pattern.compile(pattern5);
-        m = regex.matcher(line);
-        if (m.find()) {
-            url.append(baseUrl).append(m.group(1));
-            link.append("<div class=\"google_map_link_container\"><a class=\"google_map_link\" href=\"").append(url).append("\" target=\"new\">").append(m.group(2)).append("</a></div>");
-            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(url).append("&output=embed\"></iframe>").append(link);
-            return line.replaceAll(pattern5, iframe.toString());
-        }
-
-        regex = Pattern.compile(pattern6);
-        m = regex.matcher(line);
-        if (m.find()) {
-            iframe.append("<iframe class=\"google_map\" id=\"map\" src=\"").append(baseUrl).append(m.group(1)).append("&output=embed\"></iframe>");
-            return line.replaceAll(pattern6, iframe.toString());
-        }
-        return "";
-    }
-
-    private String buildCoordinatesMap(Shelf shelf) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("<map name=\"shelf_coords\">\n");
-        return buildCoordinatesMap(shelf, builder);
+    /**
+     * Builds the list of the subject matters of the given location in the
+     * given language. The subject matters are separated by the delimiter and
+     * the list is terminated by the end string, which are given as the
+     * arguments of the tag. If the location has no subject matters in the
+     * given language, null is returned.
+     *
+     * @param location location which subject matters are listed
+     * @param lang language of the UI
+     * @param cssClass CSS class of the subject matters
+     * @param args delimiter and end string, or null
+     * @return list of subject matters or null
+     */
+    private CharSequence buildSubjectMatters(Location location, String lang, String cssClass, String[] args) {
+        String delimiter = ", ";
+        String end = "";
+        if (args != null) {
+            delimiter = args[0];
+            end = args[1];
+        }
+        StringBuilder subjects = new StringBuilder();
+        for (SubjectMatter subject : location.getSubjectMatters()) {
+            if (subject.getLanguage().getCode().equals(lang)) {
+                if (subjects.length() > 0) {
+                    subjects.append(delimiter);
+                }
+                subjects.append("<span class=\"").append(cssClass).append("\">");
+                subjects.append(subject.getIndexTerm());
+                subjects.append("</span>");
+            }
+        }
+        if (subjects.length() == 0) {
+            return null;
+        }
+        return subjects.append(end);
     }
 
-    private String buildCoordinatesMap(LibraryCollection collection) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("<map name=\"collection_coords\">\n");
-        return buildCoordinatesMap(collection, builder);
+    private void appendGoogleMap(StringBuilder builder, Map map, String id, String[] args) {
+        builder.append("<iframe class=\"google_map\" id=\"").append(id).append("\" src=\"");
+        builder.append(map.getGoogleMapEmbedUrl()).append("\"></iframe>");
+        if (args != null) {
+            builder.append("<div class=\"google_map_link_container\"><a class=\"google_map_link\" href=\"");
+            builder.append(map.getGoogleMapLinkUrl()).append("\" target=\"new\">");
+            builder.append(args[0]).append("</a></div>");
+        }
     }
 
-    private String buildCoordinatesMap(Library library) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("<map name=\"library_coords\">\n");
-        return buildCoordinatesMap(library, builder);
+    private CharSequence buildImage(Image img, String id, String owner) {
+        StringBuilder imgTag = new StringBuilder("<img class=\"image\" id=\"");
+        imgTag.append(id).append("\" src=\"");
+        if (!img.getIsExternal()) {
+            imgTag.append(Settings.getInstance().getImagesPath(owner));
+        }
+        imgTag.append(img.getPath()).append("\" />");
+        return imgTag;
     }
 
-    private String buildCoordinatesMap(Location location, StringBuilder builder) {
-        if (location.getAreas() == null) {
-            return "";
+    private void buildCoordinatesMap(Location location, String name, StringBuilder builder) {
+        if (location.getAreas() == null || location.getAreas().isEmpty()) {
+            return;
         }
-        if (location.getAreas().isEmpty()) {
-            return "";
-        }
-
+        builder.append("<map name=\"").append(name).append("\">\n");
         for (Area area : location.getAreas()) {
             builder.append("<area shape=\"rect\" coords=\"");
             builder.append(area.getX1()).append(",");
@@ -834,6 +777,5 @@ public class OptimizedTagParser implements TemplateParser {
             builder.append(" title=\"").append(location.getCallNo()).append("\">\n");
         }
         builder.append("</map>\n");
-        return builder.toString();
     }
 }
@@ -0,0 +1,111 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.templateparser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents a template file that has been read and parsed into
+ * {@link TemplateLine TemplateLine} objects. The lines are immutable, only
+ * the time of the latest modification check is updated after creation.
+ *
+ * @author Petteri Kivimäki
+ */
+public class Template {
+
+    private final String path;
+    private final long lastModified;
+    private final long length;
+    private final List<TemplateLine> lines;
+    private volatile long checked;
+
+    /**
+     * Constructs and initializes a new Template object.
+     *
+     * @param path absolute path of the template file
+     * @param lastModified last modification time of the file
+     * @param length length of the file in bytes
+     * @param lines parsed lines of the template
+     * @param checked time when the file was read
+     */
+    public Template(String path, long lastModified, long length, List<TemplateLine> lines, long checked) {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.lines = Collections.unmodifiableList(lines);
+        this.checked = checked;
+    }
+
+    /**
+     * Returns the absolute path of the template file.
+     *
+     * @return absolute path of the template file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the last modification time of the template file at the time it
+     * was read.
+     *
+     * @return last modification time of the file
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the length of the template file at the time it was read.
+     *
+     * @return length of the file in bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the parsed lines of the template.
+     *
+     * @return parsed lines
+     */
+    public List<TemplateLine> getLines() {
+        return lines;
+    }
+
+    /**
+     * Returns the time when the template file was checked for modifications
+     * for the last time.
+     *
+     * @return time of the latest check
+     */
+    public long getChecked() {
+        return checked;
+    }
+
+    /**
+     * Sets the time when the template file was checked for modifications for
+     * the last time.
+     *
+     * @param checked time of the latest check
+     */
+    public void setChecked(long checked) {
+        this.checked = checked;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.templateparser;
+
+import com.pkrete.locationservice.endpoint.util.Settings;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class holds the parsed {@link Template Template} objects in memory.
+ * A template file is read and parsed when it's requested for the first time,
+ * and after that it's served from memory. The modification time and the
+ * length of the file are checked at most once in every check interval, and if
+ * the file has changed, it's read and parsed again.
+ *
+ * If the check interval is negative, the files are never checked and the
+ * templates must be invalidated explicitly.
+ *
+ * @author Petteri Kivimäki
+ */
+public class TemplateCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateCache.class.getName());
+    private final ConcurrentMap<String, Template> templates;
+    private String encoding = "UTF-8";
+    private long checkInterval = 5;
+
+    /**
+     * Constructs and initializes a new TemplateCache object.
+     */
+    public TemplateCache() {
+        this.templates = new ConcurrentHashMap<String, Template>();
+    }
+
+    /**
+     * Sets the encoding of the template files. Default is "UTF-8".
+     *
+     * @param encoding new value
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * Sets the minimum time in seconds between two modification checks of a
+     * template file. Zero means that the file is checked on every request and
+     * negative value means that the file is never checked. Default is 5
+     * seconds.
+     *
+     * @param checkInterval check interval in seconds
+     */
+    public void setCheckInterval(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Returns the parsed template of the given template file. If the template
+     * isn't in the cache yet or the file has changed, the file is read and
+     * parsed before returning. If the file can't be read, null is returned.
+     *
+     * @param path absolute path of the template file
+     * @return parsed template or null
+     */
+    public Template get(String path) {
+        Template template = this.templates.get(path);
+        long now = System.currentTimeMillis();
+        if (template != null && !this.isModified(template, now)) {
+            return template;
+        }
+        template = this.read(path, now);
+        if (template == null) {
+            this.templates.remove(path);
+            return null;
+        }
+        this.templates.put(path, template);
+        return template;
+    }
+
+    /**
+     * Removes the templates of the given owner from the cache. The templates
+     * are read again on the next request.
+     *
+     * @param owner owner code
+     */
+    public void invalidate(String owner) {
+        String prefix = Settings.getInstance().getTemplatesPath(owner);
+        String absolutePrefix = new File(prefix).getAbsolutePath();
+        Iterator<String> it = this.templates.keySet().iterator();
+        while (it.hasNext()) {
+            String path = it.next();
+            if (path.startsWith(prefix) || path.startsWith(absolutePrefix)) {
+                it.remove();
+            }
+        }
+        logger.info("Templates of owner \"{}\" invalidated.", owner);
+    }
+
+    /**
+     * Removes all the templates from the cache.
+     */
+    public void invalidateAll() {
+        this.templates.clear();
+        logger.info("All the templates invalidated.");
+    }
+
+    /**
+     * Checks if the file of the given template has changed after the
+     * template was read. The file is checked only if the check interval has
+     * passed since the last check.
+     *
+     * @param template template to be checked
+     * @param now current time
+     * @return true if the file has changed; otherwise false
+     */
+    private boolean isModified(Template template, long now) {
+        if (this.checkInterval < 0 || now - template.getChecked() < this.checkInterval * 1000) {
+            return false;
+        }
+        File file = new File(template.getPath());
+        if (file.lastModified() != template.getLastModified() || file.length() != template.getLength()) {
+            logger.debug("Template modified : \"{}\"", template.getPath());
+            return true;
+        }
+        template.setChecked(now);
+        return false;
+    }
+
+    /**
+     * Reads and parses the given template file.
+     *
+     * @param path absolute path of the template file
+     * @param now current time
+     * @return parsed template or null, if the file can't be read
+     */
+    private Template read(String path, long now) {
+        File file = new File(path);
+        long lastModified = file.lastModified();
+        long length = file.length();
+        List<TemplateLine> lines = new ArrayList<TemplateLine>();
+        Scanner scanner = null;
+        try {
+            scanner = new Scanner(new FileInputStream(file), this.encoding);
+            while (scanner.hasNextLine()) {
+                lines.add(new TemplateLine(scanner.nextLine()));
+            }
+        } catch (FileNotFoundException e) {
+            logger.error(e.getMessage());
+            return null;
+        } finally {
+            if (scanner != null) {
+                scanner.close();
+            }
+        }
+        logger.debug("Template read : \"{}\"", path);
+        return new Template(path, lastModified, length, lines, now);
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.templateparser;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * This class represents a single parsed line of a template. The line is
+ * scanned for tags once when the template is loaded, and the tags, their
+ * arguments and the literal text around them are stored, so that the line
+ * doesn't need to be scanned again when the template is rendered. Rendering a
+ * tag appends the literal segments and the tag value to the output buffer
+ * without regular expressions. TemplateLine objects are immutable.
+ *
+ * @author Petteri Kivimäki
+ */
+public class TemplateLine {
+
+    private static final Pattern TAG_PATTERN = Pattern.compile(".*<!--.*\\$.*-->.*");
+    private static final Pattern DEBUG_PATTERN = Pattern.compile(".*<!--.*\\$DEBUG.*-->.*");
+    private static final Pattern COMMENT_PATTERN = Pattern.compile("(<!--)|(-->)");
+    private final String text;
+    private final String line;
+    private final boolean dynamic;
+    private final boolean debug;
+    private final Set<TemplateTag> tags;
+    private final Map<TemplateTag, String[]> arguments;
+    private final Map<TemplateTag, String[]> segments;
+    private final String googleMap;
+
+    /**
+     * Constructs and initializes a new TemplateLine object by parsing the
+     * given line.
+     *
+     * @param text line of a template
+     */
+    public TemplateLine(String text) {
+        this.text = text;
+        this.dynamic = TAG_PATTERN.matcher(text).matches();
+        if (!this.dynamic) {
+            this.line = text;
+            this.debug = false;
+            this.tags = Collections.emptySet();
+            this.arguments = Collections.emptyMap();
+            this.segments = Collections.emptyMap();
+            this.googleMap = null;
+            return;
+        }
+        this.debug = DEBUG_PATTERN.matcher(text).matches();
+        this.line = COMMENT_PATTERN.matcher(text).replaceAll("");
+        Set<TemplateTag> tagSet = EnumSet.noneOf(TemplateTag.class);
+        Map<TemplateTag, String[]> argumentMap = new EnumMap<TemplateTag, String[]>(TemplateTag.class);
+        Map<TemplateTag, String[]> segmentMap = new EnumMap<TemplateTag, String[]>(TemplateTag.class);
+        for (TemplateTag tag : TemplateTag.values()) {
+            if (tag.matches(this.line)) {
+                tagSet.add(tag);
+                String[] args = tag.parseArguments(this.line);
+                if (args != null) {
+                    argumentMap.put(tag, args);
+                }
+                segmentMap.put(tag, tag.split(this.line));
+            }
+        }
+        this.tags = Collections.unmodifiableSet(tagSet);
+        this.arguments = Collections.unmodifiableMap(argumentMap);
+        this.segments = Collections.unmodifiableMap(segmentMap);
+        // The GOOGLE_MAP tag depends only on its arguments
+        this.googleMap = tagSet.contains(TemplateTag.GOOGLE_MAP) ? GoogleMapTag.render(this.line) : null;
+    }
+
+    /**
+     * Returns the original line.
+     *
+     * @return original line
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the line without comment markers. If the line doesn't contain
+     * tags, the original line is returned.
+     *
+     * @return line without comment markers
+     */
+    public String getLine() {
+        return line;
+    }
+
+    /**
+     * Returns true if the line contains tags.
+     *
+     * @return true if the line contains tags, otherwise false
+     */
+    public boolean isDynamic() {
+        return dynamic;
+    }
+
+    /**
+     * Returns true if the line contains the DEBUG tag.
+     *
+     * @return true if the line contains the DEBUG tag, otherwise false
+     */
+    public boolean isDebug() {
+        return debug;
+    }
+
+    /**
+     * Checks if the line contains the given tag.
+     *
+     * @param tag tag to be checked
+     * @return true if the line contains the tag, otherwise false
+     */
+    public boolean has(TemplateTag tag) {
+        return tags.contains(tag);
+    }
+
+    /**
+     * Returns the arguments of the given tag. If the tag has no arguments,
+     * null is returned.
+     *
+     * @param tag tag which arguments are returned
+     * @return arguments of the tag or null
+     */
+    public String[] getArguments(TemplateTag tag) {
+        return arguments.get(tag);
+    }
+
+    /**
+     * Appends the line to the given buffer so that every occurrence of the
+     * given tag and its arguments is replaced with the given value. The value
+     * is inserted as is. If the line doesn't contain the tag, the line is
+     * appended unchanged.
+     *
+     * @param tag tag to be replaced
+     * @param value value of the tag
+     * @param out buffer where the line is appended
+     */
+    public void render(TemplateTag tag, CharSequence value, StringBuilder out) {
+        String[] parts = segments.get(tag);
+        if (parts == null) {
+            out.append(line);
+            return;
+        }
+        out.append(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            out.append(value).append(parts[i]);
+        }
+    }
+
+    /**
+     * Returns the rendered GOOGLE_MAP tag of the line. The tag doesn't
+     * depend on the location that is shown, so it's rendered when the line is
+     * parsed. If the line doesn't contain the tag, null is returned.
+     *
+     * @return rendered GOOGLE_MAP tag or null
+     */
+    public String getGoogleMap() {
+        return googleMap;
+    }
+}
@@ -86,4 +86,61 @@ public interface TemplateParser {
      * @return parsed string
      */
     String parse(String line, String lang, String status, String callno, Loader loader, String owner);
+
+    /**
+     * Parses the given pre-parsed template line, replaces all the markup
+     * codes with corresponding information and appends the result to the
+     * given buffer.
+     *
+     * @param line template line to be parsed
+     * @param lang language of the UI
+     * @param shelf Shelf object to which the line is related
+     * @param callno call number of the location
+     * @param loader Loader object responsible of loading the template file
+     * @param out buffer where the parsed line is appended
+     */
+    void parse(TemplateLine line, String lang, Shelf shelf, String callno, Loader loader, StringBuilder out);
+
+    /**
+     * Parses the given pre-parsed template line, replaces all the markup
+     * codes with corresponding information and appends the result to the
+     * given buffer.
+     *
+     * @param line template line to be parsed
+     * @param lang language of the UI
+     * @param collection LibraryCollection object to which the line is related
+     * @param callno call number of the location
+     * @param loader Loader object responsible of loading the template file
+     * @param out buffer where the parsed line is appended
+     */
+    void parse(TemplateLine line, String lang, LibraryCollection collection, String callno, Loader loader, StringBuilder out);
+
+    /**
+     * Parses the given pre-parsed template line, replaces all the markup
+     * codes with corresponding information and appends the result to the
+     * given buffer.
+     *
+     * @param line template line to be parsed
+     * @param lang language of the UI
+     * @param library Library object to which the line is related
+     * @param callno call number of the location
+     * @param loader Loader object responsible of loading the template file
+     * @param out buffer where the parsed line is appended
+     */
+    void parse(TemplateLine line, String lang, Library library, String callno, Loader loader, StringBuilder out);
+
+    /**
+     * Parses the given pre-parsed template line, replaces all the markup
+     * codes with corresponding information and appends the result to the
+     * given buffer.
+     *
+     * @param line template line to be parsed
+     * @param lang language of the UI
+     * @param status status of the item
+     * @param callno call number of the location
+     * @param loader Loader object responsible of loading the template file
+     * @param owner owner code of the library
+     * @param out buffer where the parsed line is appended
+     */
+    void parse(TemplateLine line, String lang, String status, String callno, Loader loader, String owner, StringBuilder out);
 }
@@ -0,0 +1,126 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.templateparser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This enum defines the tags that can be used in the templates. Each tag
+ * holds the precompiled patterns that are used for detecting the tag, parsing
+ * its arguments and splitting a template line around it.
+ *
+ * @author Petteri Kivimäki
+ */
+public enum TemplateTag {
+
+    LINK(".*\\$LINK\\(.+\\).*", ".*\\$LINK\\(\\s*[\"\'](\\w+)[\"\']\\s*,\\s*[\"\'](.+)[\"\']\\s*\\)", "\\$LINK\\(.+\\)"),
+    LINK_COLLECTION(".*\\$LINK_COLLECTION.*", ".*\\$LINK_COLLECTION\\(\\s*[\"\'](.+)[\"\']\\s*\\)", "\\$LINK_COLLECTION(\\(.+\\)|)"),
+    LINK_LIBRARY(".*\\$LINK_LIBRARY.*", ".*\\$LINK_LIBRARY\\(\\s*[\"\'](.+)[\"\']\\s*\\)", "\\$LINK_LIBRARY(\\(.+\\)|)"),
+    INCLUDE(".*\\$INCLUDE\\(.+\\).*", ".*\\$INCLUDE\\(\\s*[\"\'](.+)[\"\']\\s*\\)", null),
+    CALLNO(".*\\$CALLNO.*", null, null),
+    MAIN_WORD(".*\\$MAIN_WORD.*", null, null),
+    GOOGLE_MAP(".*\\$GOOGLE_MAP.*", null, null),
+    SHELF_LOCATION_CODE(".*\\$SHELF_LOCATION_CODE.*", null, null),
+    SHELF_NUMBER(".*\\$SHELF_NUMBER.*", null, null),
+    SHELF_FLOOR(".*\\$SHELF_FLOOR.*", null, null),
+    SHELF_SUBJECT(".*\\$SHELF_SUBJECT.*", ".*\\$SHELF_SUBJECT\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](.+)[\"\']\\s*\\)", "\\$SHELF_SUBJECT(\\((.+)\\)|)"),
+    SHELF_DESCRIPTION(".*\\$SHELF_DESCRIPTION.*", null, null),
+    SHELF_NOTE(".*\\$SHELF_NOTE.*", null, null),
+    SHELF_MAP(".*\\$SHELF_MAP.*", ".*\\$SHELF_MAP\\(\\s*[\"\'](.+)[\"\']\\s*\\)", "\\$SHELF_MAP(\\(.+\\)|)"),
+    SHELF_IMAGE(".*\\$SHELF_IMAGE.*", null, null),
+    COLLECTION_LOCATION_CODE(".*\\$COLLECTION_LOCATION_CODE.*", null, null),
+    COLLECTION_SHELF_NUMBER(".*\\$COLLECTION_SHELF_NUMBER.*", null, null),
+    COLLECTION_FLOOR(".*\\$COLLECTION_FLOOR.*", null, null),
+    COLLECTION_SUBJECT(".*\\$COLLECTION_SUBJECT.*", ".*\\$COLLECTION_SUBJECT\\(\\s*[\"\'](.+)[\"\']\\s*,\\s*[\"\'](.+)[\"\']\\s*\\)", "\\$COLLECTION_SUBJECT(\\((.+)\\)|)"),
+    COLLECTION_DESCRIPTION(".*\\$COLLECTION_DESCRIPTION.*", null, null),
+    COLLECTION_NOTE(".*\\$COLLECTION_NOTE.*", null, null),
+    COLLECTION_MAP(".*\\$COLLECTION_MAP.*", ".*\\$COLLECTION_MAP\\(\\s*[\"\'](.+)[\"\']\\s*\\)", "\\$COLLECTION_MAP(\\(.+\\)|)"),
+    COLLECTION_IMAGE(".*\\$COLLECTION_IMAGE.*", null, null),
+    LIBRARY_LOCATION_CODE(".*\\$LIBRARY_LOCATION_CODE.*", null, null),
+    LIBRARY_DESCRIPTION(".*\\$LIBRARY_DESCRIPTION.*", null, null),
+    LIBRARY_NOTE(".*\\$LIBRARY_NOTE.*", null, null),
+    LIBRARY_MAP(".*\\$LIBRARY_MAP.*", ".*\\$LIBRARY_MAP\\(\\s*[\"\'](.+)[\"\']\\s*\\)", "\\$LIBRARY_MAP(\\(.+\\)|)"),
+    LIBRARY_IMAGE(".*\\$LIBRARY_IMAGE.*", null, null),
+    LIBRARY_FLOOR(".*\\$LIBRARY_FLOOR.*", null, null);
+    private final Pattern pattern;
+    private final Pattern argumentsPattern;
+    private final Pattern replacePattern;
+
+    private TemplateTag(String pattern, String argumentsPattern, String replacePattern) {
+        this.pattern = Pattern.compile(pattern);
+        this.argumentsPattern = argumentsPattern == null ? null : Pattern.compile(argumentsPattern);
+        this.replacePattern = Pattern.compile(replacePattern == null ? Pattern.quote("$" + name()) : replacePattern);
+    }
+
+    /**
+     * Checks if the given line contains this tag.
+     *
+     * @param line template line without comment markers
+     * @return true if the line contains this tag, otherwise false
+     */
+    public boolean matches(String line) {
+        return this.pattern.matcher(line).matches();
+    }
+
+    /**
+     * Parses the arguments of this tag from the given line. If the tag doesn't
+     * take arguments or the line doesn't contain them, null is returned.
+     *
+     * @param line template line without comment markers
+     * @return arguments of the tag or null
+     */
+    public String[] parseArguments(String line) {
+        if (this.argumentsPattern == null) {
+            return null;
+        }
+        Matcher m = this.argumentsPattern.matcher(line);
+        if (!m.find()) {
+            return null;
+        }
+        String[] arguments = new String[m.groupCount()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = m.group(i + 1);
+        }
+        return arguments;
+    }
+
+    /**
+     * Splits the given line around the occurrences of this tag and its
+     * arguments. The returned array contains the literal text before, between
+     * and after the occurrences, so the tag is replaced by inserting the
+     * replacement between each pair of consecutive segments. Tags that don't
+     * define a replace pattern are matched literally by their name.
+     *
+     * @param line template line without comment markers
+     * @return literal segments of the line
+     */
+    public String[] split(String line) {
+        List<String> segments = new ArrayList<String>();
+        Matcher m = this.replacePattern.matcher(line);
+        int start = 0;
+        while (m.find()) {
+            segments.add(line.substring(start, m.start()));
+            start = m.end();
+        }
+        segments.add(line.substring(start));
+        return segments.toArray(new String[segments.size()]);
+    }
+}
@@ -17,7 +17,9 @@
  */
 package com.pkrete.locationservice.endpoint.util;
 
+import java.text.Collator;
 import java.text.RuleBasedCollator;
+import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -87,12 +89,15 @@ public class LocationHelper {
         String callno2End = callno2;
         // Does callno1 match the given pattern
         if (matcher.find()) {
+            // Interval begin and end without the base
+            String group1 = matcher.group(1);
+            String group2 = matcher.group(2);
             // Get base of the call number = library + collection
-            String base = callno1.replaceAll(pattern.pattern(), "");
+            String base = matcher.replaceAll("");
             // Interval begin
-            String start = base + matcher.group(1);
+            String start = base + group1;
             // Interval end
-            String end = base + matcher.group(2);
+            String end = base + group2;
             // Callno1 base must be found from the beginning of callno2
             if (!LocationHelper.match(base.trim(), callno2)) {
                 return false;
@@ -119,4 +124,24 @@ public class LocationHelper {
         // Return false
         return false;
     }
+
+    /**
+     * Creates a new RuleBasedCollator for call number comparisons. The
+     * collator uses the PRIMARY strength, which means that base is taken into
+     * account, but accent and case are ignored.
+     *
+     * @param language language code of the locale (two lower case characters)
+     * @param country country code of the locale (two upper case characters)
+     * @return new RuleBasedCollator object
+     */
+    public static RuleBasedCollator createCollator(String language, String country) {
+        // Create new Locale for Collator
+        Locale locale = new Locale(language, country);
+        // Get RuleBasedCollator object for call number comparisons
+        RuleBasedCollator collator = (RuleBasedCollator) Collator.getInstance(locale);
+        // Using the PRIMARY strength - base is taken into account,
+        // accent and case are ignored
+        collator.setStrength(Collator.PRIMARY);
+        return collator;
+    }
 }
@@ -29,4 +29,9 @@ public class LocationServiceConstants {
     public static final String INTERVAL_REGEX = "\\[(.+)\\]-\\[(.+)\\]";
     public static final String LANGUAGE = "fi";
     public static final String COUNTRY = "FI";
+    // Query cache regions, every owner has its own region named
+    // "<region>.<owner code>" so that the regions can be evicted by owner
+    public static final String QUERY_CACHE_REGION_INDEX = "com.pkrete.locationservice.endpoint.query.index";
+    public static final String QUERY_CACHE_REGION_OWNER = "com.pkrete.locationservice.endpoint.query.owner";
+    public static final String QUERY_CACHE_REGION_REDIRECT = "com.pkrete.locationservice.endpoint.query.redirect";
 }
@@ -0,0 +1,177 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that values are loaded once per key and that invalidations made
+ * during a load are not undone by the load.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ExpiringCacheTest {
+
+    private static final int THREADS = 8;
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        final BlockingCache cache = new BlockingCache();
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(this.get(cache, "LIB"));
+        }
+        assertTrue(cache.started.await(5, TimeUnit.SECONDS));
+        // Give the other threads time to reach the cache
+        Thread.sleep(100);
+        cache.release.countDown();
+        for (Future<String> result : results) {
+            assertEquals("LIB-1", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, cache.loads.get());
+    }
+
+    @Test
+    public void testInvalidateDuringLoad() throws Exception {
+        BlockingCache cache = new BlockingCache();
+        Future<String> result = this.get(cache, "LIB");
+        assertTrue(cache.started.await(5, TimeUnit.SECONDS));
+        cache.invalidate("LIB");
+        cache.release.countDown();
+        // The thread that loaded the value still gets it
+        assertEquals("LIB-1", result.get(5, TimeUnit.SECONDS));
+        // But it's not stored, because it may be older than the invalidation
+        assertEquals("LIB-2", cache.get("LIB"));
+        assertEquals("LIB-2", cache.get("LIB"));
+        assertEquals(2, cache.loads.get());
+    }
+
+    @Test
+    public void testServeStaleWhileLoading() throws Exception {
+        BlockingCache cache = new BlockingCache();
+        cache.setServeStale(true);
+        cache.release.countDown();
+        assertEquals("LIB-1", cache.get("LIB"));
+        cache.setTimeToLive(0);
+        Thread.sleep(5);
+        cache.started = new CountDownLatch(1);
+        cache.release = new CountDownLatch(1);
+        Future<String> result = this.get(cache, "LIB");
+        assertTrue(cache.started.await(5, TimeUnit.SECONDS));
+        // The expired value is returned while the new one is loaded
+        assertEquals("LIB-1", cache.get("LIB"));
+        cache.release.countDown();
+        assertEquals("LIB-2", result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testUpdate() {
+        BlockingCache cache = new BlockingCache();
+        cache.release.countDown();
+        ExpiringCache.Update<String> update = new ExpiringCache.Update<String>() {
+            @Override
+            public String apply(String value) {
+                return value + "-updated";
+            }
+        };
+        assertFalse(cache.update("LIB", update));
+        assertEquals("LIB-1", cache.get("LIB"));
+        assertTrue(cache.update("LIB", update));
+        assertEquals("LIB-1-updated", cache.get("LIB"));
+        assertEquals(1, cache.loads.get());
+    }
+
+    @Test
+    public void testMissesAreCached() {
+        BlockingCache cache = new BlockingCache();
+        cache.release.countDown();
+        cache.setMissTimeToLive(60);
+        assertNull(cache.get("MISSING"));
+        assertNull(cache.get("MISSING"));
+        assertEquals(1, cache.loads.get());
+        // Invalidation removes the miss too
+        cache.invalidate("MISSING");
+        assertNull(cache.get("MISSING"));
+        assertEquals(2, cache.loads.get());
+    }
+
+    @Test
+    public void testMissesAreNotCachedByDefault() {
+        BlockingCache cache = new BlockingCache();
+        cache.release.countDown();
+        assertNull(cache.get("MISSING"));
+        assertNull(cache.get("MISSING"));
+        assertEquals(2, cache.loads.get());
+    }
+
+    private Future<String> get(final ExpiringCache<String> cache, final String key) {
+        return this.executor.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return cache.get(key);
+            }
+        });
+    }
+
+    /**
+     * Cache whose loads wait until they're released. Keys starting with
+     * "MISSING" have no value.
+     */
+    private static class BlockingCache extends ExpiringCache<String> {
+
+        private final AtomicInteger loads = new AtomicInteger();
+        private volatile CountDownLatch started = new CountDownLatch(1);
+        private volatile CountDownLatch release = new CountDownLatch(1);
+
+        BlockingCache() {
+            super("Test value");
+        }
+
+        @Override
+        protected String load(String key) {
+            int count = this.loads.incrementAndGet();
+            this.started.countDown();
+            try {
+                this.release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return key.startsWith("MISSING") ? null : key + "-" + count;
+        }
+    }
+}
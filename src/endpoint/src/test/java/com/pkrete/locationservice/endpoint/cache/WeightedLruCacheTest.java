@@ -0,0 +1,119 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.cache;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the least recently used values are removed when the maximum
+ * weight is exceeded, and that the values are invalidated by owner.
+ *
+ * @author Petteri Kivimäki
+ */
+public class WeightedLruCacheTest {
+
+    @Test
+    public void testLeastRecentlyUsedIsRemoved() {
+        StringCache cache = new StringCache(1, 10);
+        cache.put("a", "A:1234");
+        cache.put("b", "B:12");
+        assertEquals("A:1234", cache.get("a"));
+        cache.put("c", "C:12");
+        // "b" is the least recently used value
+        assertNull(cache.get("b"));
+        assertEquals("A:1234", cache.get("a"));
+        assertEquals("C:12", cache.get("c"));
+        assertEquals(10, cache.getWeight());
+        assertEquals(2, cache.getCount());
+    }
+
+    @Test
+    public void testHeavyValueIsNotCached() {
+        StringCache cache = new StringCache(2, 10);
+        // The share of one segment is 5
+        assertFalse(cache.put("a", "A:1234"));
+        assertTrue(cache.put("b", "B:12"));
+        assertEquals(1, cache.getCount());
+    }
+
+    @Test
+    public void testRejectedValueIsRemoved() {
+        StringCache cache = new StringCache(4, 100);
+        cache.put("a", "A:1");
+        assertNull(cache.get("a", new WeightedLruCache.Filter<String>() {
+            @Override
+            public boolean accept(String value) {
+                return false;
+            }
+        }));
+        assertEquals(0, cache.getCount());
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testInvalidateOwner() {
+        StringCache cache = new StringCache(4, 100);
+        for (int i = 0; i < 10; i++) {
+            cache.put("a" + i, "A:" + i);
+            cache.put("b" + i, "B:" + i);
+        }
+        assertEquals(10, cache.invalidate("A"));
+        assertEquals(10, cache.getCount());
+        assertEquals(30, cache.getWeight());
+        assertNull(cache.get("a1"));
+        assertEquals("B:1", cache.get("b1"));
+        assertEquals(0.5, cache.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void testRemoveOnlyGivenValue() {
+        StringCache cache = new StringCache(1, 100);
+        String value = "A:1";
+        cache.put("a", value);
+        assertFalse(cache.remove("a", new String("A:1")));
+        assertTrue(cache.remove("a", value));
+        assertEquals(0, cache.getWeight());
+    }
+
+    /**
+     * Cache which values are strings starting with the owner code followed
+     * by a colon. The weight of a value is its length.
+     */
+    private static class StringCache extends WeightedLruCache<String> {
+
+        StringCache(int segments, long maxWeight) {
+            super("string", segments, maxWeight);
+        }
+
+        @Override
+        protected long weigh(String value) {
+            return value.length();
+        }
+
+        @Override
+        protected String getOwner(String value) {
+            return value.substring(0, value.indexOf(':'));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.cache.impl;
+
+import com.pkrete.locationservice.endpoint.dao.locations.LocationsDao;
+import com.pkrete.locationservice.endpoint.model.location.Description;
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.util.LocationServiceConstants;
+import java.util.List;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.hibernate4.HibernateTransactionManager;
+import org.springframework.orm.hibernate4.LocalSessionFactoryBuilder;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that evicting the caches of an owner evicts the second-level and
+ * query cache entries of the owner only. The entries are cached by
+ * Ehcache in front of an in-memory H2 database.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CacheServiceImplTest {
+
+    private static final String[] MAPPINGS = {"Location", "Area", "Illustration",
+        "SubjectMatter", "Language", "Owner", "Description", "Note",
+        "CallnoModification", "SearchEvent", "SearchIndex"};
+    private SessionFactory sessionFactory;
+    private TransactionTemplate transactionTemplate;
+    private LocationsDao dao;
+    private CacheServiceImpl cacheService;
+
+    @Before
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:eviction;DB_CLOSE_DELAY=-1");
+        dataSource.setDriverClassName("org.h2.Driver");
+        LocalSessionFactoryBuilder builder = new LocalSessionFactoryBuilder(dataSource);
+        for (String mapping : MAPPINGS) {
+            builder.addResource("com/pkrete/locationservice/endpoint/conf/" + mapping + ".hbm.xml");
+        }
+        builder.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        builder.setProperty("hibernate.hbm2ddl.auto", "create");
+        builder.setProperty("hibernate.generate_statistics", "true");
+        builder.setProperty("hibernate.cache.use_second_level_cache", "true");
+        builder.setProperty("hibernate.cache.use_query_cache", "true");
+        builder.setProperty("hibernate.cache.region.factory_class", "org.hibernate.cache.ehcache.EhCacheRegionFactory");
+        builder.setProperty("net.sf.ehcache.configurationResourceName", "/ehcache-endpoint.xml");
+        this.sessionFactory = builder.buildSessionFactory();
+        this.transactionTemplate = new TransactionTemplate(new HibernateTransactionManager(this.sessionFactory));
+        this.transactionTemplate.setReadOnly(true);
+        this.dao = new LocationsDao();
+        this.dao.setSessionFactory(this.sessionFactory);
+        this.cacheService = new CacheServiceImpl();
+        this.cacheService.setSessionFactory(this.sessionFactory);
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        for (int owner = 1; owner <= 2; owner++) {
+            String code = owner == 1 ? "A" : "B";
+            jdbc.update("insert into OWNER (id, code, name, color, opacity, exporter_visible, allowed_ips, locating_strategy) values (?, ?, 'Test', 'FF0000', '100', true, '', 'INDEX')", owner, code);
+            jdbc.update("insert into LANGUAGE (id, code, name, owner_id) values (?, 'fi', 'suomi', ?)", owner, owner);
+            jdbc.update("insert into LIBRARY (location_id, name, location_code, owner_id, floor, staff_note_1, staff_note_2) values (?, 'Library', ?, ?, '1', '', '')", owner, code, owner);
+            jdbc.update("insert into DESCRIPTION (description_id, description, language_id, location_id) values (?, 'description', ?, ?)", owner, owner, owner);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        this.sessionFactory.close();
+    }
+
+    @Test
+    public void testEvictOwner() {
+        this.load("A");
+        this.load("B");
+        assertCached(1, true);
+        assertCached(2, true);
+
+        this.cacheService.evict("A");
+
+        assertCached(1, false);
+        assertCached(2, true);
+        assertEquals(0, this.queryResults("A"));
+        assertTrue(this.queryResults("B") > 0);
+        // Evicted data is loaded again
+        this.load("A");
+        assertCached(1, true);
+    }
+
+    @Test
+    public void testEvictAll() {
+        this.load("A");
+        this.load("B");
+        this.cacheService.evictAll();
+        assertCached(1, false);
+        assertCached(2, false);
+    }
+
+    /**
+     * Checks whether the owner, library and description with the given id
+     * are in the second-level cache.
+     */
+    private void assertCached(int id, boolean cached) {
+        Cache cache = this.sessionFactory.getCache();
+        assertEquals(cached, cache.containsEntity(Owner.class, id));
+        assertEquals(cached, cache.containsEntity(Location.class, id));
+        assertEquals(cached, cache.containsEntity(Description.class, id));
+        assertEquals(cached, cache.containsCollection(Location.class.getName() + ".descriptions", id));
+        assertEquals(cached, cache.containsCollection(Owner.class.getName() + ".languages", id));
+    }
+
+    /**
+     * Returns the number of cached query results in the owner query region
+     * of the given owner.
+     */
+    private long queryResults(String owner) {
+        return this.sessionFactory.getStatistics().getSecondLevelCacheStatistics(LocationServiceConstants.QUERY_CACHE_REGION_OWNER + "." + owner).getElementCountInMemory();
+    }
+
+    /**
+     * Loads the owner and its libraries, which puts them in the caches.
+     */
+    private void load(final String owner) {
+        this.transactionTemplate.execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                dao.getOwnerByCode(owner);
+                List<Library> libraries = dao.getAllLocations(owner, 0, 10);
+                assertEquals(1, libraries.size());
+                assertEquals("description", libraries.get(0).getDescriptions().get(0).getDescription());
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.callnoparser;
+
+import com.pkrete.locationservice.endpoint.callnoparser.indexparser.CallnoIndexCache;
+import com.pkrete.locationservice.endpoint.callnoparser.indexparser.IndexCallNoParser;
+import com.pkrete.locationservice.endpoint.callnoparser.simpleparser.SimpleCallNoParser;
+import com.pkrete.locationservice.endpoint.callnoparser.stepparser.StepParser;
+import com.pkrete.locationservice.endpoint.generator.Generator;
+import com.pkrete.locationservice.endpoint.generator.GeneratorFixture;
+import com.pkrete.locationservice.endpoint.generator.json.JSONGenerator;
+import com.pkrete.locationservice.endpoint.generator.xml.XMLGenerator;
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.location.Shelf;
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.service.Service;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the shared {@link CallNoParser CallNoParser} objects concurrently with
+ * mixed output formats, owners and locating strategies, and checks that every
+ * response is the same that the request produces when it's run alone. The
+ * locations are served from memory by a stand-in for the database service.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CallNoParserConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int REQUESTS = 2000;
+    private static final String[] OWNERS = {"ONE", "TWO"};
+    private static final String[][] LIBRARIES = {{"Main", "Fic", "1"}, {"Branch", "Ref", "7"}};
+    private final Map<String, List<Location>> libraries = new HashMap<String, List<Location>>();
+    private final Map<String, List<Location>> collections = new HashMap<String, List<Location>>();
+    private final Map<String, List<Location>> shelves = new HashMap<String, List<Location>>();
+    private final Map<Integer, Location> locations = new HashMap<Integer, Location>();
+    private List<CallNoParser> parsers;
+    private List<Generator> generators;
+    private List<String> callnos;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        GeneratorFixture.initSettings();
+        int id = 1;
+        for (int i = 0; i < OWNERS.length; i++) {
+            Owner owner = new Owner(OWNERS[i], OWNERS[i]);
+            Library library = new Library(LIBRARIES[i][0]);
+            LibraryCollection collection = new LibraryCollection(LIBRARIES[i][1], library);
+            collection.setShelfNumber("");
+            collection.setCollectionCode("");
+            Shelf shelf = new Shelf(LIBRARIES[i][2], collection);
+            shelf.setShelfNumber("");
+            library.getCollections().add(collection);
+            collection.getShelves().add(shelf);
+            for (Location location : new Location[]{library, collection, shelf}) {
+                location.setLocationId(id++);
+                location.setOwner(owner);
+                location.setFloor("");
+                location.setMap(new com.pkrete.locationservice.endpoint.model.illustration.Map("map.png", false));
+                this.locations.put(location.getLocationId(), location);
+            }
+            this.libraries.put(OWNERS[i], list(library));
+            this.collections.put(OWNERS[i], list(collection));
+            this.shelves.put(OWNERS[i], list(shelf));
+        }
+
+        Service service = (Service) Proxy.newProxyInstance(Service.class.getClassLoader(), new Class<?>[]{Service.class}, new InMemoryService());
+        SimpleCallNoParser simple = new SimpleCallNoParser();
+        StepParser step = new StepParser();
+        IndexCallNoParser index = new IndexCallNoParser();
+        IndexCallNoParser cachedIndex = new IndexCallNoParser();
+        CallnoIndexCache indexCache = new CallnoIndexCache();
+        indexCache.setDbService(service);
+        cachedIndex.setIndexCache(indexCache);
+        this.parsers = new ArrayList<CallNoParser>();
+        for (CallNoParser parser : new CallNoParser[]{simple, step, index, cachedIndex}) {
+            parser.setDbService(service);
+            this.parsers.add(parser);
+        }
+
+        this.generators = new ArrayList<Generator>();
+        this.generators.add(new XMLGenerator());
+        this.generators.add(new JSONGenerator());
+
+        this.callnos = new ArrayList<String>();
+        for (String[] codes : LIBRARIES) {
+            this.callnos.add(codes[0] + " " + codes[1] + " " + codes[2] + " Smith");
+            this.callnos.add(codes[0] + " " + codes[1] + " Jones");
+            this.callnos.add(codes[0] + " Poetry");
+        }
+        this.callnos.add("Nowhere 1");
+        this.executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        this.executor.shutdownNow();
+        this.executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testMixedRequests() throws Exception {
+        // Expected outputs are produced by running every request alone
+        final List<Request> requests = new ArrayList<Request>();
+        for (CallNoParser parser : this.parsers) {
+            for (Generator generator : this.generators) {
+                for (String owner : OWNERS) {
+                    for (String callno : this.callnos) {
+                        Request request = new Request(parser, generator, owner, callno);
+                        request.expected = request.run();
+                        checkExpected(request);
+                        requests.add(request);
+                    }
+                }
+            }
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<String> firstFailure = new AtomicReference<String>();
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < THREADS; i++) {
+            final Random random = new Random(i);
+            results.add(this.executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    start.await();
+                    int failures = 0;
+                    for (int j = 0; j < REQUESTS; j++) {
+                        Request request = requests.get(random.nextInt(requests.size()));
+                        String output = request.run();
+                        if (!request.expected.equals(output)) {
+                            failures++;
+                            firstFailure.compareAndSet(null, request + " returned " + output);
+                        }
+                    }
+                    return failures;
+                }
+            }));
+        }
+        start.countDown();
+        int failures = 0;
+        for (Future<Integer> result : results) {
+            failures += result.get(60, TimeUnit.SECONDS);
+        }
+        assertEquals("Concurrent responses differ from the expected ones: " + firstFailure.get(), 0, failures);
+    }
+
+    /**
+     * Checks that the expected output of the given request is in the right
+     * format and belongs to the right owner, so that the concurrent run is
+     * compared against meaningful outputs.
+     *
+     * @param request request to be checked
+     */
+    private static void checkExpected(Request request) {
+        String output = request.expected;
+        if (request.generator instanceof XMLGenerator) {
+            assertTrue(request + ": " + output, output.startsWith("<?xml"));
+        } else {
+            assertTrue(request + ": " + output, output.startsWith("{"));
+        }
+        boolean ownCallno = request.callno.startsWith(LIBRARIES[request.ownerIndex()][0] + " ");
+        if (ownCallno) {
+            assertTrue(request + ": " + output, output.contains("owner=" + request.owner));
+        } else {
+            assertTrue(request + ": " + output, output.contains("Location can not be found."));
+        }
+    }
+
+    private static List<Location> list(Location location) {
+        List<Location> list = new ArrayList<Location>();
+        list.add(location);
+        return list;
+    }
+
+    /**
+     * A single parse request and its expected output.
+     */
+    private static class Request {
+
+        private final CallNoParser parser;
+        private final Generator generator;
+        private final String owner;
+        private final String callno;
+        private String expected;
+
+        Request(CallNoParser parser, Generator generator, String owner, String callno) {
+            this.parser = parser;
+            this.generator = generator;
+            this.owner = owner;
+            this.callno = callno;
+        }
+
+        String run() {
+            return this.parser.parse(this.callno, new ParserContext(this.generator, "fi", this.owner));
+        }
+
+        int ownerIndex() {
+            return OWNERS[0].equals(this.owner) ? 0 : 1;
+        }
+
+        @Override
+        public String toString() {
+            return this.parser.getClass().getSimpleName() + "/" + this.generator.getClass().getSimpleName() + "/" + this.owner + "/\"" + this.callno + "\"";
+        }
+    }
+
+    /**
+     * Serves the locations of the test from memory. Every call returns a new
+     * list, because the parsers may sort the lists they receive.
+     */
+    private class InMemoryService implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("getShelf") || name.equals("getCollection") || name.equals("getLibrary")) {
+                return locations.get((Integer) args[0]);
+            }
+            if (name.equals("getShelves") || name.equals("getShelvesFromIndex")) {
+                return new ArrayList<Location>(shelves.get((String) args[0]));
+            }
+            if (name.equals("getCollections") || name.equals("getCollectionsFromIndex")) {
+                return new ArrayList<Location>(collections.get((String) args[0]));
+            }
+            if (name.equals("getLibraries") || name.equals("getLibrariesFromIndex")) {
+                return new ArrayList<Location>(libraries.get((String) args[0]));
+            }
+            if (name.equals("getShelvesByLocationCodes")) {
+                return byCodes(shelves.get((String) args[1]), (List<?>) args[0]);
+            }
+            if (name.equals("getCollectionsByLocationCodes")) {
+                return byCodes(collections.get((String) args[1]), (List<?>) args[0]);
+            }
+            if (name.equals("getLibrariesByLocationCodes")) {
+                return byCodes(libraries.get((String) args[1]), (List<?>) args[0]);
+            }
+            if (name.equals("getNotFoundRedirects")) {
+                return new ArrayList<Object>();
+            }
+            throw new UnsupportedOperationException(name);
+        }
+
+        private List<Location> byCodes(List<Location> list, List<?> codes) {
+            List<Location> result = new ArrayList<Location>();
+            for (Location location : list) {
+                if (codes.contains(location.getLocationCode())) {
+                    result.add(location);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.callnoparser.indexparser;
+
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.util.LocationHelper;
+import com.pkrete.locationservice.endpoint.util.LocationServiceConstants;
+import java.text.RuleBasedCollator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link CallnoIntervalIndex CallnoIntervalIndex} returns the same
+ * location that is found by matching the call number against every interval
+ * definition with {@link LocationHelper#match(String, String, Pattern, RuleBasedCollator) LocationHelper.match}.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CallnoIntervalIndexTest {
+
+    private static final String[] BASES = {"L0 10.0", "L0 10.0 X", "L0 20.0"};
+    private static final String LETTERS = "abcdeäö";
+    private final Random random = new Random(42);
+    private Pattern pattern;
+    private RuleBasedCollator collator;
+
+    @Before
+    public void setUp() {
+        this.pattern = Pattern.compile(LocationServiceConstants.INTERVAL_REGEX);
+        this.collator = LocationHelper.createCollator(LocationServiceConstants.LANGUAGE, LocationServiceConstants.COUNTRY);
+    }
+
+    @Test
+    public void testOverlappingIntervals() {
+        List<String> callnos = new ArrayList<String>();
+        callnos.add("L0 10.0 [bb]-[cc]");
+        callnos.add("L0 10.0 [b]-[c]");
+        callnos.add("L0 10.0 [a]-[ö]");
+        CallnoIntervalIndex index = this.createIndex(callnos);
+
+        assertEquals(3, index.size());
+        assertEquals(0, index.findRank("L0 10.0 bc Author", Integer.MAX_VALUE));
+        assertEquals(0, index.findRank("L0 10.0 c", Integer.MAX_VALUE));
+        assertEquals(1, index.findRank("L0 10.0 b", Integer.MAX_VALUE));
+        assertEquals(2, index.findRank("L0 10.0 d", Integer.MAX_VALUE));
+        assertEquals(-1, index.findRank("L0 10.0 d", 2));
+        assertEquals(-1, index.findRank("L0 20.0 b", Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testRandomIntervals() {
+        for (int round = 0; round < 20; round++) {
+            List<String> callnos = new ArrayList<String>();
+            for (int i = 0; i < 200; i++) {
+                String start = this.randomWord(1, 3);
+                String end = this.randomWord(1, 3);
+                if (this.collator.compare(start, end) > 0) {
+                    String temp = start;
+                    start = end;
+                    end = temp;
+                }
+                callnos.add(BASES[this.random.nextInt(BASES.length)] + " [" + start + "]-[" + end + "]");
+            }
+            CallnoIntervalIndex index = this.createIndex(callnos);
+
+            for (int i = 0; i < 500; i++) {
+                String callno = BASES[this.random.nextInt(BASES.length)] + " " + this.randomWord(0, 4);
+                if (this.random.nextBoolean()) {
+                    callno += " Author";
+                }
+                callno = callno.trim();
+                int limit = this.random.nextBoolean() ? Integer.MAX_VALUE : this.random.nextInt(callnos.size());
+                assertEquals(callno, this.findRank(callnos, callno, limit), index.findRank(callno, limit));
+            }
+        }
+    }
+
+    private CallnoIntervalIndex createIndex(List<String> callnos) {
+        CallnoTrie trie = new CallnoTrie();
+        for (String callno : callnos) {
+            trie.add(new Library(callno));
+        }
+        return new CallnoIntervalIndex(trie, this.pattern, this.collator);
+    }
+
+    private int findRank(List<String> callnos, String callno, int limit) {
+        for (int rank = 0; rank < callnos.size() && rank < limit; rank++) {
+            if (LocationHelper.match(callnos.get(rank), callno, this.pattern, this.collator)) {
+                return rank;
+            }
+        }
+        return -1;
+    }
+
+    private String randomWord(int min, int max) {
+        int length = min + this.random.nextInt(max - min + 1);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append(LETTERS.charAt(this.random.nextInt(LETTERS.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.callnoparser.stepparser;
+
+import com.pkrete.locationservice.endpoint.callnoparser.ParserContext;
+import com.pkrete.locationservice.endpoint.generator.Generator;
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.location.Shelf;
+import com.pkrete.locationservice.endpoint.service.Service;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests selecting the location among the locations that the database returns
+ * for the n-grams of the call number. The database compares the location
+ * codes with a case and accent insensitive collation, so the returned
+ * location codes don't have to be equal to the n-grams.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StepParserTest {
+
+    private final Map<String, List<Location>> results = new HashMap<String, List<Location>>();
+    private final Map<Integer, Location> locations = new HashMap<Integer, Location>();
+    private StepParser parser;
+    private Generator generator;
+    private LibraryCollection collection;
+
+    @Before
+    public void setUp() {
+        Library library = new Library("Main");
+        this.collection = new LibraryCollection("Fic", library);
+        this.parser = new StepParser();
+        this.parser.setDbService((Service) Proxy.newProxyInstance(Service.class.getClassLoader(), new Class<?>[]{Service.class}, new InMemoryService()));
+        this.generator = (Generator) Proxy.newProxyInstance(Generator.class.getClassLoader(), new Class<?>[]{Generator.class}, new IdGenerator());
+    }
+
+    @Test
+    public void testCandidates() {
+        assertEquals(Arrays.asList("a b c", "a b", "b c", "c", "b", "a"), this.parser.getCandidates("a b c"));
+    }
+
+    @Test
+    public void testTrailingSpaceInLocationCode() {
+        // The database ignores trailing spaces when it compares the codes
+        this.addShelf(1, "1 ");
+        assertEquals("shelf 1", this.parse("Main Fic 1 Smith"));
+    }
+
+    @Test
+    public void testFirstCandidateWins() {
+        this.addShelf(1, "smith");
+        this.addShelf(2, "1");
+        assertEquals("shelf 2", this.parse("Main Fic 1 Smith"));
+    }
+
+    @Test
+    public void testCallnoMustMatch() {
+        this.addShelf(1, "SMITH");
+        assertEquals("not found", this.parse("Main Fic Smith"));
+    }
+
+    private void addShelf(int id, String code) {
+        Shelf shelf = new Shelf(code, this.collection);
+        shelf.setLocationId(id);
+        this.locations.put(id, shelf);
+        List<Location> shelves = this.results.get("getShelvesByLocationCodes");
+        if (shelves == null) {
+            shelves = new ArrayList<Location>();
+            this.results.put("getShelvesByLocationCodes", shelves);
+        }
+        shelves.add(shelf);
+    }
+
+    private String parse(String callno) {
+        return this.parser.parse(callno, new ParserContext(this.generator, "fi", "TEST"));
+    }
+
+    /**
+     * Returns the locations added by the test for every location code query,
+     * like the database does for the location codes that match the n-grams.
+     */
+    private class InMemoryService implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("getShelf")) {
+                return locations.get((Integer) args[0]);
+            }
+            List<Location> list = results.get(name);
+            return list == null ? new ArrayList<Location>() : new ArrayList<Location>(list);
+        }
+    }
+
+    /**
+     * Generates the id of the found location, or "not found".
+     */
+    private static class IdGenerator implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("generateOutputNotFound")) {
+                return "not found";
+            }
+            Location location = (Location) args[0];
+            return location.getClass().getSimpleName().toLowerCase() + " " + location.getLocationId();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.dao.locations;
+
+import com.pkrete.locationservice.endpoint.model.location.Area;
+import com.pkrete.locationservice.endpoint.model.location.Description;
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.location.Note;
+import com.pkrete.locationservice.endpoint.model.location.Shelf;
+import com.pkrete.locationservice.endpoint.model.subjectmatter.SubjectMatter;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.hibernate4.HibernateTransactionManager;
+import org.springframework.orm.hibernate4.LocalSessionFactoryBuilder;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that loading a shelf, a collection or a library with all its details
+ * takes a constant number of SQL statements. The number of statements must
+ * not depend on the number of notes, descriptions, areas and subject matters
+ * of the location and its parents, and no statements may be run when the
+ * loaded objects are accessed after the transaction has ended.
+ *
+ * The statements are counted using Hibernate statistics against an in-memory
+ * H2 database.
+ *
+ * @author Petteri Kivimäki
+ */
+public class LocationsDaoStatementCountTest {
+
+    /**
+     * Maximum number of statements needed for loading a location with all its
+     * details: one query for the location, its parents, images and maps, one
+     * for the owner and one for its languages, and one batch for every lazy
+     * collection role (notes, descriptions, subject matters and areas).
+     */
+    private static final int MAX_STATEMENTS = 7;
+    private static final String[] MAPPINGS = {"Location", "Area", "Illustration",
+        "SubjectMatter", "Language", "Owner", "Description", "Note",
+        "CallnoModification", "SearchEvent", "SearchIndex"};
+    private static int database = 0;
+    private SessionFactory sessionFactory;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTemplate jdbc;
+    private LocationsDao dao;
+    private int nextId = 1;
+
+    @Before
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:statements" + (database++) + ";DB_CLOSE_DELAY=-1");
+        dataSource.setDriverClassName("org.h2.Driver");
+        LocalSessionFactoryBuilder builder = new LocalSessionFactoryBuilder(dataSource);
+        for (String mapping : MAPPINGS) {
+            builder.addResource("com/pkrete/locationservice/endpoint/conf/" + mapping + ".hbm.xml");
+        }
+        builder.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        builder.setProperty("hibernate.hbm2ddl.auto", "create");
+        builder.setProperty("hibernate.generate_statistics", "true");
+        // Same batch fetch style as in applicationContext.xml
+        builder.setProperty("hibernate.batch_fetch_style", "DYNAMIC");
+        // Second-level cache would hide the statements
+        builder.setProperty("hibernate.cache.use_second_level_cache", "false");
+        builder.setProperty("hibernate.cache.use_query_cache", "false");
+        this.sessionFactory = builder.buildSessionFactory();
+        this.transactionTemplate = new TransactionTemplate(new HibernateTransactionManager(this.sessionFactory));
+        this.transactionTemplate.setReadOnly(true);
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.dao = new LocationsDao();
+        this.dao.setSessionFactory(this.sessionFactory);
+
+        this.jdbc.update("insert into OWNER (id, code, name, color, opacity, exporter_visible, allowed_ips, locating_strategy) values (1, 'TEST', 'Test', 'FF0000', '100', true, '', 'INDEX')");
+        this.jdbc.update("insert into LANGUAGE (id, code, name, owner_id) values (1, 'fi', 'suomi', 1)");
+        this.jdbc.update("insert into LANGUAGE (id, code, name, owner_id) values (2, 'en', 'English', 1)");
+    }
+
+    @After
+    public void tearDown() {
+        this.sessionFactory.close();
+    }
+
+    @Test
+    public void testGetShelf() {
+        int small = this.countShelfStatements(1);
+        int large = this.countShelfStatements(5);
+        assertEquals("Loading a shelf must not depend on the number of details", small, large);
+        assertTrue("Loading a shelf took " + large + " statements", large <= MAX_STATEMENTS);
+    }
+
+    @Test
+    public void testGetCollection() {
+        int small = this.countCollectionStatements(1);
+        int large = this.countCollectionStatements(5);
+        assertEquals("Loading a collection must not depend on the number of details", small, large);
+        assertTrue("Loading a collection took " + large + " statements", large <= MAX_STATEMENTS);
+    }
+
+    @Test
+    public void testGetLibrary() {
+        int small = this.countLibraryStatements(1);
+        int large = this.countLibraryStatements(5);
+        assertEquals("Loading a library must not depend on the number of details", small, large);
+        assertTrue("Loading a library took " + large + " statements", large <= MAX_STATEMENTS);
+    }
+
+    @Test
+    public void testGetShelves() {
+        int small = this.countShelvesStatements(1);
+        int large = this.countShelvesStatements(10);
+        assertEquals("Loading shelves must not depend on the number of shelves", small, large);
+        assertTrue("Loading shelves took " + large + " statements", large <= MAX_STATEMENTS);
+    }
+
+    @Test
+    public void testGetLibrariesWithChildren() {
+        int small = this.countLibrariesStatements(1);
+        int large = this.countLibrariesStatements(5);
+        assertEquals("Loading libraries must not depend on the number of locations", small, large);
+    }
+
+    private int countShelfStatements(int details) {
+        final int shelf = this.insertShelf(this.insertCollection(this.insertLibrary(details), details), details);
+        Statistics stats = this.clearStatistics();
+        Shelf result = this.transactionTemplate.execute(new TransactionCallback<Shelf>() {
+            @Override
+            public Shelf doInTransaction(TransactionStatus status) {
+                return dao.getShelf(shelf);
+            }
+        });
+        assertNotNull(result);
+        long statements = stats.getPrepareStatementCount();
+        // All the details must be loaded when the transaction ends
+        this.checkDetails(result, details);
+        this.checkDetails(result.getCollection(), details);
+        this.checkDetails(result.getCollection().getLibrary(), details);
+        assertEquals("Accessing the shelf ran statements", statements, stats.getPrepareStatementCount());
+        return (int) statements;
+    }
+
+    private int countCollectionStatements(int details) {
+        final int collection = this.insertCollection(this.insertLibrary(details), details);
+        Statistics stats = this.clearStatistics();
+        LibraryCollection result = this.transactionTemplate.execute(new TransactionCallback<LibraryCollection>() {
+            @Override
+            public LibraryCollection doInTransaction(TransactionStatus status) {
+                return dao.getCollection(collection);
+            }
+        });
+        assertNotNull(result);
+        long statements = stats.getPrepareStatementCount();
+        this.checkDetails(result, details);
+        this.checkDetails(result.getLibrary(), details);
+        assertEquals("Accessing the collection ran statements", statements, stats.getPrepareStatementCount());
+        return (int) statements;
+    }
+
+    private int countLibraryStatements(int details) {
+        final int library = this.insertLibrary(details);
+        Statistics stats = this.clearStatistics();
+        Library result = this.transactionTemplate.execute(new TransactionCallback<Library>() {
+            @Override
+            public Library doInTransaction(TransactionStatus status) {
+                return dao.getLibrary(library);
+            }
+        });
+        assertNotNull(result);
+        long statements = stats.getPrepareStatementCount();
+        this.checkDetails(result, details);
+        assertEquals("Accessing the library ran statements", statements, stats.getPrepareStatementCount());
+        return (int) statements;
+    }
+
+    private int countShelvesStatements(int count) {
+        final List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++) {
+            ids.add(this.insertShelf(this.insertCollection(this.insertLibrary(2), 2), 2));
+        }
+        Statistics stats = this.clearStatistics();
+        List<Shelf> result = this.transactionTemplate.execute(new TransactionCallback<List<Shelf>>() {
+            @Override
+            public List<Shelf> doInTransaction(TransactionStatus status) {
+                return dao.getShelves(ids);
+            }
+        });
+        assertEquals(count, result.size());
+        return (int) stats.getPrepareStatementCount();
+    }
+
+    private int countLibrariesStatements(int count) {
+        final List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++) {
+            int library = this.insertLibrary(2);
+            for (int j = 0; j < 2; j++) {
+                int collection = this.insertCollection(library, 2);
+                this.insertShelf(collection, 2);
+                this.insertShelf(collection, 2);
+            }
+            ids.add(library);
+        }
+        Statistics stats = this.clearStatistics();
+        List<Library> result = this.transactionTemplate.execute(new TransactionCallback<List<Library>>() {
+            @Override
+            public List<Library> doInTransaction(TransactionStatus status) {
+                return dao.getLibraries(ids, true);
+            }
+        });
+        assertEquals(count, result.size());
+        long statements = stats.getPrepareStatementCount();
+        for (Library library : result) {
+            assertEquals(2, library.getCollections().size());
+            for (LibraryCollection collection : library.getCollections()) {
+                this.checkDetails(collection, 2);
+                assertEquals(2, collection.getShelves().size());
+                for (Shelf shelf : collection.getShelves()) {
+                    this.checkDetails(shelf, 2);
+                }
+            }
+        }
+        assertEquals("Accessing the libraries ran statements", statements, stats.getPrepareStatementCount());
+        return (int) statements;
+    }
+
+    private Statistics clearStatistics() {
+        Statistics stats = this.sessionFactory.getStatistics();
+        stats.clear();
+        return stats;
+    }
+
+    /**
+     * Checks that the given location has the given number of details, and
+     * that its image and map are loaded. Accessing an unloaded detail after
+     * the transaction has ended throws LazyInitializationException.
+     *
+     * @param location location to be checked
+     * @param details expected number of every detail
+     */
+    private void checkDetails(Location location, int details) {
+        assertEquals(details, location.getNotes().size());
+        for (Note note : location.getNotes()) {
+            assertNotNull(note.getLanguage().getCode());
+        }
+        assertEquals(details, location.getDescriptions().size());
+        for (Description description : location.getDescriptions()) {
+            assertNotNull(description.getLanguage().getCode());
+        }
+        assertEquals(details, location.getAreas().size());
+        for (Area area : location.getAreas()) {
+            assertEquals(1, area.getX1());
+        }
+        // Subject matters of libraries are not shown
+        if (!(location instanceof Library)) {
+            assertEquals(details, location.getSubjectMatters().size());
+            for (SubjectMatter subject : location.getSubjectMatters()) {
+                assertNotNull(subject.getLanguage().getCode());
+            }
+        }
+        assertNotNull(location.getImage().getPath());
+        assertNotNull(location.getMap().getPath());
+    }
+
+    private int insertLibrary(int details) {
+        return this.insertLocation("LIBRARY", "", details);
+    }
+
+    private int insertCollection(int library, int details) {
+        return this.insertLocation("COLLECTION", ", library_id, is_substring, collection_code, shelf_number", details, library, false, "C" + library, "1");
+    }
+
+    private int insertShelf(int collection, int details) {
+        return this.insertLocation("SHELF", ", collection_id, shelf_number", details, collection, "2");
+    }
+
+    /**
+     * Inserts a new location in the given table together with an image, a
+     * map and the given number of notes, descriptions, areas and subject
+     * matters.
+     *
+     * @param table LIBRARY, COLLECTION or SHELF
+     * @param columns additional columns of the table
+     * @param details number of every detail
+     * @param values values of the additional columns
+     * @return id of the new location
+     */
+    private int insertLocation(String table, String columns, int details, Object... values) {
+        int id = this.nextId++;
+        // Images and maps share the same id sequence
+        int image = id * 2;
+        int map = id * 2 + 1;
+        this.jdbc.update("insert into IMAGE (id, path, isExternal, x, y) values (?, ?, 'N', 0, 0)", image, "image" + id + ".png");
+        this.jdbc.update("insert into MAP (id, path, isExternal, color, opacity) values (?, ?, 'N', 'FF0000', '100')", map, "map" + id + ".png");
+        StringBuilder sql = new StringBuilder("insert into ").append(table);
+        sql.append(" (location_id, name, location_code, map_id, image_id, owner_id, floor, staff_note_1, staff_note_2").append(columns);
+        sql.append(") values (?, ?, ?, ?, ?, 1, '1', '', ''");
+        Object[] params = new Object[5 + values.length];
+        params[0] = id;
+        params[1] = table + " " + id;
+        params[2] = "L" + id;
+        params[3] = map;
+        params[4] = image;
+        for (int i = 0; i < values.length; i++) {
+            sql.append(", ?");
+            params[5 + i] = values[i];
+        }
+        sql.append(")");
+        this.jdbc.update(sql.toString(), params);
+
+        for (int i = 0; i < details; i++) {
+            int detail = id * 100 + i;
+            int language = i % 2 + 1;
+            this.jdbc.update("insert into NOTE (note_id, note, language_id, location_id) values (?, ?, ?, ?)", detail, "note " + detail, language, id);
+            this.jdbc.update("insert into DESCRIPTION (description_id, description, language_id, location_id) values (?, ?, ?, ?)", detail, "description " + detail, language, id);
+            this.jdbc.update("insert into AREA (area_id, x1, y1, x2, y2, angle, location_id) values (?, 1, 1, 2, 2, 0, ?)", detail, id);
+            this.jdbc.update("insert into SUBJECT_MATTER (subject_matter_id, index_term, language_id) values (?, ?, ?)", detail, "subject " + detail, language);
+            this.jdbc.update("insert into SUBJECT_MATTERS (location_id, subject_matter_id) values (?, ?)", id, detail);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.drawer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests downloading and refreshing external maps against a local HTTP server
+ * that can be set to return an image, 304 Not Modified, an error, something
+ * that isn't an image, or to not respond in time.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ExternalMapMirrorTest {
+
+    private static final String ETAG = "\"v1\"";
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private HttpServer server;
+    private ExecutorService executor;
+    private CountDownLatch release;
+    private ExternalMapMirror mirror;
+    private String url;
+    private volatile int status;
+    private volatile byte[] body;
+    private volatile String etag;
+    private volatile boolean hang;
+    private volatile String ifNoneMatch;
+    private volatile int requests;
+
+    @Before
+    public void setUp() throws IOException {
+        this.release = new CountDownLatch(1);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/map.png", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/map.png";
+
+        this.mirror = new ExternalMapMirror();
+        this.mirror.setDirectory(this.folder.getRoot().getPath());
+        this.mirror.setConnectTimeout(1000);
+        this.mirror.setReadTimeout(300);
+        // Every call to run() refreshes the maps
+        this.mirror.setRefreshInterval(0);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        this.release.countDown();
+        this.server.stop(0);
+        this.executor.shutdownNow();
+        this.executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testDownload() throws IOException {
+        byte[] image = image(Color.RED);
+        this.respond(200, image, ETAG);
+        File file = this.mirror.get(this.url);
+        assertNotNull(file);
+        assertArrayEquals(image, read(file));
+        assertEquals(1, this.requests);
+        // The local copy is returned without new requests
+        assertEquals(file, this.mirror.get(this.url));
+        assertEquals(1, this.requests);
+    }
+
+    @Test
+    public void testNotModified() throws IOException {
+        byte[] image = image(Color.RED);
+        this.respond(200, image, ETAG);
+        File file = this.mirror.get(this.url);
+        long version = this.mirror.getVersion(this.url);
+
+        this.respond(304, null, ETAG);
+        this.mirror.run();
+        assertEquals(2, this.requests);
+        assertEquals("Refresh must be a conditional request", ETAG, this.ifNoneMatch);
+        assertArrayEquals(image, read(file));
+        assertEquals(version, this.mirror.getVersion(this.url));
+    }
+
+    @Test
+    public void testModified() throws IOException {
+        this.respond(200, image(Color.RED), ETAG);
+        File file = this.mirror.get(this.url);
+
+        byte[] image = image(Color.BLUE);
+        this.respond(200, image, "\"v2\"");
+        this.mirror.run();
+        assertEquals(ETAG, this.ifNoneMatch);
+        assertArrayEquals(image, read(file));
+
+        // The new ETag is used in the next refresh
+        this.respond(304, null, null);
+        this.mirror.run();
+        assertEquals("\"v2\"", this.ifNoneMatch);
+        assertArrayEquals(image, read(file));
+    }
+
+    @Test
+    public void testNotImage() throws IOException {
+        this.respond(200, "<html>Not found</html>".getBytes("UTF-8"), null);
+        assertNull(this.mirror.get(this.url));
+
+        byte[] image = image(Color.RED);
+        this.respond(200, image, ETAG);
+        this.mirror.run();
+        File file = this.mirror.get(this.url);
+        assertNotNull(file);
+
+        // Last good copy is kept
+        this.respond(200, "<html>Error</html>".getBytes("UTF-8"), null);
+        this.mirror.run();
+        assertArrayEquals(image, read(file));
+        for (String name : this.folder.getRoot().list()) {
+            assertTrue("Temporary file was left: " + name, !name.endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    public void testError() throws IOException {
+        this.respond(500, "error".getBytes("UTF-8"), null);
+        assertNull(this.mirror.get(this.url));
+
+        byte[] image = image(Color.RED);
+        this.respond(200, image, ETAG);
+        this.mirror.run();
+        File file = this.mirror.get(this.url);
+
+        this.respond(503, null, null);
+        this.mirror.run();
+        assertArrayEquals(image, read(file));
+    }
+
+    @Test
+    public void testTimeout() throws IOException {
+        this.hang = true;
+        long start = System.currentTimeMillis();
+        assertNull(this.mirror.get(this.url));
+        assertTrue("Download must time out", System.currentTimeMillis() - start < 5000);
+
+        byte[] image = image(Color.RED);
+        this.hang = false;
+        this.respond(200, image, ETAG);
+        this.mirror.run();
+        File file = this.mirror.get(this.url);
+        assertNotNull(file);
+
+        // Last good copy is kept
+        this.hang = true;
+        start = System.currentTimeMillis();
+        this.mirror.run();
+        assertTrue("Refresh must time out", System.currentTimeMillis() - start < 5000);
+        assertArrayEquals(image, read(file));
+    }
+
+    private void respond(int status, byte[] body, String etag) {
+        this.status = status;
+        this.body = body;
+        this.etag = etag;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        this.requests++;
+        this.ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        try {
+            if (this.hang) {
+                // Responds only after the test has ended
+                this.release.await(30, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.etag != null) {
+            exchange.getResponseHeaders().set("ETag", this.etag);
+        }
+        byte[] content = this.body;
+        if (content == null) {
+            exchange.sendResponseHeaders(this.status, -1);
+        } else {
+            exchange.sendResponseHeaders(this.status, content.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(content);
+            out.close();
+        }
+        exchange.close();
+    }
+
+    private static byte[] image(Color color) throws IOException {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, color.getRGB());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.generator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the {@link Escaper Escaper} class against the regular expression
+ * based filters that it replaces.
+ *
+ * @author Petteri Kivimäki
+ */
+public class EscaperTest {
+
+    private static final String SPECIAL = "&<>\"'\\\n\r\u0085   ab";
+
+    @Test
+    public void testEscapeXml() throws IOException {
+        assertEquals("&amp;&lt;&gt;&quot;&apos;", Escaper.escapeXml("&<>\"'"));
+        assertEquals("a &amp;amp; b", Escaper.escapeXml("a &amp; b"));
+        StringBuilder builder = new StringBuilder("x");
+        Escaper.escapeXml("<'>", builder);
+        assertEquals("x&lt;&apos;&gt;", builder.toString());
+        StringWriter writer = new StringWriter();
+        Escaper.escapeXml("\"&\"", writer);
+        assertEquals("&quot;&amp;&quot;", writer.toString());
+    }
+
+    @Test
+    public void testEscapeJson() {
+        assertEquals("\\\"q\\\" & 'a' \\ <b>", Escaper.escapeJson("\"q\" & 'a' \\ <b>"));
+        StringBuilder builder = new StringBuilder("x");
+        Escaper.escapeJson("\"", builder);
+        assertEquals("x\\\"", builder.toString());
+    }
+
+    @Test
+    public void testNothingToEscape() {
+        String value = "Nothing to escape";
+        assertSame(value, Escaper.escapeXml(value));
+        assertSame(value, Escaper.escapeJson(value));
+        assertSame(value, Escaper.stripHtml(value));
+    }
+
+    @Test
+    public void testStripHtml() {
+        assertEquals("bold and link", Escaper.stripHtml("<b>bold</b> and <a href=\"x\">link</a>"));
+        // Tags spanning lines are not removed
+        assertEquals("a <a\nhref='x'>link", Escaper.stripHtml("a <a\nhref='x'>link</a>"));
+        assertEquals("a  c", Escaper.stripHtml("a < b > c"));
+        assertEquals("1 < 2", Escaper.stripHtml("1 < 2"));
+        assertEquals("", Escaper.stripHtml("<>"));
+    }
+
+    @Test
+    public void testSameAsRegex() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(20);
+            for (int j = 0; j < length; j++) {
+                builder.append(SPECIAL.charAt(random.nextInt(SPECIAL.length())));
+            }
+            String value = builder.toString();
+            String xml = value.replaceAll("&", "&amp;").replaceAll("<", "&lt;").replaceAll(">", "&gt;").replaceAll("\"", "&quot;").replaceAll("'", "&apos;");
+            assertEquals(xml, Escaper.escapeXml(value));
+            assertEquals(value.replaceAll("\"", "\\\\\""), Escaper.escapeJson(value));
+            assertEquals(value.replaceAll("\\<.*?\\>", ""), Escaper.stripHtml(value));
+        }
+    }
+}
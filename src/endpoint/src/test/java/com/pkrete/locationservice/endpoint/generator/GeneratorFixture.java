@@ -0,0 +1,255 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.generator;
+
+import com.pkrete.locationservice.endpoint.model.illustration.Image;
+import com.pkrete.locationservice.endpoint.model.illustration.Map;
+import com.pkrete.locationservice.endpoint.model.language.Language;
+import com.pkrete.locationservice.endpoint.model.location.Area;
+import com.pkrete.locationservice.endpoint.model.location.Description;
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.location.Note;
+import com.pkrete.locationservice.endpoint.model.location.Shelf;
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.model.subjectmatter.SubjectMatter;
+import com.pkrete.locationservice.endpoint.util.PropertiesUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Test data and golden file comparison for the generator tests. The test
+ * data contains quotes, apostrophes, ampersands, angle brackets and HTML tags
+ * spanning lines, so that all the escaping rules of the generators are
+ * exercised.
+ *
+ * The expected outputs are stored under the "golden" directory next to this
+ * class. If an output doesn't match, the actual output is written to
+ * target/golden, so that the files can be compared.
+ *
+ * @author Petteri Kivimäki
+ */
+public class GeneratorFixture {
+
+    private static final String GOLDEN_PATH = "/com/pkrete/locationservice/endpoint/generator/golden/";
+    private final Language fi;
+    private final Language en;
+    private final Owner owner;
+    private final Library library;
+    private final LibraryCollection collection;
+    private final Shelf shelf;
+
+    /**
+     * Constructs and initializes the test data.
+     */
+    public GeneratorFixture() {
+        initSettings();
+        this.fi = language(1, "fi", "suomi");
+        this.en = language(2, "en", "English");
+        this.owner = new Owner("TEST", "Test & \"Owner\"");
+        this.owner.setId(1);
+
+        this.library = new Library("A&B");
+        this.init(this.library, 1, "Main \"Library\" & <Co>", "1'st");
+        this.library.getDescriptions().add(description(this.fi, "Line one <b>bold</b>\nline \"two\" <a\nhref='x'>link</a> & 'more' > less"));
+        this.library.getDescriptions().add(description(this.en, "English"));
+        this.library.getNotes().add(note(this.fi, "Note <i>it</i> & \"q\""));
+        this.library.setStaffNotePri("Staff <note> & 'x'");
+        this.library.setImage(new Image("lib's.png", false));
+        this.library.setMap(new Map("http://maps.example.com/m?a=1&b=\"2\"", true));
+        this.library.getAreas().add(new Area(1, 2, 30, 40, 0));
+        this.library.getAreas().add(new Area(5, 6, 70, 80, 45));
+
+        this.collection = new LibraryCollection("C<1>", this.library);
+        this.init(this.collection, 2, "Collection 'one'", "");
+        this.collection.setCollectionCode("\"CC\"");
+        this.collection.setShelfNumber("12'a");
+        this.collection.getSubjectMatters().add(new SubjectMatter("History & \"Art\"", this.fi));
+        this.collection.getSubjectMatters().add(new SubjectMatter("History", this.en));
+        this.collection.setMap(new Map("col.png", false));
+        this.collection.setStaffNoteSec("");
+        this.library.getCollections().add(this.collection);
+
+        this.shelf = new Shelf("S'1", this.collection);
+        this.init(this.shelf, 3, "Shelf <3>", "2>");
+        this.shelf.setShelfNumber("");
+        this.shelf.getNotes().add(note(this.en, "Only in English"));
+        this.shelf.getSubjectMatters().add(new SubjectMatter("Geo<graphy>", this.en));
+        this.shelf.setImage(new Image("http://img.example.com/?q=\"x\"&y='z'", true));
+        this.shelf.setMap(new Map("shelf.png", false));
+        this.collection.getShelves().add(this.shelf);
+    }
+
+    /**
+     * Returns the Finnish language.
+     *
+     * @return the Finnish language
+     */
+    public Language getFi() {
+        return this.fi;
+    }
+
+    /**
+     * Returns all the languages.
+     *
+     * @return all the languages
+     */
+    public List<Language> getLanguages() {
+        List<Language> languages = new ArrayList<Language>();
+        languages.add(this.fi);
+        languages.add(this.en);
+        return languages;
+    }
+
+    /**
+     * Returns the library, which contains the collection.
+     *
+     * @return the library
+     */
+    public Library getLibrary() {
+        return this.library;
+    }
+
+    /**
+     * Returns the collection, which contains the shelf.
+     *
+     * @return the collection
+     */
+    public LibraryCollection getCollection() {
+        return this.collection;
+    }
+
+    /**
+     * Returns the shelf.
+     *
+     * @return the shelf
+     */
+    public Shelf getShelf() {
+        return this.shelf;
+    }
+
+    /**
+     * Returns a call number that begins with the call number of the shelf.
+     *
+     * @return call number
+     */
+    public String getCallno() {
+        return this.shelf.getCallNo() + " Main & \"word\"";
+    }
+
+    /**
+     * Checks that the given output equals the golden file with the given
+     * name. The file is read as UTF-8.
+     *
+     * @param name name of the golden file
+     * @param actual output of a generator
+     * @throws IOException if reading or writing the files fails
+     */
+    public static void assertGolden(String name, String actual) throws IOException {
+        assertGolden(GOLDEN_PATH, name, actual);
+    }
+
+    /**
+     * Checks that the given output equals the golden file with the given
+     * name in the given class path directory. The file is read as UTF-8.
+     *
+     * @param path class path directory of the golden file
+     * @param name name of the golden file
+     * @param actual actual output
+     * @throws IOException if reading or writing the files fails
+     */
+    public static void assertGolden(String path, String name, String actual) throws IOException {
+        InputStream in = GeneratorFixture.class.getResourceAsStream(path + name);
+        String expected = in == null ? null : read(in);
+        if (!actual.equals(expected)) {
+            File dir = new File("target", "golden");
+            dir.mkdirs();
+            OutputStream out = new FileOutputStream(new File(dir, name));
+            try {
+                out.write(actual.getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+        }
+        assertNotNull("Golden file is missing: " + name, expected);
+        assertEquals("Output differs from golden file: " + name, expected, actual);
+    }
+
+    private void init(Location location, int id, String name, String floor) {
+        location.setLocationId(id);
+        location.setName(name);
+        location.setFloor(floor);
+        location.setOwner(this.owner);
+    }
+
+    private static Language language(int id, String code, String name) {
+        Language language = new Language(name);
+        language.setId(id);
+        language.setCode(code);
+        return language;
+    }
+
+    private static Description description(Language language, String value) {
+        Description description = new Description(language);
+        description.setDescription(value);
+        return description;
+    }
+
+    private static Note note(Language language, String value) {
+        Note note = new Note(language);
+        note.setNote(value);
+        return note;
+    }
+
+    /**
+     * Sets the properties that are read by the Settings class.
+     */
+    public static void initSettings() {
+        Properties properties = new Properties();
+        properties.setProperty("service.name", "endpoint");
+        properties.setProperty("service.webPath", "http://localhost:8080/");
+        PropertiesUtil util = new PropertiesUtil();
+        util.setProperties(properties);
+        util.postProcessBeanFactory(new DefaultListableBeanFactory());
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
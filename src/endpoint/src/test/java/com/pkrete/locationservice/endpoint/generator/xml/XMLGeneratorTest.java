@@ -0,0 +1,85 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.generator.xml;
+
+import com.pkrete.locationservice.endpoint.generator.GeneratorFixture;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import static com.pkrete.locationservice.endpoint.generator.GeneratorFixture.assertGolden;
+
+/**
+ * Compares the output of the {@link XMLGenerator XMLGenerator} against
+ * golden files.
+ *
+ * @author Petteri Kivimäki
+ */
+public class XMLGeneratorTest {
+
+    private GeneratorFixture fixture;
+    private XMLGenerator generator;
+
+    @Before
+    public void setUp() {
+        this.fixture = new GeneratorFixture();
+        this.generator = new XMLGenerator();
+    }
+
+    @Test
+    public void testLibrary() throws IOException {
+        assertGolden("xml-library.xml", this.generator.generateOutput(this.fixture.getLibrary(), "fi", this.fixture.getCallno()));
+    }
+
+    @Test
+    public void testCollection() throws IOException {
+        assertGolden("xml-collection.xml", this.generator.generateOutput(this.fixture.getCollection(), "fi", this.fixture.getCallno()));
+    }
+
+    @Test
+    public void testShelf() throws IOException {
+        assertGolden("xml-shelf.xml", this.generator.generateOutput(this.fixture.getShelf(), "fi", this.fixture.getCallno()));
+    }
+
+    @Test
+    public void testShelfOtherLanguage() throws IOException {
+        assertGolden("xml-shelf-en.xml", this.generator.generateOutput(this.fixture.getShelf(), "en", this.fixture.getCallno()));
+    }
+
+    @Test
+    public void testMessages() throws IOException {
+        StringBuilder output = new StringBuilder();
+        output.append(this.generator.generateOutputNotFound("fi", "X & Y", "TEST"));
+        output.append(this.generator.generateOutputNotAvailable("fi", "X & Y", "TEST"));
+        output.append(this.generator.generateError("400", "Bad \"input\" & <stuff> isn't valid."));
+        assertGolden("xml-messages.xml", output.toString());
+    }
+
+    @Test
+    public void testCustomFilters() throws IOException {
+        Map<String, String> filters = new LinkedHashMap<String, String>();
+        filters.put("&", "&amp;");
+        filters.put("<", "&lt;");
+        filters.put(">", "&gt;");
+        filters.put("\"", "&#34;");
+        filters.put("\\s+", " ");
+        this.generator.setFilters(filters);
+        assertGolden("xml-shelf-filters.xml", this.generator.generateOutput(this.fixture.getShelf(), "fi", this.fixture.getCallno()));
+    }
+}
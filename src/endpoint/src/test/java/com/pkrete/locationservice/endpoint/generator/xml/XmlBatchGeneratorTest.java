@@ -0,0 +1,98 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.generator.xml;
+
+import com.pkrete.locationservice.endpoint.generator.GeneratorFixture;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import static com.pkrete.locationservice.endpoint.generator.GeneratorFixture.assertGolden;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the output of the {@link XmlBatchGenerator XmlBatchGenerator}
+ * against golden files.
+ *
+ * @author Petteri Kivimäki
+ */
+public class XmlBatchGeneratorTest {
+
+    private GeneratorFixture fixture;
+    private XmlBatchGenerator generator;
+
+    @Before
+    public void setUp() {
+        this.fixture = new GeneratorFixture();
+        this.generator = new XmlBatchGenerator();
+    }
+
+    @Test
+    public void testLibraryWithChildren() throws IOException {
+        List<Location> locations = new ArrayList<Location>();
+        locations.add(this.fixture.getLibrary());
+        assertGolden("batch-children.xml", this.generator.generateBatchOutput(locations, this.fixture.getLanguages(), true));
+    }
+
+    @Test
+    public void testLocations() throws IOException {
+        assertGolden("batch-locations.xml", this.generator.generateBatchOutput(this.locations(), this.fixture.getLanguages(), false));
+    }
+
+    @Test
+    public void testWriteBatchOutput() throws IOException {
+        StringWriter writer = new StringWriter();
+        this.generator.writeBatchOutput(this.locations(), this.fixture.getLanguages(), false, writer);
+        assertEquals(this.generator.generateBatchOutput(this.locations(), this.fixture.getLanguages(), false), writer.toString());
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        assertGolden("batch-empty.xml", this.generator.generateBatchOutput(new ArrayList<Location>(), this.fixture.getLanguages(), true));
+    }
+
+    @Test
+    public void testError() throws IOException {
+        assertGolden("batch-error.xml", this.generator.generateError("403", "Owner's \"IP\" <denied> & logged."));
+    }
+
+    @Test
+    public void testCustomFilters() throws IOException {
+        Map<String, String> filters = new LinkedHashMap<String, String>();
+        filters.put("&", "&amp;");
+        filters.put("<", "&lt;");
+        filters.put(">", "&gt;");
+        filters.put("'", "&#39;");
+        filters.put("\n", "&#10;");
+        this.generator.setFilters(filters);
+        assertGolden("batch-filters.xml", this.generator.generateBatchOutput(this.locations(), this.fixture.getLanguages(), false));
+    }
+
+    private List<Location> locations() {
+        List<Location> locations = new ArrayList<Location>();
+        locations.add(this.fixture.getLibrary());
+        locations.add(this.fixture.getCollection());
+        locations.add(this.fixture.getShelf());
+        return locations;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.metrics;
+
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.owner.OwnerCache;
+import com.pkrete.locationservice.endpoint.owner.OwnerMetadata;
+import java.io.IOException;
+import java.io.StringWriter;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that only existing owners are used as tags of the histograms.
+ *
+ * @author Petteri Kivimäki
+ */
+public class MetricsRegistryTest {
+
+    private MetricsRegistry registry;
+
+    @Before
+    public void setUp() {
+        this.registry = new MetricsRegistry();
+        this.registry.setSampleRate(1);
+        this.registry.setOwnerCache(new OwnerCache() {
+            @Override
+            public OwnerMetadata get(String code) {
+                return "LIB".equals(code) ? new OwnerMetadata(new Owner(), null) : null;
+            }
+        });
+    }
+
+    @Test
+    public void testExistingOwner() throws IOException {
+        this.recordRequest("LIB");
+        String output = this.write();
+        assertTrue(output, output.contains("owner=\"LIB\""));
+        assertFalse(output, output.contains("owner=\"unknown\""));
+    }
+
+    @Test
+    public void testUnknownOwners() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            this.recordRequest("OWNER" + i);
+        }
+        this.recordRequest(null);
+        this.recordRequest("");
+        String output = this.write();
+        assertFalse(output, output.contains("OWNER"));
+        // All the unknown owners share the same histogram
+        assertEquals(1, count(output, "_count{"));
+        assertTrue(output, output.contains("owner=\"unknown\",strategy=\"\",format=\"XML\"} 102"));
+    }
+
+    @Test
+    public void testWithoutOwnerCache() throws IOException {
+        this.registry.setOwnerCache(null);
+        this.recordRequest("LIB");
+        String output = this.write();
+        assertTrue(output, output.contains("owner=\"unknown\""));
+    }
+
+    private void recordRequest(String owner) {
+        this.registry.begin(owner, "XML");
+        try {
+            this.registry.record("resolve", "resolve", System.nanoTime(), false);
+        } finally {
+            this.registry.end();
+        }
+    }
+
+    private String write() throws IOException {
+        StringWriter writer = new StringWriter();
+        this.registry.write(writer);
+        return writer.toString();
+    }
+
+    private static int count(String str, String part) {
+        int count = 0;
+        for (int i = str.indexOf(part); i >= 0; i = str.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.owner;
+
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.service.Service;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that owners are loaded once and that unknown owner codes are not
+ * looked up from the database on every request.
+ *
+ * @author Petteri Kivimäki
+ */
+public class OwnerCacheTest {
+
+    private final AtomicInteger queries = new AtomicInteger();
+    private OwnerCache cache;
+
+    @Before
+    public void setUp() {
+        this.cache = new OwnerCache();
+        this.cache.setDbService((Service) Proxy.newProxyInstance(Service.class.getClassLoader(), new Class<?>[]{Service.class}, new OwnerService()));
+    }
+
+    @Test
+    public void testExistingOwner() {
+        assertNotNull(this.cache.get("LIB"));
+        assertNotNull(this.cache.get("LIB"));
+        assertEquals(1, this.queries.get());
+    }
+
+    @Test
+    public void testUnknownOwner() {
+        assertNull(this.cache.get("UNKNOWN"));
+        assertNull(this.cache.get("UNKNOWN"));
+        assertEquals(1, this.queries.get());
+    }
+
+    @Test
+    public void testUnknownOwnerAfterInvalidation() {
+        assertNull(this.cache.get("UNKNOWN"));
+        this.cache.invalidate("UNKNOWN");
+        assertNull(this.cache.get("UNKNOWN"));
+        assertEquals(2, this.queries.get());
+    }
+
+    @Test
+    public void testMissesNotCached() {
+        this.cache.setMissTimeToLive(0);
+        assertNull(this.cache.get("UNKNOWN"));
+        assertNull(this.cache.get("UNKNOWN"));
+        assertEquals(2, this.queries.get());
+    }
+
+    /**
+     * Service that knows only the owner "LIB".
+     */
+    private class OwnerService implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (!"getOwnerByCode".equals(method.getName())) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            queries.incrementAndGet();
+            if (!"LIB".equals(args[0])) {
+                return null;
+            }
+            Owner owner = new Owner();
+            owner.setCode("LIB");
+            return owner;
+        }
+    }
+}
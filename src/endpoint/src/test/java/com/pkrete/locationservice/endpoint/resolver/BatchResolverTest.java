@@ -0,0 +1,164 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.resolver;
+
+import com.pkrete.locationservice.endpoint.callnoparser.CallNoParserFactory;
+import com.pkrete.locationservice.endpoint.callnoparser.LocatingStrategy;
+import com.pkrete.locationservice.endpoint.generator.Generator;
+import com.pkrete.locationservice.endpoint.util.ServiceFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the items of a batch are resolved concurrently, and that the
+ * outputs are returned in the order of the items even if some of the items
+ * fail or time out.
+ *
+ * The call numbers of the items are passed to the generator that returns
+ * them as the outputs. The generator sleeps for the number of milliseconds
+ * given after "sleep:", fails with the call number "fail" and returns an
+ * empty output with the call number "empty".
+ *
+ * @author Petteri Kivimäki
+ */
+public class BatchResolverTest {
+
+    private ExecutorService executor;
+    private Resolver resolver;
+
+    @Before
+    public void setUp() {
+        Map<OutputFormat, Generator> generators = new EnumMap<OutputFormat, Generator>(OutputFormat.class);
+        generators.put(OutputFormat.JSON, proxy(Generator.class, new CallnoGenerator()));
+        this.resolver = new BasicResolver(generators) {
+            @Override
+            protected LocatingStrategy getLocatingStrategy(String owner) {
+                return LocatingStrategy.BASIC;
+            }
+        };
+        this.resolver.setServiceFactory(proxy(ServiceFactory.class, null));
+        this.resolver.setCallNoParserFactory(proxy(CallNoParserFactory.class, null));
+        this.executor = new ThreadPoolExecutor(4, 4, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(2), new ThreadPoolExecutor.CallerRunsPolicy());
+        this.resolver.setBatchExecutor(this.executor);
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testOutputsAreInItemOrder() {
+        List<BatchItem> items = items("sleep:60", "sleep:0", "sleep:30", "a", "b", "sleep:10", "c", "d");
+        assertEquals("[sleep:60, sleep:0, sleep:30, a, b, sleep:10, c, d]", this.resolve(items).toString());
+        for (BatchItem item : items) {
+            assertTrue(item.getProcessingTime() >= 0);
+        }
+        assertTrue(items.get(0).getProcessingTime() >= 60);
+    }
+
+    @Test
+    public void testFailedItemGetsErrorOutput() {
+        List<BatchItem> items = items("a", "fail", "empty", "b");
+        assertEquals("[a, error:500, , b]", this.resolve(items).toString());
+        assertTrue(items.get(1).getProcessingTime() >= 0);
+    }
+
+    @Test
+    public void testTimedOutItemGetsErrorOutput() {
+        this.resolver.setBatchTimeout(100);
+        List<BatchItem> items = items("a", "sleep:5000", "b");
+        long start = System.currentTimeMillis();
+        assertEquals("[a, error:500, b]", this.resolve(items).toString());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(items.get(1).getProcessingTime() >= 100);
+        assertTrue(items.get(1).getProcessingTime() < 5000);
+    }
+
+    @Test
+    public void testWithoutExecutor() {
+        this.resolver.setBatchExecutor(null);
+        List<BatchItem> items = items("a", "empty", "b");
+        assertEquals("[a, , b]", this.resolve(items).toString());
+        assertTrue(items.get(2).getProcessingTime() >= 0);
+    }
+
+    private List<String> resolve(List<BatchItem> items) {
+        return this.resolver.resolveAll(items, "en", "OWNER", OutputFormat.JSON);
+    }
+
+    /**
+     * Returns charged items with the given call numbers, so that the output
+     * is generated without searching the location.
+     */
+    private static List<BatchItem> items(String... callnos) {
+        List<BatchItem> items = new ArrayList<BatchItem>();
+        for (String callno : callnos) {
+            items.add(new BatchItem(callno, "", null, false));
+        }
+        return items;
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        if (handler == null) {
+            handler = new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return null;
+                }
+            };
+        }
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Generator that returns the call number as the output.
+     */
+    private static class CallnoGenerator implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("generateError")) {
+                return "error:" + args[0];
+            }
+            String callno = (String) args[1];
+            if (callno.equals("fail")) {
+                throw new IllegalStateException("Generating the output failed.");
+            } else if (callno.equals("empty")) {
+                return "";
+            } else if (callno.startsWith("sleep:")) {
+                Thread.sleep(Long.parseLong(callno.substring(6)));
+            }
+            return callno;
+        }
+    }
+}
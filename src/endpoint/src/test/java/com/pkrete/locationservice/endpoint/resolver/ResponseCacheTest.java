@@ -0,0 +1,79 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.resolver;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that outputs generated before an invalidation are not cached, and
+ * that the outputs expire.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ResponseCacheTest {
+
+    @Test
+    public void testOutputGeneratedBeforeInvalidationIsNotCached() {
+        ResponseCache cache = new ResponseCache();
+        long generation = cache.getGeneration("OWNER");
+        cache.invalidate("OWNER");
+        cache.put("key", "OWNER", "output", generation);
+        assertNull(cache.getOutput("key"));
+
+        cache.put("key", "OWNER", "output", cache.getGeneration("OWNER"));
+        assertEquals("output", cache.getOutput("key"));
+        // Other owners are not affected
+        generation = cache.getGeneration("OTHER");
+        cache.invalidate("OWNER");
+        cache.put("other", "OTHER", "other output", generation);
+        assertEquals("other output", cache.getOutput("other"));
+        assertNull(cache.getOutput("key"));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        ResponseCache cache = new ResponseCache();
+        long generation = cache.getGeneration("OWNER");
+        cache.put("key", "OWNER", "output", generation);
+        cache.invalidateAll();
+        assertNull(cache.getOutput("key"));
+        cache.put("key", "OWNER", "output", generation);
+        assertNull(cache.getOutput("key"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testOutputExpires() throws Exception {
+        ResponseCache cache = new ResponseCache();
+        cache.setTimeToLive(0);
+        cache.put("key", "OWNER", "output", cache.getGeneration("OWNER"));
+        assertEquals(12, cache.getSize());
+        Thread.sleep(5);
+        assertNull(cache.getOutput("key"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testDebugOutputIsNotCached() {
+        ResponseCache cache = new ResponseCache();
+        cache.put("key", "OWNER", "<b>DEBUG INFO</b>", cache.getGeneration("OWNER"));
+        assertNull(cache.getOutput("key"));
+    }
+}
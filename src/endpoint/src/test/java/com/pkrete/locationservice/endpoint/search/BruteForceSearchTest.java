@@ -0,0 +1,126 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.search;
+
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.model.search.Position;
+import com.pkrete.locationservice.endpoint.model.search.SearchType;
+import com.pkrete.locationservice.endpoint.service.Service;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the brute force search loads the libraries in batches while
+ * the results are iterated, also when there's no limit.
+ *
+ * @author Petteri Kivimäki
+ */
+public class BruteForceSearchTest {
+
+    private final List<Library> libraries = new ArrayList<Library>();
+    private final AtomicInteger batches = new AtomicInteger();
+    private final Owner owner = new Owner("OWNER", "Owner");
+    private BruteForceSearch search;
+
+    @Before
+    public void setUp() {
+        for (int id = 10; id <= 50; id += 10) {
+            Library library = new Library("LIB_" + id);
+            library.setLocationId(id);
+            this.libraries.add(library);
+        }
+        this.search = new BruteForceSearch();
+        this.search.setDbService((Service) Proxy.newProxyInstance(Service.class.getClassLoader(), new Class<?>[]{Service.class}, new LibraryService()));
+        this.search.setBatchSize(2);
+    }
+
+    @Test
+    public void testUnlimitedResultsAreLoadedWhileIterated() {
+        Iterator<Location> iterator = this.search.stream("LIB", Position.FIRST, SearchType.CODE, this.owner, false, 0, 0).iterator();
+        assertEquals(0, this.batches.get());
+        assertEquals(10, iterator.next().getLocationId());
+        assertEquals(20, iterator.next().getLocationId());
+        assertEquals(1, this.batches.get());
+        assertEquals("[30, 40, 50]", ids(iterator));
+        assertEquals(3, this.batches.get());
+    }
+
+    @Test
+    public void testPageStopsLoading() {
+        assertEquals("[20, 30]", ids(this.search.stream("LIB", Position.FIRST, SearchType.CODE, this.owner, false, 1, 2).iterator()));
+        assertEquals(2, this.batches.get());
+        assertEquals("[20, 30]", ids(this.search.search("LIB", Position.FIRST, SearchType.CODE, this.owner, false, 1, 2).iterator()));
+    }
+
+    @Test
+    public void testBatchesWithoutResultsAreSkipped() {
+        Iterator<Location> iterator = this.search.stream("LIB_50", Position.MATCH, SearchType.CODE, this.owner, false, 0, 0).iterator();
+        assertEquals(50, iterator.next().getLocationId());
+        assertEquals(3, this.batches.get());
+    }
+
+    @Test
+    public void testIdSearchStopsWhenFound() {
+        assertEquals("[20]", ids(this.search.stream("20", Position.MATCH, SearchType.ID, this.owner, false, 0, 0).iterator()));
+        assertEquals(1, this.batches.get());
+    }
+
+    /**
+     * Returns the ids of the remaining locations of the given iterator.
+     */
+    private static String ids(Iterator<Location> iterator) {
+        List<Integer> ids = new ArrayList<Integer>();
+        while (iterator.hasNext()) {
+            ids.add(iterator.next().getLocationId());
+        }
+        return ids.toString();
+    }
+
+    /**
+     * Service that returns pages of the libraries ordered by id.
+     */
+    private class LibraryService implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (!"getAllLocations".equals(method.getName()) || args.length != 3) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            batches.incrementAndGet();
+            int afterId = (Integer) args[1];
+            int maxResults = (Integer) args[2];
+            List<Library> page = new ArrayList<Library>();
+            for (Library library : libraries) {
+                if (library.getLocationId() > afterId && page.size() < maxResults) {
+                    page.add(library);
+                }
+            }
+            return page;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.search;
+
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.model.search.Position;
+import com.pkrete.locationservice.endpoint.model.search.SearchType;
+import com.pkrete.locationservice.endpoint.search.index.LocationSearchIndexCache;
+import com.pkrete.locationservice.endpoint.service.Service;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests that the results of the indexed search are loaded from the database
+ * in batches while they're iterated.
+ *
+ * @author Petteri Kivimäki
+ */
+public class IndexedSearchTest {
+
+    private final Map<Integer, Library> libraries = new TreeMap<Integer, Library>();
+    private final Map<Integer, Library> stored = new TreeMap<Integer, Library>();
+    private final AtomicInteger batches = new AtomicInteger();
+    private final Owner owner = new Owner("OWNER", "Owner");
+    private IndexedSearch search;
+
+    @Before
+    public void setUp() {
+        for (int id = 10; id <= 50; id += 10) {
+            Library library = new Library("LIB_" + id);
+            library.setLocationId(id);
+            this.libraries.put(id, library);
+        }
+        this.stored.putAll(this.libraries);
+        Service service = (Service) Proxy.newProxyInstance(Service.class.getClassLoader(), new Class<?>[]{Service.class}, new LibraryService());
+        LocationSearchIndexCache cache = new LocationSearchIndexCache();
+        cache.setDbService(service);
+        this.search = new IndexedSearch();
+        this.search.setDbService(service);
+        this.search.setIndexCache(cache);
+        this.search.setBatchSize(2);
+    }
+
+    @Test
+    public void testResultsAreLoadedWhileIterated() {
+        Iterator<Location> iterator = this.search.stream("LIB", Position.FIRST, SearchType.CODE, this.owner, false, 0, 0).iterator();
+        assertEquals(0, this.batches.get());
+        assertEquals(10, iterator.next().getLocationId());
+        assertEquals(1, this.batches.get());
+        assertEquals(20, iterator.next().getLocationId());
+        assertEquals(1, this.batches.get());
+        assertEquals("[30, 40, 50]", ids(iterator));
+        assertEquals(3, this.batches.get());
+    }
+
+    @Test
+    public void testPage() {
+        Iterable<Location> results = this.search.stream("LIB", Position.FIRST, SearchType.CODE, this.owner, false, 1, 3);
+        assertEquals("[20, 30, 40]", ids(results.iterator()));
+        assertEquals(2, this.batches.get());
+        assertEquals(ids(this.search.search("LIB", Position.FIRST, SearchType.CODE, this.owner, false, 1, 3).iterator()), ids(results.iterator()));
+    }
+
+    @Test
+    public void testDeletedLocationsAreSkipped() {
+        // Build the index before the locations are deleted
+        this.search.search("LIB", Position.FIRST, SearchType.CODE, this.owner, false, 0, 0);
+        this.stored.remove(10);
+        this.stored.remove(20);
+        this.stored.remove(50);
+        this.batches.set(0);
+        assertEquals("[30, 40]", ids(this.search.stream("LIB", Position.FIRST, SearchType.CODE, this.owner, false, 0, 0).iterator()));
+        assertEquals(3, this.batches.get());
+    }
+
+    @Test
+    public void testNoResults() {
+        assertFalse(this.search.stream("NONE", Position.ANY, SearchType.CODE, this.owner, false, 0, 0).iterator().hasNext());
+        assertEquals(0, this.batches.get());
+    }
+
+    /**
+     * Returns the ids of the remaining locations of the given iterator.
+     */
+    private static String ids(Iterator<Location> iterator) {
+        List<Integer> ids = new ArrayList<Integer>();
+        while (iterator.hasNext()) {
+            ids.add(iterator.next().getLocationId());
+        }
+        return ids.toString();
+    }
+
+    /**
+     * Service that returns pages of the libraries for building the index,
+     * and the stored libraries by id.
+     */
+    private class LibraryService implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("getAllLocations".equals(method.getName()) && args.length == 3) {
+                int afterId = (Integer) args[1];
+                int maxResults = (Integer) args[2];
+                List<Library> page = new ArrayList<Library>();
+                for (Library library : libraries.values()) {
+                    if (library.getLocationId() > afterId && page.size() < maxResults) {
+                        page.add(library);
+                    }
+                }
+                return page;
+            } else if ("getLocations".equals(method.getName())) {
+                batches.incrementAndGet();
+                List<Location> locations = new ArrayList<Location>();
+                for (Object id : (List) args[0]) {
+                    if (stored.containsKey((Integer) id)) {
+                        locations.add(stored.get((Integer) id));
+                    }
+                }
+                return locations;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
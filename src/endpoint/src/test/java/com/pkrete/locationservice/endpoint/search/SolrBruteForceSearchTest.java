@@ -0,0 +1,176 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.search;
+
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.Location;
+import com.pkrete.locationservice.endpoint.model.location.SimpleLocation;
+import com.pkrete.locationservice.endpoint.model.owner.Owner;
+import com.pkrete.locationservice.endpoint.model.search.LocationType;
+import com.pkrete.locationservice.endpoint.model.search.Position;
+import com.pkrete.locationservice.endpoint.model.search.SearchType;
+import com.pkrete.locationservice.endpoint.service.Service;
+import com.pkrete.locationservice.endpoint.solr.service.LocationIndexService;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the Solr search pages the results in Solr while they're
+ * iterated, and that searches of type ALL page through the db instead of
+ * loading all the locations of the owner.
+ *
+ * @author Petteri Kivimäki
+ */
+public class SolrBruteForceSearchTest {
+
+    private final List<Library> libraries = new ArrayList<Library>();
+    private final List<String> calls = new ArrayList<String>();
+    private final Owner owner = new Owner("OWNER", "Owner");
+    private SolrBruteForceSearch search;
+
+    @Before
+    public void setUp() {
+        for (int id = 10; id <= 50; id += 10) {
+            Library library = new Library("LIB_" + id);
+            library.setLocationId(id);
+            this.libraries.add(library);
+        }
+        Service service = (Service) Proxy.newProxyInstance(Service.class.getClassLoader(), new Class<?>[]{Service.class}, new LibraryService());
+        BruteForceSearch fallback = new BruteForceSearch();
+        fallback.setDbService(service);
+        fallback.setBatchSize(2);
+        this.search = new SolrBruteForceSearch();
+        this.search.setDbService(service);
+        this.search.setLocationIndexService((LocationIndexService) Proxy.newProxyInstance(LocationIndexService.class.getClassLoader(), new Class<?>[]{LocationIndexService.class}, new IndexService()));
+        this.search.setFallback(fallback);
+        this.search.setBatchSize(2);
+    }
+
+    @Test
+    public void testResultsArePagedWhileIterated() {
+        Iterator<Location> iterator = this.search.stream("LIB", Position.FIRST, SearchType.CODE, this.owner, false, 1, 0).iterator();
+        assertEquals("[]", this.calls.toString());
+        assertEquals(20, iterator.next().getLocationId());
+        assertEquals("[solr 1 2, db 2]", this.calls.toString());
+        assertEquals("[30, 40, 50]", ids(iterator));
+        assertEquals("[solr 1 2, db 2, solr 3 2, db 2, solr 5 2]", this.calls.toString());
+    }
+
+    @Test
+    public void testLimit() {
+        assertEquals("[10, 20, 30]", ids(this.search.stream("LIB", Position.FIRST, SearchType.CODE, this.owner, false, 0, 3).iterator()));
+        assertEquals("[solr 0 2, db 2, solr 2 1, db 1]", this.calls.toString());
+    }
+
+    @Test
+    public void testAllIsPagedThroughDb() {
+        assertEquals("[20, 30]", ids(this.search.stream("", Position.ANY, SearchType.ALL, this.owner, false, 1, 2).iterator()));
+        assertEquals("[db page 0, db page 20]", this.calls.toString());
+        this.calls.clear();
+        assertEquals("[10, 20, 30, 40, 50]", ids(this.search.search("", Position.ANY, SearchType.ALL, this.owner, false).iterator()));
+        assertEquals("[db page 0, db page 20, db page 40]", this.calls.toString());
+    }
+
+    /**
+     * Returns the ids of the remaining locations of the given iterator.
+     */
+    private static String ids(Iterator<Location> iterator) {
+        List<Integer> ids = new ArrayList<Integer>();
+        while (iterator.hasNext()) {
+            ids.add(iterator.next().getLocationId());
+        }
+        return ids.toString();
+    }
+
+    /**
+     * Returns a SimpleLocation representing the given library.
+     */
+    private static SimpleLocation document(final Library library) {
+        return (SimpleLocation) Proxy.newProxyInstance(SimpleLocation.class.getClassLoader(), new Class<?>[]{SimpleLocation.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getLocationId".equals(method.getName())) {
+                    return library.getLocationId();
+                } else if ("getLocationType".equals(method.getName())) {
+                    return LocationType.LIBRARY;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * Search index that returns pages of all the libraries.
+     */
+    private class IndexService implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (!"search".equals(method.getName()) || args.length != 6) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            int offset = (Integer) args[4];
+            int limit = (Integer) args[5];
+            calls.add("solr " + offset + " " + limit);
+            List<SimpleLocation> page = new ArrayList<SimpleLocation>();
+            for (int i = offset; i < libraries.size() && page.size() < limit; i++) {
+                page.add(document(libraries.get(i)));
+            }
+            return page;
+        }
+    }
+
+    /**
+     * Service that returns the libraries by id and pages of the libraries
+     * ordered by id.
+     */
+    private class LibraryService implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            List<Location> results = new ArrayList<Location>();
+            if ("getLocations".equals(method.getName())) {
+                List ids = (List) args[0];
+                calls.add("db " + ids.size());
+                for (Library library : libraries) {
+                    if (ids.contains(library.getLocationId())) {
+                        results.add(library);
+                    }
+                }
+                return results;
+            } else if ("getAllLocations".equals(method.getName()) && args.length == 3) {
+                int afterId = (Integer) args[1];
+                calls.add("db page " + afterId);
+                for (Library library : libraries) {
+                    if (library.getLocationId() > afterId && results.size() < (Integer) args[2]) {
+                        results.add(library);
+                    }
+                }
+                return results;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
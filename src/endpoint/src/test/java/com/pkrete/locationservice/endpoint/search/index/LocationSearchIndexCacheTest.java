@@ -0,0 +1,174 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.search.index;
+
+import com.pkrete.locationservice.endpoint.model.location.Library;
+import com.pkrete.locationservice.endpoint.model.location.LibraryCollection;
+import com.pkrete.locationservice.endpoint.model.search.Position;
+import com.pkrete.locationservice.endpoint.model.search.SearchType;
+import com.pkrete.locationservice.endpoint.service.Service;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests that modified libraries are replaced in the search index without
+ * rebuilding the whole index, and that the result is the same as a rebuilt
+ * index.
+ *
+ * @author Petteri Kivimäki
+ */
+public class LocationSearchIndexCacheTest {
+
+    private final Map<Integer, Library> libraries = new TreeMap<Integer, Library>();
+    private final AtomicInteger loaded = new AtomicInteger();
+    private LocationSearchIndexCache cache;
+
+    @Before
+    public void setUp() {
+        this.libraries.put(10, library(10, "LIB_A", "COL_A"));
+        this.libraries.put(20, library(20, "LIB_B", "COL_B"));
+        this.libraries.put(30, library(30, "LIB_C", "COL_C"));
+        this.cache = new LocationSearchIndexCache();
+        this.cache.setBatchSize(2);
+        this.cache.setDbService((Service) Proxy.newProxyInstance(Service.class.getClassLoader(), new Class<?>[]{Service.class}, new LibraryService()));
+    }
+
+    @Test
+    public void testUpdateLibrary() {
+        LocationSearchIndex index = this.cache.get("OWNER");
+        assertEquals(6, index.size());
+        this.loaded.set(0);
+
+        this.libraries.put(20, library(20, "LIB_B2", "COL_B", "COL_B2"));
+        this.cache.updateLibraries("OWNER", Arrays.asList(20));
+        assertEquals(1, this.loaded.get());
+
+        index = this.cache.get("OWNER");
+        assertEquals(7, index.size());
+        assertEquals(0, index.find(SearchType.CODE, "LIB_B", Position.MATCH).length);
+        assertLocations(index, "LIB_B2", 20);
+        assertLocations(index, "COL_B2", 202);
+        assertSameAsRebuilt(index);
+    }
+
+    @Test
+    public void testAddAndDeleteLibrary() {
+        this.cache.get("OWNER");
+        this.libraries.remove(10);
+        this.libraries.put(25, library(25, "LIB_D", "COL_D"));
+        this.cache.updateLibraries("OWNER", Arrays.asList(10, 25));
+
+        LocationSearchIndex index = this.cache.get("OWNER");
+        assertEquals(6, index.size());
+        assertEquals(0, index.find(SearchType.CODE, "LIB_A", Position.MATCH).length);
+        assertEquals(0, index.find(SearchType.ID, "10", Position.MATCH).length);
+        // The new library is placed between the existing ones by id
+        assertEquals(2, index.find(SearchType.ID, "25", Position.MATCH)[0]);
+        assertSameAsRebuilt(index);
+    }
+
+    @Test
+    public void testUpdateWithoutIndex() {
+        this.cache.updateLibraries("OWNER", Arrays.asList(10));
+        assertEquals(0, this.loaded.get());
+    }
+
+    @Test
+    public void testUnchangedIndexIsReused() {
+        LocationSearchIndex index = this.cache.get("OWNER");
+        assertSame(index, index.replaceLibrary(99, null));
+    }
+
+    /**
+     * Checks that the given code is found from the location with the given
+     * id.
+     */
+    private static void assertLocations(LocationSearchIndex index, String code, int id) {
+        int[] found = index.find(SearchType.CODE, code, Position.MATCH);
+        assertEquals(1, found.length);
+        assertEquals(id, index.getId(found[0]));
+    }
+
+    /**
+     * Checks that the given index equals to an index built from scratch.
+     */
+    private void assertSameAsRebuilt(LocationSearchIndex index) {
+        this.cache.invalidate("OWNER");
+        LocationSearchIndex rebuilt = this.cache.get("OWNER");
+        assertEquals(rebuilt.size(), index.size());
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(rebuilt.getId(i), index.getId(i));
+            assertEquals(rebuilt.getType(i), index.getType(i));
+        }
+        for (String search : new String[]{"LIB", "COL", "_B", "B2"}) {
+            for (Position position : Position.values()) {
+                assertEquals(Arrays.toString(rebuilt.find(SearchType.CODE, search, position)), Arrays.toString(index.find(SearchType.CODE, search, position)));
+            }
+        }
+    }
+
+    /**
+     * Creates a library with the given collections. The ids of the
+     * collections are the library id followed by a running number.
+     */
+    private static Library library(int id, String code, String... collections) {
+        Library library = new Library(code);
+        library.setLocationId(id);
+        int i = 1;
+        for (String colCode : collections) {
+            LibraryCollection col = new LibraryCollection(colCode, library);
+            col.setLocationId(id * 10 + i++);
+            library.addCollection(col);
+        }
+        return library;
+    }
+
+    /**
+     * Service that returns pages of the libraries ordered by id.
+     */
+    private class LibraryService implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (!"getAllLocations".equals(method.getName()) || args.length != 3) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            int afterId = (Integer) args[1];
+            int maxResults = (Integer) args[2];
+            List<Library> page = new ArrayList<Library>();
+            for (Library library : libraries.values()) {
+                if (library.getLocationId() > afterId && page.size() < maxResults) {
+                    page.add(library);
+                }
+            }
+            loaded.addAndGet(page.size());
+            return page;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.servlets;
+
+import com.pkrete.locationservice.endpoint.converter.ConverterService;
+import com.pkrete.locationservice.endpoint.generator.Generator;
+import com.pkrete.locationservice.endpoint.resolver.BasicResolver;
+import com.pkrete.locationservice.endpoint.resolver.BatchItem;
+import com.pkrete.locationservice.endpoint.resolver.OutputFormat;
+import com.pkrete.locationservice.endpoint.servlets.request.BatchLocationHandlerRequest;
+import com.pkrete.locationservice.endpoint.statistics.SearchEvent;
+import com.pkrete.locationservice.endpoint.statistics.SearchEventStatisticsQueue;
+import com.pkrete.locationservice.endpoint.util.ApplicationContextUtils;
+import com.pkrete.locationservice.endpoint.util.PropertiesUtil;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.support.StaticApplicationContext;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that BatchLocationHandler returns the outputs of the items in the
+ * order of the call numbers, and that a search event with the processing time
+ * of the item is recorded for every item.
+ *
+ * The resolver returns the call number of an item as its output. The call
+ * number "empty" produces an empty output and the call number "fail" the
+ * error output that the resolver returns for failed items.
+ *
+ * @author Petteri Kivimäki
+ */
+public class BatchLocationHandlerTest {
+
+    private final List<List<BatchItem>> batches = new ArrayList<List<BatchItem>>();
+    private final Map<String, String[]> parameters = new HashMap<String, String[]>();
+    private int status = 200;
+
+    @BeforeClass
+    public static void setUpClass() {
+        Properties properties = new Properties();
+        properties.setProperty("error.batchlocationhandler.400.message", "Bad request.");
+        PropertiesUtil util = new PropertiesUtil();
+        util.setProperties(properties);
+        util.postProcessBeanFactory(new DefaultListableBeanFactory());
+    }
+
+    @Before
+    public void setUp() {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("converter", Proxy.newProxyInstance(ConverterService.class.getClassLoader(), new Class<?>[]{ConverterService.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return args[0] == null ? args[2] : OutputFormat.valueOf(((String) args[0]).toUpperCase());
+            }
+        }));
+        context.getBeanFactory().registerSingleton("resolver", new BasicResolver() {
+            @Override
+            public List<String> resolveAll(List<BatchItem> items, String lang, String owner, OutputFormat format) {
+                batches.add(items);
+                List<String> outputs = new ArrayList<String>();
+                for (int i = 0; i < items.size(); i++) {
+                    String callno = items.get(i).getCallno();
+                    items.get(i).setProcessingTime(i + 1);
+                    if (callno.equals("empty")) {
+                        outputs.add("");
+                    } else if (callno.equals("fail")) {
+                        outputs.add(format == OutputFormat.XML ? "<error>500</error>" : "{\"error\":\"500\"}");
+                    } else {
+                        outputs.add(format == OutputFormat.XML ? "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<callno>" + callno + "</callno>" : "\"" + callno + "\"");
+                    }
+                }
+                return outputs;
+            }
+        });
+        Map<OutputFormat, Generator> generators = new EnumMap<OutputFormat, Generator>(OutputFormat.class);
+        generators.put(OutputFormat.JSON, (Generator) Proxy.newProxyInstance(Generator.class.getClassLoader(), new Class<?>[]{Generator.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return "{\"error\":\"" + args[0] + "\"}";
+            }
+        }));
+        context.getBeanFactory().registerSingleton("generators", generators);
+        new ApplicationContextUtils().setApplicationContext(context);
+        SearchEventStatisticsQueue queue = SearchEventStatisticsQueue.getInstance();
+        while (!queue.isEmpty()) {
+            queue.take();
+        }
+        this.parameters.put("lang", new String[]{"fi"});
+        this.parameters.put("owner", new String[]{"OWNER"});
+    }
+
+    @Test
+    public void testJsonOutputsAreInItemOrder() throws Exception {
+        this.parameters.put("callno", new String[]{"C 3", "empty", "A 1", "fail", "B 2"});
+        assertEquals("[\"C 3\",null,\"A 1\",{\"error\":\"500\"},\"B 2\"]", this.process(true));
+        assertEquals(200, this.status);
+    }
+
+    @Test
+    public void testXmlOutputsAreInItemOrder() throws Exception {
+        this.parameters.put("callno", new String[]{"B 2", "A 1"});
+        this.parameters.put("output", new String[]{"xml"});
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<results>\n<callno>B 2</callno>\n<callno>A 1</callno>\n</results>", this.process(true));
+    }
+
+    @Test
+    public void testItemsAreMatchedByPosition() throws Exception {
+        this.parameters.put("callno", new String[]{"A 1", "B 2", "C 3"});
+        this.parameters.put("collection", new String[]{"K1", "K2"});
+        this.parameters.put("status", new String[]{"1"});
+        this.parameters.put("id", new String[]{"", "12"});
+        this.process(true);
+        List<BatchItem> items = this.batches.get(0);
+        assertEquals(3, items.size());
+        assertEquals("K1|false|null", describe(items.get(0)));
+        assertEquals("K2|true|12", describe(items.get(1)));
+        assertEquals("|true|null", describe(items.get(2)));
+    }
+
+    @Test
+    public void testEventsHaveItemProcessingTimes() throws Exception {
+        this.parameters.put("callno", new String[]{"A 1", "fail", "C 3"});
+        this.parameters.put("collection", new String[]{"K1"});
+        this.process(true);
+        List<SearchEvent> events = new ArrayList<SearchEvent>();
+        SearchEventStatisticsQueue queue = SearchEventStatisticsQueue.getInstance();
+        while (!queue.isEmpty()) {
+            events.add(queue.take());
+        }
+        assertEquals(3, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(this.parameters.get("callno")[i], events.get(i).getCallno());
+            assertEquals(i + 1, events.get(i).getProcessingTime());
+        }
+        assertEquals("K1", events.get(0).getCollection());
+        assertEquals("", events.get(1).getCollection());
+    }
+
+    @Test
+    public void testInvalidRequest() throws Exception {
+        this.parameters.put("callno", new String[]{"A 1"});
+        assertEquals("{\"error\":\"400\"}", this.process(false));
+        assertEquals(400, this.status);
+        assertEquals(0, this.batches.size());
+        assertEquals(true, SearchEventStatisticsQueue.getInstance().isEmpty());
+    }
+
+    /**
+     * Passes the request to the servlet the same way as
+     * BatchLocationHandlerValidationFilter does and returns the output.
+     */
+    private String process(final boolean valid) throws Exception {
+        HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getParameterValues")) {
+                    return parameters.get((String) args[0]);
+                } else if (method.getName().equals("getParameter")) {
+                    String[] values = parameters.get((String) args[0]);
+                    return values == null ? null : values[0];
+                } else if (method.getName().equals("getAttribute")) {
+                    return valid;
+                }
+                return null;
+            }
+        });
+        StringWriter writer = new StringWriter();
+        final PrintWriter out = new PrintWriter(writer);
+        HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getWriter")) {
+                    return out;
+                } else if (method.getName().equals("setStatus")) {
+                    status = (Integer) args[0];
+                }
+                return null;
+            }
+        });
+        new BatchLocationHandler().processRequest(new BatchLocationHandlerRequest(request), response);
+        return writer.toString();
+    }
+
+    private static String describe(BatchItem item) {
+        return item.getCollection() + "|" + item.getStatus() + "|" + item.getId();
+    }
+}
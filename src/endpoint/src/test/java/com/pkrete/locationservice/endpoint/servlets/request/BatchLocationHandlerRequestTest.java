@@ -0,0 +1,99 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.servlets.request;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that the item parameters of a BatchLocationHandler request are
+ * matched to the call numbers by their position, and that default values are
+ * returned for the missing positions.
+ *
+ * @author Petteri Kivimäki
+ */
+public class BatchLocationHandlerRequestTest {
+
+    @Test
+    public void testMissingPositionsGetDefaultValues() {
+        Map<String, String[]> parameters = new HashMap<String, String[]>();
+        parameters.put("callno", new String[]{"A 1", "B 2", "C 3"});
+        parameters.put("collection", new String[]{"K1"});
+        parameters.put("id", new String[]{"", "12"});
+        BatchLocationHandlerRequest request = new BatchLocationHandlerRequest(request(parameters));
+        assertArrayEquals(new String[]{"A 1", "B 2", "C 3"}, request.getParameterValues("callno"));
+        assertArrayEquals(new String[]{"K1", "", ""}, request.getParameterValues("collection"));
+        assertArrayEquals(new String[]{"0", "0", "0"}, request.getParameterValues("status"));
+        assertArrayEquals(new String[]{null, "12", null}, request.getParameterValues("id"));
+    }
+
+    @Test
+    public void testValuesAreValidatedByPosition() {
+        Map<String, String[]> parameters = new HashMap<String, String[]>();
+        parameters.put("callno", new String[]{"A 1", "B 2"});
+        parameters.put("status", new String[]{"1", "01"});
+        parameters.put("id", new String[]{"x1", "7"});
+        BatchLocationHandlerRequest request = new BatchLocationHandlerRequest(request(parameters));
+        assertArrayEquals(new String[]{"1", "0"}, request.getParameterValues("status"));
+        assertArrayEquals(new String[]{null, "7"}, request.getParameterValues("id"));
+    }
+
+    @Test
+    public void testExtraValuesAreIgnored() {
+        Map<String, String[]> parameters = new HashMap<String, String[]>();
+        parameters.put("callno", new String[]{"A 1"});
+        parameters.put("collection", new String[]{"K1", "K2"});
+        BatchLocationHandlerRequest request = new BatchLocationHandlerRequest(request(parameters));
+        assertArrayEquals(new String[]{"K1"}, request.getParameterValues("collection"));
+    }
+
+    @Test
+    public void testWithoutCallnos() {
+        Map<String, String[]> parameters = new HashMap<String, String[]>();
+        parameters.put("collection", new String[]{"K1"});
+        parameters.put("lang", new String[]{"fi"});
+        BatchLocationHandlerRequest request = new BatchLocationHandlerRequest(request(parameters));
+        assertNull(request.getParameterValues("callno"));
+        assertNull(request.getParameterValues("collection"));
+        assertEquals(Arrays.asList("fi"), Arrays.asList(request.getParameterValues("lang")));
+    }
+
+    private static HttpServletRequest request(final Map<String, String[]> parameters) {
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getParameterValues")) {
+                    return parameters.get((String) args[0]);
+                } else if (method.getName().equals("getParameter")) {
+                    String[] values = parameters.get((String) args[0]);
+                    return values == null ? null : values[0];
+                }
+                return null;
+            }
+        });
+    }
+}
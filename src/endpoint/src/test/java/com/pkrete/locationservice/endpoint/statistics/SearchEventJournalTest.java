@@ -0,0 +1,253 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.statistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests replaying the segments of the {@link SearchEventJournal
+ * SearchEventJournal}, including segments that contain corrupt records, and
+ * the size limit of the journal.
+ *
+ * @author Petteri Kivimäki
+ */
+public class SearchEventJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private SearchEventJournal journal;
+    private List<String> saved;
+
+    @Before
+    public void setUp() {
+        this.journal = new SearchEventJournal();
+        this.journal.setDirectory(this.folder.getRoot().getPath());
+        this.saved = new ArrayList<String>();
+    }
+
+    @Test
+    public void testReplay() {
+        assertTrue(this.journal.append(events("A", "B", "C")));
+        File segment = this.closeSegment();
+        assertTrue(this.journal.replay(segment, 2, new Saver()));
+        assertEquals(names("A", "B", "C"), this.saved);
+        assertFalse(segment.exists());
+        assertTrue(this.journal.isEmpty());
+    }
+
+    @Test
+    public void testReplayRejected() {
+        assertTrue(this.journal.append(events("A", "B", "C")));
+        File segment = this.closeSegment();
+        // The first batch is saved, the second one is rejected
+        assertFalse(this.journal.replay(segment, 2, new Saver(1)));
+        assertTrue(segment.exists());
+        assertEquals(names("A", "B"), this.saved);
+        // Replaying continues after the saved batch
+        this.saved.clear();
+        assertTrue(this.journal.replay(segment, 2, new Saver()));
+        assertEquals(names("C"), this.saved);
+        assertFalse(segment.exists());
+    }
+
+    @Test
+    public void testUnsupportedVersion() throws IOException {
+        assertTrue(this.journal.append(events("A", "B", "C")));
+        File segment = this.closeSegment();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            // Version byte of the second record
+            file.seek(4 + file.readInt() + 4);
+            file.writeByte(99);
+        } finally {
+            file.close();
+        }
+        assertTrue(this.journal.replay(segment, 10, new Saver()));
+        assertEquals(names("A", "C"), this.saved);
+        this.assertQuarantined(segment);
+    }
+
+    @Test
+    public void testCorruptLength() throws IOException {
+        assertTrue(this.journal.append(events("A", "B", "C")));
+        File segment = this.closeSegment();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            // Length of the second record
+            file.seek(4 + file.readInt());
+            file.writeInt(Integer.MAX_VALUE);
+        } finally {
+            file.close();
+        }
+        assertTrue(this.journal.replay(segment, 10, new Saver()));
+        assertEquals(names("A"), this.saved);
+        this.assertQuarantined(segment);
+    }
+
+    @Test
+    public void testPartialRecord() throws IOException {
+        assertTrue(this.journal.append(events("A", "B")));
+        File segment = this.closeSegment();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.setLength(file.length() - 3);
+        } finally {
+            file.close();
+        }
+        assertTrue(this.journal.replay(segment, 10, new Saver()));
+        assertEquals(names("A"), this.saved);
+        this.assertQuarantined(segment);
+    }
+
+    @Test
+    public void testCorruptSegmentDoesNotBlockJournal() throws IOException {
+        assertTrue(this.journal.append(events("A")));
+        File first = this.closeSegment();
+        assertTrue(this.journal.append(events("B")));
+        RandomAccessFile file = new RandomAccessFile(first, "rw");
+        try {
+            file.seek(4);
+            file.writeByte(99);
+        } finally {
+            file.close();
+        }
+        List<File> segments = this.journal.closeSegments();
+        assertEquals(2, segments.size());
+        for (File segment : segments) {
+            assertTrue(this.journal.replay(segment, 10, new Saver()));
+        }
+        assertEquals(names("B"), this.saved);
+        this.assertQuarantined(first);
+        assertTrue(this.journal.isEmpty());
+    }
+
+    @Test
+    public void testDropOldestSegments() {
+        assertTrue(this.journal.append(events("A")));
+        long segmentSize = this.journal.size();
+        this.journal.setMaxSegmentSize(1);
+        this.journal.setMaxSize(2 * segmentSize);
+        assertTrue(this.journal.append(events("B")));
+        assertTrue(this.journal.append(events("C")));
+        assertEquals(2 * segmentSize, this.journal.size());
+        List<File> segments = this.journal.closeSegments();
+        assertEquals(2, segments.size());
+        for (File segment : segments) {
+            assertTrue(this.journal.replay(segment, 10, new Saver()));
+        }
+        assertEquals(names("B", "C"), this.saved);
+    }
+
+    @Test
+    public void testBatchLargerThanJournal() {
+        assertTrue(this.journal.append(events("A")));
+        this.journal.setMaxSize(this.journal.size());
+        assertFalse(this.journal.append(events("B", "C")));
+        assertTrue(this.journal.replay(this.closeSegment(), 10, new Saver()));
+        assertEquals(names("A"), this.saved);
+    }
+
+    @Test
+    public void testFailedAppendLeavesNoRecords() {
+        assertTrue(this.journal.append(events("A")));
+        long size = this.journal.size();
+        List<SearchEvent> events = events("B", "C");
+        // Strings longer than 65535 bytes can't be written
+        events.get(1).setCallno(new String(new char[70000]).replace('\0', 'x'));
+        assertFalse(this.journal.append(events));
+        assertEquals(size, this.journal.size());
+        assertTrue(this.journal.append(events("D")));
+        assertTrue(this.journal.replay(this.closeSegment(), 10, new Saver()));
+        assertEquals(names("A", "D"), this.saved);
+    }
+
+    @Test
+    public void testAppendIsWrittenBeforeClose() {
+        assertTrue(this.journal.append(events("A", "B")));
+        File[] files = this.folder.getRoot().listFiles();
+        assertEquals(1, files.length);
+        assertEquals(this.journal.size(), files[0].length());
+        assertTrue(files[0].length() > 0);
+    }
+
+    private File closeSegment() {
+        List<File> segments = this.journal.closeSegments();
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    private void assertQuarantined(File segment) {
+        assertFalse("Corrupt segment must not be replayed again", segment.exists());
+        assertTrue("Corrupt segment must not be deleted", new File(segment.getPath() + ".corrupt").exists());
+    }
+
+    private static List<SearchEvent> events(String... callnos) {
+        List<SearchEvent> events = new ArrayList<SearchEvent>();
+        for (String callno : callnos) {
+            events.add(new SearchEvent(callno, "coll", "fi", "200", "127.0.0.1", SearchEventType.LOCATION_HANDLER, "TEST", 5));
+        }
+        return events;
+    }
+
+    private static List<String> names(String... callnos) {
+        List<String> names = new ArrayList<String>();
+        for (String callno : callnos) {
+            names.add(callno);
+        }
+        return names;
+    }
+
+    /**
+     * Handler that stores the call numbers of the saved events. The handler
+     * can be set to reject all the batches after the given number of batches.
+     */
+    private class Saver implements SearchEventJournal.BatchHandler {
+
+        private int batches;
+
+        Saver() {
+            this(Integer.MAX_VALUE);
+        }
+
+        Saver(int batches) {
+            this.batches = batches;
+        }
+
+        @Override
+        public boolean handle(List<SearchEvent> events) {
+            if (this.batches-- <= 0) {
+                return false;
+            }
+            for (SearchEvent event : events) {
+                saved.add(event.getCallno());
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * This file is part of Location Service :: Endpoint. Copyright (C) 2014 Petteri
+ * Kivimäki
+ *
+ * Location Service :: Endpoint is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Location Service :: Endpoint is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * Location Service :: Endpoint. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.pkrete.locationservice.endpoint.templateparser;
+
+import com.pkrete.locationservice.endpoint.generator.GeneratorFixture;
+import com.pkrete.locationservice.endpoint.loader.Loader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static com.pkrete.locationservice.endpoint.generator.GeneratorFixture.assertGolden;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the templates populated by the
+ * {@link OptimizedTagParser OptimizedTagParser} against golden files. The
+ * test template contains all the supported tags, with and without arguments.
+ *
+ * @author Petteri Kivimäki
+ */
+public class OptimizedTagParserTest {
+
+    private static final String GOLDEN_PATH = "/com/pkrete/locationservice/endpoint/templateparser/golden/";
+    private GeneratorFixture fixture;
+    private OptimizedTagParser parser;
+    private Loader loader;
+    private List<String> template;
+
+    @Before
+    public void setUp() throws IOException {
+        this.fixture = new GeneratorFixture();
+        this.parser = new OptimizedTagParser();
+        this.loader = (Loader) Proxy.newProxyInstance(Loader.class.getClassLoader(), new Class<?>[]{Loader.class}, new IncludeLoader());
+        this.template = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("template.txt"), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                this.template.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testShelf() throws IOException {
+        StringBuilder output = new StringBuilder();
+        for (String line : this.template) {
+            output.append(this.parser.parse(line, "fi", this.fixture.getShelf(), this.fixture.getCallno(), this.loader)).append('\n');
+        }
+        assertGolden(GOLDEN_PATH, "shelf.html", output.toString());
+    }
+
+    @Test
+    public void testShelfPreParsed() throws IOException {
+        StringBuilder output = new StringBuilder();
+        for (String line : this.template) {
+            this.parser.parse(new TemplateLine(line), "fi", this.fixture.getShelf(), this.fixture.getCallno(), this.loader, output);
+            output.append('\n');
+        }
+        assertGolden(GOLDEN_PATH, "shelf.html", output.toString());
+    }
+
+    @Test
+    public void testShelfOtherLanguage() throws IOException {
+        StringBuilder output = new StringBuilder();
+        for (String line : this.template) {
+            output.append(this.parser.parse(line, "en", this.fixture.getShelf(), this.fixture.getCallno(), this.loader)).append('\n');
+        }
+        assertGolden(GOLDEN_PATH, "shelf-en.html", output.toString());
+    }
+
+    @Test
+    public void testCollection() throws IOException {
+        StringBuilder output = new StringBuilder();
+        for (String line : this.template) {
+            output.append(this.parser.parse(line, "fi", this.fixture.getCollection(), this.fixture.getCallno(), this.loader)).append('\n');
+        }
+        assertGolden(GOLDEN_PATH, "collection.html", output.toString());
+    }
+
+    @Test
+    public void testLibrary() throws IOException {
+        StringBuilder output = new StringBuilder();
+        for (String line : this.template) {
+            output.append(this.parser.parse(line, "fi", this.fixture.getLibrary(), this.fixture.getCallno(), this.loader)).append('\n');
+        }
+        assertGolden(GOLDEN_PATH, "library.html", output.toString());
+    }
+
+    @Test
+    public void testStatus() throws IOException {
+        StringBuilder output = new StringBuilder();
+        for (String line : this.template) {
+            output.append(this.parser.parse(line, "fi", "2", "X & Y", this.loader, "TEST")).append('\n');
+        }
+        assertGolden(GOLDEN_PATH, "status.html", output.toString());
+    }
+
+    @Test
+    public void testValuesAreInsertedLiterally() {
+        String line = "<p><!--$LINK('fi', 'Cost $1 \\\\ $x')--></p>";
+        String expected = "<p><a href=\"LocationHandler?callno=X+%26+Y&status=2&lang=fi&owner=TEST\">Cost $1 \\\\ $x</a>\n</p>";
+        assertEquals(expected, this.parser.parse(line, "fi", "2", "X & Y", this.loader, "TEST"));
+    }
+
+    @Test
+    public void testSubjectDelimiterIsLiteral() {
+        String line = "<!--$SHELF_SUBJECT('.*', '$')-->";
+        String expected = "<span class=\"subject_matter_shelf\">Geo<graphy></span>$";
+        assertEquals(expected, this.parser.parse(line, "en", this.fixture.getShelf(), this.fixture.getCallno(), this.loader));
+    }
+
+    /**
+     * Loader that returns the path of the included template instead of
+     * loading it.
+     */
+    private static class IncludeLoader implements InvocationHandler {
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getTemplateOtherPath")) {
+                return "included/" + args[0];
+            }
+            for (Object arg : args) {
+                if (arg instanceof String && ((String) arg).startsWith("included/")) {
+                    return "[" + arg + "]";
+                }
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}